@@ -0,0 +1,95 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.config.WavefrontReportingConfig;
+import com.wavefront.opentracing.reporting.CaptureFileReplayer;
+import com.wavefront.sdk.common.WavefrontSender;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.wavefront.config.ReportingUtils.constructWavefrontSender;
+import static com.wavefront.opentracing.TracerParameters.REPORTING_MECHANISM;
+import static com.wavefront.opentracing.TracerParameters.REPORTING_MECHANISM_FILE;
+
+/**
+ * Replays capture files written with {@code wf.reportingMechanism=file} through the Wavefront
+ * sender that the Tracer parameters configure, e.g.:
+ * <pre>
+ * java -Dwf.reportingMechanism=proxy -Dwf.proxyHost=proxy -Dwf.proxyTracingPort=30000 \
+ *     com.wavefront.opentracing.CaptureReplayTool --rate 5000 --passes 3 capture-directory
+ * </pre>
+ * Options:
+ * <ul>
+ *   <li>{@code --rate <points per second>}: sends at a steady rate instead of as fast as
+ *   possible.</li>
+ *   <li>{@code --passes <count>}: replays the files this many times.</li>
+ *   <li>{@code --shift-timestamps}: moves spans to the present and lets metrics be stamped when
+ *   they are received.</li>
+ * </ul>
+ * The arguments after the options are capture files or directories of them.
+ */
+public final class CaptureReplayTool {
+
+  private CaptureReplayTool() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    CaptureFileReplayer.Builder builder = new CaptureFileReplayer.Builder();
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--rate":
+          builder.pointsPerSecond(Double.parseDouble(argument(args, ++i)));
+          break;
+        case "--passes":
+          builder.passes(Integer.parseInt(argument(args, ++i)));
+          break;
+        case "--shift-timestamps":
+          builder.shiftTimestamps();
+          break;
+        default:
+          files.add(new File(args[i]));
+      }
+    }
+    if (files.isEmpty()) {
+      usage("No capture files given");
+    }
+
+    Map<String, String> params = TracerParameters.getParameters();
+    WavefrontReportingConfig wfReportingConfig =
+        WavefrontTracerFactory.buildReportingConfig(params);
+    if (REPORTING_MECHANISM_FILE.equals(wfReportingConfig.getReportingMechanism())) {
+      usage(REPORTING_MECHANISM + " must be 'direct' or 'proxy' to replay");
+    }
+    WavefrontSender wavefrontSender = constructWavefrontSender(wfReportingConfig);
+    CaptureFileReplayer replayer = builder.build(wavefrontSender);
+    long startMillis = System.currentTimeMillis();
+    try {
+      replayer.replay(files);
+      wavefrontSender.flush();
+    } finally {
+      wavefrontSender.close();
+    }
+    long elapsedMillis = Math.max(System.currentTimeMillis() - startMillis, 1);
+    System.out.printf("Replayed %d points in %d ms (%.0f/s), skipped %d lines, %d failures%n",
+        replayer.getPointsSent(), elapsedMillis, replayer.getPointsSent() * 1000.0 / elapsedMillis,
+        replayer.getLinesSkipped(), replayer.getFailureCount() +
+            wavefrontSender.getFailureCount());
+  }
+
+  private static String argument(String[] args, int index) {
+    if (index >= args.length) {
+      usage("Missing value of " + args[index - 1]);
+    }
+    return args[index];
+  }
+
+  private static void usage(String problem) {
+    System.err.println(problem);
+    System.err.println("Usage: CaptureReplayTool [--rate <points per second>] " +
+        "[--passes <count>] [--shift-timestamps] <capture file or directory>...");
+    System.exit(2);
+  }
+}
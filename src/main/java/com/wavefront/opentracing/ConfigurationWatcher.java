@@ -0,0 +1,73 @@
+package com.wavefront.opentracing;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls the configuration file for changes and hands the reloaded tracer parameters to a
+ * listener, which applies the ones that can change while the tracer is running.
+ *
+ * The file counts as changed when its modification time or length differs from the previous
+ * poll, including when it is created or deleted. The parameters are reloaded as at startup, so
+ * system properties still take precedence over the file.
+ */
+final class ConfigurationWatcher implements Closeable {
+  private final static Logger logger = Logger.getLogger(ConfigurationWatcher.class.getName());
+
+  private final File file;
+  private final Consumer<Map<String, String>> listener;
+  private final ScheduledExecutorService pollService;
+  private long lastModified;
+  private long lastLength;
+
+  /**
+   * @param file           The configuration file to watch.
+   * @param intervalMillis How often to check the file for changes.
+   * @param listener       Applies the reloaded parameters.
+   */
+  ConfigurationWatcher(File file, long intervalMillis, Consumer<Map<String, String>> listener) {
+    if (intervalMillis < 1) {
+      throw new IllegalArgumentException("Poll interval must be positive");
+    }
+    this.file = file;
+    this.listener = listener;
+    this.lastModified = file.lastModified();
+    this.lastLength = file.length();
+    this.pollService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "wavefront-configuration-watcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.pollService.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  void poll() {
+    long modified = file.lastModified();
+    long length = file.length();
+    if (modified == lastModified && length == lastLength) {
+      return;
+    }
+    lastModified = modified;
+    lastLength = length;
+    logger.log(Level.INFO, "Reloading Tracer configuration file " + file);
+    try {
+      listener.accept(TracerParameters.getParameters());
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to apply the Tracer configuration file '" + file +
+          "': " + e);
+    }
+  }
+
+  @Override
+  public void close() {
+    pollService.shutdownNow();
+  }
+}
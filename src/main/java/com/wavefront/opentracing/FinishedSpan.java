@@ -0,0 +1,101 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * A finished span put together by the reporting stages rather than by the tracer: a copy of a
+ * finished span with other tags or span logs, or a span read back from disk.
+ *
+ * A finished span's tags and span logs cannot be changed, so reporting stages that rewrite them
+ * forward one of these instead, and every stage behind them still sees the span. It belongs to
+ * no tracer and is only meant to be reported; finishing it does nothing.
+ */
+public final class FinishedSpan extends WavefrontSpan {
+  private final long durationMicros;
+  private final List<Pair<String, String>> tags;
+  private final List<SpanLog> spanLogs;
+
+  /**
+   * @param operationName   The operation name.
+   * @param spanContext     The context, with the trace and span IDs.
+   * @param startTimeMicros The start time in microseconds since the epoch.
+   * @param durationMicros  The duration in microseconds.
+   * @param parents         The references to the parent spans, if any.
+   * @param follows         The references to the spans this span follows from, if any.
+   * @param tags            The tags.
+   * @param spanLogs        The span logs, if any.
+   */
+  public FinishedSpan(String operationName, WavefrontSpanContext spanContext,
+                      long startTimeMicros, long durationMicros, @Nullable List<Reference> parents,
+                      @Nullable List<Reference> follows, List<Pair<String, String>> tags,
+                      @Nullable List<SpanLog> spanLogs) {
+    // The tags are kept here rather than set on the span, which would apply them as if they were
+    // set while the span was running.
+    super(null, operationName, spanContext, startTimeMicros, 0, parents, follows,
+        Collections.emptyList());
+    this.durationMicros = durationMicros;
+    this.tags = Collections.unmodifiableList(tags);
+    this.spanLogs = spanLogs == null ? Collections.emptyList() :
+        Collections.unmodifiableList(spanLogs);
+  }
+
+  /**
+   * @return A copy of the span with the given tags instead of its own.
+   */
+  public static FinishedSpan withTags(WavefrontSpan span, List<Pair<String, String>> tags) {
+    return new FinishedSpan(span.getOperationName(), span.context(), span.getStartTimeMicros(),
+        span.getDurationMicroseconds(), span.getParents(), span.getFollows(), tags,
+        span.getSpanLogs());
+  }
+
+  /**
+   * @return A copy of the span with the given span logs instead of its own.
+   */
+  public static FinishedSpan withSpanLogs(WavefrontSpan span, List<SpanLog> spanLogs) {
+    return new FinishedSpan(span.getOperationName(), span.context(), span.getStartTimeMicros(),
+        span.getDurationMicroseconds(), span.getParents(), span.getFollows(),
+        span.getTagsAsList(), spanLogs);
+  }
+
+  @Override
+  public long getDurationMicroseconds() {
+    return durationMicros;
+  }
+
+  @Override
+  public List<Pair<String, String>> getTagsAsList() {
+    return tags;
+  }
+
+  @Override
+  public Map<String, Collection<String>> getTagsAsMap() {
+    Map<String, Collection<String>> tagsAsMap = new HashMap<>();
+    for (Pair<String, String> tag : tags) {
+      tagsAsMap.computeIfAbsent(tag._1, key -> new ArrayList<>()).add(tag._2);
+    }
+    return Collections.unmodifiableMap(tagsAsMap);
+  }
+
+  @Override
+  public List<SpanLog> getSpanLogs() {
+    return spanLogs;
+  }
+
+  @Override
+  public void finish() {
+  }
+
+  @Override
+  public void finish(long finishMicros) {
+  }
+}
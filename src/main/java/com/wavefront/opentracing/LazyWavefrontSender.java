@@ -0,0 +1,133 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.WavefrontSender;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link WavefrontSender} that is returned right away and creates the actual sender on a
+ * background thread, so that DNS lookups and connecting to the proxy stay off the caller's path.
+ *
+ * Until the actual sender is ready, calls that send data wait for it, failure counts are reported
+ * as 0 and flushes do nothing. Data is only ever sent from the reporters' own threads, which
+ * therefore wait while the spans queue up in the span reporter. If the actual sender cannot be
+ * created, sending fails with an {@link IOException} that is counted like any other failure.
+ *
+ * The sender is a dynamic proxy of the {@link WavefrontSender} interface, so that every method
+ * of the interface is forwarded whichever version of the SDK is on the class path.
+ */
+final class LazyWavefrontSender implements InvocationHandler {
+  private static final Logger logger = Logger.getLogger(LazyWavefrontSender.class.getName());
+
+  private final CountDownLatch initialized = new CountDownLatch(1);
+  private volatile WavefrontSender sender;
+  private volatile Exception failure;
+  private volatile boolean closed;
+
+  private LazyWavefrontSender() {
+  }
+
+  /**
+   * @param factory Creates the actual sender, on a background thread.
+   * @return A sender that forwards to the actual sender once it has been created.
+   */
+  static WavefrontSender create(Callable<WavefrontSender> factory) {
+    LazyWavefrontSender handler = new LazyWavefrontSender();
+    Thread initializer = new Thread(() -> handler.initialize(factory),
+        "wavefront-sender-initializer");
+    initializer.setDaemon(true);
+    initializer.start();
+    return (WavefrontSender) Proxy.newProxyInstance(WavefrontSender.class.getClassLoader(),
+        new Class<?>[] { WavefrontSender.class }, handler);
+  }
+
+  private void initialize(Callable<WavefrontSender> factory) {
+    try {
+      sender = factory.call();
+    } catch (Exception e) {
+      failure = e;
+      logger.log(Level.WARNING, "Failed to create a Wavefront sender: " + e);
+    } finally {
+      initialized.countDown();
+    }
+    if (closed && sender != null) {
+      closeQuietly(sender);
+    }
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return "LazyWavefrontSender[" + sender + "]";
+      }
+    }
+    WavefrontSender ready = sender;
+    if (ready == null) {
+      switch (method.getName()) {
+        case "getFailureCount":
+          return 0;
+        case "flush":
+          return null;
+        case "close":
+          closed = true;
+          // Closed here if created meanwhile, or by the initializer otherwise.
+          ready = sender;
+          if (ready == null) {
+            return null;
+          }
+          break;
+        default:
+          ready = await(method);
+      }
+    }
+    try {
+      return method.invoke(ready, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private WavefrontSender await(Method method) throws Exception {
+    try {
+      initialized.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw failure(method, e);
+    }
+    if (sender == null) {
+      throw failure(method, failure);
+    }
+    return sender;
+  }
+
+  private static Exception failure(Method method, Exception cause) {
+    String message = "Wavefront sender is not available";
+    if (Arrays.asList(method.getExceptionTypes()).contains(IOException.class)) {
+      return new IOException(message, cause);
+    }
+    return new IllegalStateException(message, cause);
+  }
+
+  private static void closeQuietly(WavefrontSender sender) {
+    try {
+      sender.close();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to close Wavefront sender: " + e);
+    }
+  }
+}
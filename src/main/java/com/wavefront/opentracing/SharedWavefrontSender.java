@@ -0,0 +1,56 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.WavefrontSender;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * A {@link WavefrontSender} for a reporter that uses another reporter's sender without owning it.
+ *
+ * A span reporter closes its sender when it is closed. Handed this view instead, a second span
+ * reporter on the same sender only flushes it on close, so that the sender is closed once, by its
+ * owner, and stays open while the owner still drains its queue into it. Every other call is
+ * forwarded as is; like {@link LazyWavefrontSender}, it is a dynamic proxy of the interface.
+ */
+final class SharedWavefrontSender implements InvocationHandler {
+  private final WavefrontSender sender;
+
+  private SharedWavefrontSender(WavefrontSender sender) {
+    this.sender = sender;
+  }
+
+  /**
+   * @param sender The sender, closed by its owner.
+   * @return A view of the sender that flushes it instead of closing it.
+   */
+  static WavefrontSender of(WavefrontSender sender) {
+    return (WavefrontSender) Proxy.newProxyInstance(WavefrontSender.class.getClassLoader(),
+        new Class<?>[] { WavefrontSender.class }, new SharedWavefrontSender(sender));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return "SharedWavefrontSender[" + sender + "]";
+      }
+    }
+    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+      sender.flush();
+      return null;
+    }
+    try {
+      return method.invoke(sender, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
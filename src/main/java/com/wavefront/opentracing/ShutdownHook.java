@@ -0,0 +1,155 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.opentracing.reporting.CloseDeadline;
+import com.wavefront.opentracing.reporting.DelegatingReporter;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.opentracing.reporting.ReportingThreads;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Closes the tracers created by {@link WavefrontTracerFactory} when the JVM shuts down, so that
+ * the spans and metrics they still buffer are reported instead of lost.
+ *
+ * A tracer is registered through the reporter it is built with, which unregisters it when the
+ * tracer is closed. On shutdown every registered tracer is closed on a thread of its own, so the
+ * tracers drain their buffers and flush their senders in parallel, and the hook waits no longer
+ * than the longest timeout registered. Spans that are still buffered when a reporting stage
+ * gives up are counted in its internal metrics, which are reported one last time before the
+ * sender is closed.
+ */
+final class ShutdownHook implements Runnable {
+  private static final Logger logger = Logger.getLogger(ShutdownHook.class.getName());
+
+  private static ShutdownHook instance;
+
+  private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+
+  ShutdownHook() {
+  }
+
+  /**
+   * @return The hook shared by the whole class loader, added to the runtime on first use.
+   */
+  static synchronized ShutdownHook getInstance() {
+    if (instance == null) {
+      instance = new ShutdownHook();
+      Runtime.getRuntime().addShutdownHook(new Thread(instance, "wavefront-shutdown-hook"));
+    }
+    return instance;
+  }
+
+  /**
+   * @param reporter      The reporter the tracer is to be built with.
+   * @param timeoutMillis The longest to wait for the tracer to close on shutdown.
+   * @return The reporter to build the tracer with instead, which is to be handed the tracer
+   *     through {@link Registration#register(Closeable)}.
+   */
+  Registration newRegistration(Reporter reporter, long timeoutMillis) {
+    if (timeoutMillis < 1) {
+      throw new IllegalArgumentException("Shutdown timeout must be positive");
+    }
+    return new Registration(reporter, timeoutMillis);
+  }
+
+  /**
+   * @return The number of tracers to be closed on shutdown.
+   */
+  int size() {
+    return registrations.size();
+  }
+
+  @Override
+  public void run() {
+    int pending = closeAll();
+    if (pending > 0) {
+      logger.log(Level.WARNING, "Timed out closing " + pending + " tracers on shutdown, " +
+          "their remaining spans are lost");
+    }
+  }
+
+  /**
+   * Closes every registered tracer in parallel.
+   *
+   * @return The number of tracers that did not finish closing within their timeout.
+   */
+  int closeAll() {
+    List<Registration> closing = new ArrayList<>(registrations);
+    List<Thread> closers = new ArrayList<>(closing.size());
+    long timeoutMillis = 0;
+    for (Registration registration : closing) {
+      Thread closer = ReportingThreads.newThread("wavefront-tracer-closer",
+          registration::closeTracer, false);
+      closer.start();
+      closers.add(closer);
+      timeoutMillis = Math.max(timeoutMillis, registration.timeoutMillis);
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    int pending = 0;
+    for (Thread closer : closers) {
+      try {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining > 0) {
+          closer.join(remaining);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (closer.isAlive()) {
+        pending++;
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * The outermost reporter of a tracer closed on shutdown. Closing it, which closing the tracer
+   * does, unregisters the tracer.
+   */
+  final class Registration extends DelegatingReporter {
+    private final long timeoutMillis;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile Closeable tracer;
+
+    private Registration(Reporter delegate, long timeoutMillis) {
+      super(delegate);
+      this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Registers the tracer built with this reporter to be closed on shutdown.
+     */
+    void register(Closeable tracer) {
+      this.tracer = tracer;
+      registrations.add(this);
+      if (closed.get()) {
+        registrations.remove(this);
+      }
+    }
+
+    private void closeTracer() {
+      // The stages of the tracer share the timeout rather than each waiting it in full.
+      try (CloseDeadline deadline = CloseDeadline.start(timeoutMillis)) {
+        tracer.close();
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to close tracer on shutdown: " + e);
+      }
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        registrations.remove(this);
+        super.close();
+      }
+    }
+  }
+}
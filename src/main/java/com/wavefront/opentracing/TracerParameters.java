@@ -1,12 +1,28 @@
 package com.wavefront.opentracing;
 
+import com.wavefront.opentracing.propagation.B3Propagator;
+import com.wavefront.opentracing.propagation.CompositePropagator;
+import com.wavefront.opentracing.propagation.Propagator;
+import com.wavefront.opentracing.propagation.TraceContextPropagator;
+import com.wavefront.opentracing.sampling.AdaptiveSampler;
+import com.wavefront.opentracing.sampling.AllOfSampler;
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
 import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import io.opentracing.propagation.TextMap;
+
 /**
  * Defines tracer parameters used by {@link WavefrontTracerFactory} to build instances of
  * {@link WavefrontTracer}, and associated methods that load parameter values from system properties
@@ -21,6 +37,17 @@ public final class TracerParameters {
 
   public final static String DEFAULT_CUSTOM_TAGS_DELIMITER = ",";
 
+  // Values of SAMPLING_POLICY
+  public final static String SAMPLING_POLICY_ANY = "any";
+  public final static String SAMPLING_POLICY_ALL = "all";
+
+  // Value of REPORTING_MECHANISM that writes to capture files, besides 'direct' and 'proxy'
+  public final static String REPORTING_MECHANISM_FILE = "file";
+
+  // Values of PROPAGATORS
+  public final static String PROPAGATOR_W3C = "w3c";
+  public final static String PROPAGATOR_B3 = "b3";
+
   // YAML file parameters
   public final static String APP_TAGS_YAML_FILE = "wf.applicationTagsYamlFile";
   public final static String REPORTING_YAML_FILE = "wf.reportingConfigYamlFile";
@@ -34,6 +61,11 @@ public final class TracerParameters {
   public final static String CUSTOM_TAGS_FROM_ENV = "wf.customTagsFromEnv";
   public final static String CUSTOM_TAGS_DELIMITER = "wf.customTagsDelimiter";
 
+  // Configuration file parameters
+  public final static String WATCH_CONFIGURATION_FILE = "wf.watchConfigurationFile";
+  public final static String WATCH_CONFIGURATION_FILE_INTERVAL_MS =
+      "wf.watchConfigurationFile.intervalMs";
+
   // Reporting parameters
   public final static String REPORTING_MECHANISM = "wf.reportingMechanism";
   public final static String SERVER = "wf.server";
@@ -44,6 +76,107 @@ public final class TracerParameters {
   public final static String PROXY_TRACING_PORT = "wf.proxyTracingPort";
   public final static String SOURCE = "wf.source";
   public final static String DISABLE_SPAN_LOG_REPORTING = "wf.disableSpanLogReporting";
+  public final static String LAZY_STARTUP = "wf.lazyStartup";
+  public final static String VIRTUAL_THREADS = "wf.reporting.virtualThreads";
+  public final static String SHUTDOWN_HOOK = "wf.shutdownHook";
+  public final static String SHUTDOWN_HOOK_TIMEOUT_MS = "wf.shutdownHook.timeoutMs";
+
+  // Additional reporting destinations
+  public final static String REPORTING_DESTINATIONS = "wf.reporting.destinations";
+  public final static String REPORTING_DESTINATIONS_QUEUE_SIZE =
+      "wf.reporting.destinations.queueSize";
+  public final static String REPORTING_DESTINATIONS_OVERFLOW_POLICY =
+      "wf.reporting.destinations.overflowPolicy";
+
+  // Disk spill parameters
+  public final static String SPILL_DIRECTORY = "wf.reporting.spill.directory";
+  public final static String SPILL_MAX_BYTES = "wf.reporting.spill.maxBytes";
+  public final static String SPILL_SEGMENT_SIZE = "wf.reporting.spill.segmentSize";
+
+  // Pipelined direct ingestion parameters
+  public final static String DIRECT_PIPELINED = "wf.reporting.direct.pipelined";
+  public final static String DIRECT_COMPRESSION = "wf.reporting.direct.compression";
+  public final static String DIRECT_MAX_IN_FLIGHT = "wf.reporting.direct.maxInFlight";
+  public final static String DIRECT_MAX_BATCH_SIZE = "wf.reporting.direct.maxBatchSize";
+  public final static String DIRECT_TARGET_LATENCY_MS = "wf.reporting.direct.targetLatencyMs";
+
+  // Proxy connection pool parameters
+  public final static String PROXY_TRACING_CONNECTIONS = "wf.reporting.proxy.tracingConnections";
+  public final static String PROXY_TRACING_HOSTS = "wf.reporting.proxy.tracingHosts";
+  public final static String PROXY_TRACING_BUFFER_SIZE = "wf.reporting.proxy.tracingBufferSize";
+
+  // Capture file parameters
+  public final static String FILE_DIRECTORY = "wf.reporting.file.directory";
+  public final static String FILE_MAX_BYTES = "wf.reporting.file.maxBytes";
+  public final static String FILE_MAX_FILES = "wf.reporting.file.maxFiles";
+  public final static String FILE_COMPRESSION = "wf.reporting.file.compression";
+
+  // Sampling parameters
+  public final static String SAMPLING_RATE = "wf.sampling.rate";
+  public final static String SAMPLING_DURATION_MS = "wf.sampling.durationMs";
+  public final static String SAMPLING_POLICY = "wf.sampling.policy";
+  public final static String SAMPLING_TARGET_SPANS_PER_SECOND =
+      "wf.sampling.targetSpansPerSecond";
+  public final static String SAMPLING_PROPAGATION = "wf.sampling.propagation";
+
+  // Context propagation parameters
+  public final static String PROPAGATORS = "wf.propagators";
+
+  // Asynchronous reporting parameters
+  public final static String ASYNC_REPORTING = "wf.reporting.async";
+  public final static String ASYNC_REPORTING_QUEUE_SIZE = "wf.reporting.async.queueSize";
+  public final static String ASYNC_REPORTING_BATCH_SIZE = "wf.reporting.async.batchSize";
+  public final static String ASYNC_REPORTING_FLUSH_INTERVAL_MS =
+      "wf.reporting.async.flushIntervalMs";
+  public final static String ASYNC_REPORTING_OVERFLOW_POLICY =
+      "wf.reporting.async.overflowPolicy";
+
+  // Tail-based sampling parameters
+  public final static String TAIL_SAMPLING = "wf.reporting.tailSampling";
+  public final static String TAIL_SAMPLING_LATENCY_THRESHOLD_MS =
+      "wf.reporting.tailSampling.latencyThresholdMs";
+  public final static String TAIL_SAMPLING_BASE_RATE = "wf.reporting.tailSampling.baseRate";
+  public final static String TAIL_SAMPLING_DECISION_WAIT_MS =
+      "wf.reporting.tailSampling.decisionWaitMs";
+  public final static String TAIL_SAMPLING_MAX_BUFFERED_BYTES =
+      "wf.reporting.tailSampling.maxBufferedBytes";
+
+  // Span metrics parameters
+  public final static String SPAN_METRICS = "wf.reporting.spanMetrics";
+  public final static String SPAN_METRICS_TAG_KEYS = "wf.reporting.spanMetrics.tagKeys";
+  public final static String SPAN_METRICS_SPAN_SAMPLING_RATE =
+      "wf.reporting.spanMetrics.spanSamplingRate";
+  public final static String SPAN_METRICS_FLUSH_INTERVAL_MS =
+      "wf.reporting.spanMetrics.flushIntervalMs";
+  public final static String SPAN_METRICS_MAX_KEYS = "wf.reporting.spanMetrics.maxKeys";
+
+  // Guard parameters
+  public final static String GUARD_MAX_SPANS_PER_SECOND = "wf.reporting.guard.maxSpansPerSecond";
+  public final static String GUARD_MAX_TAG_VALUES = "wf.reporting.guard.maxTagValues";
+  public final static String GUARD_PLACEHOLDER = "wf.reporting.guard.placeholder";
+
+  // Span log limit parameters
+  public final static String SPAN_LOGS_MAX_ENTRIES = "wf.reporting.spanLogs.maxEntries";
+  public final static String SPAN_LOGS_MAX_FIELD_BYTES = "wf.reporting.spanLogs.maxFieldBytes";
+  public final static String SPAN_LOGS_MAX_BYTES_PER_SECOND =
+      "wf.reporting.spanLogs.maxBytesPerSecond";
+  public final static String SPAN_LOGS_DEDUPLICATE = "wf.reporting.spanLogs.deduplicate";
+
+  // Tag filter parameters
+  public final static String TAGS_DROP = "wf.reporting.tags.drop";
+  public final static String TAGS_HASH = "wf.reporting.tags.hash";
+  public final static String TAGS_REDACT = "wf.reporting.tags.redact";
+  public final static String TAGS_REDACT_PATTERN = "wf.reporting.tags.redactPattern";
+  public final static String TAGS_STRIP_QUERY = "wf.reporting.tags.stripQuery";
+
+  // Recent spans parameters
+  public final static String RECENT_SPANS_CAPACITY = "wf.recentSpans.capacity";
+  public final static String RECENT_SPANS_MAX_SPAN_BYTES = "wf.recentSpans.maxSpanBytes";
+
+  // Internal metrics parameters
+  public final static String INTERNAL_METRICS_INTERVAL_MS =
+      "wf.reporting.internalMetrics.intervalMs";
+  public final static String INTERNAL_METRICS_DETAILED = "wf.reporting.internalMetrics.detailed";
 
   public final static String [] ALL = {
       APP_TAGS_YAML_FILE,
@@ -55,6 +188,8 @@ public final class TracerParameters {
       CUSTOM_TAGS,
       CUSTOM_TAGS_FROM_ENV,
       CUSTOM_TAGS_DELIMITER,
+      WATCH_CONFIGURATION_FILE,
+      WATCH_CONFIGURATION_FILE_INTERVAL_MS,
       REPORTING_MECHANISM,
       SERVER,
       TOKEN,
@@ -63,7 +198,66 @@ public final class TracerParameters {
       PROXY_DISTRIBUTIONS_PORT,
       PROXY_TRACING_PORT,
       SOURCE,
-      DISABLE_SPAN_LOG_REPORTING
+      DISABLE_SPAN_LOG_REPORTING,
+      LAZY_STARTUP,
+      VIRTUAL_THREADS,
+      SHUTDOWN_HOOK,
+      SHUTDOWN_HOOK_TIMEOUT_MS,
+      REPORTING_DESTINATIONS,
+      REPORTING_DESTINATIONS_QUEUE_SIZE,
+      REPORTING_DESTINATIONS_OVERFLOW_POLICY,
+      SPILL_DIRECTORY,
+      SPILL_MAX_BYTES,
+      SPILL_SEGMENT_SIZE,
+      DIRECT_PIPELINED,
+      DIRECT_COMPRESSION,
+      DIRECT_MAX_IN_FLIGHT,
+      DIRECT_MAX_BATCH_SIZE,
+      DIRECT_TARGET_LATENCY_MS,
+      PROXY_TRACING_CONNECTIONS,
+      PROXY_TRACING_HOSTS,
+      PROXY_TRACING_BUFFER_SIZE,
+      FILE_DIRECTORY,
+      FILE_MAX_BYTES,
+      FILE_MAX_FILES,
+      FILE_COMPRESSION,
+      SAMPLING_RATE,
+      SAMPLING_DURATION_MS,
+      SAMPLING_POLICY,
+      SAMPLING_TARGET_SPANS_PER_SECOND,
+      SAMPLING_PROPAGATION,
+      PROPAGATORS,
+      ASYNC_REPORTING,
+      ASYNC_REPORTING_QUEUE_SIZE,
+      ASYNC_REPORTING_BATCH_SIZE,
+      ASYNC_REPORTING_FLUSH_INTERVAL_MS,
+      ASYNC_REPORTING_OVERFLOW_POLICY,
+      TAIL_SAMPLING,
+      TAIL_SAMPLING_LATENCY_THRESHOLD_MS,
+      TAIL_SAMPLING_BASE_RATE,
+      TAIL_SAMPLING_DECISION_WAIT_MS,
+      TAIL_SAMPLING_MAX_BUFFERED_BYTES,
+      SPAN_METRICS,
+      SPAN_METRICS_TAG_KEYS,
+      SPAN_METRICS_SPAN_SAMPLING_RATE,
+      SPAN_METRICS_FLUSH_INTERVAL_MS,
+      SPAN_METRICS_MAX_KEYS,
+      GUARD_MAX_SPANS_PER_SECOND,
+      GUARD_MAX_TAG_VALUES,
+      GUARD_PLACEHOLDER,
+      SPAN_LOGS_MAX_ENTRIES,
+      SPAN_LOGS_MAX_FIELD_BYTES,
+      SPAN_LOGS_MAX_BYTES_PER_SECOND,
+      SPAN_LOGS_DEDUPLICATE,
+      TAGS_DROP,
+      TAGS_HASH,
+      TAGS_REDACT,
+      TAGS_REDACT_PATTERN,
+      TAGS_STRIP_QUERY,
+      RECENT_SPANS_CAPACITY,
+      RECENT_SPANS_MAX_SPAN_BYTES,
+      INTERNAL_METRICS_INTERVAL_MS,
+      INTERNAL_METRICS_DETAILED
   };
 
   /**
@@ -109,6 +303,168 @@ public final class TracerParameters {
     return integer;
   }
 
+  static Double toDouble(String value) {
+    Double dbl = null;
+    try {
+      dbl = Double.valueOf(value);
+    } catch (NumberFormatException e) {
+      logger.log(Level.WARNING, "Failed to convert Tracer parameter value '" + value +
+          "' to double");
+    }
+
+    return dbl;
+  }
+
+  static Long toLong(String value) {
+    Long lng = null;
+    try {
+      lng = Long.valueOf(value);
+    } catch (NumberFormatException e) {
+      logger.log(Level.WARNING, "Failed to convert Tracer parameter value '" + value + "' to long");
+    }
+
+    return lng;
+  }
+
+  /**
+   * Builds the samplers configured by {@link #SAMPLING_RATE} (or, instead of a fixed rate,
+   * {@link #SAMPLING_TARGET_SPANS_PER_SECOND}) and {@link #SAMPLING_DURATION_MS}. With the
+   * default {@link #SAMPLING_POLICY_ANY} policy the samplers are returned individually, and the
+   * tracer reports a span if any one of them samples it. With {@link #SAMPLING_POLICY_ALL}
+   * they are combined into a single sampler that requires every one of them to sample the span.
+   *
+   * @return The samplers to register with the tracer, empty if sampling is not configured.
+   */
+  static List<Sampler> toSamplers(Map<String, String> params) {
+    List<Sampler> samplers = new ArrayList<>();
+    if (params.containsKey(SAMPLING_TARGET_SPANS_PER_SECOND)) {
+      Double target = toDouble(params.get(SAMPLING_TARGET_SPANS_PER_SECOND));
+      if (target != null) {
+        if (target > 0) {
+          samplers.add(new AdaptiveSampler(target));
+          if (params.containsKey(SAMPLING_RATE)) {
+            logger.log(Level.WARNING, "Ignoring Tracer parameter " + SAMPLING_RATE + " -- " +
+                SAMPLING_TARGET_SPANS_PER_SECOND + " is set");
+          }
+        } else {
+          logger.log(Level.WARNING, "Ignoring Tracer parameter " +
+              SAMPLING_TARGET_SPANS_PER_SECOND + "=" + target + " -- value must be positive");
+        }
+      }
+    }
+    if (params.containsKey(SAMPLING_RATE) && samplers.isEmpty()) {
+      Double rate = toDouble(params.get(SAMPLING_RATE));
+      if (rate != null) {
+        if (rate >= 0.0 && rate <= 1.0) {
+          samplers.add(new RateSampler(rate));
+        } else {
+          logger.log(Level.WARNING, "Ignoring Tracer parameter " + SAMPLING_RATE + "=" + rate +
+              " -- value must be between 0.0 and 1.0");
+        }
+      }
+    }
+    if (params.containsKey(SAMPLING_DURATION_MS)) {
+      Long durationMs = toLong(params.get(SAMPLING_DURATION_MS));
+      if (durationMs != null) {
+        if (durationMs >= 0) {
+          samplers.add(new DurationSampler(durationMs));
+        } else {
+          logger.log(Level.WARNING, "Ignoring Tracer parameter " + SAMPLING_DURATION_MS + "=" +
+              durationMs + " -- value must not be negative");
+        }
+      }
+    }
+
+    String policy = params.getOrDefault(SAMPLING_POLICY, SAMPLING_POLICY_ANY);
+    if (SAMPLING_POLICY_ALL.equalsIgnoreCase(policy)) {
+      if (samplers.size() > 1) {
+        return Collections.singletonList(new AllOfSampler(samplers));
+      }
+    } else if (!SAMPLING_POLICY_ANY.equalsIgnoreCase(policy)) {
+      logger.log(Level.WARNING, "Unknown Tracer parameter value " + SAMPLING_POLICY + "=" + policy +
+          " -- defaulting to '" + SAMPLING_POLICY_ANY + "'");
+    }
+    return samplers;
+  }
+
+  /**
+   * Builds the propagator configured by {@link #PROPAGATORS}, a comma separated list of
+   * {@link #PROPAGATOR_W3C} and {@link #PROPAGATOR_B3}. Contexts are injected in the headers of
+   * every listed propagator and extracted from those of the first one to find a context. When
+   * the parameter is not set, {@link #SAMPLING_PROPAGATION} implies {@link #PROPAGATOR_W3C}.
+   *
+   * @return The propagator to register with the tracer for HTTP headers and text maps, or
+   *     {@code null} to keep the tracer's default one.
+   */
+  @Nullable
+  static Propagator<TextMap> toPropagator(Map<String, String> params) {
+    String names = params.get(PROPAGATORS);
+    if (names == null) {
+      return Boolean.parseBoolean(params.get(SAMPLING_PROPAGATION)) ?
+          new TraceContextPropagator() : null;
+    }
+    List<Propagator<TextMap>> propagators = new ArrayList<>();
+    List<String> added = new ArrayList<>();
+    for (String name : names.split(",")) {
+      name = name.trim().toLowerCase();
+      if (name.isEmpty() || added.contains(name)) {
+        continue;
+      }
+      if (PROPAGATOR_W3C.equals(name)) {
+        propagators.add(new TraceContextPropagator());
+      } else if (PROPAGATOR_B3.equals(name)) {
+        propagators.add(new B3Propagator());
+      } else {
+        logger.log(Level.WARNING, "Ignoring Tracer parameter value " + PROPAGATORS + "=" + name +
+            " -- value must be '" + PROPAGATOR_W3C + "' or '" + PROPAGATOR_B3 + "'");
+        continue;
+      }
+      added.add(name);
+    }
+    if (propagators.isEmpty()) {
+      return null;
+    }
+    return propagators.size() == 1 ? propagators.get(0) : new CompositePropagator(propagators);
+  }
+
+  /**
+   * Parses the tracing ports of the proxies configured by {@link #PROXY_TRACING_HOSTS}, a comma
+   * separated list of {@code host} or {@code host:port}, e.g. {@code proxy1:30000,proxy2}.
+   *
+   * @param defaultHost The proxy to use when the parameter is not set.
+   * @param defaultPort The port of proxies listed without one.
+   * @return The addresses of the proxies, empty if there are none.
+   */
+  static List<InetSocketAddress> toProxyAddresses(Map<String, String> params,
+                                                  @Nullable String defaultHost,
+                                                  @Nullable Integer defaultPort) {
+    String hosts = params.containsKey(PROXY_TRACING_HOSTS) ? params.get(PROXY_TRACING_HOSTS) :
+        defaultHost;
+    if (hosts == null) {
+      return Collections.emptyList();
+    }
+    List<InetSocketAddress> addresses = new ArrayList<>();
+    for (String host : hosts.split(",")) {
+      host = host.trim();
+      if (host.isEmpty()) {
+        continue;
+      }
+      Integer port = defaultPort;
+      int colon = host.lastIndexOf(':');
+      if (colon >= 0) {
+        port = toInteger(host.substring(colon + 1));
+        host = host.substring(0, colon);
+      }
+      if (host.isEmpty() || port == null || port < 1 || port > 65535) {
+        logger.log(Level.WARNING, "Ignoring Tracer parameter value " + PROXY_TRACING_HOSTS +
+            "=" + host + " -- value must be 'host' or 'host:port'");
+        continue;
+      }
+      addresses.add(InetSocketAddress.createUnresolved(host, port));
+    }
+    return addresses;
+  }
+
   @Nullable
   static Map<String, String> toCustomTags(Map<String, String> params) {
     if (!params.containsKey(CUSTOM_TAGS) && !params.containsKey(CUSTOM_TAGS_FROM_ENV)) {
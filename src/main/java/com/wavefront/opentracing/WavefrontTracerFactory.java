@@ -4,41 +4,151 @@ import com.wavefront.config.ApplicationTagsConfig;
 import com.wavefront.config.WavefrontReportingConfig;
 import com.wavefront.internal.reporter.WavefrontInternalReporter;
 import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.propagation.Propagator;
+import com.wavefront.opentracing.reporting.AsyncHandOffReporter;
+import com.wavefront.opentracing.reporting.CaptureFileSender;
+import com.wavefront.opentracing.reporting.CaptureFileWriter;
+import com.wavefront.opentracing.reporting.Compression;
+import com.wavefront.opentracing.reporting.DelegatingReporter;
+import com.wavefront.opentracing.reporting.DirectIngestionReporter;
+import com.wavefront.opentracing.reporting.FanOutReporter;
+import com.wavefront.opentracing.reporting.OverflowPolicy;
+import com.wavefront.opentracing.reporting.ProxyConnectionPoolReporter;
+import com.wavefront.opentracing.reporting.RecentSpans;
+import com.wavefront.opentracing.reporting.RecentSpansReporter;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.opentracing.reporting.MeteredReporter;
+import com.wavefront.opentracing.reporting.ReportingRegistry;
+import com.wavefront.opentracing.reporting.ReportingThreads;
+import com.wavefront.opentracing.reporting.SpanLogLimitReporter;
+import com.wavefront.opentracing.reporting.SpanLogLimiter;
+import com.wavefront.opentracing.reporting.SpanLogToggleReporter;
+import com.wavefront.opentracing.reporting.SpanGuardReporter;
+import com.wavefront.opentracing.reporting.SpanMetricsReporter;
+import com.wavefront.opentracing.reporting.SpillingReporter;
+import com.wavefront.opentracing.reporting.StaticTags;
+import com.wavefront.opentracing.reporting.TagFilter;
+import com.wavefront.opentracing.reporting.TagFilterReporter;
+import com.wavefront.opentracing.reporting.TailSamplingReporter;
+import com.wavefront.opentracing.reporting.TracerMetricsReporter;
 import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.opentracing.sampling.AdaptiveSampler;
+import com.wavefront.opentracing.sampling.AllOfSampler;
+import com.wavefront.opentracing.sampling.ReloadableSampling;
 import com.wavefront.sdk.common.Utils;
 import com.wavefront.sdk.common.WavefrontSender;
 import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.management.JMException;
 
 import io.opentracing.Tracer;
 import io.opentracing.contrib.tracerresolver.TracerFactory;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
 
 import static com.wavefront.config.ReportingUtils.constructApplicationTags;
 import static com.wavefront.config.ReportingUtils.constructApplicationTagsConfig;
 import static com.wavefront.config.ReportingUtils.constructWavefrontReportingConfig;
 import static com.wavefront.config.ReportingUtils.constructWavefrontSender;
+import static com.wavefront.config.WavefrontReportingConfig.directReporting;
+import static com.wavefront.config.WavefrontReportingConfig.proxyReporting;
 import static com.wavefront.opentracing.TracerParameters.APPLICATION;
 import static com.wavefront.opentracing.TracerParameters.APP_TAGS_YAML_FILE;
+import static com.wavefront.opentracing.TracerParameters.ASYNC_REPORTING;
+import static com.wavefront.opentracing.TracerParameters.ASYNC_REPORTING_BATCH_SIZE;
+import static com.wavefront.opentracing.TracerParameters.ASYNC_REPORTING_FLUSH_INTERVAL_MS;
+import static com.wavefront.opentracing.TracerParameters.ASYNC_REPORTING_OVERFLOW_POLICY;
+import static com.wavefront.opentracing.TracerParameters.ASYNC_REPORTING_QUEUE_SIZE;
 import static com.wavefront.opentracing.TracerParameters.CLUSTER;
+import static com.wavefront.opentracing.TracerParameters.CUSTOM_TAGS_DELIMITER;
+import static com.wavefront.opentracing.TracerParameters.DIRECT_COMPRESSION;
+import static com.wavefront.opentracing.TracerParameters.DIRECT_MAX_BATCH_SIZE;
+import static com.wavefront.opentracing.TracerParameters.DIRECT_MAX_IN_FLIGHT;
+import static com.wavefront.opentracing.TracerParameters.DIRECT_PIPELINED;
+import static com.wavefront.opentracing.TracerParameters.DIRECT_TARGET_LATENCY_MS;
 import static com.wavefront.opentracing.TracerParameters.DISABLE_SPAN_LOG_REPORTING;
+import static com.wavefront.opentracing.TracerParameters.FILE_COMPRESSION;
+import static com.wavefront.opentracing.TracerParameters.FILE_DIRECTORY;
+import static com.wavefront.opentracing.TracerParameters.FILE_MAX_BYTES;
+import static com.wavefront.opentracing.TracerParameters.FILE_MAX_FILES;
+import static com.wavefront.opentracing.TracerParameters.GUARD_MAX_SPANS_PER_SECOND;
+import static com.wavefront.opentracing.TracerParameters.GUARD_MAX_TAG_VALUES;
+import static com.wavefront.opentracing.TracerParameters.GUARD_PLACEHOLDER;
+import static com.wavefront.opentracing.TracerParameters.INTERNAL_METRICS_DETAILED;
+import static com.wavefront.opentracing.TracerParameters.INTERNAL_METRICS_INTERVAL_MS;
+import static com.wavefront.opentracing.TracerParameters.LAZY_STARTUP;
 import static com.wavefront.opentracing.TracerParameters.PROXY_DISTRIBUTIONS_PORT;
 import static com.wavefront.opentracing.TracerParameters.PROXY_HOST;
 import static com.wavefront.opentracing.TracerParameters.PROXY_METRICS_PORT;
+import static com.wavefront.opentracing.TracerParameters.PROXY_TRACING_BUFFER_SIZE;
+import static com.wavefront.opentracing.TracerParameters.PROXY_TRACING_CONNECTIONS;
+import static com.wavefront.opentracing.TracerParameters.PROXY_TRACING_HOSTS;
 import static com.wavefront.opentracing.TracerParameters.PROXY_TRACING_PORT;
+import static com.wavefront.opentracing.TracerParameters.RECENT_SPANS_CAPACITY;
+import static com.wavefront.opentracing.TracerParameters.RECENT_SPANS_MAX_SPAN_BYTES;
+import static com.wavefront.opentracing.TracerParameters.REPORTING_DESTINATIONS;
+import static com.wavefront.opentracing.TracerParameters.REPORTING_DESTINATIONS_OVERFLOW_POLICY;
+import static com.wavefront.opentracing.TracerParameters.REPORTING_DESTINATIONS_QUEUE_SIZE;
 import static com.wavefront.opentracing.TracerParameters.REPORTING_MECHANISM;
+import static com.wavefront.opentracing.TracerParameters.REPORTING_MECHANISM_FILE;
 import static com.wavefront.opentracing.TracerParameters.REPORTING_YAML_FILE;
 import static com.wavefront.opentracing.TracerParameters.SERVER;
 import static com.wavefront.opentracing.TracerParameters.SERVICE;
 import static com.wavefront.opentracing.TracerParameters.SHARD;
+import static com.wavefront.opentracing.TracerParameters.SHUTDOWN_HOOK;
+import static com.wavefront.opentracing.TracerParameters.SHUTDOWN_HOOK_TIMEOUT_MS;
 import static com.wavefront.opentracing.TracerParameters.SOURCE;
+import static com.wavefront.opentracing.TracerParameters.SPAN_LOGS_DEDUPLICATE;
+import static com.wavefront.opentracing.TracerParameters.SPAN_LOGS_MAX_BYTES_PER_SECOND;
+import static com.wavefront.opentracing.TracerParameters.SPAN_LOGS_MAX_ENTRIES;
+import static com.wavefront.opentracing.TracerParameters.SPAN_LOGS_MAX_FIELD_BYTES;
+import static com.wavefront.opentracing.TracerParameters.SPAN_METRICS;
+import static com.wavefront.opentracing.TracerParameters.SPAN_METRICS_FLUSH_INTERVAL_MS;
+import static com.wavefront.opentracing.TracerParameters.SPAN_METRICS_MAX_KEYS;
+import static com.wavefront.opentracing.TracerParameters.SPAN_METRICS_SPAN_SAMPLING_RATE;
+import static com.wavefront.opentracing.TracerParameters.SPAN_METRICS_TAG_KEYS;
+import static com.wavefront.opentracing.TracerParameters.SPILL_DIRECTORY;
+import static com.wavefront.opentracing.TracerParameters.SPILL_MAX_BYTES;
+import static com.wavefront.opentracing.TracerParameters.SPILL_SEGMENT_SIZE;
+import static com.wavefront.opentracing.TracerParameters.TAGS_DROP;
+import static com.wavefront.opentracing.TracerParameters.TAGS_HASH;
+import static com.wavefront.opentracing.TracerParameters.TAGS_REDACT;
+import static com.wavefront.opentracing.TracerParameters.TAGS_REDACT_PATTERN;
+import static com.wavefront.opentracing.TracerParameters.TAGS_STRIP_QUERY;
+import static com.wavefront.opentracing.TracerParameters.TAIL_SAMPLING;
+import static com.wavefront.opentracing.TracerParameters.TAIL_SAMPLING_BASE_RATE;
+import static com.wavefront.opentracing.TracerParameters.TAIL_SAMPLING_DECISION_WAIT_MS;
+import static com.wavefront.opentracing.TracerParameters.TAIL_SAMPLING_LATENCY_THRESHOLD_MS;
+import static com.wavefront.opentracing.TracerParameters.TAIL_SAMPLING_MAX_BUFFERED_BYTES;
+import static com.wavefront.opentracing.TracerParameters.VIRTUAL_THREADS;
+import static com.wavefront.opentracing.TracerParameters.WATCH_CONFIGURATION_FILE;
+import static com.wavefront.opentracing.TracerParameters.WATCH_CONFIGURATION_FILE_INTERVAL_MS;
 import static com.wavefront.opentracing.TracerParameters.TOKEN;
 import static com.wavefront.opentracing.TracerParameters.toCustomTags;
+import static com.wavefront.opentracing.TracerParameters.toDouble;
 import static com.wavefront.opentracing.TracerParameters.toInteger;
+import static com.wavefront.opentracing.TracerParameters.toLong;
+import static com.wavefront.opentracing.TracerParameters.toPropagator;
+import static com.wavefront.opentracing.TracerParameters.toProxyAddresses;
+import static com.wavefront.opentracing.TracerParameters.toSamplers;
 import static com.wavefront.sdk.common.Constants.SDK_METRIC_PREFIX;
 
 /**
@@ -50,6 +160,15 @@ public class WavefrontTracerFactory implements TracerFactory {
 
   private static final Logger logger = Logger.getLogger(WavefrontTracerFactory.class.getName());
 
+  // Name of the destination configured by the top-level reporting parameters.
+  private static final String DEFAULT_DESTINATION = "default";
+
+  private static final long DEFAULT_WATCH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  // Tag of the internal metrics of a tracer's own reporting stages, numbering the tracers.
+  private static final String TRACER_TAG_KEY = "tracer";
+  private static final AtomicInteger TRACER_IDS = new AtomicInteger();
+
   @Override
   public Tracer getTracer()
   {
@@ -85,19 +204,327 @@ public class WavefrontTracerFactory implements TracerFactory {
     }
 
     ApplicationTags applicationTags = constructApplicationTags(applicationTagsConfig);
+    // The tags every span carries because of the application tags, computed once and shared.
+    StaticTags staticTags = StaticTags.of(applicationTags);
 
     // Step 2 - Construct WavefrontReportingConfig.
     WavefrontReportingConfig wfReportingConfig;
-    if (params.containsKey(REPORTING_YAML_FILE)) {
+    try {
+      wfReportingConfig = buildReportingConfig(params);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Failed to create a Wavefront reporting config: " + e);
+      return null;
+    }
+
+    String source = wfReportingConfig.getSource();
+
+    boolean disableSpanLogReporting =
+        Boolean.parseBoolean(params.get(DISABLE_SPAN_LOG_REPORTING));
+    boolean watchConfiguration = Boolean.parseBoolean(params.get(WATCH_CONFIGURATION_FILE));
+    if (Boolean.parseBoolean(params.get(VIRTUAL_THREADS)) &&
+        !ReportingThreads.isVirtualThreadSupported()) {
+      logger.log(Level.INFO, "Virtual threads need JDK 21 or later, reporting on platform " +
+          "threads instead");
+    }
+
+    // Step 3 - Get a WavefrontSender for sending data to Wavefront, an internal reporter for
+    // internal sdk metrics and a WavefrontSpanReporter for reporting trace data. Tracers built from
+    // the same effective reporting config share these, so that repeated calls do not open more
+    // connections. When the configuration file is watched, the reporting of span logs is toggled
+    // at runtime instead of telling the shared reporting apart.
+    WavefrontReportingConfig effectiveReportingConfig = wfReportingConfig;
+    ReportingRegistry.Lease sharedReporter;
+    try {
+      List<Object> reportingKey = reportingKey(params.get(REPORTING_YAML_FILE), wfReportingConfig,
+          source, disableSpanLogReporting && !watchConfiguration);
+      reportingKey.addAll(Arrays.asList(params.get(SPILL_DIRECTORY), params.get(SPILL_MAX_BYTES),
+          params.get(SPILL_SEGMENT_SIZE), watchConfiguration, params.get(DIRECT_PIPELINED),
+          params.get(DIRECT_COMPRESSION), params.get(DIRECT_MAX_IN_FLIGHT),
+          params.get(DIRECT_MAX_BATCH_SIZE), params.get(DIRECT_TARGET_LATENCY_MS),
+          params.get(PROXY_TRACING_CONNECTIONS), params.get(PROXY_TRACING_HOSTS),
+          params.get(PROXY_TRACING_BUFFER_SIZE), params.get(FILE_DIRECTORY),
+          params.get(FILE_MAX_BYTES), params.get(FILE_MAX_FILES), params.get(FILE_COMPRESSION),
+          params.get(LAZY_STARTUP), params.get(INTERNAL_METRICS_INTERVAL_MS),
+          params.get(INTERNAL_METRICS_DETAILED), params.get(VIRTUAL_THREADS),
+          params.get(SHUTDOWN_HOOK)));
+      sharedReporter = ReportingRegistry.getInstance().acquire(reportingKey,
+          () -> createSharedReporting(params, effectiveReportingConfig, source,
+              disableSpanLogReporting, staticTags));
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Failed to create a Wavefront sender and span reporter: " + e);
+      return null;
+    }
+
+    Tracer tracer = buildTracer(params, applicationTags, staticTags, sharedReporter, source,
+        disableSpanLogReporting);
+    if (tracer == null) {
+      sharedReporter.close();
+    }
+    return tracer;
+  }
+
+  @Nullable
+  private static Tracer buildTracer(Map<String, String> params, ApplicationTags applicationTags,
+                                    StaticTags staticTags, ReportingRegistry.Lease sharedReporter,
+                                    String source, boolean disableSpanLogReporting) {
+    // The stages of each tracer register their internal metrics with a reporter of the tracer's
+    // own, tagged with the tracer, so that tracers sharing the reporting keep theirs apart.
+    WavefrontInternalReporter sdkMetricsReporter;
+    try {
+      sdkMetricsReporter = buildTracerMetricsReporter(params, sharedReporter, source);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Failed to create an internal metrics reporter: " + e);
+      return abandon(sharedReporter);
+    }
+
+    // Step 4 - Optionally put reporting stages in front of the span reporter: limit the span
+    // logs of chatty spans, drop or rewrite sensitive tags, guard the proxy against floods of
+    // spans and tag values, fan spans out to additional destinations, hand them off to a
+    // background thread, sample whole traces once they have finished, aggregate spans into RED
+    // metrics, and hold the most recent spans for inspection over JMX. A lazy startup
+    // always reports asynchronously, so that spans finished before the sender is ready wait in
+    // the bounded queue instead of the application.
+    Reporter reporter = new TracerMetricsReporter(sharedReporter, sdkMetricsReporter);
+    AsyncHandOffReporter asyncReporter = null;
+    SpanLogToggleReporter spanLogToggle = findSpanLogToggle(sharedReporter);
+    if ((params.containsKey(SPAN_LOGS_MAX_ENTRIES) ||
+        params.containsKey(SPAN_LOGS_MAX_FIELD_BYTES) ||
+        params.containsKey(SPAN_LOGS_MAX_BYTES_PER_SECOND) ||
+        Boolean.parseBoolean(params.get(SPAN_LOGS_DEDUPLICATE))) &&
+        (!disableSpanLogReporting || spanLogToggle != null)) {
       try {
-        wfReportingConfig = constructWavefrontReportingConfig(params.get(REPORTING_YAML_FILE));
+        reporter = new SpanLogLimitReporter(reporter,
+            buildSpanLogLimiter(params, sdkMetricsReporter), spanLogToggle);
       } catch (Exception e) {
-        logger.log(Level.WARNING, "Failed to create a Wavefront reporting config: " + e);
-        return null;
+        logger.log(Level.WARNING, "Failed to create a span log limit reporter: " + e);
+        return abandon(reporter);
+      }
+    }
+    TagFilter tagFilter = null;
+    if (params.containsKey(TAGS_DROP) || params.containsKey(TAGS_HASH) ||
+        params.containsKey(TAGS_REDACT) || params.containsKey(TAGS_STRIP_QUERY)) {
+      try {
+        tagFilter = buildTagFilter(params);
+        TagFilterReporter tagFilterReporter = new TagFilterReporter(reporter, tagFilter);
+        tagFilterReporter.setMetricsReporter(sdkMetricsReporter);
+        reporter = tagFilterReporter;
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to create a tag filter reporter: " + e);
+        return abandon(reporter);
       }
-    } else {
-      wfReportingConfig = new WavefrontReportingConfig();
     }
+    if (params.containsKey(GUARD_MAX_SPANS_PER_SECOND) ||
+        params.containsKey(GUARD_MAX_TAG_VALUES)) {
+      try {
+        reporter = buildSpanGuardReporter(params, reporter, staticTags, sdkMetricsReporter);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to create a span guard reporter: " + e);
+        return abandon(reporter);
+      }
+    }
+    if (params.containsKey(REPORTING_DESTINATIONS)) {
+      try {
+        reporter = buildFanOutReporter(params, reporter, source, disableSpanLogReporting,
+            tagFilter, sdkMetricsReporter);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to create span reporters for the reporting " +
+            "destinations: " + e);
+        return abandon(reporter);
+      }
+    }
+    if (Boolean.parseBoolean(params.get(ASYNC_REPORTING)) ||
+        Boolean.parseBoolean(params.get(LAZY_STARTUP))) {
+      try {
+        reporter = asyncReporter = buildAsyncHandOffReporter(params, reporter,
+            sdkMetricsReporter);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to create an asynchronous span reporter: " + e);
+        return abandon(reporter);
+      }
+    }
+    List<Sampler> samplers = toSamplers(params);
+    if (Boolean.parseBoolean(params.get(TAIL_SAMPLING))) {
+      if (!samplers.isEmpty()) {
+        logger.log(Level.WARNING, "Both head and tail sampling are configured -- spans that " +
+            "are not head sampled never reach tail sampling");
+      }
+      try {
+        reporter = buildTailSamplingReporter(params, reporter, sdkMetricsReporter);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to create a tail sampling span reporter: " + e);
+        return abandon(reporter);
+      }
+    }
+    if (Boolean.parseBoolean(params.get(SPAN_METRICS))) {
+      if (!samplers.isEmpty()) {
+        logger.log(Level.WARNING, "Both head sampling and span metrics are configured -- spans " +
+            "that are not head sampled are not counted in the span metrics");
+      }
+      try {
+        reporter = buildSpanMetricsReporter(params, reporter, sharedReporter, applicationTags,
+            source, sdkMetricsReporter);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to create a span metrics reporter: " + e);
+        return abandon(reporter);
+      }
+    }
+    if (params.containsKey(RECENT_SPANS_CAPACITY)) {
+      try {
+        reporter = buildRecentSpansReporter(params, reporter, applicationTags, staticTags,
+            source, tagFilter);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to create a recent spans reporter: " + e);
+        return abandon(reporter);
+      }
+    }
+
+    // Step 5 - Create and return a WavefrontTracer, sampled as configured. When the configuration
+    // file is watched, changes to the samplers, the reporting of span logs and the hand-off of
+    // spans are applied to the running tracer. The spans the tracer finishes are counted before
+    // any stage. With the shutdown hook, the tracer is closed when the JVM shuts down. Span
+    // contexts are propagated in the W3C Trace Context or B3 headers when configured. With
+    // sampling propagation, the sampling decision is injected into and extracted from W3C
+    // Trace Context headers by default, and spans of traces that are not sampled are not even
+    // recorded.
+    try {
+      AdaptiveSampler adaptiveSampler = findAdaptiveSampler(samplers);
+      if (Boolean.parseBoolean(params.get(WATCH_CONFIGURATION_FILE))) {
+        ReloadableSampling reloadableSampling = new ReloadableSampling(samplers, adaptiveSampler);
+        samplers = reloadableSampling.getSamplers();
+        reporter = watchConfigurationFile(params, reloadableSampling.countReportedSpans(reporter),
+            reloadableSampling, findSpanLogToggle(sharedReporter), asyncReporter);
+      } else if (adaptiveSampler != null) {
+        reporter = adaptiveSampler.countReportedSpans(reporter);
+      }
+      reporter = buildMeteredReporter(params, reporter, "pipeline", sdkMetricsReporter);
+      ShutdownHook.Registration shutdownRegistration = null;
+      if (Boolean.parseBoolean(params.get(SHUTDOWN_HOOK))) {
+        reporter = shutdownRegistration = ShutdownHook.getInstance().newRegistration(reporter,
+            shutdownTimeoutMillis(params));
+      }
+      WavefrontTracer.Builder wfTracerBuilder =
+          new WavefrontTracer.Builder(reporter, applicationTags);
+      for (Sampler sampler : samplers) {
+        wfTracerBuilder.withSampler(sampler);
+      }
+      Propagator<TextMap> propagator = toPropagator(params);
+      if (propagator != null) {
+        wfTracerBuilder.registerPropagator(Format.Builtin.HTTP_HEADERS, propagator);
+        wfTracerBuilder.registerPropagator(Format.Builtin.TEXT_MAP, propagator);
+      }
+      WavefrontTracer tracer = wfTracerBuilder.build();
+      if (shutdownRegistration != null) {
+        shutdownRegistration.register(tracer);
+      }
+      return tracer;
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Failed to create a Wavefront Tracer: " + e);
+      return abandon(reporter);
+    }
+  }
+
+  /**
+   * Closes the reporting stages built so far, down to the lease on the shared reporting, so that
+   * a tracer that failed to build leaves no threads or leases behind.
+   *
+   * @return {@code null}, for returning from {@link #buildTracer}.
+   */
+  @Nullable
+  private static Tracer abandon(Reporter reporter) {
+    try {
+      reporter.close();
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to close span reporter: " + e);
+    }
+    return null;
+  }
+
+  /**
+   * @return A started internal metrics reporter on the shared sender, tagged with a number that
+   *     tells the tracer apart from the others built by the class loader.
+   */
+  private static WavefrontInternalReporter buildTracerMetricsReporter(
+      Map<String, String> params, ReportingRegistry.Lease sharedReporter, String source) {
+    WavefrontInternalReporter metricsReporter = new WavefrontInternalReporter.Builder().
+        prefixedWith(SDK_METRIC_PREFIX + ".opentracing_bundle").withSource(source).
+        withReporterPointTag(TRACER_TAG_KEY, String.valueOf(TRACER_IDS.incrementAndGet())).
+        build(findWavefrontSender(sharedReporter));
+    metricsReporter.start(internalMetricsIntervalMillis(params), TimeUnit.MILLISECONDS);
+    return metricsReporter;
+  }
+
+  /**
+   * @return How often to report the internal metrics, once a minute unless configured otherwise.
+   */
+  private static long internalMetricsIntervalMillis(Map<String, String> params) {
+    if (params.containsKey(INTERNAL_METRICS_INTERVAL_MS)) {
+      Long intervalMs = toLong(params.get(INTERNAL_METRICS_INTERVAL_MS));
+      if (intervalMs != null && intervalMs > 0) {
+        return intervalMs;
+      }
+      logger.log(Level.WARNING, "Ignoring Tracer parameter " + INTERNAL_METRICS_INTERVAL_MS +
+          "=" + params.get(INTERNAL_METRICS_INTERVAL_MS) + " -- value must be positive");
+    }
+    return TimeUnit.MINUTES.toMillis(1);
+  }
+
+  /**
+   * @return The longest to wait for a tracer to close on shutdown, 5 seconds unless configured
+   *     otherwise.
+   */
+  private static long shutdownTimeoutMillis(Map<String, String> params) {
+    if (params.containsKey(SHUTDOWN_HOOK_TIMEOUT_MS)) {
+      Long timeoutMs = toLong(params.get(SHUTDOWN_HOOK_TIMEOUT_MS));
+      if (timeoutMs != null && timeoutMs > 0) {
+        return timeoutMs;
+      }
+      logger.log(Level.WARNING, "Ignoring Tracer parameter " + SHUTDOWN_HOOK_TIMEOUT_MS + "=" +
+          params.get(SHUTDOWN_HOOK_TIMEOUT_MS) + " -- value must be positive");
+    }
+    return TimeUnit.SECONDS.toMillis(5);
+  }
+
+  private static MeteredReporter buildMeteredReporter(
+      Map<String, String> params, Reporter delegate, String name,
+      WavefrontInternalReporter metricsReporter) {
+    MeteredReporter.Builder builder = new MeteredReporter.Builder();
+    if (Boolean.parseBoolean(params.get(INTERNAL_METRICS_DETAILED))) {
+      builder.recordLatency();
+    }
+    MeteredReporter meteredReporter = builder.build(delegate, name);
+    meteredReporter.setMetricsReporter(metricsReporter);
+    return meteredReporter;
+  }
+
+  /**
+   * @return Whether the threads of the reporting stages are to be virtual threads.
+   */
+  private static boolean useVirtualThreads(Map<String, String> params) {
+    return Boolean.parseBoolean(params.get(VIRTUAL_THREADS)) &&
+        ReportingThreads.isVirtualThreadSupported();
+  }
+
+  /**
+   * @return Everything that tells apart the shared reporting of two tracers.
+   */
+  private static List<Object> reportingKey(@Nullable String yamlFile,
+                                           WavefrontReportingConfig wfReportingConfig,
+                                           String source, boolean disableSpanLogReporting) {
+    return new ArrayList<>(Arrays.asList(yamlFile, wfReportingConfig.getReportingMechanism(),
+        wfReportingConfig.getServer(), wfReportingConfig.getToken(),
+        wfReportingConfig.getProxyHost(), wfReportingConfig.getProxyMetricsPort(),
+        wfReportingConfig.getProxyDistributionsPort(), wfReportingConfig.getProxyTracingPort(),
+        source, disableSpanLogReporting));
+  }
+
+  /**
+   * @return The reporting config of the YAML file, if any, overridden by the parameters.
+   */
+  static WavefrontReportingConfig buildReportingConfig(Map<String, String> params)
+      throws Exception {
+    WavefrontReportingConfig wfReportingConfig = params.containsKey(REPORTING_YAML_FILE) ?
+        constructWavefrontReportingConfig(params.get(REPORTING_YAML_FILE)) :
+        new WavefrontReportingConfig();
     if (params.containsKey(REPORTING_MECHANISM)) {
       wfReportingConfig.setReportingMechanism(params.get(REPORTING_MECHANISM));
     }
@@ -131,52 +558,635 @@ public class WavefrontTracerFactory implements TracerFactory {
     if (params.containsKey(SOURCE)) {
       wfReportingConfig.setSource(params.get(SOURCE));
     }
+    return wfReportingConfig;
+  }
 
-    String source = wfReportingConfig.getSource();
-
-    boolean disableSpanLogReporting = false;
-    if (params.containsKey(DISABLE_SPAN_LOG_REPORTING)) {
-      disableSpanLogReporting = Boolean.parseBoolean(params.get(DISABLE_SPAN_LOG_REPORTING));
-    }
-
-    // Step 3 - Create a WavefrontSender for sending data to Wavefront.
+  private static ReportingRegistry.Entry createSharedReporting(
+      Map<String, String> params, WavefrontReportingConfig wfReportingConfig, String source,
+      boolean disableSpanLogReporting, StaticTags staticTags) throws Exception {
+    // Create a WavefrontSender for sending data to Wavefront, in the background for a lazy
+    // startup, or for writing it to capture files instead.
     WavefrontSender wavefrontSender;
-    try {
+    if (REPORTING_MECHANISM_FILE.equals(wfReportingConfig.getReportingMechanism())) {
+      wavefrontSender = buildCaptureFileSender(params, source);
+    } else if (Boolean.parseBoolean(params.get(LAZY_STARTUP))) {
+      wavefrontSender =
+          LazyWavefrontSender.create(() -> constructWavefrontSender(wfReportingConfig));
+    } else {
       wavefrontSender = constructWavefrontSender(wfReportingConfig);
-    } catch (Exception e) {
-      logger.log(Level.WARNING, "Failed to create a Wavefront sender: " + e);
-      return null;
     }
 
     // Create an internal reporter for reporting internal sdk metrics.
     WavefrontInternalReporter sdkMetricsReporter = new WavefrontInternalReporter.Builder().
         prefixedWith(SDK_METRIC_PREFIX + ".opentracing_bundle").withSource(source).build
         (wavefrontSender);
-    sdkMetricsReporter.start(1, TimeUnit.MINUTES);
+    sdkMetricsReporter.start(internalMetricsIntervalMillis(params), TimeUnit.MILLISECONDS);
     double sdkVersion = Utils.getSemVerGauge("wavefront-opentracing-bundle-java");
     sdkMetricsReporter.newGauge(new MetricName("version", Collections.emptyMap()),
         () -> (() -> sdkVersion));
 
-    // Step 4 - Create a WavefrontSpanReporter for reporting trace data.
-    WavefrontSpanReporter wfSpanReporter;
+    // Create a WavefrontSpanReporter for reporting trace data, optionally send the spans it
+    // would send without span logs over pipelined direct ingestion or a pool of proxy
+    // connections instead, count the spans handed to it, and optionally spill spans to disk
+    // while the sender fails.
     try {
-      WavefrontSpanReporter.Builder wfSpanReporterBuilder =
-          new WavefrontSpanReporter.Builder().withSource(source);
-      if (disableSpanLogReporting) {
-        wfSpanReporterBuilder.disableSpanLogReporting();
+      Reporter reporter;
+      if (Boolean.parseBoolean(params.get(WATCH_CONFIGURATION_FILE))) {
+        // Only the span reporter with span logs owns the sender, so that it is closed once.
+        reporter = new SpanLogToggleReporter(
+            new WavefrontSpanReporter.Builder().withSource(source).build(wavefrontSender),
+            new WavefrontSpanReporter.Builder().withSource(source).disableSpanLogReporting().
+                build(SharedWavefrontSender.of(wavefrontSender)), disableSpanLogReporting);
+      } else {
+        WavefrontSpanReporter.Builder wfSpanReporterBuilder =
+            new WavefrontSpanReporter.Builder().withSource(source);
+        if (disableSpanLogReporting) {
+          wfSpanReporterBuilder.disableSpanLogReporting();
+        }
+        reporter = wfSpanReporterBuilder.build(wavefrontSender);
+      }
+      if (Boolean.parseBoolean(params.get(DIRECT_PIPELINED))) {
+        if (directReporting.equals(wfReportingConfig.getReportingMechanism())) {
+          reporter = buildDirectIngestionReporter(params, reporter, wfReportingConfig, source,
+              staticTags, sdkMetricsReporter);
+        } else {
+          logger.log(Level.WARNING, "Ignoring Tracer parameter " + DIRECT_PIPELINED + " -- " +
+              REPORTING_MECHANISM + " is not '" + directReporting + "'");
+        }
+      }
+      if (params.containsKey(PROXY_TRACING_CONNECTIONS) ||
+          params.containsKey(PROXY_TRACING_HOSTS)) {
+        List<InetSocketAddress> proxies = toProxyAddresses(params,
+            wfReportingConfig.getProxyHost(), wfReportingConfig.getProxyTracingPort());
+        if (!proxyReporting.equals(wfReportingConfig.getReportingMechanism())) {
+          logger.log(Level.WARNING, "Ignoring Tracer parameters " + PROXY_TRACING_CONNECTIONS +
+              " and " + PROXY_TRACING_HOSTS + " -- " + REPORTING_MECHANISM + " is not '" +
+              proxyReporting + "'");
+        } else if (proxies.isEmpty()) {
+          logger.log(Level.WARNING, "Ignoring Tracer parameter " + PROXY_TRACING_CONNECTIONS +
+              " -- no proxy tracing port is configured");
+        } else {
+          reporter = buildProxyConnectionPoolReporter(params, reporter, proxies, source,
+              staticTags, sdkMetricsReporter);
+        }
       }
-      wfSpanReporter = wfSpanReporterBuilder.build(wavefrontSender);
+      reporter = buildMeteredReporter(params, reporter, "span_reporter", sdkMetricsReporter);
+      if (params.containsKey(SPILL_DIRECTORY)) {
+        reporter = buildSpillingReporter(params, reporter, wavefrontSender, staticTags,
+            sdkMetricsReporter);
+      }
+      return new ReportingRegistry.Entry(reporter, sdkMetricsReporter);
     } catch (Exception e) {
-      logger.log(Level.WARNING, "Failed to create a Wavefront span reporter: " + e);
-      return null;
+      sdkMetricsReporter.stop();
+      throw e;
+    }
+  }
+
+  private static WavefrontSender buildCaptureFileSender(Map<String, String> params,
+                                                       String source) throws IOException {
+    CaptureFileWriter.Builder builder = new CaptureFileWriter.Builder();
+    if (params.containsKey(FILE_MAX_BYTES)) {
+      Long maxBytes = toLong(params.get(FILE_MAX_BYTES));
+      if (maxBytes != null) {
+        builder.maxFileBytes(maxBytes);
+      }
+    }
+    if (params.containsKey(FILE_MAX_FILES)) {
+      Integer maxFiles = toInteger(params.get(FILE_MAX_FILES));
+      if (maxFiles != null) {
+        builder.maxFiles(maxFiles);
+      }
+    }
+    if (params.containsKey(FILE_COMPRESSION)) {
+      Compression compression = Compression.fromValue(params.get(FILE_COMPRESSION));
+      if (compression != null) {
+        builder.compression(compression);
+      } else {
+        logger.log(Level.WARNING, "Unsupported Tracer parameter value " + FILE_COMPRESSION +
+            "=" + params.get(FILE_COMPRESSION));
+      }
+    }
+    if (useVirtualThreads(params)) {
+      builder.useVirtualThreads();
     }
+    // ex: "/var/tmp/wavefront-capture", or "-" for the standard output
+    String directory = params.get(FILE_DIRECTORY);
+    CaptureFileWriter writer = directory == null || directory.equals("-") ?
+        builder.buildForStandardOutput() : builder.build(new File(directory));
+    return CaptureFileSender.create(writer, source);
+  }
 
-    // Step 5 - Create and return a WavefrontTracer.
+  private static DirectIngestionReporter buildDirectIngestionReporter(
+      Map<String, String> params, Reporter delegate, WavefrontReportingConfig wfReportingConfig,
+      String source, StaticTags staticTags, WavefrontInternalReporter metricsReporter) {
+    DirectIngestionReporter.Builder builder = new DirectIngestionReporter.Builder().
+        withSource(source).withStaticTags(staticTags);
+    if (params.containsKey(DIRECT_COMPRESSION)) {
+      Compression compression = Compression.fromValue(params.get(DIRECT_COMPRESSION));
+      if (compression != null) {
+        builder.compression(compression);
+      } else {
+        logger.log(Level.WARNING, "Unsupported Tracer parameter value " + DIRECT_COMPRESSION +
+            "=" + params.get(DIRECT_COMPRESSION));
+      }
+    }
+    if (params.containsKey(DIRECT_MAX_IN_FLIGHT)) {
+      Integer maxInFlight = toInteger(params.get(DIRECT_MAX_IN_FLIGHT));
+      if (maxInFlight != null) {
+        builder.maxInFlight(maxInFlight);
+      }
+    }
+    if (params.containsKey(DIRECT_MAX_BATCH_SIZE)) {
+      Integer maxBatchSize = toInteger(params.get(DIRECT_MAX_BATCH_SIZE));
+      if (maxBatchSize != null) {
+        builder.batchSizeBounds(Math.min(100, maxBatchSize), maxBatchSize).
+            batchSize(maxBatchSize / 10);
+      }
+    }
+    if (params.containsKey(DIRECT_TARGET_LATENCY_MS)) {
+      Long targetLatencyMillis = toLong(params.get(DIRECT_TARGET_LATENCY_MS));
+      if (targetLatencyMillis != null) {
+        builder.targetLatency(targetLatencyMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (Boolean.parseBoolean(params.get(SHUTDOWN_HOOK))) {
+      builder.closeTimeout(shutdownTimeoutMillis(params), TimeUnit.MILLISECONDS);
+    }
+    if (useVirtualThreads(params)) {
+      builder.useVirtualThreads();
+    }
+    DirectIngestionReporter directIngestionReporter = builder.build(delegate,
+        wfReportingConfig.getServer(), wfReportingConfig.getToken());
+    directIngestionReporter.setMetricsReporter(metricsReporter);
+    return directIngestionReporter;
+  }
+
+  private static ProxyConnectionPoolReporter buildProxyConnectionPoolReporter(
+      Map<String, String> params, Reporter delegate, List<InetSocketAddress> proxies,
+      String source, StaticTags staticTags, WavefrontInternalReporter metricsReporter) {
+    ProxyConnectionPoolReporter.Builder builder = new ProxyConnectionPoolReporter.Builder().
+        withSource(source).withStaticTags(staticTags);
+    if (params.containsKey(PROXY_TRACING_CONNECTIONS)) {
+      Integer connections = toInteger(params.get(PROXY_TRACING_CONNECTIONS));
+      if (connections != null) {
+        builder.connectionsPerProxy(connections);
+      }
+    }
+    if (params.containsKey(PROXY_TRACING_BUFFER_SIZE)) {
+      Integer bufferSize = toInteger(params.get(PROXY_TRACING_BUFFER_SIZE));
+      if (bufferSize != null) {
+        builder.bufferSize(bufferSize);
+      }
+    }
+    if (useVirtualThreads(params)) {
+      builder.useVirtualThreads();
+    }
+    ProxyConnectionPoolReporter proxyConnectionPoolReporter = builder.build(delegate, proxies);
+    proxyConnectionPoolReporter.setMetricsReporter(metricsReporter);
+    return proxyConnectionPoolReporter;
+  }
+
+  private static SpillingReporter buildSpillingReporter(
+      Map<String, String> params, Reporter delegate, WavefrontSender wavefrontSender,
+      StaticTags staticTags, WavefrontInternalReporter metricsReporter) throws IOException {
+    SpillingReporter.Builder builder = new SpillingReporter.Builder().
+        directory(new File(params.get(SPILL_DIRECTORY))).withStaticTags(staticTags);
+    if (params.containsKey(SPILL_MAX_BYTES)) {
+      Long maxBytes = toLong(params.get(SPILL_MAX_BYTES));
+      if (maxBytes != null) {
+        builder.maxBytes(maxBytes);
+      }
+    }
+    if (params.containsKey(SPILL_SEGMENT_SIZE)) {
+      Integer segmentSize = toInteger(params.get(SPILL_SEGMENT_SIZE));
+      if (segmentSize != null) {
+        builder.segmentSize(segmentSize);
+      }
+    }
+    if (useVirtualThreads(params)) {
+      builder.useVirtualThreads();
+    }
+    SpillingReporter spillingReporter = builder.build(delegate, wavefrontSender);
+    spillingReporter.setMetricsReporter(metricsReporter);
+    return spillingReporter;
+  }
+
+  private static FanOutReporter buildFanOutReporter(
+      Map<String, String> params, Reporter defaultReporter, String source,
+      boolean disableSpanLogReporting, @Nullable TagFilter tagFilter,
+      WavefrontInternalReporter metricsReporter) throws Exception {
+    FanOutReporter.Builder builder = new FanOutReporter.Builder().
+        addDestination(DEFAULT_DESTINATION, defaultReporter);
+    // ex: "/etc/wavefront/proxy.yaml,/etc/wavefront/direct.yaml"
+    List<ReportingRegistry.Lease> leases = new ArrayList<>();
+    Set<String> yamlFiles = new HashSet<>();
+    Set<String> names = new HashSet<>(Collections.singleton(DEFAULT_DESTINATION));
     try {
-      return new WavefrontTracer.Builder(wfSpanReporter, applicationTags).build();
+      for (String destination : params.get(REPORTING_DESTINATIONS).split(",")) {
+        String yamlFile = destination.trim();
+        if (yamlFile.isEmpty()) {
+          continue;
+        }
+        if (!yamlFiles.add(new File(yamlFile).getAbsolutePath())) {
+          logger.log(Level.WARNING, "Ignoring duplicate reporting destination " + yamlFile);
+          continue;
+        }
+        WavefrontReportingConfig wfReportingConfig = constructWavefrontReportingConfig(yamlFile);
+        String destinationSource = wfReportingConfig.getSource() != null ?
+            wfReportingConfig.getSource() : source;
+        ReportingRegistry.Lease lease = ReportingRegistry.getInstance().acquire(
+            reportingKey(yamlFile, wfReportingConfig, destinationSource, disableSpanLogReporting),
+            () -> createDestinationReporting(wfReportingConfig, destinationSource,
+                disableSpanLogReporting));
+        leases.add(lease);
+        builder.addDestination(destinationName(yamlFile, names), tagFilter == null ? lease :
+            new TagFilterReporter(lease, tagFilter));
+      }
+      if (params.containsKey(REPORTING_DESTINATIONS_QUEUE_SIZE)) {
+        Integer queueSize = toInteger(params.get(REPORTING_DESTINATIONS_QUEUE_SIZE));
+        if (queueSize != null) {
+          builder.queueSize(queueSize);
+        }
+      }
+      if (params.containsKey(REPORTING_DESTINATIONS_OVERFLOW_POLICY)) {
+        OverflowPolicy overflowPolicy =
+            OverflowPolicy.fromValue(params.get(REPORTING_DESTINATIONS_OVERFLOW_POLICY));
+        if (overflowPolicy != null && overflowPolicy != OverflowPolicy.BLOCK) {
+          builder.overflowPolicy(overflowPolicy);
+        } else {
+          logger.log(Level.WARNING, "Unsupported Tracer parameter value " +
+              REPORTING_DESTINATIONS_OVERFLOW_POLICY + "=" +
+              params.get(REPORTING_DESTINATIONS_OVERFLOW_POLICY));
+        }
+      }
+      if (Boolean.parseBoolean(params.get(SHUTDOWN_HOOK))) {
+        builder.closeTimeout(shutdownTimeoutMillis(params), TimeUnit.MILLISECONDS);
+      }
+      if (useVirtualThreads(params)) {
+        builder.useVirtualThreads();
+      }
+      FanOutReporter fanOutReporter = builder.build();
+      fanOutReporter.setMetricsReporter(metricsReporter);
+      return fanOutReporter;
     } catch (Exception e) {
-      logger.log(Level.WARNING, "Failed to create a Wavefront Tracer: " + e);
-      return null;
+      for (ReportingRegistry.Lease lease : leases) {
+        lease.close();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @return The file name of a destination's YAML file, or its whole path if another destination
+   *     already has that name, numbered if even that is taken.
+   */
+  private static String destinationName(String yamlFile, Set<String> names) {
+    String name = new File(yamlFile).getName();
+    if (!names.add(name)) {
+      name = yamlFile;
+      for (int i = 2; !names.add(name); i++) {
+        name = yamlFile + "#" + i;
+      }
+    }
+    return name;
+  }
+
+  private static ReportingRegistry.Entry createDestinationReporting(
+      WavefrontReportingConfig wfReportingConfig, String source, boolean disableSpanLogReporting) {
+    WavefrontSpanReporter.Builder wfSpanReporterBuilder =
+        new WavefrontSpanReporter.Builder().withSource(source);
+    if (disableSpanLogReporting) {
+      wfSpanReporterBuilder.disableSpanLogReporting();
+    }
+    return new ReportingRegistry.Entry(
+        wfSpanReporterBuilder.build(constructWavefrontSender(wfReportingConfig)), null);
+  }
+
+  /**
+   * Watches the configuration file, applying changes to the given sampling, span log toggle and
+   * asynchronous reporter, until the returned reporter is closed along with the tracer.
+   */
+  private static Reporter watchConfigurationFile(
+      Map<String, String> params, Reporter delegate, ReloadableSampling sampling,
+      @Nullable SpanLogToggleReporter spanLogToggle,
+      @Nullable AsyncHandOffReporter asyncReporter) {
+    long intervalMillis = DEFAULT_WATCH_INTERVAL_MILLIS;
+    if (params.containsKey(WATCH_CONFIGURATION_FILE_INTERVAL_MS)) {
+      Long watchIntervalMs = toLong(params.get(WATCH_CONFIGURATION_FILE_INTERVAL_MS));
+      if (watchIntervalMs != null) {
+        intervalMillis = watchIntervalMs;
+      }
+    }
+    if (spanLogToggle != null) {
+      spanLogToggle.setSpanLogReportingDisabled(
+          Boolean.parseBoolean(params.get(DISABLE_SPAN_LOG_REPORTING)));
+    }
+    ConfigurationWatcher watcher = new ConfigurationWatcher(Configuration.getConfigurationFile(),
+        intervalMillis, reloaded -> applyReloadedParameters(reloaded, sampling, spanLogToggle,
+        asyncReporter));
+    return new DelegatingReporter(delegate) {
+      @Override
+      public void close() {
+        watcher.close();
+        super.close();
+      }
+    };
+  }
+
+  private static void applyReloadedParameters(Map<String, String> params,
+                                              ReloadableSampling sampling,
+                                              @Nullable SpanLogToggleReporter spanLogToggle,
+                                              @Nullable AsyncHandOffReporter asyncReporter) {
+    List<Sampler> samplers = toSamplers(params);
+    sampling.update(samplers, findAdaptiveSampler(samplers));
+    if (spanLogToggle != null) {
+      spanLogToggle.setSpanLogReportingDisabled(
+          Boolean.parseBoolean(params.get(DISABLE_SPAN_LOG_REPORTING)));
+    }
+    if (asyncReporter != null) {
+      Integer batchSize = params.containsKey(ASYNC_REPORTING_BATCH_SIZE) ?
+          toInteger(params.get(ASYNC_REPORTING_BATCH_SIZE)) : null;
+      if (batchSize != null && batchSize > 0) {
+        asyncReporter.setBatchSize(batchSize);
+      }
+      Long flushIntervalMs = params.containsKey(ASYNC_REPORTING_FLUSH_INTERVAL_MS) ?
+          toLong(params.get(ASYNC_REPORTING_FLUSH_INTERVAL_MS)) : null;
+      if (flushIntervalMs != null && flushIntervalMs > 0) {
+        asyncReporter.setFlushInterval(flushIntervalMs, TimeUnit.MILLISECONDS);
+      }
+    }
+    logger.log(Level.INFO, "Applied reloaded Tracer parameters");
+  }
+
+  /**
+   * @return The span log toggle of the shared reporting, if the reporting has one.
+   */
+  @Nullable
+  private static SpanLogToggleReporter findSpanLogToggle(Reporter reporter) {
+    while (reporter instanceof DelegatingReporter) {
+      reporter = ((DelegatingReporter) reporter).getDelegate();
+    }
+    return reporter instanceof SpanLogToggleReporter ? (SpanLogToggleReporter) reporter : null;
+  }
+
+  private static AsyncHandOffReporter buildAsyncHandOffReporter(
+      Map<String, String> params, Reporter delegate, WavefrontInternalReporter metricsReporter) {
+    AsyncHandOffReporter.Builder builder = new AsyncHandOffReporter.Builder();
+    if (params.containsKey(ASYNC_REPORTING_QUEUE_SIZE)) {
+      Integer queueSize = toInteger(params.get(ASYNC_REPORTING_QUEUE_SIZE));
+      if (queueSize != null) {
+        builder.queueSize(queueSize);
+      }
+    }
+    if (params.containsKey(ASYNC_REPORTING_BATCH_SIZE)) {
+      Integer batchSize = toInteger(params.get(ASYNC_REPORTING_BATCH_SIZE));
+      if (batchSize != null) {
+        builder.batchSize(batchSize);
+      }
+    }
+    if (params.containsKey(ASYNC_REPORTING_FLUSH_INTERVAL_MS)) {
+      Long flushIntervalMs = toLong(params.get(ASYNC_REPORTING_FLUSH_INTERVAL_MS));
+      if (flushIntervalMs != null) {
+        builder.flushInterval(flushIntervalMs, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (params.containsKey(ASYNC_REPORTING_OVERFLOW_POLICY)) {
+      OverflowPolicy overflowPolicy =
+          OverflowPolicy.fromValue(params.get(ASYNC_REPORTING_OVERFLOW_POLICY));
+      if (overflowPolicy != null) {
+        builder.overflowPolicy(overflowPolicy);
+      } else {
+        logger.log(Level.WARNING, "Unknown Tracer parameter value " +
+            ASYNC_REPORTING_OVERFLOW_POLICY + "=" + params.get(ASYNC_REPORTING_OVERFLOW_POLICY));
+      }
+    }
+    if (Boolean.parseBoolean(params.get(SHUTDOWN_HOOK))) {
+      builder.closeTimeout(shutdownTimeoutMillis(params), TimeUnit.MILLISECONDS);
+    }
+    if (useVirtualThreads(params)) {
+      builder.useVirtualThreads();
+    }
+    AsyncHandOffReporter asyncReporter = builder.build(delegate);
+    asyncReporter.setMetricsReporter(metricsReporter);
+    return asyncReporter;
+  }
+
+  private static TailSamplingReporter buildTailSamplingReporter(
+      Map<String, String> params, Reporter delegate, WavefrontInternalReporter metricsReporter) {
+    TailSamplingReporter.Builder builder = new TailSamplingReporter.Builder();
+    if (params.containsKey(TAIL_SAMPLING_LATENCY_THRESHOLD_MS)) {
+      Long latencyThresholdMs = toLong(params.get(TAIL_SAMPLING_LATENCY_THRESHOLD_MS));
+      if (latencyThresholdMs != null) {
+        builder.latencyThreshold(latencyThresholdMs, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (params.containsKey(TAIL_SAMPLING_BASE_RATE)) {
+      Double baseRate = toDouble(params.get(TAIL_SAMPLING_BASE_RATE));
+      if (baseRate != null) {
+        builder.baseRate(baseRate);
+      }
+    }
+    if (params.containsKey(TAIL_SAMPLING_DECISION_WAIT_MS)) {
+      Long decisionWaitMs = toLong(params.get(TAIL_SAMPLING_DECISION_WAIT_MS));
+      if (decisionWaitMs != null) {
+        builder.decisionWait(decisionWaitMs, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (params.containsKey(TAIL_SAMPLING_MAX_BUFFERED_BYTES)) {
+      Long maxBufferedBytes = toLong(params.get(TAIL_SAMPLING_MAX_BUFFERED_BYTES));
+      if (maxBufferedBytes != null) {
+        builder.maxBufferedBytes(maxBufferedBytes);
+      }
+    }
+    if (useVirtualThreads(params)) {
+      builder.useVirtualThreads();
+    }
+    TailSamplingReporter tailSamplingReporter = builder.build(delegate);
+    tailSamplingReporter.setMetricsReporter(metricsReporter);
+    return tailSamplingReporter;
+  }
+
+  private static SpanMetricsReporter buildSpanMetricsReporter(
+      Map<String, String> params, Reporter delegate, ReportingRegistry.Lease sharedReporter,
+      ApplicationTags applicationTags, String source, WavefrontInternalReporter metricsReporter) {
+    WavefrontSender wavefrontSender = findWavefrontSender(sharedReporter);
+    SpanMetricsReporter.Builder builder = new SpanMetricsReporter.Builder().withSource(source);
+    if (params.containsKey(SPAN_METRICS_TAG_KEYS)) {
+      // ex: "http.method,http.status_code"
+      String delimiter = params.get(CUSTOM_TAGS_DELIMITER);
+      for (String tagKey : params.get(SPAN_METRICS_TAG_KEYS).split(delimiter)) {
+        if (!tagKey.trim().isEmpty()) {
+          builder.addTagKey(tagKey.trim());
+        }
+      }
+    }
+    if (params.containsKey(SPAN_METRICS_SPAN_SAMPLING_RATE)) {
+      Double spanSamplingRate = toDouble(params.get(SPAN_METRICS_SPAN_SAMPLING_RATE));
+      if (spanSamplingRate != null) {
+        builder.spanSamplingRate(spanSamplingRate);
+      }
+    }
+    if (params.containsKey(SPAN_METRICS_FLUSH_INTERVAL_MS)) {
+      Long flushIntervalMs = toLong(params.get(SPAN_METRICS_FLUSH_INTERVAL_MS));
+      if (flushIntervalMs != null) {
+        builder.flushInterval(flushIntervalMs, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (params.containsKey(SPAN_METRICS_MAX_KEYS)) {
+      Integer maxKeys = toInteger(params.get(SPAN_METRICS_MAX_KEYS));
+      if (maxKeys != null) {
+        builder.maxKeys(maxKeys);
+      }
+    }
+    if (useVirtualThreads(params)) {
+      builder.useVirtualThreads();
+    }
+    SpanMetricsReporter spanMetricsReporter =
+        builder.build(delegate, wavefrontSender, applicationTags);
+    spanMetricsReporter.setMetricsReporter(metricsReporter);
+    return spanMetricsReporter;
+  }
+
+  private static RecentSpansReporter buildRecentSpansReporter(
+      Map<String, String> params, Reporter delegate, ApplicationTags applicationTags,
+      StaticTags staticTags, String source, @Nullable TagFilter tagFilter) throws JMException {
+    RecentSpans.Builder builder = new RecentSpans.Builder().withSource(source).
+        withStaticTags(staticTags);
+    Integer capacity = toInteger(params.get(RECENT_SPANS_CAPACITY));
+    if (capacity != null) {
+      builder.capacity(capacity);
+    }
+    if (params.containsKey(RECENT_SPANS_MAX_SPAN_BYTES)) {
+      Integer maxSpanBytes = toInteger(params.get(RECENT_SPANS_MAX_SPAN_BYTES));
+      if (maxSpanBytes != null) {
+        builder.maxSpanBytes(maxSpanBytes);
+      }
+    }
+    if (tagFilter != null) {
+      builder.withTagFilter(tagFilter);
+    }
+    return new RecentSpansReporter(delegate, builder.build(), applicationTags.getApplication(),
+        applicationTags.getService());
+  }
+
+  private static SpanGuardReporter buildSpanGuardReporter(
+      Map<String, String> params, Reporter delegate, StaticTags staticTags,
+      WavefrontInternalReporter metricsReporter) {
+    SpanGuardReporter.Builder builder = new SpanGuardReporter.Builder().withStaticTags(staticTags);
+    if (params.containsKey(GUARD_MAX_SPANS_PER_SECOND)) {
+      Double maxSpansPerSecond = toDouble(params.get(GUARD_MAX_SPANS_PER_SECOND));
+      if (maxSpansPerSecond != null) {
+        builder.maxSpansPerSecond(maxSpansPerSecond);
+      }
+    }
+    if (params.containsKey(GUARD_MAX_TAG_VALUES)) {
+      Integer maxTagValues = toInteger(params.get(GUARD_MAX_TAG_VALUES));
+      if (maxTagValues != null) {
+        builder.maxTagValues(maxTagValues);
+      }
+    }
+    if (params.containsKey(GUARD_PLACEHOLDER)) {
+      builder.placeholder(params.get(GUARD_PLACEHOLDER));
+    }
+    SpanGuardReporter spanGuardReporter = builder.build(delegate);
+    spanGuardReporter.setMetricsReporter(metricsReporter);
+    return spanGuardReporter;
+  }
+
+  private static SpanLogLimiter buildSpanLogLimiter(Map<String, String> params,
+                                                    WavefrontInternalReporter metricsReporter) {
+    SpanLogLimiter.Builder builder = new SpanLogLimiter.Builder();
+    if (params.containsKey(SPAN_LOGS_MAX_ENTRIES)) {
+      Integer maxEntries = toInteger(params.get(SPAN_LOGS_MAX_ENTRIES));
+      if (maxEntries != null) {
+        builder.maxEntries(maxEntries);
+      }
+    }
+    if (params.containsKey(SPAN_LOGS_MAX_FIELD_BYTES)) {
+      Integer maxFieldBytes = toInteger(params.get(SPAN_LOGS_MAX_FIELD_BYTES));
+      if (maxFieldBytes != null) {
+        builder.maxFieldBytes(maxFieldBytes);
+      }
+    }
+    if (params.containsKey(SPAN_LOGS_MAX_BYTES_PER_SECOND)) {
+      Long maxBytesPerSecond = toLong(params.get(SPAN_LOGS_MAX_BYTES_PER_SECOND));
+      if (maxBytesPerSecond != null) {
+        builder.maxBytesPerSecond(maxBytesPerSecond);
+      }
+    }
+    if (Boolean.parseBoolean(params.get(SPAN_LOGS_DEDUPLICATE))) {
+      builder.deduplicate();
+    }
+    SpanLogLimiter spanLogLimiter = builder.build();
+    spanLogLimiter.setMetricsReporter(metricsReporter);
+    return spanLogLimiter;
+  }
+
+  private static TagFilter buildTagFilter(Map<String, String> params) {
+    TagFilter.Builder builder = new TagFilter.Builder();
+    for (String key : tagKeys(params.get(TAGS_DROP))) {
+      builder.drop(key);
+    }
+    for (String key : tagKeys(params.get(TAGS_HASH))) {
+      builder.hash(key);
+    }
+    if (params.containsKey(TAGS_REDACT_PATTERN)) {
+      Pattern pattern = Pattern.compile(params.get(TAGS_REDACT_PATTERN));
+      for (String key : tagKeys(params.get(TAGS_REDACT))) {
+        builder.redact(key, pattern);
+      }
+    } else if (params.containsKey(TAGS_REDACT)) {
+      logger.log(Level.WARNING, "Ignoring Tracer parameter " + TAGS_REDACT + " -- " +
+          TAGS_REDACT_PATTERN + " is not set");
+    }
+    for (String key : tagKeys(params.get(TAGS_STRIP_QUERY))) {
+      builder.stripQuery(key);
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return The tag keys and prefixes of a comma separated list, e.g. {@code user.id,http.*}.
+   */
+  private static List<String> tagKeys(@Nullable String value) {
+    List<String> keys = new ArrayList<>();
+    if (value != null) {
+      for (String key : value.split(",")) {
+        key = key.trim();
+        if (!key.isEmpty()) {
+          keys.add(key);
+        }
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * @return The sender of the span reporter in the shared reporting.
+   */
+  private static WavefrontSender findWavefrontSender(ReportingRegistry.Lease sharedReporter) {
+    for (Reporter reporter : sharedReporter.getReporters()) {
+      if (reporter instanceof WavefrontSpanReporter) {
+        return ((WavefrontSpanReporter) reporter).getWavefrontSender();
+      }
+    }
+    throw new IllegalStateException("No Wavefront sender in the shared reporting");
+  }
+
+  @Nullable
+  private static AdaptiveSampler findAdaptiveSampler(List<Sampler> samplers) {
+    for (Sampler sampler : samplers) {
+      if (sampler instanceof AdaptiveSampler) {
+        return (AdaptiveSampler) sampler;
+      }
+      if (sampler instanceof AllOfSampler) {
+        AdaptiveSampler adaptiveSampler =
+            findAdaptiveSampler(((AllOfSampler) sampler).getSamplers());
+        if (adaptiveSampler != null) {
+          return adaptiveSampler;
+        }
+      }
     }
+    return null;
   }
 }
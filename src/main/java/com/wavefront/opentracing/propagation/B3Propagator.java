@@ -0,0 +1,176 @@
+package com.wavefront.opentracing.propagation;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import io.opentracing.propagation.TextMap;
+
+/**
+ * Propagates span contexts in the B3 headers of Zipkin, so that traces continue across services
+ * instrumented by Zipkin compatible tracers.
+ *
+ * Contexts are injected in the multiple header form and extracted from either that form or the
+ * single {@value #B3} header. 64-bit trace IDs are extended to UUIDs with high bits of zero. B3
+ * span IDs are 64 bits long, so a context extracted from B3 alone gets a span ID holding only the
+ * low bits of the Wavefront span ID it was injected from; propagating {@code w3c} along with
+ * {@code b3} keeps the full span ID. B3 has no baggage, so none is propagated.
+ */
+public final class B3Propagator implements Propagator<TextMap> {
+  public static final String TRACE_ID = "X-B3-TraceId";
+  public static final String SPAN_ID = "X-B3-SpanId";
+  public static final String SAMPLED = "X-B3-Sampled";
+  public static final String FLAGS = "X-B3-Flags";
+  public static final String B3 = "b3";
+
+  private static final String SAMPLED_YES = "1";
+  private static final String SAMPLED_NO = "0";
+
+  @Override
+  public void inject(WavefrontSpanContext spanContext, TextMap carrier) {
+    UUID traceId = spanContext.getTraceId();
+    char[] id = new char[32];
+    int offset = HexCodec.writeHex(id, 0, traceId.getMostSignificantBits());
+    HexCodec.writeHex(id, offset, traceId.getLeastSignificantBits());
+    carrier.put(TRACE_ID, new String(id));
+    HexCodec.writeHex(id, 0, spanContext.getSpanId().getLeastSignificantBits());
+    carrier.put(SPAN_ID, new String(id, 0, 16));
+    Boolean decision = spanContext.getSamplingDecision();
+    if (decision != null) {
+      carrier.put(SAMPLED, decision ? SAMPLED_YES : SAMPLED_NO);
+    }
+  }
+
+  @Nullable
+  @Override
+  public WavefrontSpanContext extract(TextMap carrier) {
+    String traceId = null;
+    String spanId = null;
+    String sampled = null;
+    String flags = null;
+    String b3 = null;
+    for (Map.Entry<String, String> entry : carrier) {
+      String key = entry.getKey();
+      if (TRACE_ID.equalsIgnoreCase(key)) {
+        traceId = entry.getValue();
+      } else if (SPAN_ID.equalsIgnoreCase(key)) {
+        spanId = entry.getValue();
+      } else if (SAMPLED.equalsIgnoreCase(key)) {
+        sampled = entry.getValue();
+      } else if (FLAGS.equalsIgnoreCase(key)) {
+        flags = entry.getValue();
+      } else if (B3.equalsIgnoreCase(key)) {
+        b3 = entry.getValue();
+      }
+    }
+    if (b3 != null) {
+      WavefrontSpanContext context = extractSingle(b3);
+      if (context != null) {
+        return context;
+      }
+    }
+    if (traceId == null || spanId == null) {
+      return null;
+    }
+    Boolean decision;
+    if (flags != null && "1".equals(flags.trim())) {
+      // Debug implies sampled.
+      decision = Boolean.TRUE;
+    } else if (sampled == null) {
+      decision = null;
+    } else {
+      decision = parseSampled(sampled, 0, sampled.length());
+    }
+    return newContext(traceId, 0, traceId.length(), spanId, 0, spanId.length(), decision);
+  }
+
+  /**
+   * Extracts {@code {TraceId}-{SpanId}[-{SamplingState}[-{ParentSpanId}]]}. A header that only
+   * holds a sampling state carries no context and is ignored.
+   */
+  @Nullable
+  private static WavefrontSpanContext extractSingle(String b3) {
+    int length = b3.length();
+    int start = HexCodec.skipWhitespace(b3, 0, length);
+    int end = HexCodec.trimWhitespace(b3, start, length);
+    int traceIdEnd = HexCodec.indexOf(b3, '-', start, end);
+    if (traceIdEnd == end) {
+      return null;
+    }
+    int spanIdEnd = HexCodec.indexOf(b3, '-', traceIdEnd + 1, end);
+    Boolean decision = null;
+    if (spanIdEnd < end) {
+      int samplingEnd = HexCodec.indexOf(b3, '-', spanIdEnd + 1, end);
+      decision = parseSampled(b3, spanIdEnd + 1, samplingEnd);
+      if (decision == null) {
+        return null;
+      }
+    }
+    return newContext(b3, start, traceIdEnd, b3, traceIdEnd + 1, spanIdEnd, decision);
+  }
+
+  @Nullable
+  private static WavefrontSpanContext newContext(CharSequence traceId, int traceIdStart,
+                                                 int traceIdEnd, CharSequence spanId,
+                                                 int spanIdStart, int spanIdEnd,
+                                                 @Nullable Boolean decision) {
+    traceIdStart = HexCodec.skipWhitespace(traceId, traceIdStart, traceIdEnd);
+    traceIdEnd = HexCodec.trimWhitespace(traceId, traceIdStart, traceIdEnd);
+    spanIdStart = HexCodec.skipWhitespace(spanId, spanIdStart, spanIdEnd);
+    spanIdEnd = HexCodec.trimWhitespace(spanId, spanIdStart, spanIdEnd);
+    int traceIdLength = traceIdEnd - traceIdStart;
+    if ((traceIdLength != 16 && traceIdLength != 32) || spanIdEnd - spanIdStart != 16 ||
+        !HexCodec.isHex(traceId, traceIdStart, traceIdEnd, true) ||
+        !HexCodec.isHex(spanId, spanIdStart, spanIdEnd, true)) {
+      return null;
+    }
+    long traceIdHigh = traceIdLength == 32 ?
+        HexCodec.parseHex(traceId, traceIdStart, traceIdStart + 16) : 0;
+    long traceIdLow = HexCodec.parseHex(traceId, traceIdEnd - 16, traceIdEnd);
+    long parentId = HexCodec.parseHex(spanId, spanIdStart, spanIdEnd);
+    if ((traceIdHigh == 0 && traceIdLow == 0) || parentId == 0) {
+      return null;
+    }
+    return new WavefrontSpanContext(new UUID(traceIdHigh, traceIdLow), new UUID(0, parentId),
+        Collections.emptyMap(), decision);
+  }
+
+  /**
+   * @return The decision of a sampling state of {@code 1}, {@code 0}, {@code d}, {@code true} or
+   *     {@code false}, or {@code null} for anything else.
+   */
+  @Nullable
+  private static Boolean parseSampled(CharSequence sampled, int start, int end) {
+    start = HexCodec.skipWhitespace(sampled, start, end);
+    end = HexCodec.trimWhitespace(sampled, start, end);
+    if (end - start == 1) {
+      char c = sampled.charAt(start);
+      if (c == '1' || c == 'd') {
+        return Boolean.TRUE;
+      } else if (c == '0') {
+        return Boolean.FALSE;
+      }
+    } else if (regionMatches(sampled, start, end, "true")) {
+      return Boolean.TRUE;
+    } else if (regionMatches(sampled, start, end, "false")) {
+      return Boolean.FALSE;
+    }
+    return null;
+  }
+
+  private static boolean regionMatches(CharSequence chars, int start, int end, String value) {
+    if (end - start != value.length()) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (Character.toLowerCase(chars.charAt(start + i)) != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,47 @@
+package com.wavefront.opentracing.propagation;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import io.opentracing.propagation.TextMap;
+
+/**
+ * Propagates span contexts in the headers of several propagators at once: contexts are injected
+ * by every propagator and extracted by the first one to find a context, in the given order.
+ */
+public final class CompositePropagator implements Propagator<TextMap> {
+  private final List<Propagator<TextMap>> propagators;
+
+  /**
+   * @param propagators The propagators, in the order to extract contexts in.
+   */
+  public CompositePropagator(List<Propagator<TextMap>> propagators) {
+    if (propagators.isEmpty()) {
+      throw new IllegalArgumentException("At least one propagator is required");
+    }
+    this.propagators = new ArrayList<>(propagators);
+  }
+
+  @Override
+  public void inject(WavefrontSpanContext spanContext, TextMap carrier) {
+    for (Propagator<TextMap> propagator : propagators) {
+      propagator.inject(spanContext, carrier);
+    }
+  }
+
+  @Nullable
+  @Override
+  public WavefrontSpanContext extract(TextMap carrier) {
+    for (Propagator<TextMap> propagator : propagators) {
+      WavefrontSpanContext spanContext = propagator.extract(carrier);
+      if (spanContext != null) {
+        return spanContext;
+      }
+    }
+    return null;
+  }
+}
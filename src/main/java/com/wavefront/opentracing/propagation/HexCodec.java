@@ -0,0 +1,91 @@
+package com.wavefront.opentracing.propagation;
+
+/**
+ * Reads and writes the hex encoded IDs of trace headers straight from and into characters, so
+ * that propagating a context takes no intermediate strings.
+ */
+final class HexCodec {
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private HexCodec() {
+  }
+
+  /**
+   * @param upperCase Whether upper case digits are accepted as well as lower case ones.
+   * @return {@code true} if every character in the range is a hex digit.
+   */
+  static boolean isHex(CharSequence chars, int start, int end, boolean upperCase) {
+    if (start < 0 || end > chars.length() || start >= end) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      char c = chars.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') ||
+          (upperCase && c >= 'A' && c <= 'F'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parses at most 16 hex digits that {@link #isHex} accepted.
+   */
+  static long parseHex(CharSequence chars, int start, int end) {
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      char c = chars.charAt(i);
+      int digit = c <= '9' ? c - '0' : (c | 0x20) - 'a' + 10;
+      value = (value << 4) | digit;
+    }
+    return value;
+  }
+
+  /**
+   * Writes the value as 16 lower case hex digits.
+   *
+   * @return The offset after the digits.
+   */
+  static int writeHex(char[] chars, int offset, long value) {
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      chars[offset++] = HEX[(int) (value >>> shift) & 0xf];
+    }
+    return offset;
+  }
+
+  /**
+   * @return The index of the first character in the range that is not a space or a tab.
+   */
+  static int skipWhitespace(CharSequence chars, int start, int end) {
+    while (start < end && isWhitespace(chars.charAt(start))) {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * @return The index after the last character in the range that is not a space or a tab.
+   */
+  static int trimWhitespace(CharSequence chars, int start, int end) {
+    while (end > start && isWhitespace(chars.charAt(end - 1))) {
+      end--;
+    }
+    return end;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t';
+  }
+
+  /**
+   * @return The index of the character in the range, or {@code end} if it is not there.
+   */
+  static int indexOf(CharSequence chars, char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (chars.charAt(i) == c) {
+        return i;
+      }
+    }
+    return end;
+  }
+}
@@ -0,0 +1,291 @@
+package com.wavefront.opentracing.propagation;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import io.opentracing.propagation.TextMap;
+
+/**
+ * Propagates span contexts in the W3C Trace Context headers, along with their baggage in the W3C
+ * {@code baggage} header, so that every service of a trace follows the sampling decision made
+ * where the trace started.
+ *
+ * The decision is carried twice: in the sampled flag of {@code traceparent}, which services
+ * instrumented by other tracers understand, and as the {@value #SAMPLING_PRIORITY} baggage item,
+ * 1 if sampled and 0 if not, which travels with the baggage to every span of the trace. When
+ * both are present the priority wins, so an application that sets the baggage item itself forces
+ * the decision for the rest of the trace.
+ *
+ * W3C parent IDs are 64 bits long whereas Wavefront span IDs are UUIDs, so the full span ID also
+ * goes into a {@code wf} entry of {@code tracestate}. A context extracted without that entry
+ * gets a span ID whose high bits are zero.
+ *
+ * The other vendors' entries of an extracted {@code tracestate} are kept in the
+ * {@value #TRACE_STATE_ITEM} baggage item, which goes to every span of the trace but not into
+ * the {@code baggage} header. They are injected after the {@code wf} entry, which comes first as
+ * the entry of the last vendor to touch the trace, up to the 32 entries a {@code tracestate} may
+ * hold.
+ */
+public final class TraceContextPropagator implements Propagator<TextMap> {
+  public static final String TRACE_PARENT = "traceparent";
+  public static final String TRACE_STATE = "tracestate";
+  public static final String BAGGAGE = "baggage";
+  public static final String SAMPLING_PRIORITY = "sampling.priority";
+  public static final String TRACE_STATE_ITEM = "w3c.tracestate";
+
+  private static final String TRACE_STATE_KEY = "wf=";
+  private static final int TRACE_PARENT_LENGTH = 55;
+  private static final int TRACE_STATE_LENGTH = 35;
+  private static final int MAX_TRACE_STATE_ENTRIES = 32;
+  private static final char[] UPPER_HEX = "0123456789ABCDEF".toCharArray();
+
+  @Override
+  public void inject(WavefrontSpanContext spanContext, TextMap carrier) {
+    Boolean decision = spanContext.getSamplingDecision();
+    UUID traceId = spanContext.getTraceId();
+    UUID spanId = spanContext.getSpanId();
+
+    char[] traceParent = new char[TRACE_PARENT_LENGTH];
+    traceParent[0] = '0';
+    traceParent[1] = '0';
+    traceParent[2] = '-';
+    int offset = HexCodec.writeHex(traceParent, 3, traceId.getMostSignificantBits());
+    offset = HexCodec.writeHex(traceParent, offset, traceId.getLeastSignificantBits());
+    traceParent[offset++] = '-';
+    offset = HexCodec.writeHex(traceParent, offset, spanId.getLeastSignificantBits());
+    traceParent[offset++] = '-';
+    traceParent[offset++] = '0';
+    traceParent[offset] = decision == null || decision ? '1' : '0';
+    carrier.put(TRACE_PARENT, new String(traceParent));
+
+    String otherEntries = spanContext.getBaggageItem(TRACE_STATE_ITEM);
+    char[] traceState = new char[TRACE_STATE_LENGTH];
+    TRACE_STATE_KEY.getChars(0, TRACE_STATE_KEY.length(), traceState, 0);
+    offset = HexCodec.writeHex(traceState, TRACE_STATE_KEY.length(),
+        spanId.getMostSignificantBits());
+    HexCodec.writeHex(traceState, offset, spanId.getLeastSignificantBits());
+    carrier.put(TRACE_STATE, otherEntries == null || otherEntries.isEmpty() ?
+        new String(traceState) : new String(traceState) + ',' + otherEntries);
+
+    StringBuilder baggage = null;
+    boolean hasPriority = false;
+    for (Map.Entry<String, String> item : spanContext.baggageItems()) {
+      if (TRACE_STATE_ITEM.equals(item.getKey())) {
+        continue;
+      }
+      hasPriority |= SAMPLING_PRIORITY.equals(item.getKey());
+      baggage = appendBaggageItem(baggage, item.getKey(), item.getValue());
+    }
+    if (!hasPriority && decision != null) {
+      baggage = appendBaggageItem(baggage, SAMPLING_PRIORITY, decision ? "1" : "0");
+    }
+    if (baggage != null) {
+      carrier.put(BAGGAGE, baggage.toString());
+    }
+  }
+
+  @Nullable
+  @Override
+  public WavefrontSpanContext extract(TextMap carrier) {
+    String traceParent = null;
+    String traceState = null;
+    String baggage = null;
+    for (Map.Entry<String, String> entry : carrier) {
+      String key = entry.getKey();
+      if (TRACE_PARENT.equalsIgnoreCase(key)) {
+        traceParent = entry.getValue();
+      } else if (TRACE_STATE.equalsIgnoreCase(key)) {
+        traceState = entry.getValue();
+      } else if (BAGGAGE.equalsIgnoreCase(key)) {
+        baggage = entry.getValue();
+      }
+    }
+    if (traceParent == null) {
+      return null;
+    }
+    int start = HexCodec.skipWhitespace(traceParent, 0, traceParent.length());
+    int end = HexCodec.trimWhitespace(traceParent, start, traceParent.length());
+    // Version 00 has exactly these fields. A later version may append fields, but must keep the
+    // ones of version 00 where they are.
+    if (end - start < TRACE_PARENT_LENGTH ||
+        (end - start > TRACE_PARENT_LENGTH && (traceParent.charAt(start + 55) != '-' ||
+            traceParent.startsWith("00", start))) ||
+        traceParent.charAt(start + 2) != '-' || traceParent.charAt(start + 35) != '-' ||
+        traceParent.charAt(start + 52) != '-' ||
+        !HexCodec.isHex(traceParent, start, start + 2, false) ||
+        !HexCodec.isHex(traceParent, start + 3, start + 35, false) ||
+        !HexCodec.isHex(traceParent, start + 36, start + 52, false) ||
+        !HexCodec.isHex(traceParent, start + 53, start + 55, false) ||
+        (traceParent.charAt(start) == 'f' && traceParent.charAt(start + 1) == 'f')) {
+      return null;
+    }
+    long traceIdHigh = HexCodec.parseHex(traceParent, start + 3, start + 19);
+    long traceIdLow = HexCodec.parseHex(traceParent, start + 19, start + 35);
+    long parentId = HexCodec.parseHex(traceParent, start + 36, start + 52);
+    long flags = HexCodec.parseHex(traceParent, start + 53, start + 55);
+    if ((traceIdHigh == 0 && traceIdLow == 0) || parentId == 0) {
+      return null;
+    }
+
+    UUID spanId = fullSpanId(traceState, parentId);
+    Map<String, String> baggageItems = parseBaggage(baggage);
+    String otherEntries = otherTraceStateEntries(traceState);
+    if (otherEntries != null) {
+      baggageItems.put(TRACE_STATE_ITEM, otherEntries);
+    } else {
+      // Only ever taken from the trace state.
+      baggageItems.remove(TRACE_STATE_ITEM);
+    }
+    Boolean decision = (flags & 1) != 0;
+    String priority = baggageItems.get(SAMPLING_PRIORITY);
+    if (priority != null) {
+      try {
+        decision = Integer.parseInt(priority) > 0;
+      } catch (NumberFormatException e) {
+        // Follow the sampled flag.
+      }
+    }
+    return new WavefrontSpanContext(new UUID(traceIdHigh, traceIdLow), spanId, baggageItems,
+        decision);
+  }
+
+  /**
+   * @return The span ID in the {@code wf} entry of the trace state if it matches the parent ID,
+   *     or else the parent ID in the low bits of a UUID.
+   */
+  private static UUID fullSpanId(@Nullable String traceState, long parentId) {
+    if (traceState == null) {
+      return new UUID(0, parentId);
+    }
+    int length = traceState.length();
+    int entryStart = 0;
+    while (entryStart < length) {
+      int entryEnd = HexCodec.indexOf(traceState, ',', entryStart, length);
+      int start = HexCodec.skipWhitespace(traceState, entryStart, entryEnd);
+      int end = HexCodec.trimWhitespace(traceState, start, entryEnd);
+      if (traceState.startsWith(TRACE_STATE_KEY, start)) {
+        int id = start + TRACE_STATE_KEY.length();
+        if (end - id == 32 && HexCodec.isHex(traceState, id, end, false)) {
+          long low = HexCodec.parseHex(traceState, id + 16, end);
+          if (low == parentId) {
+            return new UUID(HexCodec.parseHex(traceState, id, id + 16), low);
+          }
+        }
+        break;
+      }
+      entryStart = entryEnd + 1;
+    }
+    return new UUID(0, parentId);
+  }
+
+  /**
+   * @return The entries of the trace state other than the {@code wf} one, as many as fit next to
+   *     it, or {@code null} if there are none.
+   */
+  @Nullable
+  private static String otherTraceStateEntries(@Nullable String traceState) {
+    if (traceState == null) {
+      return null;
+    }
+    StringBuilder entries = null;
+    int count = 1;
+    int length = traceState.length();
+    int entryStart = 0;
+    while (entryStart < length && count < MAX_TRACE_STATE_ENTRIES) {
+      int entryEnd = HexCodec.indexOf(traceState, ',', entryStart, length);
+      int start = HexCodec.skipWhitespace(traceState, entryStart, entryEnd);
+      int end = HexCodec.trimWhitespace(traceState, start, entryEnd);
+      if (start < end && !traceState.startsWith(TRACE_STATE_KEY, start) &&
+          HexCodec.indexOf(traceState, '=', start, end) < end) {
+        if (entries == null) {
+          entries = new StringBuilder(end - start);
+        } else {
+          entries.append(',');
+        }
+        entries.append(traceState, start, end);
+        count++;
+      }
+      entryStart = entryEnd + 1;
+    }
+    return entries == null ? null : entries.toString();
+  }
+
+  private static Map<String, String> parseBaggage(@Nullable String baggage) {
+    Map<String, String> items = new HashMap<>();
+    if (baggage == null) {
+      return items;
+    }
+    int length = baggage.length();
+    int memberStart = 0;
+    while (memberStart < length) {
+      int memberEnd = HexCodec.indexOf(baggage, ',', memberStart, length);
+      // Properties follow the value and are dropped.
+      int valueEnd = HexCodec.indexOf(baggage, ';', memberStart, memberEnd);
+      int equals = HexCodec.indexOf(baggage, '=', memberStart, valueEnd);
+      int keyStart = HexCodec.skipWhitespace(baggage, memberStart, equals);
+      int keyEnd = HexCodec.trimWhitespace(baggage, keyStart, equals);
+      if (equals < valueEnd && keyStart < keyEnd) {
+        int valueStart = HexCodec.skipWhitespace(baggage, equals + 1, valueEnd);
+        items.put(baggage.substring(keyStart, keyEnd), percentDecode(
+            baggage.substring(valueStart, HexCodec.trimWhitespace(baggage, valueStart,
+                valueEnd))));
+      }
+      memberStart = memberEnd + 1;
+    }
+    return items;
+  }
+
+  private static StringBuilder appendBaggageItem(@Nullable StringBuilder baggage, String key,
+                                                 String value) {
+    if (baggage == null) {
+      baggage = new StringBuilder();
+    } else {
+      baggage.append(',');
+    }
+    baggage.append(key).append('=');
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      int c = b & 0xff;
+      // The characters a baggage value may hold as they are.
+      if (c > 0x20 && c < 0x7f && c != '"' && c != ',' && c != ';' && c != '\\' && c != '%') {
+        baggage.append((char) c);
+      } else {
+        baggage.append('%').append(UPPER_HEX[c >>> 4]).append(UPPER_HEX[c & 0xf]);
+      }
+    }
+    return baggage;
+  }
+
+  private static String percentDecode(String value) {
+    if (value.indexOf('%') < 0) {
+      return value;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+    int i = 0;
+    while (i < value.length()) {
+      if (value.charAt(i) == '%' && i + 2 < value.length()) {
+        int high = Character.digit(value.charAt(i + 1), 16);
+        int low = Character.digit(value.charAt(i + 2), 16);
+        if (high >= 0 && low >= 0) {
+          bytes.write((high << 4) | low);
+          i += 3;
+          continue;
+        }
+      }
+      int end = value.indexOf('%', i + 1);
+      if (end < 0) {
+        end = value.length();
+      }
+      byte[] run = value.substring(i, end).getBytes(StandardCharsets.UTF_8);
+      bytes.write(run, 0, run.length);
+      i = end;
+    }
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,337 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Histogram;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+/**
+ * A reporting stage that hands finished spans off to a thread of its own, so that the threads
+ * finishing spans never wait on the reporter behind it.
+ *
+ * Finished spans go into a pre-allocated {@link SpanRingBuffer}, which costs the finishing thread
+ * a single CAS. One consumer thread drains them, waking up once the batch size is reached or the
+ * flush interval has passed, and forwards the drained spans to the delegate one at a time. The
+ * batch size therefore only sets how often the consumer wakes up; spans are not batched into the
+ * sender. Transports that batch, such as {@link DirectIngestionReporter} and
+ * {@link ProxyConnectionPoolReporter}, do so on their own.
+ *
+ * What happens when the buffer is full is decided by the {@link OverflowPolicy}. The buffer only
+ * bounds the spans waiting for this stage: a {@link WavefrontSpanReporter} behind it queues the
+ * spans it is handed once more, in the SDK's own queue, until its sender has sent them.
+ */
+public class AsyncHandOffReporter extends DelegatingReporter implements Runnable {
+  private static final Logger logger = Logger.getLogger(AsyncHandOffReporter.class.getName());
+
+  private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final SpanRingBuffer buffer;
+  // The spans of one drain, only used by the consumer, which resizes it when the batch size
+  // changes.
+  private WavefrontSpan[] batch;
+  // The spans of the current drain not yet handed to the delegate, written by the consumer.
+  private volatile int batchRemaining;
+  private volatile int batchSize;
+  private volatile long flushIntervalNanos;
+  private final OverflowPolicy overflowPolicy;
+  private final long closeTimeoutMillis;
+  private final Thread consumer;
+
+  private final LongAdder spansQueued = new LongAdder();
+  private final LongAdder spansDropped = new LongAdder();
+  private final LongAdder batchesReported = new LongAdder();
+  private final LongAdder spansLost = new LongAdder();
+  @Nullable
+  private volatile Histogram batchSizes;
+  @Nullable
+  private volatile Histogram flushLatencyMicros;
+
+  private volatile boolean consumerWaiting;
+  private volatile boolean closed;
+  // Set by the consumer right before its last drain, after which nothing takes spans out of the
+  // buffer but the producers themselves.
+  private volatile boolean consumerDone;
+
+  public static final class Builder {
+    private int queueSize = 50000;
+    private int batchSize = 500;
+    private long flushIntervalMillis = 1000;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+    private long closeTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
+    private boolean virtualThreads;
+
+    /**
+     * Sets the number of spans that can be buffered, rounded up to a power of two. Defaults to
+     * 50000.
+     */
+    public Builder queueSize(int queueSize) {
+      this.queueSize = queueSize;
+      return this;
+    }
+
+    /**
+     * Sets the number of buffered spans that wakes up the consumer, which is also the most spans
+     * it drains at a time. Defaults to 500.
+     */
+    public Builder batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Sets the longest a span waits in the buffer while the batch size is not reached. Defaults to
+     * 1 second.
+     */
+    public Builder flushInterval(long duration, TimeUnit unit) {
+      this.flushIntervalMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets what happens to a span that finishes while the buffer is full. Defaults to
+     * {@link OverflowPolicy#DROP_NEWEST}.
+     */
+    public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+      this.overflowPolicy = overflowPolicy;
+      return this;
+    }
+
+    /**
+     * Sets the longest {@link #close()} waits for the buffered spans to be reported. Spans still
+     * buffered then are counted as lost. Defaults to 5 seconds.
+     */
+    public Builder closeTimeout(long duration, TimeUnit unit) {
+      this.closeTimeoutMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Runs the consumer on a virtual thread, if the JDK supports them.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
+      return this;
+    }
+
+    public AsyncHandOffReporter build(Reporter delegate) {
+      if (batchSize < 1 || flushIntervalMillis < 1) {
+        throw new IllegalArgumentException("Batch size and flush interval must be positive");
+      }
+      if (closeTimeoutMillis < 1) {
+        throw new IllegalArgumentException("Close timeout must be positive");
+      }
+      return new AsyncHandOffReporter(delegate, this);
+    }
+  }
+
+  private AsyncHandOffReporter(Reporter delegate, Builder builder) {
+    super(delegate);
+    this.buffer = new SpanRingBuffer(builder.queueSize);
+    this.batchSize = Math.min(builder.batchSize, buffer.capacity());
+    this.batch = new WavefrontSpan[batchSize];
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushIntervalMillis);
+    this.overflowPolicy = builder.overflowPolicy;
+    this.closeTimeoutMillis = builder.closeTimeoutMillis;
+    this.consumer = ReportingThreads.newThread("wavefront-async-span-reporter", this,
+        builder.virtualThreads);
+    this.consumer.start();
+  }
+
+  /**
+   * Registers gauges for the buffer and the number of queued, dropped, lost and reported spans, and
+   * histograms of the number of spans per drain and of how long the delegate takes for them.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    setMetricsReporter(metricsReporter, Collections.emptyMap());
+  }
+
+  /**
+   * Registers the same metrics as {@link #setMetricsReporter(WavefrontInternalReporter)} with
+   * the given point tags, which tell apart several buffers reporting to the same registry.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter,
+                                 Map<String, String> tags) {
+    metricsReporter.newGauge(metricName("queue.size", tags),
+        () -> (() -> (double) buffer.size()));
+    metricsReporter.newGauge(metricName("queue.remaining_capacity", tags),
+        () -> (() -> (double) (buffer.capacity() - buffer.size())));
+    metricsReporter.newGauge(metricName("spans.queued", tags),
+        () -> (() -> (double) spansQueued.sum()));
+    metricsReporter.newGauge(metricName("spans.dropped", tags),
+        () -> (() -> (double) spansDropped.sum()));
+    metricsReporter.newGauge(metricName("spans.lost", tags),
+        () -> (() -> (double) spansLost.sum()));
+    metricsReporter.newGauge(metricName("batches", tags),
+        () -> (() -> (double) batchesReported.sum()));
+    batchSizes = metricsReporter.newHistogram(metricName("batch.size", tags));
+    flushLatencyMicros = metricsReporter.newHistogram(metricName("flush.latency_micros", tags));
+  }
+
+  private static MetricName metricName(String name, Map<String, String> tags) {
+    return new MetricName("async_reporter." + name, tags);
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    if (closed) {
+      spansDropped.increment();
+      return;
+    }
+    while (!buffer.offer(span)) {
+      if (overflowPolicy == OverflowPolicy.DROP_NEWEST || closed) {
+        spansDropped.increment();
+        return;
+      } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+        if (buffer.poll() != null) {
+          spansDropped.increment();
+        }
+      } else {
+        LockSupport.unpark(consumer);
+        LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+      }
+    }
+    spansQueued.increment();
+    if (consumerDone) {
+      // Closing raced with this span and the consumer may have drained the buffer for the last
+      // time before it was offered, so it is dropped rather than left behind.
+      while (buffer.poll() != null) {
+        spansDropped.increment();
+      }
+    } else if (consumerWaiting && buffer.size() >= batchSize) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  @Override
+  public void run() {
+    long nextFlush = System.nanoTime() + flushIntervalNanos;
+    while (!closed) {
+      long now = System.nanoTime();
+      if (buffer.size() >= batchSize || now - nextFlush >= 0) {
+        drain();
+        nextFlush = System.nanoTime() + flushIntervalNanos;
+      } else {
+        consumerWaiting = true;
+        // Re-check after publishing the flag so that a producer's wake-up is not lost.
+        if (buffer.size() < batchSize && !closed) {
+          LockSupport.parkNanos(this, nextFlush - now);
+        }
+        consumerWaiting = false;
+      }
+    }
+    // A producer that sees the flag drops its span itself; one that does not offered its span
+    // before the flag was set, so the drain below finds it.
+    consumerDone = true;
+    drain();
+  }
+
+  private void drain() {
+    if (batch.length != batchSize) {
+      batch = new WavefrontSpan[batchSize];
+    }
+    int count;
+    while ((count = buffer.drainTo(batch)) > 0) {
+      long start = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        batchRemaining = count - i;
+        forward(batch[i]);
+        batch[i] = null;
+      }
+      batchRemaining = 0;
+      batchesReported.increment();
+      Histogram sizes = batchSizes;
+      Histogram latency = flushLatencyMicros;
+      if (sizes != null && latency != null) {
+        sizes.update(count);
+        latency.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+      }
+    }
+  }
+
+  /**
+   * Changes the number of buffered spans that wakes up the consumer, from the next drain on.
+   */
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive");
+    }
+    this.batchSize = Math.min(batchSize, buffer.capacity());
+    LockSupport.unpark(consumer);
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Changes the longest a span waits in the buffer while the batch size is not reached, from the
+   * next drain on.
+   */
+  public void setFlushInterval(long duration, TimeUnit unit) {
+    if (duration < 1) {
+      throw new IllegalArgumentException("Flush interval must be positive");
+    }
+    this.flushIntervalNanos = unit.toNanos(duration);
+  }
+
+  public long getFlushIntervalMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos);
+  }
+
+  public long getSpansQueued() {
+    return spansQueued.sum();
+  }
+
+  public long getSpansDropped() {
+    return spansDropped.sum();
+  }
+
+  public int getQueueSize() {
+    return buffer.size();
+  }
+
+  /**
+   * @return The number of spans still buffered when closing timed out.
+   */
+  public long getSpansLost() {
+    return spansLost.sum();
+  }
+
+  /**
+   * Stops accepting spans, reports the ones still buffered, and closes the delegate, all within
+   * the close timeout, or the {@link CloseDeadline} of the stage closing this one if earlier.
+   * Spans finished while closing are either reported or counted as dropped.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(consumer);
+    try (CloseDeadline deadline = CloseDeadline.start(closeTimeoutMillis)) {
+      try {
+        long remaining = deadline.remainingMillis();
+        if (remaining > 0) {
+          consumer.join(remaining);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (consumer.isAlive()) {
+        int lost = buffer.size() + batchRemaining;
+        spansLost.add(lost);
+        logger.log(Level.WARNING, "Timed out reporting buffered spans, " + lost +
+            " spans not reported");
+      }
+      super.close();
+    }
+  }
+}
@@ -0,0 +1,596 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Streams capture files written by a {@link CaptureFileSender} back through a
+ * {@link WavefrontSender}, e.g. to load test a proxy or the bundle with production-shaped spans.
+ *
+ * Each line is parsed back into the call that wrote it: span lines, together with the line of
+ * their span logs, into {@code sendSpan}, metric lines into {@code sendMetric}, or
+ * {@code sendDeltaCounter} for delta counters, and histogram lines into
+ * {@code sendDistribution}. Lines that cannot be parsed are skipped and counted. Files are read
+ * as they are replayed, so they can be larger than the heap; files ending in {@code .gz} are
+ * decompressed.
+ *
+ * Points, a span with its span logs counting as one, are sent at a steady rate if one is set, or
+ * as fast as the sender takes them. With timestamps shifted, the spans of each pass over the
+ * files are moved so that the first one starts when the pass does, keeping their relative
+ * timing, and metrics and distributions are sent without timestamps, to be stamped when they are
+ * received.
+ */
+public final class CaptureFileReplayer {
+  private static final Logger logger = Logger.getLogger(CaptureFileReplayer.class.getName());
+
+  private final WavefrontSender wavefrontSender;
+  private final long intervalNanos;
+  private final int passes;
+  private final boolean shiftTimestamps;
+
+  // Confined to the replaying thread.
+  private long nextSendNanos;
+  private long shiftMillis;
+  private boolean shiftKnown;
+
+  private final LongAdder pointsSent = new LongAdder();
+  private final LongAdder linesSkipped = new LongAdder();
+  private final LongAdder sendFailures = new LongAdder();
+
+  public static final class Builder {
+    private double pointsPerSecond = 0;
+    private int passes = 1;
+    private boolean shiftTimestamps;
+
+    /**
+     * Sets the rate points are sent at, or 0 to send them as fast as possible. Defaults to 0.
+     */
+    public Builder pointsPerSecond(double pointsPerSecond) {
+      this.pointsPerSecond = pointsPerSecond;
+      return this;
+    }
+
+    /**
+     * Sets the number of times the files are replayed. Defaults to 1.
+     */
+    public Builder passes(int passes) {
+      this.passes = passes;
+      return this;
+    }
+
+    /**
+     * Moves spans to the present and sends metrics and distributions without timestamps.
+     */
+    public Builder shiftTimestamps() {
+      this.shiftTimestamps = true;
+      return this;
+    }
+
+    public CaptureFileReplayer build(WavefrontSender wavefrontSender) {
+      if (pointsPerSecond < 0 || passes < 1) {
+        throw new IllegalArgumentException("Invalid rate or number of passes");
+      }
+      return new CaptureFileReplayer(wavefrontSender, this);
+    }
+  }
+
+  private CaptureFileReplayer(WavefrontSender wavefrontSender, Builder builder) {
+    this.wavefrontSender = wavefrontSender;
+    this.intervalNanos = builder.pointsPerSecond == 0 ? 0 :
+        (long) (TimeUnit.SECONDS.toNanos(1) / builder.pointsPerSecond);
+    this.passes = builder.passes;
+    this.shiftTimestamps = builder.shiftTimestamps;
+  }
+
+  /**
+   * Replays the files, and the capture files in the directories, in the order of their names.
+   * Does not flush or close the sender.
+   */
+  public void replay(List<File> files) throws IOException {
+    List<File> captureFiles = new ArrayList<>();
+    for (File file : files) {
+      if (file.isDirectory()) {
+        File[] children = file.listFiles((dir, name) -> name.endsWith(".wf") ||
+            name.endsWith(".wf.gz"));
+        if (children != null) {
+          Arrays.sort(children);
+          captureFiles.addAll(Arrays.asList(children));
+        }
+      } else {
+        captureFiles.add(file);
+      }
+    }
+    nextSendNanos = System.nanoTime();
+    for (int pass = 0; pass < passes; pass++) {
+      shiftKnown = false;
+      for (File file : captureFiles) {
+        replay(file);
+      }
+    }
+  }
+
+  private void replay(File file) throws IOException {
+    InputStream in = Channels.newInputStream(FileChannel.open(file.toPath(),
+        StandardOpenOption.READ));
+    if (file.getName().endsWith(".gz")) {
+      in = new GZIPInputStream(in, 64 * 1024);
+    }
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+        StandardCharsets.UTF_8), 64 * 1024)) {
+      String line = reader.readLine();
+      while (line != null) {
+        String next = reader.readLine();
+        String spanLogs = null;
+        if (next != null && next.startsWith("{")) {
+          spanLogs = next;
+          next = reader.readLine();
+        }
+        if (!line.isEmpty()) {
+          replay(line, spanLogs);
+        }
+        line = next;
+      }
+    }
+  }
+
+  private void replay(String line, @Nullable String spanLogs) {
+    try {
+      if (line.startsWith("{")) {
+        throw new IllegalArgumentException("Span logs without a span line");
+      }
+      List<Token> tokens = tokenize(line);
+      pace();
+      if (line.startsWith("!")) {
+        sendDistribution(tokens);
+      } else if (isSpan(tokens)) {
+        sendSpan(tokens, spanLogs);
+      } else {
+        sendMetric(tokens);
+      }
+      pointsSent.increment();
+    } catch (IOException e) {
+      sendFailures.increment();
+      logger.log(Level.FINE, "Failed to send replayed line", e);
+    } catch (RuntimeException e) {
+      linesSkipped.increment();
+      logger.log(Level.FINE, "Skipping capture line " + line, e);
+    }
+  }
+
+  private void pace() {
+    if (intervalNanos == 0) {
+      return;
+    }
+    long waitNanos = nextSendNanos - System.nanoTime();
+    if (waitNanos > 0) {
+      LockSupport.parkNanos(waitNanos);
+    }
+    nextSendNanos += intervalNanos;
+  }
+
+  private static boolean isSpan(List<Token> tokens) {
+    for (Token token : tokens) {
+      if (!token.quotedKey && "traceId".equals(token.key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void sendSpan(List<Token> tokens, @Nullable String spanLogs) throws IOException {
+    int last = tokens.size() - 1;
+    if (last < 2 || tokens.get(0).key != null || tokens.get(last).key != null ||
+        tokens.get(last - 1).key != null) {
+      throw new IllegalArgumentException("Malformed span line");
+    }
+    String source = null;
+    UUID traceId = null;
+    UUID spanId = null;
+    List<UUID> parents = null;
+    List<UUID> follows = null;
+    List<Pair<String, String>> tags = new ArrayList<>();
+    for (Token token : tokens.subList(1, last - 1)) {
+      if (token.key == null) {
+        throw new IllegalArgumentException("Unexpected value " + token.value);
+      }
+      if (token.quotedKey) {
+        tags.add(Pair.of(token.key, token.value));
+        continue;
+      }
+      switch (token.key) {
+        case "source":
+          source = token.value;
+          break;
+        case "traceId":
+          traceId = UUID.fromString(token.value);
+          break;
+        case "spanId":
+          spanId = UUID.fromString(token.value);
+          break;
+        case "parent":
+          parents = add(parents, UUID.fromString(token.value));
+          break;
+        case "followsFrom":
+          follows = add(follows, UUID.fromString(token.value));
+          break;
+        default:
+          tags.add(Pair.of(token.key, token.value));
+      }
+    }
+    if (traceId == null || spanId == null) {
+      throw new IllegalArgumentException("Span line without trace or span ID");
+    }
+    long startMillis = Long.parseLong(tokens.get(last - 1).value);
+    long durationMillis = Long.parseLong(tokens.get(last).value);
+    if (shiftTimestamps && !shiftKnown) {
+      shiftMillis = System.currentTimeMillis() - startMillis;
+      shiftKnown = true;
+    }
+    long shift = shiftTimestamps ? shiftMillis : 0;
+    wavefrontSender.sendSpan(tokens.get(0).value, startMillis + shift, durationMillis, source,
+        traceId, spanId, parents, follows, tags,
+        spanLogs == null ? null : parseSpanLogs(spanLogs, shift * 1000));
+  }
+
+  private static List<UUID> add(@Nullable List<UUID> uuids, UUID uuid) {
+    List<UUID> list = uuids == null ? new ArrayList<>(1) : uuids;
+    list.add(uuid);
+    return list;
+  }
+
+  private void sendMetric(List<Token> tokens) throws IOException {
+    if (tokens.size() < 2 || tokens.get(0).key != null || tokens.get(1).key != null) {
+      throw new IllegalArgumentException("Malformed metric line");
+    }
+    String name = tokens.get(0).value;
+    double value = Double.parseDouble(tokens.get(1).value);
+    int index = 2;
+    Long timestamp = null;
+    if (index < tokens.size() && tokens.get(index).key == null) {
+      timestamp = Long.parseLong(tokens.get(index++).value);
+    }
+    Map<String, String> tags = new LinkedHashMap<>();
+    String source = sourceAndTags(tokens, index, tags);
+    if (name.startsWith(CaptureFileSender.DELTA_PREFIX) ||
+        name.startsWith(CaptureFileSender.ALT_DELTA_PREFIX)) {
+      wavefrontSender.sendDeltaCounter(name, value, source, tags);
+    } else {
+      wavefrontSender.sendMetric(name, value, shiftTimestamps ? null : timestamp, source, tags);
+    }
+  }
+
+  private void sendDistribution(List<Token> tokens) throws IOException {
+    HistogramGranularity granularity = granularity(tokens.get(0).value);
+    int index = 1;
+    Long timestamp = null;
+    if (index < tokens.size() && tokens.get(index).key == null &&
+        !tokens.get(index).value.startsWith("#")) {
+      timestamp = Long.parseLong(tokens.get(index++).value);
+    }
+    List<Pair<Double, Integer>> centroids = new ArrayList<>();
+    while (index + 1 < tokens.size() && tokens.get(index).key == null &&
+        tokens.get(index).value.startsWith("#")) {
+      int count = Integer.parseInt(tokens.get(index).value.substring(1));
+      centroids.add(Pair.of(Double.parseDouble(tokens.get(index + 1).value), count));
+      index += 2;
+    }
+    if (index >= tokens.size() || tokens.get(index).key != null) {
+      throw new IllegalArgumentException("Malformed histogram line");
+    }
+    String name = tokens.get(index++).value;
+    Map<String, String> tags = new LinkedHashMap<>();
+    String source = sourceAndTags(tokens, index, tags);
+    wavefrontSender.sendDistribution(name, centroids, Collections.singleton(granularity),
+        shiftTimestamps ? null : timestamp, source, tags);
+  }
+
+  private static HistogramGranularity granularity(String identifier) {
+    switch (identifier) {
+      case "!M":
+        return HistogramGranularity.MINUTE;
+      case "!H":
+        return HistogramGranularity.HOUR;
+      case "!D":
+        return HistogramGranularity.DAY;
+      default:
+        throw new IllegalArgumentException("Unknown granularity " + identifier);
+    }
+  }
+
+  /**
+   * Puts the tags from the given index on into the map.
+   *
+   * @return The source, or {@code null} if there is none.
+   */
+  @Nullable
+  private static String sourceAndTags(List<Token> tokens, int index,
+                                      Map<String, String> tags) {
+    String source = null;
+    for (Token token : tokens.subList(index, tokens.size())) {
+      if (token.key == null) {
+        throw new IllegalArgumentException("Unexpected value " + token.value);
+      }
+      if (!token.quotedKey && token.key.equals("source")) {
+        source = token.value;
+      } else {
+        tags.put(token.key, token.value);
+      }
+    }
+    return source;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<SpanLog> parseSpanLogs(String line, long shiftMicros) {
+    Map<String, Object> json = (Map<String, Object>) new JsonParser(line).parse();
+    List<SpanLog> spanLogs = new ArrayList<>();
+    for (Object log : (List<Object>) json.get("logs")) {
+      Map<String, Object> entry = (Map<String, Object>) log;
+      Map<String, String> fields = new LinkedHashMap<>();
+      for (Map.Entry<String, Object> field :
+          ((Map<String, Object>) entry.get("fields")).entrySet()) {
+        fields.put(field.getKey(), field.getValue() == null ? null :
+            field.getValue().toString());
+      }
+      long timestamp = ((Number) entry.get("timestamp")).longValue();
+      spanLogs.add(new SpanLog(timestamp + shiftMicros, fields));
+    }
+    return spanLogs;
+  }
+
+  /**
+   * A value of a line, with the key before the {@code =} if it is part of a key-value pair.
+   */
+  static final class Token {
+    @Nullable
+    final String key;
+    final boolean quotedKey;
+    final String value;
+
+    Token(@Nullable String key, boolean quotedKey, String value) {
+      this.key = key;
+      this.quotedKey = quotedKey;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Splits a line of the Wavefront wire format at spaces outside quotes, unescaping quoted
+   * values the way {@link SpanLineEncoder} escapes them.
+   */
+  static List<Token> tokenize(String line) {
+    List<Token> tokens = new ArrayList<>();
+    StringBuilder part = new StringBuilder();
+    int i = 0;
+    while (i < line.length()) {
+      if (line.charAt(i) == ' ') {
+        i++;
+        continue;
+      }
+      boolean quoted = line.charAt(i) == '"';
+      i = readPart(line, i, part);
+      if (i < line.length() && line.charAt(i) == '=') {
+        String key = part.toString();
+        i = readPart(line, i + 1, part);
+        tokens.add(new Token(key, quoted, part.toString()));
+      } else {
+        tokens.add(new Token(null, false, part.toString()));
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Reads a quoted or bare part of a line into the builder.
+   *
+   * @return The index after the part.
+   */
+  private static int readPart(String line, int start, StringBuilder part) {
+    part.setLength(0);
+    int i = start;
+    if (i < line.length() && line.charAt(i) == '"') {
+      i++;
+      while (i < line.length()) {
+        char c = line.charAt(i++);
+        if (c == '"') {
+          return i;
+        }
+        if (c == '\\' && i < line.length() &&
+            (line.charAt(i) == '"' || line.charAt(i) == 'n')) {
+          part.append(line.charAt(i++) == 'n' ? '\n' : '"');
+        } else {
+          part.append(c);
+        }
+      }
+      throw new IllegalArgumentException("Unterminated quote");
+    }
+    while (i < line.length() && line.charAt(i) != ' ' && line.charAt(i) != '=') {
+      part.append(line.charAt(i++));
+    }
+    return i;
+  }
+
+  public long getPointsSent() {
+    return pointsSent.sum();
+  }
+
+  public long getLinesSkipped() {
+    return linesSkipped.sum();
+  }
+
+  public int getFailureCount() {
+    return sendFailures.intValue();
+  }
+
+  /**
+   * Parses the JSON of span log lines into maps, lists, strings, numbers, booleans and nulls.
+   */
+  private static final class JsonParser {
+    private final String json;
+    private int index;
+
+    private JsonParser(String json) {
+      this.json = json;
+    }
+
+    private Object parse() {
+      Object value = value();
+      skipWhitespace();
+      if (index != json.length()) {
+        throw error();
+      }
+      return value;
+    }
+
+    @Nullable
+    private Object value() {
+      skipWhitespace();
+      if (index >= json.length()) {
+        throw error();
+      }
+      char c = json.charAt(index);
+      if (c == '{') {
+        Map<String, Object> object = new LinkedHashMap<>();
+        index++;
+        if (!consume('}')) {
+          do {
+            skipWhitespace();
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            object.put(key, value());
+            skipWhitespace();
+          } while (consume(','));
+          expect('}');
+        }
+        return object;
+      } else if (c == '[') {
+        List<Object> array = new ArrayList<>();
+        index++;
+        skipWhitespace();
+        if (!consume(']')) {
+          do {
+            array.add(value());
+            skipWhitespace();
+          } while (consume(','));
+          expect(']');
+        }
+        return array;
+      } else if (c == '"') {
+        return string();
+      } else if (json.startsWith("null", index)) {
+        index += 4;
+        return null;
+      } else if (json.startsWith("true", index)) {
+        index += 4;
+        return true;
+      } else if (json.startsWith("false", index)) {
+        index += 5;
+        return false;
+      }
+      int start = index;
+      while (index < json.length() && "+-.0123456789eE".indexOf(json.charAt(index)) >= 0) {
+        index++;
+      }
+      String number = json.substring(start, index);
+      if (number.isEmpty()) {
+        throw error();
+      }
+      return number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0 ?
+          (Object) Long.parseLong(number) : (Object) Double.parseDouble(number);
+    }
+
+    private String string() {
+      expect('"');
+      StringBuilder string = new StringBuilder();
+      while (index < json.length()) {
+        char c = json.charAt(index++);
+        if (c == '"') {
+          return string.toString();
+        }
+        if (c != '\\') {
+          string.append(c);
+          continue;
+        }
+        if (index >= json.length()) {
+          break;
+        }
+        char escaped = json.charAt(index++);
+        switch (escaped) {
+          case 'n':
+            string.append('\n');
+            break;
+          case 'r':
+            string.append('\r');
+            break;
+          case 't':
+            string.append('\t');
+            break;
+          case 'b':
+            string.append('\b');
+            break;
+          case 'f':
+            string.append('\f');
+            break;
+          case 'u':
+            string.append((char) Integer.parseInt(json.substring(index, index + 4), 16));
+            index += 4;
+            break;
+          default:
+            string.append(escaped);
+        }
+      }
+      throw error();
+    }
+
+    private void skipWhitespace() {
+      while (index < json.length() && Character.isWhitespace(json.charAt(index))) {
+        index++;
+      }
+    }
+
+    private boolean consume(char c) {
+      if (index < json.length() && json.charAt(index) == c) {
+        index++;
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(char c) {
+      if (!consume(c)) {
+        throw error();
+      }
+    }
+
+    private IllegalArgumentException error() {
+      return new IllegalArgumentException("Malformed JSON at " + index);
+    }
+  }
+}
@@ -0,0 +1,310 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link WavefrontSender} that writes what it is given to capture files through a
+ * {@link CaptureFileWriter} instead of sending it, in the Wavefront wire format: spans as span
+ * lines, each followed by the line of its span logs if it has any, metrics and delta counters
+ * as metric lines, and distributions as one histogram line per granularity.
+ *
+ * The sender is a dynamic proxy of the {@link WavefrontSender} interface, so that it works with
+ * whichever version of the SDK is on the class path. Other kinds of data the SDK may send, such
+ * as events, are not captured.
+ */
+public final class CaptureFileSender implements InvocationHandler {
+  static final String DELTA_PREFIX = "\u2206";
+  static final String ALT_DELTA_PREFIX = "\u0394";
+
+  private final CaptureFileWriter writer;
+  private final String source;
+  private final SpanLineEncoder encoder;
+  private final LongAdder failures = new LongAdder();
+
+  private CaptureFileSender(CaptureFileWriter writer, String source) {
+    this.writer = writer;
+    this.source = source;
+    this.encoder = new SpanLineEncoder(source, null);
+  }
+
+  /**
+   * @param writer The writer of the capture files, closed with the sender.
+   * @param source The source of data sent without one; should match the span reporter's.
+   */
+  public static WavefrontSender create(CaptureFileWriter writer, String source) {
+    return (WavefrontSender) Proxy.newProxyInstance(WavefrontSender.class.getClassLoader(),
+        new Class<?>[] { WavefrontSender.class }, new CaptureFileSender(writer, source));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return "CaptureFileSender[" + source + "]";
+      }
+    }
+    switch (method.getName()) {
+      case "sendSpan":
+        sendSpan((String) args[0], (Long) args[1], (Long) args[2], (String) args[3],
+            (UUID) args[4], (UUID) args[5], (List<UUID>) args[6], (List<UUID>) args[7],
+            (List<Pair<String, String>>) args[8], (List<SpanLog>) args[9]);
+        return null;
+      case "sendMetric":
+        write(metricLine((String) args[0], (Double) args[1], (Long) args[2],
+            (String) args[3], (Map<String, String>) args[4]));
+        return null;
+      case "sendDeltaCounter":
+        // With or without a timestamp, depending on the version of the SDK.
+        Long timestamp = args.length > 4 ? (Long) args[2] : null;
+        write(metricLine(deltaCounterName((String) args[0]), (Double) args[1], timestamp,
+            (String) args[args.length - 2], (Map<String, String>) args[args.length - 1]));
+        return null;
+      case "sendDistribution":
+        write(distributionLines((String) args[0], (List<Pair<Double, Integer>>) args[1],
+            (Set<HistogramGranularity>) args[2], (Long) args[3], (String) args[4],
+            (Map<String, String>) args[5]));
+        return null;
+      case "flush":
+        writer.flush();
+        return null;
+      case "getFailureCount":
+        return writer.getFailureCount() + failures.intValue();
+      case "close":
+        writer.close();
+        return null;
+      case "getClientId":
+        return "capture-file";
+      default:
+        return defaultValue(method.getReturnType());
+    }
+  }
+
+  private void sendSpan(String name, long startMillis, long durationMillis,
+                        @Nullable String spanSource, UUID traceId, UUID spanId,
+                        @Nullable List<UUID> parents, @Nullable List<UUID> follows,
+                        @Nullable List<Pair<String, String>> tags,
+                        @Nullable List<SpanLog> spanLogs) throws IOException {
+    SpanLineEncoder spanEncoder = spanSource == null || spanSource.equals(source) ? encoder :
+        new SpanLineEncoder(spanSource, null);
+    ByteBuffer line;
+    try {
+      line = spanEncoder.encode(name, startMillis, durationMillis, traceId, spanId, parents,
+          follows, tags == null ? Collections.emptyList() : tags);
+    } catch (RuntimeException e) {
+      failures.increment();
+      throw new IOException("Failed to encode span " + name, e);
+    }
+    if (spanLogs == null || spanLogs.isEmpty()) {
+      writer.write(line);
+      return;
+    }
+    writer.write(line, ByteBuffer.wrap(
+        spanLogsLine(traceId, spanId, spanLogs, line).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private void write(String lines) throws IOException {
+    writer.write(ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  static String deltaCounterName(String name) {
+    return name.startsWith(DELTA_PREFIX) || name.startsWith(ALT_DELTA_PREFIX) ? name :
+        DELTA_PREFIX + name;
+  }
+
+  private String metricLine(String name, double value, @Nullable Long timestamp,
+                            @Nullable String metricSource, @Nullable Map<String, String> tags) {
+    StringBuilder line = new StringBuilder();
+    appendKey(line, name);
+    line.append(' ').append(value);
+    if (timestamp != null) {
+      line.append(' ').append(timestamp.longValue());
+    }
+    appendSourceAndTags(line, metricSource, tags);
+    return line.append('\n').toString();
+  }
+
+  private String distributionLines(String name, List<Pair<Double, Integer>> centroids,
+                                   Set<HistogramGranularity> granularities,
+                                   @Nullable Long timestamp, @Nullable String distributionSource,
+                                   @Nullable Map<String, String> tags) {
+    StringBuilder lines = new StringBuilder();
+    for (HistogramGranularity granularity : granularities) {
+      lines.append(granularityIdentifier(granularity));
+      if (timestamp != null) {
+        lines.append(' ').append(timestamp.longValue());
+      }
+      for (Pair<Double, Integer> centroid : centroids) {
+        lines.append(" #").append(centroid._2.intValue()).append(' ').append(centroid._1);
+      }
+      lines.append(' ');
+      appendKey(lines, name);
+      appendSourceAndTags(lines, distributionSource, tags);
+      lines.append('\n');
+    }
+    return lines.toString();
+  }
+
+  static String granularityIdentifier(HistogramGranularity granularity) {
+    switch (granularity) {
+      case MINUTE:
+        return "!M";
+      case HOUR:
+        return "!H";
+      case DAY:
+        return "!D";
+      default:
+        throw new IllegalArgumentException("Unknown granularity " + granularity);
+    }
+  }
+
+  private void appendSourceAndTags(StringBuilder line, @Nullable String pointSource,
+                                   @Nullable Map<String, String> tags) {
+    line.append(" source=");
+    appendValue(line, pointSource == null ? source : pointSource);
+    if (tags != null) {
+      for (Map.Entry<String, String> tag : tags.entrySet()) {
+        if (tag.getKey() != null && tag.getValue() != null) {
+          line.append(' ');
+          appendKey(line, tag.getKey());
+          line.append('=');
+          appendValue(line, tag.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Appends a quoted metric name or tag key, escaped as {@link SpanLineEncoder} escapes keys.
+   */
+  private static void appendKey(StringBuilder line, String key) {
+    line.append('"');
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      boolean legal = (c >= ',' && c <= '9') || (c >= 'A' && c <= 'Z') ||
+          (c >= 'a' && c <= 'z') || c == '_' ||
+          (i == 0 && (c == '\u2206' || c == '\u0394' || c == '~'));
+      line.append(legal ? c : '-');
+    }
+    line.append('"');
+  }
+
+  /**
+   * Appends a trimmed, quoted value, escaped as {@link SpanLineEncoder} escapes values.
+   */
+  private static void appendValue(StringBuilder line, String value) {
+    line.append('"');
+    String trimmed = value.trim();
+    for (int i = 0; i < trimmed.length(); i++) {
+      char c = trimmed.charAt(i);
+      if (c == '"') {
+        line.append("\\\"");
+      } else if (c == '\n') {
+        line.append("\\n");
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+
+  /**
+   * Encodes span logs as the JSON line the Wavefront proxy accepts, with the span line they
+   * belong to.
+   */
+  private static String spanLogsLine(UUID traceId, UUID spanId, List<SpanLog> spanLogs,
+                                     ByteBuffer spanLine) {
+    StringBuilder line = new StringBuilder("{\"traceId\":\"").append(traceId).
+        append("\",\"spanId\":\"").append(spanId).append("\",\"logs\":[");
+    for (int i = 0; i < spanLogs.size(); i++) {
+      SpanLog spanLog = spanLogs.get(i);
+      line.append(i == 0 ? "" : ",").append("{\"timestamp\":").append(spanLog.getTimestamp()).
+          append(",\"fields\":{");
+      boolean first = true;
+      for (Map.Entry<String, String> field : spanLog.getFields().entrySet()) {
+        line.append(first ? "" : ",");
+        appendJson(line, field.getKey());
+        line.append(':');
+        appendJson(line, field.getValue());
+        first = false;
+      }
+      line.append("}}");
+    }
+    line.append("],\"span\":");
+    String span = StandardCharsets.UTF_8.decode(spanLine.duplicate()).toString();
+    appendJson(line, span.substring(0, span.length() - 1));
+    return line.append("}\n").toString();
+  }
+
+  private static void appendJson(StringBuilder line, @Nullable String value) {
+    if (value == null) {
+      line.append("null");
+      return;
+    }
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          line.append("\\\"");
+          break;
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        default:
+          if (c < ' ') {
+            line.append(String.format("\\u%04x", (int) c));
+          } else {
+            line.append(c);
+          }
+      }
+    }
+    line.append('"');
+  }
+
+  @Nullable
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == double.class) {
+      return 0.0;
+    }
+    return null;
+  }
+}
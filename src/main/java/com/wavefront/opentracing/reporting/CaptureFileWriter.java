@@ -0,0 +1,360 @@
+package com.wavefront.opentracing.reporting;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Writes lines in the Wavefront wire format to capture files, for replaying them later with a
+ * {@link CaptureFileReplayer}.
+ *
+ * Lines are collected in a buffer and written through a file channel when it is full and on
+ * every flush, by default once a second. A file is rotated before the line that would take it
+ * past the maximum size, counted before compression, so that lines are never split across
+ * files. Files are named {@code <prefix>-<millis>-<index>.wf}, with {@code .gz} appended when
+ * they are gzip compressed, and sort in the order they were written. With a maximum number of
+ * files, the oldest files this writer wrote are deleted as new ones are opened.
+ *
+ * Writing to the standard output instead neither rotates nor compresses. Flushes only hand the
+ * lines to the operating system; they are not forced to disk.
+ *
+ * If writing fails, the buffered lines are lost and the next line opens a new file.
+ */
+public final class CaptureFileWriter implements Closeable {
+  private static final Logger logger = Logger.getLogger(CaptureFileWriter.class.getName());
+
+  @Nullable
+  private final File directory;
+  private final String prefix;
+  private final long maxFileBytes;
+  private final int maxFiles;
+  private final Compression compression;
+  private final ScheduledExecutorService flusher;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  // Guarded by the lock.
+  private final ByteBuffer buffer;
+  private final Deque<File> files = new ArrayDeque<>();
+  @Nullable
+  private WritableByteChannel channel;
+  @Nullable
+  private GZIPOutputStream gzip;
+  private long fileBytes;
+  private int fileIndex;
+  private boolean closed;
+
+  private final LongAdder linesWritten = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+
+  public static final class Builder {
+    private String prefix = "spans";
+    private long maxFileBytes = 128L * 1024 * 1024;
+    private int maxFiles = 0;
+    private int bufferSize = 256 * 1024;
+    private Compression compression = Compression.NONE;
+    private long flushIntervalMillis = 1000;
+    private boolean virtualThreads;
+
+    /**
+     * Sets the prefix of the file names. Defaults to {@code spans}.
+     */
+    public Builder prefix(String prefix) {
+      this.prefix = prefix;
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes, before compression, at which a file is rotated. Defaults to
+     * 128 MiB.
+     */
+    public Builder maxFileBytes(long maxFileBytes) {
+      this.maxFileBytes = maxFileBytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of files kept, or 0 to keep every file. Defaults to 0.
+     */
+    public Builder maxFiles(int maxFiles) {
+      this.maxFiles = maxFiles;
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes of the buffer lines are collected in. Defaults to 256 KiB.
+     */
+    public Builder bufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * Sets how files are compressed. Defaults to {@link Compression#NONE}.
+     */
+    public Builder compression(Compression compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Sets how often buffered lines are written. Defaults to 1 second.
+     */
+    public Builder flushInterval(long flushInterval, TimeUnit unit) {
+      this.flushIntervalMillis = unit.toMillis(flushInterval);
+      return this;
+    }
+
+    /**
+     * Flushes on a virtual thread, if the JDK supports them.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
+      return this;
+    }
+
+    /**
+     * @param directory The directory the files are written to, created if it does not exist.
+     */
+    public CaptureFileWriter build(File directory) throws IOException {
+      if (directory == null) {
+        throw new IllegalArgumentException("A capture directory is required");
+      }
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Failed to create directory " + directory);
+      }
+      return new CaptureFileWriter(directory, this);
+    }
+
+    /**
+     * @return A writer to the standard output.
+     */
+    public CaptureFileWriter buildForStandardOutput() {
+      return new CaptureFileWriter(null, this);
+    }
+  }
+
+  private CaptureFileWriter(@Nullable File directory, Builder builder) {
+    if (builder.maxFileBytes < 1 || builder.maxFiles < 0 || builder.bufferSize < 1 ||
+        builder.flushIntervalMillis < 1) {
+      throw new IllegalArgumentException("Invalid maximum file size, number of files, buffer " +
+          "size or flush interval");
+    }
+    this.directory = directory;
+    this.prefix = builder.prefix;
+    this.maxFileBytes = builder.maxFileBytes;
+    this.maxFiles = builder.maxFiles;
+    this.compression = builder.compression;
+    this.buffer = ByteBuffer.allocateDirect(builder.bufferSize);
+    this.flusher = ReportingThreads.newScheduledExecutor("wavefront-capture-flusher",
+        builder.virtualThreads);
+    flusher.scheduleWithFixedDelay(this::flushQuietly, builder.flushIntervalMillis,
+        builder.flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Writes a line, which must end in a newline.
+   */
+  public void write(ByteBuffer line) throws IOException {
+    write(line, null);
+  }
+
+  /**
+   * Writes two lines into the same file, e.g. a span line and the line of its span logs.
+   */
+  public void write(ByteBuffer first, @Nullable ByteBuffer second) throws IOException {
+    int length = first.remaining() + (second == null ? 0 : second.remaining());
+    lock.lock();
+    try {
+      if (closed) {
+        throw new IOException("Capture file writer is closed");
+      }
+      if (channel != null && directory != null && fileBytes > 0 &&
+          fileBytes + length > maxFileBytes) {
+        closeFile();
+      }
+      if (channel == null) {
+        openFile();
+      }
+      put(first);
+      if (second != null) {
+        put(second);
+      }
+      fileBytes += length;
+      linesWritten.add(second == null ? 1 : 2);
+    } catch (IOException e) {
+      fail();
+      throw e;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void put(ByteBuffer line) throws IOException {
+    if (line.remaining() > buffer.remaining()) {
+      drain();
+      if (line.remaining() > buffer.capacity()) {
+        bytesWritten.add(line.remaining());
+        while (line.hasRemaining()) {
+          channel.write(line);
+        }
+        return;
+      }
+    }
+    buffer.put(line);
+  }
+
+  private void drain() throws IOException {
+    buffer.flip();
+    bytesWritten.add(buffer.remaining());
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } finally {
+      buffer.clear();
+    }
+  }
+
+  private void openFile() throws IOException {
+    if (directory == null) {
+      // Never closed, so as not to close the standard output of the process.
+      channel = new FileOutputStream(FileDescriptor.out).getChannel();
+      return;
+    }
+    String extension = compression == Compression.GZIP ? ".wf.gz" : ".wf";
+    File file = new File(directory, String.format("%s-%d-%05d%s", prefix,
+        System.currentTimeMillis(), ++fileIndex, extension));
+    FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE);
+    if (compression == Compression.GZIP) {
+      gzip = new GZIPOutputStream(Channels.newOutputStream(fileChannel), 64 * 1024, true);
+      channel = Channels.newChannel(gzip);
+    } else {
+      channel = fileChannel;
+    }
+    fileBytes = 0;
+    files.addLast(file);
+    while (maxFiles > 0 && files.size() > maxFiles) {
+      File oldest = files.removeFirst();
+      try {
+        Files.deleteIfExists(oldest.toPath());
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to delete capture file " + oldest + ": " + e);
+      }
+    }
+  }
+
+  private void closeFile() throws IOException {
+    try {
+      drain();
+      if (directory != null) {
+        if (gzip != null) {
+          gzip.close();
+        } else {
+          channel.close();
+        }
+      }
+    } finally {
+      channel = null;
+      gzip = null;
+    }
+  }
+
+  /**
+   * Drops the buffered lines and the file that failed, so that the next line opens a new one.
+   */
+  private void fail() {
+    failures.increment();
+    buffer.clear();
+    if (channel != null && directory != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Failed to close capture file", e);
+      }
+    }
+    channel = null;
+    gzip = null;
+  }
+
+  /**
+   * Writes the buffered lines.
+   */
+  public void flush() throws IOException {
+    lock.lock();
+    try {
+      if (channel == null) {
+        return;
+      }
+      drain();
+      if (gzip != null) {
+        gzip.flush();
+      }
+    } catch (IOException e) {
+      fail();
+      throw e;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to write capture file: " + e);
+    }
+  }
+
+  public long getLinesWritten() {
+    return linesWritten.sum();
+  }
+
+  /**
+   * @return The number of bytes written, before compression.
+   */
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  public int getFailureCount() {
+    return failures.intValue();
+  }
+
+  @Override
+  public void close() throws IOException {
+    flusher.shutdownNow();
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (channel != null) {
+        closeFile();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.wavefront.opentracing.reporting;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time left for closing a chain of reporting stages.
+ *
+ * Stages that wait for buffered spans when they are closed each have a close timeout, and close
+ * their delegates afterwards, so waiting the full timeout in each would add up along the chain.
+ * Instead, the first stage to close starts a deadline for the closing thread, and the stages it
+ * closes in turn wait no longer than that deadline, or their own timeout if it is earlier.
+ * Stages that close their delegates on other threads hand the deadline on with {@link #join()}.
+ */
+public final class CloseDeadline implements AutoCloseable {
+  private static final ThreadLocal<CloseDeadline> CURRENT = new ThreadLocal<>();
+
+  private final long deadlineNanos;
+  // Whether closing this deadline ends it for the thread.
+  private final boolean owner;
+
+  private CloseDeadline(long deadlineNanos, boolean owner) {
+    this.deadlineNanos = deadlineNanos;
+    this.owner = owner;
+  }
+
+  /**
+   * @param timeoutMillis The longest the calling stage may take to close.
+   * @return The deadline in effect for the calling thread, if it is earlier, or else a deadline
+   *     the timeout from now, which is in effect for the thread until it is closed.
+   */
+  public static CloseDeadline start(long timeoutMillis) {
+    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    CloseDeadline current = CURRENT.get();
+    if (current != null) {
+      return new CloseDeadline(current.deadlineNanos - deadlineNanos < 0 ?
+          current.deadlineNanos : deadlineNanos, false);
+    }
+    CloseDeadline deadline = new CloseDeadline(deadlineNanos, true);
+    CURRENT.set(deadline);
+    return deadline;
+  }
+
+  /**
+   * Puts the deadline in effect for the calling thread too, e.g. for a thread that closes a
+   * delegate on behalf of the stage that started the deadline.
+   *
+   * @return The deadline, to be closed once the calling thread is done closing.
+   */
+  public CloseDeadline join() {
+    if (CURRENT.get() != null) {
+      return new CloseDeadline(deadlineNanos, false);
+    }
+    CloseDeadline deadline = new CloseDeadline(deadlineNanos, true);
+    CURRENT.set(deadline);
+    return deadline;
+  }
+
+  /**
+   * @return The milliseconds left until the deadline, 0 once it has passed.
+   */
+  public long remainingMillis() {
+    return Math.max(TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()), 0);
+  }
+
+  /**
+   * Ends the deadline for the calling thread, if it was put in effect by this instance.
+   */
+  @Override
+  public void close() {
+    if (owner) {
+      CURRENT.remove();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.wavefront.opentracing.reporting;
+
+import javax.annotation.Nullable;
+
+/**
+ * How a reporting stage compresses the payloads it sends.
+ */
+public enum Compression {
+  /**
+   * Send payloads as they are.
+   */
+  NONE("none"),
+  /**
+   * Compress payloads with gzip.
+   */
+  GZIP("gzip");
+
+  private final String value;
+
+  Compression(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * @return The compression for a configuration value such as {@code gzip}, or {@code null} if
+   * there is none.
+   */
+  @Nullable
+  public static Compression fromValue(String value) {
+    for (Compression compression : values()) {
+      if (compression.value.equalsIgnoreCase(value)) {
+        return compression;
+      }
+    }
+    return null;
+  }
+}
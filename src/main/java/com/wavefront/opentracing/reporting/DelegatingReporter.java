@@ -0,0 +1,81 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base class for the reporting stages the bundle places between {@link
+ * com.wavefront.opentracing.WavefrontTracer} and a {@link WavefrontSpanReporter}. By default every
+ * span is forwarded to the delegate as is; subclasses override {@link #report(WavefrontSpan)} to
+ * buffer, filter or count spans.
+ *
+ * Stages extend {@link CompositeReporter} only so that the tracer still finds the underlying
+ * {@link WavefrontSpanReporter}, whose sender it uses for RED metrics and heartbeats. The
+ * reporters of a wrapped composite are exposed as is, so any number of stages can be stacked.
+ */
+public abstract class DelegatingReporter extends CompositeReporter {
+  private static final Logger logger = Logger.getLogger(DelegatingReporter.class.getName());
+
+  protected final Reporter delegate;
+  private final LongAdder failures = new LongAdder();
+
+  protected DelegatingReporter(Reporter delegate) {
+    super(unwrap(delegate));
+    this.delegate = delegate;
+  }
+
+  /**
+   * @return The reporters the tracer should see in place of the given one.
+   */
+  static Reporter[] unwrap(Reporter reporter) {
+    if (reporter instanceof CompositeReporter) {
+      List<Reporter> reporters = ((CompositeReporter) reporter).getReporters();
+      return reporters.toArray(new Reporter[0]);
+    }
+    return new Reporter[] { reporter };
+  }
+
+  /**
+   * @return The reporter spans are forwarded to.
+   */
+  public Reporter getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    forward(span);
+  }
+
+  /**
+   * Hands a span to the delegate, counting rather than propagating a failure so that one bad
+   * span never reaches the thread that finished it.
+   */
+  protected void forward(WavefrontSpan span) {
+    try {
+      delegate.report(span);
+    } catch (IOException | RuntimeException e) {
+      failures.increment();
+      logger.log(Level.FINE, "Failed to report span", e);
+    }
+  }
+
+  @Override
+  public int getFailureCount() {
+    return delegate.getFailureCount() + failures.intValue();
+  }
+
+  @Override
+  public void close() {
+    try {
+      delegate.close();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to close span reporter: " + e);
+    }
+  }
+}
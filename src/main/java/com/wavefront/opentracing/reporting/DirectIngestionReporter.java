@@ -0,0 +1,618 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Histogram;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * A reporting stage that sends spans straight to a Wavefront server over HTTP, compressed and
+ * with several requests in flight, instead of through the sender's synchronous, uncompressed
+ * direct ingestion.
+ *
+ * Spans are encoded into span lines with a {@link SpanLineEncoder} as they are reported and
+ * appended to the current batch, which is handed to the senders once it holds the batch size or
+ * the flush interval has passed. Each of the configured number of sender threads posts one batch
+ * at a time over a persistent connection, so that many batches are in flight at once. The spans
+ * of a batch arrive in the order they were reported; batches may arrive in any order.
+ *
+ * The batch size adapts to the measured round trip time: while requests return within the target
+ * latency, full batches make the next ones a quarter larger, and a request that takes longer
+ * halves the batch size, between the configured bounds.
+ *
+ * A request that fails with an I/O error, a server error or a request to slow down is retried
+ * by the same sender, after a delay that doubles with every attempt, up to the configured number
+ * of retries; the batch is dropped only once the last attempt failed too.
+ *
+ * Span logs are not part of the span line, so spans that have any are forwarded to the delegate,
+ * normally the sender's span reporter, instead. Batches that do not fit in the queue of batches
+ * waiting for a sender are dropped.
+ */
+public class DirectIngestionReporter extends DelegatingReporter {
+  private static final Logger logger = Logger.getLogger(DirectIngestionReporter.class.getName());
+
+  private static final String PATH = "/report?f=trace";
+  private static final int INITIAL_BATCH_BYTES = 64 * 1024;
+
+  private final URL url;
+  @Nullable
+  private final String authorization;
+  private final SpanLineEncoder encoder;
+  private final Compression compression;
+  private final int minBatchSize;
+  private final int maxBatchSize;
+  private final long targetLatencyNanos;
+  private final int requestTimeoutMillis;
+  private final int maxRetries;
+  private final long retryBackoffMillis;
+  private final long closeTimeoutMillis;
+  private final BlockingQueue<Batch> pending;
+  private final Thread[] senders;
+  private final ScheduledExecutorService flusher;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  // Guarded by the lock.
+  @Nullable
+  private Batch current;
+  // Guarded by the lock.
+  private boolean closed;
+  // Guarded by the lock, the capacity new batches start with.
+  private int batchCapacity = INITIAL_BATCH_BYTES;
+  private volatile int batchSize;
+  private final AtomicInteger spansInFlight = new AtomicInteger();
+
+  private final LongAdder spansSent = new LongAdder();
+  private final LongAdder spansDropped = new LongAdder();
+  private final LongAdder spansLost = new LongAdder();
+  private final LongAdder spansFailed = new LongAdder();
+  private final LongAdder requestsFailed = new LongAdder();
+  private final LongAdder bytesEncoded = new LongAdder();
+  private final LongAdder bytesSent = new LongAdder();
+  @Nullable
+  private volatile Histogram roundTripMicros;
+  @Nullable
+  private volatile Histogram batchSizes;
+
+  public static final class Builder {
+    private String source;
+    private StaticTags staticTags;
+    private Compression compression = Compression.GZIP;
+    private int maxInFlight = 4;
+    private int queueSize = 16;
+    private int batchSize = 1000;
+    private int minBatchSize = 100;
+    private int maxBatchSize = 10000;
+    private long targetLatencyMillis = 1000;
+    private long flushIntervalMillis = 1000;
+    private long requestTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+    private int maxRetries = 3;
+    private long retryBackoffMillis = 100;
+    private long closeTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
+    private boolean virtualThreads;
+
+    /**
+     * Sets the source spans are reported with; should match the span reporter's.
+     */
+    public Builder withSource(String source) {
+      this.source = source;
+      return this;
+    }
+
+    /**
+     * Sets the tags every span is expected to carry, which are encoded once.
+     */
+    public Builder withStaticTags(StaticTags staticTags) {
+      this.staticTags = staticTags;
+      return this;
+    }
+
+    /**
+     * Sets how payloads are compressed. Defaults to {@link Compression#GZIP}.
+     */
+    public Builder compression(Compression compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Sets the number of requests in flight at once, one per sender thread. Defaults to 4. The
+     * JDK keeps up to {@code http.maxConnections}, 5 by default, idle connections per server.
+     */
+    public Builder maxInFlight(int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+      return this;
+    }
+
+    /**
+     * Sets the number of full batches that can wait for a sender. Defaults to 16.
+     */
+    public Builder queueSize(int queueSize) {
+      this.queueSize = queueSize;
+      return this;
+    }
+
+    /**
+     * Sets the initial number of spans per request. Defaults to 1000.
+     */
+    public Builder batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Sets the bounds of the number of spans per request. Default to 100 and 10000.
+     */
+    public Builder batchSizeBounds(int minBatchSize, int maxBatchSize) {
+      this.minBatchSize = minBatchSize;
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Sets the round trip time over which the batch size shrinks. Defaults to 1 second.
+     */
+    public Builder targetLatency(long duration, TimeUnit unit) {
+      this.targetLatencyMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the longest a span waits for its batch to fill up. Defaults to 1 second.
+     */
+    public Builder flushInterval(long duration, TimeUnit unit) {
+      this.flushIntervalMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the connect and read timeout of each request. Defaults to 10 seconds.
+     */
+    public Builder requestTimeout(long duration, TimeUnit unit) {
+      this.requestTimeoutMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets how often a failed request is retried and the delay before the first retry, which
+     * doubles with every further one. Default to 3 retries, the first after 100 milliseconds.
+     */
+    public Builder retries(int maxRetries, long backoff, TimeUnit unit) {
+      this.maxRetries = maxRetries;
+      this.retryBackoffMillis = unit.toMillis(backoff);
+      return this;
+    }
+
+    /**
+     * Sets the longest {@link #close()} waits for the batched spans to be sent. Spans still
+     * batched or in flight then are counted as lost. Defaults to 5 seconds.
+     */
+    public Builder closeTimeout(long duration, TimeUnit unit) {
+      this.closeTimeoutMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Runs the senders and the flusher on virtual threads, if the JDK supports them.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
+      return this;
+    }
+
+    /**
+     * @param delegate The reporter spans with span logs are forwarded to.
+     * @param server   The URL of the Wavefront server, e.g. {@code https://example.wavefront.com}.
+     * @param token    The API token, or {@code null} if the server requires none.
+     */
+    public DirectIngestionReporter build(Reporter delegate, String server,
+                                         @Nullable String token) {
+      if (maxInFlight < 1 || queueSize < 1) {
+        throw new IllegalArgumentException("Max in flight and queue size must be positive");
+      }
+      if (minBatchSize < 1 || minBatchSize > maxBatchSize) {
+        throw new IllegalArgumentException("Batch size bounds must be positive and ordered");
+      }
+      if (targetLatencyMillis < 1 || flushIntervalMillis < 1 || requestTimeoutMillis < 1 ||
+          closeTimeoutMillis < 1) {
+        throw new IllegalArgumentException("Latency, intervals and timeouts must be positive");
+      }
+      if (maxRetries < 0 || retryBackoffMillis < 0) {
+        throw new IllegalArgumentException("Retries and their backoff must not be negative");
+      }
+      if (compression == null) {
+        throw new IllegalArgumentException("A compression is required");
+      }
+      URL url;
+      try {
+        url = new URL(server.endsWith("/") ? server.substring(0, server.length() - 1) + PATH :
+            server + PATH);
+      } catch (MalformedURLException e) {
+        throw new IllegalArgumentException("Invalid server URL: " + server, e);
+      }
+      return new DirectIngestionReporter(delegate, url, token, this);
+    }
+  }
+
+  private DirectIngestionReporter(Reporter delegate, URL url, @Nullable String token,
+                                  Builder builder) {
+    super(delegate);
+    this.url = url;
+    this.authorization = token == null ? null : "Bearer " + token;
+    this.encoder = new SpanLineEncoder(builder.source, builder.staticTags);
+    this.compression = builder.compression;
+    this.minBatchSize = builder.minBatchSize;
+    this.maxBatchSize = builder.maxBatchSize;
+    this.batchSize = Math.max(Math.min(builder.batchSize, maxBatchSize), minBatchSize);
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(builder.targetLatencyMillis);
+    this.requestTimeoutMillis = (int) Math.min(builder.requestTimeoutMillis, Integer.MAX_VALUE);
+    this.maxRetries = builder.maxRetries;
+    this.retryBackoffMillis = builder.retryBackoffMillis;
+    this.closeTimeoutMillis = builder.closeTimeoutMillis;
+    this.pending = new ArrayBlockingQueue<>(builder.queueSize);
+    this.senders = new Thread[builder.maxInFlight];
+    for (int i = 0; i < senders.length; i++) {
+      senders[i] = ReportingThreads.newThread("wavefront-direct-ingestion-sender", this::send,
+          builder.virtualThreads);
+      senders[i].start();
+    }
+    this.flusher = ReportingThreads.newScheduledExecutor("wavefront-direct-ingestion-flusher",
+        builder.virtualThreads);
+    flusher.scheduleWithFixedDelay(this::flush, builder.flushIntervalMillis,
+        builder.flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Registers gauges for the batch size and the number of sent, dropped, lost and failed spans,
+   * failed requests and encoded and sent bytes, and histograms of the round trip time and of the size
+   * of the batches.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("batch_size"), () -> (() -> (double) batchSize));
+    metricsReporter.newGauge(metricName("spans.sent"), () -> (() -> (double) spansSent.sum()));
+    metricsReporter.newGauge(metricName("spans.dropped"),
+        () -> (() -> (double) spansDropped.sum()));
+    metricsReporter.newGauge(metricName("spans.lost"), () -> (() -> (double) spansLost.sum()));
+    metricsReporter.newGauge(metricName("spans.failed"),
+        () -> (() -> (double) spansFailed.sum()));
+    metricsReporter.newGauge(metricName("requests.failed"),
+        () -> (() -> (double) requestsFailed.sum()));
+    metricsReporter.newGauge(metricName("bytes.encoded"),
+        () -> (() -> (double) bytesEncoded.sum()));
+    metricsReporter.newGauge(metricName("bytes.sent"), () -> (() -> (double) bytesSent.sum()));
+    roundTripMicros = metricsReporter.newHistogram(metricName("round_trip_micros"));
+    batchSizes = metricsReporter.newHistogram(metricName("batch.size"));
+  }
+
+  private static MetricName metricName(String name) {
+    return new MetricName("direct_ingestion." + name, Collections.emptyMap());
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    List<SpanLog> spanLogs = span.getSpanLogs();
+    if (spanLogs != null && !spanLogs.isEmpty()) {
+      forward(span);
+      return;
+    }
+    ByteBuffer line = encoder.encode(span);
+    Batch full = null;
+    lock.lock();
+    try {
+      if (closed) {
+        spansDropped.increment();
+        return;
+      }
+      if (current == null) {
+        current = new Batch(batchCapacity);
+      }
+      current.add(line);
+      if (current.spans >= batchSize) {
+        full = current;
+        current = null;
+        batchCapacity = Math.max(full.length + full.length / 8, INITIAL_BATCH_BYTES);
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (full != null) {
+      enqueue(full);
+    }
+  }
+
+  /**
+   * Hands the current batch to the senders, however many spans it holds.
+   */
+  public void flush() {
+    Batch batch;
+    lock.lock();
+    try {
+      batch = current;
+      current = null;
+    } finally {
+      lock.unlock();
+    }
+    if (batch != null) {
+      enqueue(batch);
+    }
+  }
+
+  private void enqueue(Batch batch) {
+    if (!pending.offer(batch)) {
+      spansDropped.add(batch.spans);
+    }
+  }
+
+  private void send() {
+    while (true) {
+      Batch batch;
+      try {
+        batch = pending.poll(100, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (batch == null) {
+        if (isClosed() && pending.isEmpty()) {
+          return;
+        }
+        continue;
+      }
+      spansInFlight.addAndGet(batch.spans);
+      try {
+        post(batch);
+      } finally {
+        spansInFlight.addAndGet(-batch.spans);
+      }
+    }
+  }
+
+  private boolean isClosed() {
+    lock.lock();
+    try {
+      return closed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void post(Batch batch) {
+    bytesEncoded.add(batch.length);
+    byte[] body = batch.bytes;
+    int length = batch.length;
+    if (compression == Compression.GZIP) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+        gzip.write(body, 0, length);
+      } catch (IOException e) {
+        // Not thrown by an in-memory stream.
+        throw new IllegalStateException(e);
+      }
+      body = compressed.toByteArray();
+      length = body.length;
+    }
+    long backoffMillis = retryBackoffMillis;
+    for (int attempt = 0; ; attempt++) {
+      long start = System.nanoTime();
+      Exception failure;
+      boolean retryable = true;
+      try {
+        int code = request(body, length);
+        if (code / 100 == 2) {
+          sent(batch.spans, length, System.nanoTime() - start);
+          return;
+        }
+        failure = new IOException("Server responded with HTTP " + code);
+        // Other client errors would reject the same request again.
+        retryable = code >= 500 || code == 408 || code == 429;
+      } catch (IOException | RuntimeException e) {
+        failure = e;
+      }
+      requestsFailed.increment();
+      if (!retryable || attempt >= maxRetries) {
+        spansFailed.add(batch.spans);
+        logger.log(Level.WARNING, "Failed to send " + batch.spans + " spans after " +
+            (attempt + 1) + " attempts", failure);
+        return;
+      }
+      logger.log(Level.FINE, "Failed to send " + batch.spans + " spans, retrying", failure);
+      try {
+        Thread.sleep(backoffMillis);
+      } catch (InterruptedException e) {
+        // Closing timed out, which counts the batch as lost.
+        Thread.currentThread().interrupt();
+        return;
+      }
+      backoffMillis *= 2;
+    }
+  }
+
+  /**
+   * @return The response code of a request with the given body.
+   */
+  private int request(byte[] body, int length) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setUseCaches(false);
+      connection.setConnectTimeout(requestTimeoutMillis);
+      connection.setReadTimeout(requestTimeoutMillis);
+      connection.setRequestProperty("Content-Type", "application/octet-stream");
+      if (compression == Compression.GZIP) {
+        connection.setRequestProperty("Content-Encoding", "gzip");
+      }
+      if (authorization != null) {
+        connection.setRequestProperty("Authorization", authorization);
+      }
+      connection.setFixedLengthStreamingMode(length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body, 0, length);
+      }
+      int code = connection.getResponseCode();
+      // Reading the whole response lets the connection be reused.
+      drain(code >= 400 ? connection.getErrorStream() : connection.getInputStream());
+      return code;
+    } catch (IOException | RuntimeException e) {
+      connection.disconnect();
+      throw e;
+    }
+  }
+
+  private void sent(int spans, int length, long roundTripNanos) {
+    spansSent.add(spans);
+    bytesSent.add(length);
+    adaptBatchSize(spans, roundTripNanos);
+    Histogram roundTrips = roundTripMicros;
+    Histogram sizes = batchSizes;
+    if (roundTrips != null && sizes != null) {
+      roundTrips.update(TimeUnit.NANOSECONDS.toMicros(roundTripNanos));
+      sizes.update(spans);
+    }
+  }
+
+  private static void drain(@Nullable InputStream in) throws IOException {
+    if (in == null) {
+      return;
+    }
+    try (InputStream response = in) {
+      byte[] buffer = new byte[1024];
+      while (response.read(buffer) >= 0) {
+        // Discard.
+      }
+    }
+  }
+
+  private void adaptBatchSize(int spans, long roundTripNanos) {
+    int size = batchSize;
+    if (roundTripNanos > targetLatencyNanos) {
+      batchSize = Math.max(size / 2, minBatchSize);
+    } else if (spans >= size) {
+      batchSize = Math.min(size + Math.max(size / 4, 1), maxBatchSize);
+    }
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public long getSpansSent() {
+    return spansSent.sum();
+  }
+
+  public long getSpansDropped() {
+    return spansDropped.sum();
+  }
+
+  /**
+   * @return The number of spans still batched or in flight when closing timed out.
+   */
+  public long getSpansLost() {
+    return spansLost.sum();
+  }
+
+  /**
+   * @return The number of spans dropped because the last attempt to send them failed too.
+   */
+  public long getSpansFailed() {
+    return spansFailed.sum();
+  }
+
+  @Override
+  public int getFailureCount() {
+    return super.getFailureCount() + requestsFailed.intValue();
+  }
+
+  /**
+   * Stops accepting spans, sends the ones batched, waiting at most the close timeout, and closes
+   * the delegate.
+   */
+  @Override
+  public void close() {
+    Batch batch;
+    lock.lock();
+    try {
+      closed = true;
+      batch = current;
+      current = null;
+    } finally {
+      lock.unlock();
+    }
+    flusher.shutdown();
+    if (batch != null) {
+      enqueue(batch);
+    }
+    try (CloseDeadline deadline = CloseDeadline.start(closeTimeoutMillis)) {
+      for (Thread sender : senders) {
+        try {
+          long remaining = deadline.remainingMillis();
+          if (remaining > 0) {
+            sender.join(remaining);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      int lost = spansInFlight.get();
+      for (Batch unsent : pending) {
+        lost += unsent.spans;
+      }
+      if (lost > 0) {
+        spansLost.add(lost);
+        logger.log(Level.WARNING, "Timed out sending batched spans, " + lost +
+            " spans not reported");
+      }
+      for (Thread sender : senders) {
+        sender.interrupt();
+      }
+      super.close();
+    }
+  }
+
+  /**
+   * The span lines of a request.
+   */
+  private static final class Batch {
+    private byte[] bytes;
+    private int length;
+    private int spans;
+
+    Batch(int capacity) {
+      this.bytes = new byte[capacity];
+    }
+
+    void add(ByteBuffer line) {
+      int lineLength = line.remaining();
+      if (length + lineLength > bytes.length) {
+        byte[] grown = new byte[Math.max(bytes.length * 2, length + lineLength)];
+        System.arraycopy(bytes, 0, grown, 0, length);
+        bytes = grown;
+      }
+      line.get(bytes, length, lineLength);
+      length += lineLength;
+      spans++;
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reporter that sends every span to several destinations, e.g. both to a proxy and to direct
+ * ingestion while migrating from one to the other.
+ *
+ * Each destination gets its own {@link AsyncHandOffReporter}, that is its own bounded buffer and
+ * consumer thread. A slow or unreachable destination therefore only fills up and drops from its
+ * own buffer, and never holds up the application or the other destinations. For the same reason
+ * the {@link OverflowPolicy#BLOCK} policy is not supported.
+ */
+public class FanOutReporter extends CompositeReporter {
+  private static final Logger logger = Logger.getLogger(FanOutReporter.class.getName());
+
+  private static final String DESTINATION_TAG_KEY = "destination";
+
+  private final Map<String, AsyncHandOffReporter> destinations;
+  private final long closeTimeoutMillis;
+
+  public static final class Builder {
+    private final Map<String, Reporter> destinations = new LinkedHashMap<>();
+    private int queueSize = 50000;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+    private long closeTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
+    private boolean virtualThreads;
+
+    /**
+     * Adds a destination. The tracer uses the sender of the first destination's
+     * {@link WavefrontSpanReporter} for RED metrics and heartbeats.
+     *
+     * @param name     Name of the destination, used to tag its metrics.
+     * @param reporter Reporter for the destination.
+     */
+    public Builder addDestination(String name, Reporter reporter) {
+      if (destinations.putIfAbsent(name, reporter) != null) {
+        throw new IllegalArgumentException("Duplicate destination: " + name);
+      }
+      return this;
+    }
+
+    /**
+     * Sets the number of spans each destination can buffer. Defaults to 50000.
+     */
+    public Builder queueSize(int queueSize) {
+      this.queueSize = queueSize;
+      return this;
+    }
+
+    /**
+     * Sets what a destination does with a span when its buffer is full. Defaults to
+     * {@link OverflowPolicy#DROP_NEWEST}.
+     */
+    public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+      this.overflowPolicy = overflowPolicy;
+      return this;
+    }
+
+    /**
+     * Sets the longest closing waits for the spans buffered for the destinations to be
+     * reported, including the time the destinations' own stages take to close. Defaults to 5
+     * seconds.
+     */
+    public Builder closeTimeout(long duration, TimeUnit unit) {
+      this.closeTimeoutMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Runs each destination's consumer on a virtual thread, if the JDK supports them.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
+      return this;
+    }
+
+    public FanOutReporter build() {
+      if (destinations.isEmpty()) {
+        throw new IllegalArgumentException("At least one destination is required");
+      }
+      if (overflowPolicy == OverflowPolicy.BLOCK) {
+        throw new IllegalArgumentException("Destinations must not block on a full buffer");
+      }
+      Map<String, AsyncHandOffReporter> queued = new LinkedHashMap<>();
+      for (Map.Entry<String, Reporter> destination : destinations.entrySet()) {
+        AsyncHandOffReporter.Builder builder = new AsyncHandOffReporter.Builder().
+            queueSize(queueSize).overflowPolicy(overflowPolicy).
+            closeTimeout(closeTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (virtualThreads) {
+          builder.useVirtualThreads();
+        }
+        queued.put(destination.getKey(), builder.build(destination.getValue()));
+      }
+      return new FanOutReporter(queued, closeTimeoutMillis);
+    }
+  }
+
+  private FanOutReporter(Map<String, AsyncHandOffReporter> destinations,
+                         long closeTimeoutMillis) {
+    super(unwrapAll(destinations.values()));
+    this.destinations = Collections.unmodifiableMap(destinations);
+    this.closeTimeoutMillis = closeTimeoutMillis;
+  }
+
+  private static Reporter[] unwrapAll(Iterable<? extends Reporter> reporters) {
+    List<Reporter> unwrapped = new ArrayList<>();
+    for (Reporter reporter : reporters) {
+      unwrapped.addAll(Arrays.asList(DelegatingReporter.unwrap(reporter)));
+    }
+    return unwrapped.toArray(new Reporter[0]);
+  }
+
+  /**
+   * Registers the gauges of every destination's buffer, tagged with the destination's name.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    for (Map.Entry<String, AsyncHandOffReporter> destination : destinations.entrySet()) {
+      destination.getValue().setMetricsReporter(metricsReporter,
+          Collections.singletonMap(DESTINATION_TAG_KEY, destination.getKey()));
+    }
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    for (AsyncHandOffReporter destination : destinations.values()) {
+      destination.report(span);
+    }
+  }
+
+  /**
+   * @return The buffered reporter of each destination, by name.
+   */
+  public Map<String, AsyncHandOffReporter> getDestinations() {
+    return destinations;
+  }
+
+  @Override
+  public int getFailureCount() {
+    int failures = 0;
+    for (AsyncHandOffReporter destination : destinations.values()) {
+      failures += destination.getFailureCount();
+    }
+    return failures;
+  }
+
+  /**
+   * Closes every destination, reporting the spans still buffered for it. The destinations are
+   * closed in parallel, so that closing takes as long as the slowest destination rather than
+   * the sum of them, and share one {@link CloseDeadline} down to their senders.
+   */
+  @Override
+  public void close() {
+    List<Thread> closers = new ArrayList<>(destinations.size());
+    try (CloseDeadline deadline = CloseDeadline.start(closeTimeoutMillis)) {
+      for (Map.Entry<String, AsyncHandOffReporter> destination : destinations.entrySet()) {
+        Thread closer = ReportingThreads.newThread("wavefront-fan-out-closer-" +
+            destination.getKey(),
+            () -> close(destination.getKey(), destination.getValue(), deadline), false);
+        closer.start();
+        closers.add(closer);
+      }
+    }
+    for (Thread closer : closers) {
+      try {
+        closer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private static void close(String name, AsyncHandOffReporter destination,
+                            CloseDeadline deadline) {
+    try (CloseDeadline joined = deadline.join()) {
+      destination.close();
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to close destination " + name + ": " + e);
+    }
+  }
+}
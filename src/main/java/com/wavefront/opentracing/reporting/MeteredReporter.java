@@ -0,0 +1,93 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Histogram;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+/**
+ * A reporting stage that counts the spans passing through it, and optionally how long the
+ * reporter behind it takes per span, for the bundle's internal metrics.
+ *
+ * The factory places one in front of the whole pipeline, where it counts the spans the tracer
+ * finished, and one in front of the span reporter, where it counts the spans handed to the
+ * sender and times their serialization. The difference between the two is what the stages in
+ * between dropped, sampled away or still buffer.
+ */
+public class MeteredReporter extends DelegatingReporter {
+  private final String name;
+  private final boolean recordLatency;
+
+  private final LongAdder spans = new LongAdder();
+  @Nullable
+  private volatile Histogram latencyMicros;
+
+  public static final class Builder {
+    private boolean recordLatency;
+
+    /**
+     * Records how long the delegate takes per span, in a histogram. Costs two reads of the clock
+     * per span.
+     */
+    public Builder recordLatency() {
+      this.recordLatency = true;
+      return this;
+    }
+
+    /**
+     * @param delegate The reporter spans are forwarded to.
+     * @param name     The prefix of the metric names, e.g. {@code pipeline}.
+     */
+    public MeteredReporter build(Reporter delegate, String name) {
+      if (name == null || name.isEmpty()) {
+        throw new IllegalArgumentException("A name is required");
+      }
+      return new MeteredReporter(delegate, name, recordLatency);
+    }
+  }
+
+  private MeteredReporter(Reporter delegate, String name, boolean recordLatency) {
+    super(delegate);
+    this.name = name;
+    this.recordLatency = recordLatency;
+  }
+
+  /**
+   * Registers gauges for the number of spans and failures, and the latency histogram if
+   * latency is recorded.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("spans"), () -> (() -> (double) spans.sum()));
+    metricsReporter.newGauge(metricName("failures"), () -> (() -> (double) getFailureCount()));
+    if (recordLatency) {
+      latencyMicros = metricsReporter.newHistogram(metricName("latency_micros"));
+    }
+  }
+
+  private MetricName metricName(String metric) {
+    return new MetricName(name + "." + metric, Collections.emptyMap());
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    spans.increment();
+    Histogram histogram = latencyMicros;
+    if (histogram == null) {
+      forward(span);
+      return;
+    }
+    long start = System.nanoTime();
+    forward(span);
+    histogram.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+  }
+
+  public long getSpans() {
+    return spans.sum();
+  }
+}
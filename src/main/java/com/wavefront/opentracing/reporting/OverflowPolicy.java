@@ -0,0 +1,45 @@
+package com.wavefront.opentracing.reporting;
+
+import javax.annotation.Nullable;
+
+/**
+ * What a bounded reporting stage does with a span when its buffer is full.
+ */
+public enum OverflowPolicy {
+  /**
+   * Evict the oldest buffered span to make room for the new one.
+   */
+  DROP_OLDEST("drop-oldest"),
+  /**
+   * Drop the new span and keep the buffered ones.
+   */
+  DROP_NEWEST("drop-newest"),
+  /**
+   * Make the thread that finished the span wait until there is room.
+   */
+  BLOCK("block");
+
+  private final String value;
+
+  OverflowPolicy(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * @return The policy for a configuration value such as {@code drop-oldest}, or {@code null} if
+   * there is none.
+   */
+  @Nullable
+  public static OverflowPolicy fromValue(String value) {
+    for (OverflowPolicy policy : values()) {
+      if (policy.value.equalsIgnoreCase(value)) {
+        return policy;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,519 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+/**
+ * A reporting stage that sends spans to the tracing ports of one or more Wavefront proxies over
+ * a pool of connections, instead of over the sender's single connection.
+ *
+ * Spans are encoded into span lines with a {@link SpanLineEncoder} and routed by the hash of
+ * their trace ID, so that all spans of a trace go over the same connection, in the order they
+ * were reported. Each connection has a bounded queue of span lines and a writer thread of its own,
+ * which connects, collects the queued lines in a write buffer and writes a span line that does
+ * not fit together with the buffered ones in one gathering write. The buffers are written out at
+ * the flush interval. Connections are spread over the proxies round robin.
+ *
+ * Reporting a span only puts its line in the queue, so the reporting thread never waits on a
+ * connect or a write; spans whose connection's queue is full are dropped. A connection that fails
+ * is closed, and the spans it had buffered are dropped. Until it is reconnected, which is tried
+ * again after the reconnect interval, the spans routed to it, including the ones still queued,
+ * go to the next connection that is up.
+ *
+ * Span logs are not part of the span line, so spans that have any are forwarded to the delegate,
+ * normally the sender's span reporter, instead.
+ */
+public class ProxyConnectionPoolReporter extends DelegatingReporter {
+  private static final Logger logger =
+      Logger.getLogger(ProxyConnectionPoolReporter.class.getName());
+
+  // Queued to have a writer write its buffer out.
+  private static final byte[] FLUSH = new byte[0];
+  // How often writers check whether the others are done, once closing.
+  private static final long CLOSE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final SpanLineEncoder encoder;
+  private final Connection[] connections;
+  private final int connectTimeoutMillis;
+  private final long reconnectIntervalNanos;
+  private final long flushIntervalNanos;
+  private final long closeTimeoutMillis;
+  private volatile boolean closed;
+  // The span lines in all queues, including the ones being taken over from a connection that
+  // went down, so that no writer stops while another may still hand it lines.
+  private final AtomicInteger queuedLines = new AtomicInteger();
+
+  private final LongAdder spansSent = new LongAdder();
+  private final LongAdder spansDropped = new LongAdder();
+  private final LongAdder connectsFailed = new LongAdder();
+  private final LongAdder writesFailed = new LongAdder();
+  private final LongAdder writes = new LongAdder();
+  private final LongAdder bytesSent = new LongAdder();
+
+  public static final class Builder {
+    private String source;
+    private StaticTags staticTags;
+    private int connectionsPerProxy = 4;
+    private int queueSize = 10000;
+    private int bufferSize = 64 * 1024;
+    private long flushIntervalMillis = 1000;
+    private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
+    private long reconnectIntervalMillis = 1000;
+    private long closeTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
+    private boolean virtualThreads;
+
+    /**
+     * Sets the source spans are reported with; should match the span reporter's.
+     */
+    public Builder withSource(String source) {
+      this.source = source;
+      return this;
+    }
+
+    /**
+     * Sets the tags every span is expected to carry, which are encoded once.
+     */
+    public Builder withStaticTags(StaticTags staticTags) {
+      this.staticTags = staticTags;
+      return this;
+    }
+
+    /**
+     * Sets the number of connections to each proxy. Defaults to 4.
+     */
+    public Builder connectionsPerProxy(int connectionsPerProxy) {
+      this.connectionsPerProxy = connectionsPerProxy;
+      return this;
+    }
+
+    /**
+     * Sets the number of span lines that can wait for each connection's writer. Defaults to
+     * 10000.
+     */
+    public Builder queueSize(int queueSize) {
+      this.queueSize = queueSize;
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes of the write buffer of each connection. Defaults to 64 KiB.
+     */
+    public Builder bufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * Sets the longest a span waits in a write buffer. Defaults to 1 second.
+     */
+    public Builder flushInterval(long duration, TimeUnit unit) {
+      this.flushIntervalMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the timeout of connecting to a proxy. Defaults to 5 seconds.
+     */
+    public Builder connectTimeout(long duration, TimeUnit unit) {
+      this.connectTimeoutMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets how long a failed connection is left alone before it is reconnected. Defaults to 1
+     * second.
+     */
+    public Builder reconnectInterval(long duration, TimeUnit unit) {
+      this.reconnectIntervalMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the longest {@link #close()} waits for the queued spans to be written. Spans still
+     * queued or buffered then are dropped. Defaults to 5 seconds.
+     */
+    public Builder closeTimeout(long duration, TimeUnit unit) {
+      this.closeTimeoutMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Runs the writers on virtual threads, if the JDK supports them.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
+      return this;
+    }
+
+    /**
+     * @param delegate The reporter spans with span logs are forwarded to.
+     * @param proxies  The addresses of the tracing ports of the proxies. Unresolved ones are
+     *                 resolved on every connect.
+     */
+    public ProxyConnectionPoolReporter build(Reporter delegate, List<InetSocketAddress> proxies) {
+      if (proxies.isEmpty()) {
+        throw new IllegalArgumentException("At least one proxy is required");
+      }
+      if (connectionsPerProxy < 1 || queueSize < 1 || bufferSize < 1) {
+        throw new IllegalArgumentException("Connections, queue and buffer size must be positive");
+      }
+      if (flushIntervalMillis < 1 || connectTimeoutMillis < 1 || reconnectIntervalMillis < 1 ||
+          closeTimeoutMillis < 1) {
+        throw new IllegalArgumentException("Intervals and timeouts must be positive");
+      }
+      return new ProxyConnectionPoolReporter(delegate, new ArrayList<>(proxies), this);
+    }
+  }
+
+  private ProxyConnectionPoolReporter(Reporter delegate, List<InetSocketAddress> proxies,
+                                      Builder builder) {
+    super(delegate);
+    this.encoder = new SpanLineEncoder(builder.source, builder.staticTags);
+    this.connectTimeoutMillis = (int) Math.min(builder.connectTimeoutMillis, Integer.MAX_VALUE);
+    this.reconnectIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.reconnectIntervalMillis);
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushIntervalMillis);
+    this.closeTimeoutMillis = builder.closeTimeoutMillis;
+    this.connections = new Connection[proxies.size() * builder.connectionsPerProxy];
+    for (int i = 0; i < connections.length; i++) {
+      connections[i] = new Connection(i, proxies.get(i % proxies.size()), builder);
+    }
+    for (Connection connection : connections) {
+      connection.writer.start();
+    }
+  }
+
+  /**
+   * Registers gauges for the number of open connections, sent and dropped spans, failed
+   * connects and writes, writes and sent bytes.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("connections.open"),
+        () -> (() -> (double) getOpenConnections()));
+    metricsReporter.newGauge(metricName("spans.sent"), () -> (() -> (double) spansSent.sum()));
+    metricsReporter.newGauge(metricName("spans.dropped"),
+        () -> (() -> (double) spansDropped.sum()));
+    metricsReporter.newGauge(metricName("connects.failed"),
+        () -> (() -> (double) connectsFailed.sum()));
+    metricsReporter.newGauge(metricName("writes.failed"),
+        () -> (() -> (double) writesFailed.sum()));
+    metricsReporter.newGauge(metricName("writes"), () -> (() -> (double) writes.sum()));
+    metricsReporter.newGauge(metricName("bytes.sent"), () -> (() -> (double) bytesSent.sum()));
+  }
+
+  private static MetricName metricName(String name) {
+    return new MetricName("proxy_connections." + name, Collections.emptyMap());
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    List<SpanLog> spanLogs = span.getSpanLogs();
+    if (spanLogs != null && !spanLogs.isEmpty()) {
+      forward(span);
+      return;
+    }
+    if (closed) {
+      spansDropped.increment();
+      return;
+    }
+    ByteBuffer encoded = encoder.encode(span);
+    // The encoder reuses its buffer for the thread's next span.
+    byte[] line = new byte[encoded.remaining()];
+    encoded.get(line);
+    route(line, connectionIndex(span.context().getTraceId(), connections.length));
+  }
+
+  /**
+   * Queues a span line for the connection at the index or, while it is down, the next one up.
+   */
+  private void route(byte[] line, int index) {
+    for (int i = 0; i < connections.length; i++) {
+      if (connections[(index + i) % connections.length].offer(line)) {
+        return;
+      }
+    }
+    spansDropped.increment();
+  }
+
+  /**
+   * @return The connection the spans of a trace are routed to while it is up.
+   */
+  static int connectionIndex(UUID traceId, int connections) {
+    long hash = traceId.getMostSignificantBits() ^ traceId.getLeastSignificantBits();
+    // Mixes the bits, as the low bits of some trace IDs vary little.
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return (int) Math.floorMod(hash, (long) connections);
+  }
+
+  /**
+   * Has the writers write the spans queued so far and in their write buffers out, without
+   * waiting for them.
+   */
+  public void flush() {
+    for (Connection connection : connections) {
+      // A full queue keeps its writer busy anyway.
+      connection.lines.offer(FLUSH);
+    }
+  }
+
+  public int getOpenConnections() {
+    int open = 0;
+    for (Connection connection : connections) {
+      if (connection.channel != null) {
+        open++;
+      }
+    }
+    return open;
+  }
+
+  public long getSpansSent() {
+    return spansSent.sum();
+  }
+
+  public long getSpansDropped() {
+    return spansDropped.sum();
+  }
+
+  @Override
+  public int getFailureCount() {
+    return super.getFailureCount() + connectsFailed.intValue() + writesFailed.intValue();
+  }
+
+  /**
+   * Stops accepting spans, has the writers write the queued ones out and close the connections,
+   * waiting at most the close timeout, and closes the delegate.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    flush();
+    try (CloseDeadline deadline = CloseDeadline.start(closeTimeoutMillis)) {
+      for (Connection connection : connections) {
+        try {
+          long remaining = deadline.remainingMillis();
+          if (remaining > 0) {
+            connection.writer.join(remaining);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      for (Connection connection : connections) {
+        // Drops the spans a writer still holds once closing timed out.
+        connection.writer.interrupt();
+      }
+      super.close();
+    }
+  }
+
+  /**
+   * A connection to a proxy, its queue of span lines and the writer that writes them.
+   */
+  private final class Connection implements Runnable {
+    private final int index;
+    private final InetSocketAddress address;
+    private final BlockingQueue<byte[]> lines;
+    private final ByteBuffer buffer;
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+    private final Thread writer;
+    // Written by the writer, read by the metrics.
+    @Nullable
+    private volatile SocketChannel channel;
+    // Only used by the writer.
+    private int bufferedSpans;
+    // Written by the writer, when to try connecting again after a failure.
+    private volatile long reconnectAtNanos;
+    private volatile boolean failed;
+
+    private Connection(int index, InetSocketAddress address, Builder builder) {
+      this.index = index;
+      this.address = address;
+      this.lines = new ArrayBlockingQueue<>(builder.queueSize);
+      this.buffer = ByteBuffer.allocateDirect(builder.bufferSize);
+      this.writer = ReportingThreads.newThread("wavefront-proxy-connection-writer", this,
+          builder.virtualThreads);
+    }
+
+    /**
+     * @return Whether the connection took the span line, {@code false} if it is down. A line
+     *     that does not fit in the queue is dropped.
+     */
+    private boolean offer(byte[] line) {
+      if (failed && System.nanoTime() - reconnectAtNanos < 0) {
+        return false;
+      }
+      queuedLines.incrementAndGet();
+      if (!lines.offer(line)) {
+        queuedLines.decrementAndGet();
+        spansDropped.increment();
+      }
+      return true;
+    }
+
+    @Override
+    public void run() {
+      long flushAtNanos = System.nanoTime() + flushIntervalNanos;
+      try {
+        while (!closed || queuedLines.get() > 0) {
+          long waitNanos = flushAtNanos - System.nanoTime();
+          if (closed) {
+            waitNanos = Math.min(waitNanos, CLOSE_POLL_NANOS);
+          }
+          byte[] line = waitNanos > 0 ? lines.poll(waitNanos, TimeUnit.NANOSECONDS) : null;
+          if (line == null || line == FLUSH) {
+            if (waitNanos <= 0 || line == FLUSH) {
+              flush();
+              flushAtNanos = System.nanoTime() + flushIntervalNanos;
+            }
+          } else {
+            write(line);
+            queuedLines.decrementAndGet();
+          }
+        }
+        flush();
+      } catch (InterruptedException e) {
+        int dropped = bufferedSpans;
+        for (byte[] line; (line = lines.poll()) != null; ) {
+          if (line != FLUSH) {
+            dropped++;
+          }
+        }
+        spansDropped.add(dropped);
+      } finally {
+        SocketChannel channel = this.channel;
+        this.channel = null;
+        if (channel != null) {
+          closeQuietly(channel);
+        }
+      }
+    }
+
+    private void write(byte[] line) {
+      SocketChannel channel = this.channel;
+      if (channel == null) {
+        channel = connect();
+        if (channel == null) {
+          // Queued before the connection went down.
+          route(line, index + 1);
+          return;
+        }
+      }
+      if (line.length <= buffer.remaining()) {
+        buffer.put(line);
+        bufferedSpans++;
+        return;
+      }
+      buffer.flip();
+      ByteBuffer unbuffered = ByteBuffer.wrap(line);
+      gather[0] = buffer;
+      gather[1] = unbuffered;
+      long bytes = line.length + buffer.remaining();
+      try {
+        while (unbuffered.hasRemaining()) {
+          channel.write(gather);
+          writes.increment();
+        }
+        spansSent.add(bufferedSpans + 1);
+        bytesSent.add(bytes);
+      } catch (IOException e) {
+        spansDropped.add(bufferedSpans + 1);
+        fail(e);
+      } finally {
+        buffer.clear();
+        bufferedSpans = 0;
+        gather[1] = null;
+      }
+    }
+
+    private void flush() {
+      SocketChannel channel = this.channel;
+      if (channel == null || bufferedSpans == 0) {
+        return;
+      }
+      buffer.flip();
+      long bytes = buffer.remaining();
+      try {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+          writes.increment();
+        }
+        spansSent.add(bufferedSpans);
+        bytesSent.add(bytes);
+      } catch (IOException e) {
+        spansDropped.add(bufferedSpans);
+        fail(e);
+      } finally {
+        buffer.clear();
+        bufferedSpans = 0;
+      }
+    }
+
+    @Nullable
+    private SocketChannel connect() {
+      if (failed && System.nanoTime() - reconnectAtNanos < 0) {
+        return null;
+      }
+      SocketChannel channel = null;
+      try {
+        channel = SocketChannel.open();
+        // Resolves the host on every connect, in case the proxies moved.
+        channel.socket().connect(address.isUnresolved() ?
+            new InetSocketAddress(address.getHostString(), address.getPort()) : address,
+            connectTimeoutMillis);
+        this.channel = channel;
+        failed = false;
+        return channel;
+      } catch (IOException e) {
+        connectsFailed.increment();
+        logger.log(Level.FINE, "Failed to connect to proxy " + address, e);
+        if (channel != null) {
+          closeQuietly(channel);
+        }
+        reconnectAtNanos = System.nanoTime() + reconnectIntervalNanos;
+        failed = true;
+        return null;
+      }
+    }
+
+    private void fail(IOException e) {
+      writesFailed.increment();
+      logger.log(Level.FINE, "Failed to write spans to proxy " + address, e);
+      SocketChannel channel = this.channel;
+      this.channel = null;
+      if (channel != null) {
+        closeQuietly(channel);
+      }
+      reconnectAtNanos = System.nanoTime() + reconnectIntervalNanos;
+      failed = true;
+    }
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.log(Level.FINE, "Failed to close proxy connection", e);
+    }
+  }
+}
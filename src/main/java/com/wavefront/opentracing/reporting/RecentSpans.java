@@ -0,0 +1,298 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.sdk.common.Pair;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+/**
+ * A fixed-capacity ring of the most recently finished spans, kept for inspecting them locally,
+ * e.g. over JMX while the proxy is down.
+ *
+ * Spans are encoded into span lines with a {@link SpanLineEncoder} and stored off-heap, in one
+ * direct buffer of a slot per span. Lines longer than a slot are cut off. Next to the lines, a
+ * small on-heap index of each slot's operation name, trace ID, error flag and duration
+ * answers queries without decoding lines.
+ *
+ * Recording a span takes the next slot round robin, overwriting the oldest span, and locks just
+ * that slot with a compare-and-set, so that threads finishing spans do not contend. A span whose
+ * slot is busy, because it is being read or the ring came full circle while it was written, is
+ * skipped rather than waited for. Queries lock one slot at a time and may be slow; they are
+ * meant for people, not for the request path.
+ */
+public final class RecentSpans implements RecentSpansMBean {
+  private static final String ERROR_TAG = "error";
+
+  private final int capacity;
+  private final int maxSpanBytes;
+  private final SpanLineEncoder encoder;
+  @Nullable
+  private final TagFilter tagFilter;
+  private final ByteBuffer storage;
+
+  // 0 if a slot is free, 1 while it is written or read.
+  private final AtomicIntegerArray locks;
+  // The index, guarded by the lock of each slot. A slot's sequence is that of its span plus
+  // one, 0 while it is empty.
+  private final long[] sequences;
+  private final String[] operationNames;
+  private final long[] traceIdHighs;
+  private final long[] traceIdLows;
+  private final long[] durationMicros;
+  private final boolean[] errors;
+  private final int[] lengths;
+
+  private final AtomicLong recorded = new AtomicLong();
+  private final LongAdder skipped = new LongAdder();
+
+  public static final class Builder {
+    private int capacity = 10000;
+    private int maxSpanBytes = 1024;
+    private String source;
+    private StaticTags staticTags;
+    private TagFilter tagFilter;
+
+    /**
+     * Sets the number of spans held. Defaults to 10000.
+     */
+    public Builder capacity(int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes of the slot of each span. Defaults to 1024.
+     */
+    public Builder maxSpanBytes(int maxSpanBytes) {
+      this.maxSpanBytes = maxSpanBytes;
+      return this;
+    }
+
+    /**
+     * Sets the source in the span lines; should match the span reporter's.
+     */
+    public Builder withSource(String source) {
+      this.source = source;
+      return this;
+    }
+
+    /**
+     * Sets the tags every span is expected to carry, which are encoded once.
+     */
+    public Builder withStaticTags(StaticTags staticTags) {
+      this.staticTags = staticTags;
+      return this;
+    }
+
+    /**
+     * Sets the rules for the tags that are held, the same as those for the tags reported.
+     */
+    public Builder withTagFilter(TagFilter tagFilter) {
+      this.tagFilter = tagFilter;
+      return this;
+    }
+
+    public RecentSpans build() {
+      if (capacity < 1 || maxSpanBytes < 1) {
+        throw new IllegalArgumentException("Capacity and max span bytes must be positive");
+      }
+      if ((long) capacity * maxSpanBytes > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Capacity times max span bytes must be under 2 GiB");
+      }
+      return new RecentSpans(this);
+    }
+  }
+
+  private RecentSpans(Builder builder) {
+    this.capacity = builder.capacity;
+    this.maxSpanBytes = builder.maxSpanBytes;
+    this.encoder = new SpanLineEncoder(builder.source, builder.staticTags);
+    this.tagFilter = builder.tagFilter;
+    this.storage = ByteBuffer.allocateDirect(capacity * maxSpanBytes);
+    this.locks = new AtomicIntegerArray(capacity);
+    this.sequences = new long[capacity];
+    this.operationNames = new String[capacity];
+    this.traceIdHighs = new long[capacity];
+    this.traceIdLows = new long[capacity];
+    this.durationMicros = new long[capacity];
+    this.errors = new boolean[capacity];
+    this.lengths = new int[capacity];
+  }
+
+  /**
+   * Holds the span in place of the oldest one.
+   */
+  public void record(WavefrontSpan span) {
+    long sequence = recorded.getAndIncrement();
+    int slot = (int) (sequence % capacity);
+    if (!locks.compareAndSet(slot, 0, 1)) {
+      skipped.increment();
+      return;
+    }
+    try {
+      List<Pair<String, String>> tags = span.getTagsAsList();
+      List<Pair<String, String>> filtered =
+          tagFilter == null ? tags : tagFilter.filter(tags, false);
+      WavefrontSpanContext context = span.context();
+      ByteBuffer line = filtered == tags ? encoder.encode(span) :
+          encoder.encode(span.getOperationName(), span.getStartTimeMicros() / 1000,
+              span.getDurationMicroseconds() / 1000, context.getTraceId(), context.getSpanId(),
+              SpanReferences.spanIds(span.getParents()),
+              SpanReferences.spanIds(span.getFollows()), filtered);
+      int length = Math.min(line.remaining(), maxSpanBytes);
+      int offset = slot * maxSpanBytes;
+      int position = line.position();
+      for (int i = 0; i < length; i++) {
+        storage.put(offset + i, line.get(position + i));
+      }
+      sequences[slot] = sequence + 1;
+      operationNames[slot] = span.getOperationName();
+      traceIdHighs[slot] = context.getTraceId().getMostSignificantBits();
+      traceIdLows[slot] = context.getTraceId().getLeastSignificantBits();
+      durationMicros[slot] = span.getDurationMicroseconds();
+      errors[slot] = hasError(tags);
+      lengths[slot] = length;
+    } finally {
+      locks.set(slot, 0);
+    }
+  }
+
+  private static boolean hasError(List<Pair<String, String>> tags) {
+    for (int i = 0; i < tags.size(); i++) {
+      Pair<String, String> tag = tags.get(i);
+      if (ERROR_TAG.equals(tag._1) && "true".equalsIgnoreCase(tag._2)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @Override
+  public long getSpansRecorded() {
+    return recorded.get();
+  }
+
+  @Override
+  public long getSpansSkipped() {
+    return skipped.sum();
+  }
+
+  @Override
+  public String[] findRecent(int limit) {
+    return find(null, null, false, -1, limit);
+  }
+
+  @Override
+  public String[] findByTraceId(String traceId) {
+    return find(null, UUID.fromString(traceId), false, -1, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public String[] findByOperation(String operationName, int limit) {
+    return find(operationName, null, false, -1, limit);
+  }
+
+  @Override
+  public String[] findErrors(int limit) {
+    return find(null, null, true, -1, limit);
+  }
+
+  @Override
+  public String[] findSlowest(String operationName, double percentile, int limit) {
+    String operation = operationName == null || operationName.isEmpty() ? null : operationName;
+    long threshold = latencyPercentileMicros(operation, percentile);
+    return find(operation, null, false, threshold, limit);
+  }
+
+  @Override
+  public long getLatencyPercentileMicros(String operationName, double percentile) {
+    return latencyPercentileMicros(operationName == null || operationName.isEmpty() ? null :
+        operationName, percentile);
+  }
+
+  private long latencyPercentileMicros(@Nullable String operationName, double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100");
+    }
+    long[] durations = new long[capacity];
+    int count = 0;
+    for (int slot = 0; slot < capacity; slot++) {
+      lock(slot);
+      try {
+        if (sequences[slot] != 0 &&
+            (operationName == null || operationName.equals(operationNames[slot]))) {
+          durations[count++] = durationMicros[slot];
+        }
+      } finally {
+        locks.set(slot, 0);
+      }
+    }
+    if (count == 0) {
+      return 0;
+    }
+    Arrays.sort(durations, 0, count);
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return durations[Math.max(rank, 1) - 1];
+  }
+
+  /**
+   * @param minDurationMicros The least duration of the spans to find, or -1 for any.
+   * @return The lines of the matching spans held, newest first.
+   */
+  private String[] find(@Nullable String operationName, @Nullable UUID traceId,
+                        boolean errorsOnly, long minDurationMicros, int limit) {
+    List<String> lines = new ArrayList<>();
+    long newest = recorded.get() - 1;
+    long oldest = Math.max(newest - capacity + 1, 0);
+    byte[] bytes = new byte[maxSpanBytes];
+    for (long sequence = newest; sequence >= oldest && lines.size() < limit; sequence--) {
+      int slot = (int) (sequence % capacity);
+      lock(slot);
+      int length;
+      try {
+        if (sequences[slot] != sequence + 1 ||
+            (operationName != null && !operationName.equals(operationNames[slot])) ||
+            (traceId != null && (traceIdHighs[slot] != traceId.getMostSignificantBits() ||
+                traceIdLows[slot] != traceId.getLeastSignificantBits())) ||
+            (errorsOnly && !errors[slot]) || durationMicros[slot] < minDurationMicros) {
+          continue;
+        }
+        length = lengths[slot];
+        int offset = slot * maxSpanBytes;
+        for (int i = 0; i < length; i++) {
+          bytes[i] = storage.get(offset + i);
+        }
+      } finally {
+        locks.set(slot, 0);
+      }
+      if (length > 0 && bytes[length - 1] == '\n') {
+        length--;
+      }
+      lines.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+    }
+    return lines.toArray(new String[0]);
+  }
+
+  private void lock(int slot) {
+    while (!locks.compareAndSet(slot, 0, 1)) {
+      // Slots are only held while a span is copied in or out.
+      Thread.yield();
+    }
+  }
+}
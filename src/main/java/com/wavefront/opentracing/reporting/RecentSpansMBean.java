@@ -0,0 +1,36 @@
+package com.wavefront.opentracing.reporting;
+
+/**
+ * The JMX view of {@link RecentSpans}. Spans are returned as span lines, newest first.
+ */
+public interface RecentSpansMBean {
+
+  int getCapacity();
+
+  long getSpansRecorded();
+
+  long getSpansSkipped();
+
+  String[] findRecent(int limit);
+
+  String[] findByTraceId(String traceId);
+
+  String[] findByOperation(String operationName, int limit);
+
+  String[] findErrors(int limit);
+
+  /**
+   * @param operationName The operation to look at, or empty for all.
+   * @param percentile    The latency percentile, e.g. {@code 99}.
+   * @return The spans at least as slow as the percentile of the spans held.
+   */
+  String[] findSlowest(String operationName, double percentile, int limit);
+
+  /**
+   * @param operationName The operation to look at, or empty for all.
+   * @param percentile    The latency percentile, e.g. {@code 99}.
+   * @return The percentile of the durations in microseconds of the spans held, 0 if there are
+   *     none.
+   */
+  long getLatencyPercentileMicros(String operationName, double percentile);
+}
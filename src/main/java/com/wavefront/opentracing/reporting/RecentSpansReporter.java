@@ -0,0 +1,80 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A reporting stage that holds every span in {@link RecentSpans} before forwarding it, and
+ * registers them as an MBean named
+ * {@code com.wavefront.opentracing:type=RecentSpans,application=...,service=...}, with an
+ * {@code instance} number added if a tracer of the same service registered first.
+ */
+public class RecentSpansReporter extends DelegatingReporter {
+  private static final Logger logger = Logger.getLogger(RecentSpansReporter.class.getName());
+  private static final String DOMAIN = "com.wavefront.opentracing";
+
+  private final RecentSpans recentSpans;
+  private final ObjectName objectName;
+
+  /**
+   * @param delegate    The reporter spans are forwarded to.
+   * @param recentSpans The ring spans are held in.
+   * @param application The application the MBean is named after.
+   * @param service     The service the MBean is named after.
+   */
+  public RecentSpansReporter(Reporter delegate, RecentSpans recentSpans, String application,
+                             String service) throws JMException {
+    super(delegate);
+    this.recentSpans = recentSpans;
+    this.objectName = register(recentSpans, application, service);
+  }
+
+  private static ObjectName register(RecentSpans recentSpans, String application,
+                                     String service) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    String name = DOMAIN + ":type=RecentSpans,application=" + ObjectName.quote(application) +
+        ",service=" + ObjectName.quote(service);
+    for (int instance = 1; ; instance++) {
+      ObjectName objectName = new ObjectName(instance == 1 ? name : name + ",instance=" +
+          instance);
+      try {
+        server.registerMBean(recentSpans, objectName);
+        return objectName;
+      } catch (InstanceAlreadyExistsException e) {
+        // Another tracer of the service holds the name.
+      }
+    }
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    recentSpans.record(span);
+    forward(span);
+  }
+
+  public RecentSpans getRecentSpans() {
+    return recentSpans;
+  }
+
+  public ObjectName getObjectName() {
+    return objectName;
+  }
+
+  @Override
+  public void close() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException e) {
+      logger.log(Level.FINE, "Failed to unregister recent spans", e);
+    }
+    super.close();
+  }
+}
@@ -0,0 +1,198 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Shares span reporters, along with their senders and internal metrics reporters, between
+ * tracers that report to the same place.
+ *
+ * Frameworks may resolve a tracer more than once, and every tracer used to get its own sender,
+ * i.e. its own sockets, threads and buffers. Instead, {@link #acquire} hands out a reference
+ * counted {@link Lease} on the reporting set up for a key, typically derived from the effective
+ * reporting configuration. The reporting is created by the first acquisition of a key and closed
+ * when the last lease on it is closed, so repeated tracers cost no more connections than one.
+ * Creating the reporting only holds up acquisitions of the same key, which wait for it.
+ */
+public final class ReportingRegistry {
+  private static final Logger logger = Logger.getLogger(ReportingRegistry.class.getName());
+
+  private static final ReportingRegistry INSTANCE = new ReportingRegistry();
+
+  private final Map<Object, Registration> registrations = new HashMap<>();
+
+  ReportingRegistry() {
+  }
+
+  /**
+   * @return The registry shared by the whole class loader.
+   */
+  public static ReportingRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Creates the reporting for a key that is not registered yet.
+   */
+  @FunctionalInterface
+  public interface Factory {
+    Entry create() throws Exception;
+  }
+
+  /**
+   * A registered span reporter and the internal metrics reporter that goes with it.
+   */
+  public static final class Entry {
+    private final Reporter reporter;
+    @Nullable
+    private final WavefrontInternalReporter metricsReporter;
+
+    /**
+     * @param reporter        The shared reporter, closed along with its sender once unused.
+     * @param metricsReporter The internal metrics reporter on the same sender, stopped once unused.
+     */
+    public Entry(Reporter reporter, @Nullable WavefrontInternalReporter metricsReporter) {
+      this.reporter = reporter;
+      this.metricsReporter = metricsReporter;
+    }
+
+    private void close() {
+      if (metricsReporter != null) {
+        // Report once more before the sender is closed, so that what happened since the last
+        // report, e.g. spans lost while closing, is not lost as well.
+        try {
+          metricsReporter.report();
+        } catch (RuntimeException e) {
+          logger.log(Level.FINE, "Failed to report internal metrics", e);
+        }
+        metricsReporter.stop();
+      }
+      try {
+        reporter.close();
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to close shared span reporter: " + e);
+      }
+    }
+  }
+
+  /**
+   * The reporting registered for a key, created by the first acquisition of the key, and the
+   * number of acquisitions that hold or wait for it.
+   */
+  private static final class Registration {
+    private final FutureTask<Entry> creation;
+    private int references;
+
+    private Registration(Factory factory) {
+      this.creation = new FutureTask<>(factory::create);
+    }
+  }
+
+  /**
+   * Returns a lease on the reporting registered for the key, creating it first if needed. The
+   * reporting is created outside the registry's lock; acquisitions of the same key meanwhile wait
+   * for it, and fail along with it.
+   *
+   * @param key     Identifies the reporting; must implement {@code equals} and {@code hashCode}.
+   * @param factory Creates the reporting if there is none for the key.
+   */
+  public Lease acquire(Object key, Factory factory) throws Exception {
+    Registration registration;
+    boolean creating = false;
+    synchronized (this) {
+      registration = registrations.get(key);
+      if (registration == null) {
+        registration = new Registration(factory);
+        registrations.put(key, registration);
+        creating = true;
+      }
+      registration.references++;
+    }
+    if (creating) {
+      registration.creation.run();
+    }
+    try {
+      return new Lease(key, registration, registration.creation.get());
+    } catch (ExecutionException e) {
+      synchronized (this) {
+        // Let the next acquisition try again.
+        registrations.remove(key, registration);
+      }
+      release(key, registration);
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw (Exception) cause;
+    } catch (InterruptedException e) {
+      release(key, registration);
+      throw e;
+    }
+  }
+
+  private void release(Object key, Registration registration) {
+    synchronized (this) {
+      if (--registration.references > 0) {
+        return;
+      }
+      registrations.remove(key, registration);
+    }
+    Entry entry;
+    try {
+      entry = registration.creation.get();
+    } catch (ExecutionException | InterruptedException e) {
+      // There is nothing to close.
+      return;
+    }
+    entry.close();
+  }
+
+  /**
+   * @return The number of keys with reporting currently in use or being created.
+   */
+  public synchronized int size() {
+    return registrations.size();
+  }
+
+  /**
+   * A reference to shared reporting. Spans are forwarded to the shared reporter, and closing the
+   * lease releases the reference instead of closing the reporter.
+   */
+  public final class Lease extends DelegatingReporter {
+    private final Object key;
+    private final Registration registration;
+    private final Entry entry;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Lease(Object key, Registration registration, Entry entry) {
+      super(entry.reporter);
+      this.key = key;
+      this.registration = registration;
+      this.entry = entry;
+    }
+
+    /**
+     * @return The internal metrics reporter of the shared reporting, if it has one.
+     */
+    @Nullable
+    public WavefrontInternalReporter getMetricsReporter() {
+      return entry.metricsReporter;
+    }
+
+    @Override
+    public void close() {
+      if (released.compareAndSet(false, true)) {
+        release(key, registration);
+      }
+    }
+  }
+}
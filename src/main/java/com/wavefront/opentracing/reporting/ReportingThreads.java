@@ -0,0 +1,103 @@
+package com.wavefront.opentracing.reporting;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Creates the background threads of the reporting stages, either as daemon platform threads or,
+ * on JDK 21 and later, as virtual threads.
+ *
+ * The bundle is built for Java 8, so virtual threads are created through reflection. When they
+ * are asked for but not available, platform threads are created instead.
+ */
+public final class ReportingThreads {
+  private static final Logger logger = Logger.getLogger(ReportingThreads.class.getName());
+
+  // Thread.ofVirtual() and Thread.Builder#name(String) and #unstarted(Runnable), if available.
+  @Nullable
+  private static final Method OF_VIRTUAL;
+  @Nullable
+  private static final Method NAME;
+  @Nullable
+  private static final Method UNSTARTED;
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method unstarted = null;
+    if (javaFeatureVersion() >= 21) {
+      try {
+        ofVirtual = Thread.class.getMethod("ofVirtual");
+        Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        name = builderClass.getMethod("name", String.class);
+        unstarted = builderClass.getMethod("unstarted", Runnable.class);
+      } catch (ReflectiveOperationException e) {
+        logger.log(Level.FINE, "Virtual threads are not available", e);
+        ofVirtual = null;
+      }
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    UNSTARTED = unstarted;
+  }
+
+  private ReportingThreads() {
+  }
+
+  /**
+   * @return {@code true} if the JDK supports virtual threads.
+   */
+  public static boolean isVirtualThreadSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * Creates an unstarted thread that runs the given task.
+   *
+   * @param virtual Whether to create a virtual thread, if supported.
+   */
+  public static Thread newThread(String name, Runnable task, boolean virtual) {
+    if (virtual && OF_VIRTUAL != null) {
+      try {
+        Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+        return (Thread) UNSTARTED.invoke(builder, task);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        logger.log(Level.FINE, "Failed to create a virtual thread", e);
+      }
+    }
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Creates a single-threaded scheduled executor whose thread is created by
+   * {@link #newThread(String, Runnable, boolean)}.
+   */
+  public static ScheduledExecutorService newScheduledExecutor(String name, boolean virtual) {
+    return Executors.newSingleThreadScheduledExecutor(runnable ->
+        newThread(name, runnable, virtual));
+  }
+
+  /**
+   * @return The feature version of the running JDK, e.g. 8 for {@code 1.8} or 21 for
+   *     {@code 21.0.2}.
+   */
+  static int javaFeatureVersion() {
+    String version = System.getProperty("java.specification.version", "1.8");
+    if (version.startsWith("1.")) {
+      version = version.substring(2);
+    }
+    int end = version.indexOf('.');
+    try {
+      return Integer.parseInt(end < 0 ? version : version.substring(0, end));
+    } catch (NumberFormatException e) {
+      return 8;
+    }
+  }
+}
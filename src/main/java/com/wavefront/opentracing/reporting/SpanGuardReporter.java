@@ -0,0 +1,288 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.FinishedSpan;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.common.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+/**
+ * A reporting stage that keeps a single misbehaving endpoint or tag from flooding the proxy.
+ *
+ * <ul>
+ * <li>Spans are rate limited per operation name, each operation getting a token bucket that
+ * allows the configured number of spans per second, in bursts of up to one second's worth. Spans
+ * over the limit are dropped. Once as many operations have buckets as allowed, further operations
+ * share one bucket.</li>
+ * <li>The number of distinct values per tag key is estimated with a {@link HyperLogLog}. Once a
+ * key is estimated to have more values than allowed, every value of that key is replaced by a
+ * placeholder from then on. Static tags are never replaced, and keys beyond the number tracked
+ * are not guarded.</li>
+ * </ul>
+ *
+ * Spans whose tags were not replaced are forwarded to the delegate as they are. Since a finished
+ * span's tags cannot be changed, spans whose tags were are forwarded as a {@link FinishedSpan}
+ * with the replaced tags, so that they take the same path through the stages behind this one.
+ */
+public class SpanGuardReporter extends DelegatingReporter {
+  private static final Logger logger = Logger.getLogger(SpanGuardReporter.class.getName());
+
+  @Nullable
+  private final StaticTags staticTags;
+  private final String placeholder;
+  private final int maxOperations;
+  private final int maxTagValues;
+  private final int maxTagKeys;
+  // Zero if spans are not rate limited.
+  private final long intervalNanos;
+  private final long burstNanos;
+
+  private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  private final AtomicInteger bucketCount = new AtomicInteger();
+  private final TokenBucket overflowBucket;
+  private final ConcurrentMap<String, HyperLogLog> tagValues = new ConcurrentHashMap<>();
+  private final AtomicInteger tagKeyCount = new AtomicInteger();
+  private final ConcurrentMap<String, Boolean> overLimitTagKeys = new ConcurrentHashMap<>();
+
+  private final LongAdder spansRateLimited = new LongAdder();
+  private final LongAdder spansRewritten = new LongAdder();
+  private final LongAdder tagsRewritten = new LongAdder();
+
+  public static final class Builder {
+    private double maxSpansPerSecond;
+    private int maxTagValues;
+    private String placeholder = "overflow";
+    private int maxOperations = 1000;
+    private int maxTagKeys = 1000;
+    private StaticTags staticTags;
+
+    /**
+     * Sets the most spans per second reported per operation name. Defaults to no limit.
+     */
+    public Builder maxSpansPerSecond(double maxSpansPerSecond) {
+      this.maxSpansPerSecond = maxSpansPerSecond;
+      return this;
+    }
+
+    /**
+     * Sets the most distinct values reported per tag key. Defaults to no limit.
+     */
+    public Builder maxTagValues(int maxTagValues) {
+      this.maxTagValues = maxTagValues;
+      return this;
+    }
+
+    /**
+     * Sets the value that replaces the values of tag keys over the limit. Defaults to
+     * {@code overflow}.
+     */
+    public Builder placeholder(String placeholder) {
+      this.placeholder = placeholder;
+      return this;
+    }
+
+    /**
+     * Sets the number of operations rate limited separately. Defaults to 1000.
+     */
+    public Builder maxOperations(int maxOperations) {
+      this.maxOperations = maxOperations;
+      return this;
+    }
+
+    /**
+     * Sets the number of tag keys whose values are counted. Defaults to 1000.
+     */
+    public Builder maxTagKeys(int maxTagKeys) {
+      this.maxTagKeys = maxTagKeys;
+      return this;
+    }
+
+    /**
+     * Sets the tags every span is expected to carry, whose values are never replaced.
+     */
+    public Builder withStaticTags(StaticTags staticTags) {
+      this.staticTags = staticTags;
+      return this;
+    }
+
+    /**
+     * @param delegate The reporter spans are forwarded to.
+     */
+    public SpanGuardReporter build(Reporter delegate) {
+      if (maxSpansPerSecond < 0) {
+        throw new IllegalArgumentException("Max spans per second must not be negative");
+      }
+      if (maxTagValues < 0) {
+        throw new IllegalArgumentException("Max tag values must not be negative");
+      }
+      if (placeholder == null) {
+        throw new IllegalArgumentException("A placeholder is required");
+      }
+      return new SpanGuardReporter(delegate, this);
+    }
+  }
+
+  private SpanGuardReporter(Reporter delegate, Builder builder) {
+    super(delegate);
+    this.staticTags = builder.staticTags;
+    this.placeholder = builder.placeholder;
+    this.maxOperations = builder.maxOperations;
+    this.maxTagValues = builder.maxTagValues;
+    this.maxTagKeys = builder.maxTagKeys;
+    if (builder.maxSpansPerSecond > 0) {
+      this.intervalNanos = Math.max((long) (TimeUnit.SECONDS.toNanos(1) /
+          builder.maxSpansPerSecond), 1);
+      this.burstNanos = Math.max(TimeUnit.SECONDS.toNanos(1) - intervalNanos, 0);
+    } else {
+      this.intervalNanos = 0;
+      this.burstNanos = 0;
+    }
+    this.overflowBucket = new TokenBucket(System.nanoTime());
+  }
+
+  /**
+   * Registers gauges for the number of dropped and rewritten spans and tags.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("spans.rate_limited"),
+        () -> (() -> (double) spansRateLimited.sum()));
+    metricsReporter.newGauge(metricName("spans.rewritten"),
+        () -> (() -> (double) spansRewritten.sum()));
+    metricsReporter.newGauge(metricName("tags.rewritten"),
+        () -> (() -> (double) tagsRewritten.sum()));
+    metricsReporter.newGauge(metricName("tag_keys.over_limit"),
+        () -> (() -> (double) overLimitTagKeys.size()));
+  }
+
+  private static MetricName metricName(String name) {
+    return new MetricName("guard." + name, Collections.emptyMap());
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    if (intervalNanos > 0 && !bucket(span.getOperationName()).tryAcquire(System.nanoTime())) {
+      spansRateLimited.increment();
+      return;
+    }
+    List<Pair<String, String>> tags = span.getTagsAsList();
+    List<Pair<String, String>> rewritten = null;
+    if (maxTagValues > 0) {
+      for (int i = 0; i < tags.size(); i++) {
+        Pair<String, String> tag = tags.get(i);
+        if (admit(tag)) {
+          if (rewritten != null) {
+            rewritten.add(tag);
+          }
+          continue;
+        }
+        if (rewritten == null) {
+          rewritten = new ArrayList<>(tags.subList(0, i));
+        }
+        rewritten.add(Pair.of(tag._1, placeholder));
+        tagsRewritten.increment();
+      }
+    }
+    if (rewritten == null) {
+      forward(span);
+    } else {
+      spansRewritten.increment();
+      forward(FinishedSpan.withTags(span, rewritten));
+    }
+  }
+
+  private TokenBucket bucket(String operationName) {
+    TokenBucket bucket = buckets.get(operationName);
+    if (bucket != null) {
+      return bucket;
+    }
+    if (bucketCount.get() >= maxOperations) {
+      return overflowBucket;
+    }
+    return buckets.computeIfAbsent(operationName, key -> {
+      bucketCount.incrementAndGet();
+      return new TokenBucket(System.nanoTime());
+    });
+  }
+
+  /**
+   * @return {@code false} if the tag's value is to be replaced.
+   */
+  private boolean admit(Pair<String, String> tag) {
+    if (tag._1 == null || tag._2 == null || placeholder.equals(tag._2) ||
+        (staticTags != null && staticTags.indexOf(tag._1, tag._2) >= 0)) {
+      return true;
+    }
+    if (overLimitTagKeys.containsKey(tag._1)) {
+      return false;
+    }
+    HyperLogLog values = tagValues.get(tag._1);
+    if (values == null) {
+      if (tagKeyCount.get() >= maxTagKeys) {
+        return true;
+      }
+      values = tagValues.computeIfAbsent(tag._1, key -> {
+        tagKeyCount.incrementAndGet();
+        return new HyperLogLog();
+      });
+    }
+    if (values.add(tag._2) && values.estimate() > maxTagValues) {
+      if (overLimitTagKeys.putIfAbsent(tag._1, Boolean.TRUE) == null) {
+        logger.log(Level.WARNING, "Tag " + tag._1 + " has more than " + maxTagValues +
+            " values, replacing them with " + placeholder);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  public long getSpansRateLimited() {
+    return spansRateLimited.sum();
+  }
+
+  public long getSpansRewritten() {
+    return spansRewritten.sum();
+  }
+
+  public long getTagsRewritten() {
+    return tagsRewritten.sum();
+  }
+
+  /**
+   * A token bucket kept as the time at which it will be full again, the generic cell rate
+   * algorithm, so that taking a token is a single compare-and-set.
+   */
+  private final class TokenBucket {
+    private final AtomicLong fullAt;
+
+    TokenBucket(long now) {
+      this.fullAt = new AtomicLong(now);
+    }
+
+    boolean tryAcquire(long now) {
+      while (true) {
+        long current = fullAt.get();
+        long start = current - now > 0 ? current : now;
+        if (start - now > burstNanos) {
+          return false;
+        }
+        if (fullAt.compareAndSet(current, start + intervalNanos)) {
+          return true;
+        }
+      }
+    }
+  }
+}
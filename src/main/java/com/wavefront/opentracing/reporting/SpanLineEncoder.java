@@ -0,0 +1,343 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.Reference;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.sdk.common.Pair;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Encodes spans into the Wavefront span line format, escaped the way the Wavefront sender does:
+ * <pre>
+ * "operation" source="source" traceId=... spanId=... parent=... "key"="value" start duration
+ * </pre>
+ *
+ * The source and the {@link StaticTags} are the same for every span of a tracer, so they are
+ * escaped and encoded once, when the encoder is built, and copied into each line as bytes. Only
+ * the operation name, the IDs, the timestamps and the span's other tags are encoded per span,
+ * into a direct buffer that each thread reuses from span to span. The static tags are only copied
+ * in for spans that carry all of them; any other span is encoded tag by tag. Span logs are not
+ * part of the span line and are not encoded.
+ *
+ * Encoding does not allocate once a thread's buffer has grown to fit its largest span.
+ */
+public final class SpanLineEncoder {
+  private static final int INITIAL_BUFFER_SIZE = 4096;
+  private static final ThreadLocal<ByteBuffer> BUFFER =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE));
+  private static final byte[] HEX_DIGITS = ascii("0123456789abcdef");
+  private static final byte[] SOURCE = ascii(" source=");
+  private static final byte[] TRACE_ID = ascii(" traceId=");
+  private static final byte[] SPAN_ID = ascii(" spanId=");
+  private static final byte[] PARENT = ascii(" parent=");
+  private static final byte[] FOLLOWS_FROM = ascii(" followsFrom=");
+
+  @Nullable
+  private final StaticTags staticTags;
+  private final byte[] sourceSegment;
+  private final byte[] staticTagsSegment;
+  // Every static tag's bit, or 0 if there are too many static tags to track in a long.
+  private final long allStaticTags;
+
+  /**
+   * @param source     The source of every span.
+   * @param staticTags The tags every span is expected to carry, or {@code null} to encode every
+   *                   tag per span.
+   */
+  public SpanLineEncoder(String source, @Nullable StaticTags staticTags) {
+    this.staticTags = staticTags;
+    this.sourceSegment = encodeSegment(segment -> {
+      segment.put(SOURCE);
+      putValue(segment, source);
+    });
+    this.staticTagsSegment = encodeSegment(segment -> {
+      for (int i = 0; staticTags != null && i < staticTags.size(); i++) {
+        if (staticTags.getValue(i) != null) {
+          putTag(segment, staticTags.getKey(i), staticTags.getValue(i));
+        }
+      }
+    });
+    this.allStaticTags = staticTags == null || staticTags.size() >= Long.SIZE ||
+        staticTags.asMap().containsValue(null) ? 0 : (1L << staticTags.size()) - 1;
+  }
+
+  private static byte[] encodeSegment(Consumer<ByteBuffer> encoder) {
+    ByteBuffer segment = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    while (true) {
+      try {
+        encoder.accept(segment);
+        byte[] bytes = new byte[segment.position()];
+        segment.flip();
+        segment.get(bytes);
+        return bytes;
+      } catch (BufferOverflowException e) {
+        segment = ByteBuffer.allocate(segment.capacity() * 2);
+      }
+    }
+  }
+
+  /**
+   * Encodes a span line, ending in a newline.
+   *
+   * @return The calling thread's buffer, ready to be read from. It is overwritten by the next
+   *     span the thread encodes.
+   */
+  public ByteBuffer encode(WavefrontSpan span) {
+    ByteBuffer buffer = BUFFER.get();
+    while (true) {
+      try {
+        buffer.clear();
+        WavefrontSpanContext context = span.context();
+        putHead(buffer, span.getOperationName(), context.getTraceId(), context.getSpanId());
+        putReferences(buffer, PARENT, span.getParents());
+        putReferences(buffer, FOLLOWS_FROM, span.getFollows());
+        putTags(buffer, span.getTagsAsList());
+        putTail(buffer, span.getStartTimeMicros() / 1000, span.getDurationMicroseconds() / 1000);
+        buffer.flip();
+        return buffer;
+      } catch (BufferOverflowException e) {
+        buffer = grow(buffer);
+      }
+    }
+  }
+
+  /**
+   * Encodes a span line from the fields the Wavefront sender takes, ending in a newline.
+   *
+   * @return The calling thread's buffer, ready to be read from. It is overwritten by the next
+   *     span the thread encodes.
+   */
+  public ByteBuffer encode(String operationName, long startMillis, long durationMillis,
+                           UUID traceId, UUID spanId, @Nullable List<UUID> parents,
+                           @Nullable List<UUID> follows, List<Pair<String, String>> tags) {
+    ByteBuffer buffer = BUFFER.get();
+    while (true) {
+      try {
+        buffer.clear();
+        putHead(buffer, operationName, traceId, spanId);
+        putUuids(buffer, PARENT, parents);
+        putUuids(buffer, FOLLOWS_FROM, follows);
+        putTags(buffer, tags);
+        putTail(buffer, startMillis, durationMillis);
+        buffer.flip();
+        return buffer;
+      } catch (BufferOverflowException e) {
+        buffer = grow(buffer);
+      }
+    }
+  }
+
+  private static ByteBuffer grow(ByteBuffer buffer) {
+    ByteBuffer grown = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+    BUFFER.set(grown);
+    return grown;
+  }
+
+  private void putHead(ByteBuffer buffer, String operationName, UUID traceId, UUID spanId) {
+    putValue(buffer, operationName);
+    buffer.put(sourceSegment);
+    buffer.put(TRACE_ID);
+    putUuid(buffer, traceId);
+    buffer.put(SPAN_ID);
+    putUuid(buffer, spanId);
+  }
+
+  private static void putTail(ByteBuffer buffer, long startMillis, long durationMillis) {
+    buffer.put((byte) ' ');
+    putLong(buffer, startMillis);
+    buffer.put((byte) ' ');
+    putLong(buffer, durationMillis);
+    buffer.put((byte) '\n');
+  }
+
+  private static void putReferences(ByteBuffer buffer, byte[] prefix,
+                                    @Nullable List<Reference> references) {
+    if (references != null) {
+      for (int i = 0; i < references.size(); i++) {
+        buffer.put(prefix);
+        putUuid(buffer, references.get(i).getSpanContext().getSpanId());
+      }
+    }
+  }
+
+  private static void putUuids(ByteBuffer buffer, byte[] prefix, @Nullable List<UUID> uuids) {
+    if (uuids != null) {
+      for (int i = 0; i < uuids.size(); i++) {
+        buffer.put(prefix);
+        putUuid(buffer, uuids.get(i));
+      }
+    }
+  }
+
+  private void putTags(ByteBuffer buffer, List<Pair<String, String>> tags) {
+    long present = 0;
+    if (allStaticTags != 0) {
+      for (int i = 0; i < tags.size(); i++) {
+        Pair<String, String> tag = tags.get(i);
+        int index = staticTags.indexOf(tag._1, tag._2);
+        if (index >= 0) {
+          present |= 1L << index;
+        }
+      }
+    }
+    boolean useSegment = present == allStaticTags && allStaticTags != 0;
+    if (useSegment) {
+      buffer.put(staticTagsSegment);
+    }
+    long skipped = 0;
+    for (int i = 0; i < tags.size(); i++) {
+      Pair<String, String> tag = tags.get(i);
+      if (tag._1 == null || tag._2 == null) {
+        continue;
+      }
+      if (useSegment) {
+        // The segment stands for the first occurrence of each static tag.
+        int index = staticTags.indexOf(tag._1, tag._2);
+        if (index >= 0 && (skipped & (1L << index)) == 0) {
+          skipped |= 1L << index;
+          continue;
+        }
+      }
+      putTag(buffer, tag._1, tag._2);
+    }
+  }
+
+  private static void putTag(ByteBuffer buffer, String key, String value) {
+    buffer.put((byte) ' ');
+    putKey(buffer, key);
+    buffer.put((byte) '=');
+    putValue(buffer, value);
+  }
+
+  /**
+   * Puts a quoted tag key, with every character the Wavefront proxy does not accept in a key
+   * replaced by a hyphen.
+   */
+  private static void putKey(ByteBuffer buffer, String key) {
+    buffer.put((byte) '"');
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      boolean legal = (c >= ',' && c <= '9') || (c >= 'A' && c <= 'Z') ||
+          (c >= 'a' && c <= 'z') || c == '_' ||
+          (i == 0 && (c == '\u2206' || c == '\u0394' || c == '~'));
+      if (legal) {
+        putChar(buffer, key, i);
+      } else {
+        buffer.put((byte) '-');
+      }
+    }
+    buffer.put((byte) '"');
+  }
+
+  /**
+   * Puts a trimmed, quoted value, with quotes and newlines escaped.
+   */
+  private static void putValue(ByteBuffer buffer, String value) {
+    int start = 0;
+    int end = value.length();
+    while (start < end && value.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    buffer.put((byte) '"');
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        buffer.put((byte) '\\').put((byte) '"');
+      } else if (c == '\n') {
+        buffer.put((byte) '\\').put((byte) 'n');
+      } else {
+        i = putChar(buffer, value, i);
+      }
+    }
+    buffer.put((byte) '"');
+  }
+
+  /**
+   * Puts the character at the given index as UTF-8.
+   *
+   * @return The index of the last char consumed, which is the next one for a surrogate pair.
+   */
+  private static int putChar(ByteBuffer buffer, String s, int index) {
+    char c = s.charAt(index);
+    if (c < 0x80) {
+      buffer.put((byte) c);
+    } else if (c < 0x800) {
+      buffer.put((byte) (0xc0 | (c >> 6)));
+      buffer.put((byte) (0x80 | (c & 0x3f)));
+    } else if (Character.isHighSurrogate(c) && index + 1 < s.length() &&
+        Character.isLowSurrogate(s.charAt(index + 1))) {
+      int codePoint = Character.toCodePoint(c, s.charAt(index + 1));
+      buffer.put((byte) (0xf0 | (codePoint >> 18)));
+      buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+      buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+      buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+      return index + 1;
+    } else if (Character.isSurrogate(c)) {
+      buffer.put((byte) '?');
+    } else {
+      buffer.put((byte) (0xe0 | (c >> 12)));
+      buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+      buffer.put((byte) (0x80 | (c & 0x3f)));
+    }
+    return index;
+  }
+
+  /**
+   * Puts a UUID in its canonical form, as {@link UUID#toString()} would.
+   */
+  private static void putUuid(ByteBuffer buffer, UUID uuid) {
+    long msb = uuid.getMostSignificantBits();
+    long lsb = uuid.getLeastSignificantBits();
+    putHex(buffer, msb >>> 32, 8);
+    buffer.put((byte) '-');
+    putHex(buffer, msb >>> 16, 4);
+    buffer.put((byte) '-');
+    putHex(buffer, msb, 4);
+    buffer.put((byte) '-');
+    putHex(buffer, lsb >>> 48, 4);
+    buffer.put((byte) '-');
+    putHex(buffer, lsb, 12);
+  }
+
+  private static void putHex(ByteBuffer buffer, long value, int digits) {
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      buffer.put(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+    }
+  }
+
+  private static void putLong(ByteBuffer buffer, long value) {
+    if (value < 0) {
+      if (value == Long.MIN_VALUE) {
+        buffer.put(ascii(Long.toString(value)));
+        return;
+      }
+      buffer.put((byte) '-');
+      value = -value;
+    }
+    long divisor = 1;
+    while (divisor <= value / 10) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      buffer.put((byte) ('0' + (value / divisor) % 10));
+    }
+  }
+
+  private static byte[] ascii(String s) {
+    byte[] bytes = new byte[s.length()];
+    for (int i = 0; i < s.length(); i++) {
+      bytes[i] = (byte) s.charAt(i);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,64 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.FinishedSpan;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+/**
+ * A reporting stage that limits the span logs of each span with a {@link SpanLogLimiter}.
+ *
+ * Spans whose logs are within the limits are forwarded to the delegate as they are. Since a
+ * finished span's logs cannot be changed, spans whose logs were limited are forwarded as a
+ * {@link FinishedSpan} with the limited logs. While span log reporting is turned off through a
+ * {@link SpanLogToggleReporter}, spans are forwarded without limiting their logs.
+ */
+public class SpanLogLimitReporter extends DelegatingReporter {
+  private final SpanLogLimiter limiter;
+  @Nullable
+  private final SpanLogToggleReporter spanLogToggle;
+
+  private final LongAdder spansLimited = new LongAdder();
+
+  /**
+   * @param delegate      The reporter spans are forwarded to.
+   * @param limiter       The limits on span logs.
+   * @param spanLogToggle The reporter that turns span log reporting on and off at runtime, if
+   *                      any.
+   */
+  public SpanLogLimitReporter(Reporter delegate, SpanLogLimiter limiter,
+                              @Nullable SpanLogToggleReporter spanLogToggle) {
+    super(delegate);
+    this.limiter = limiter;
+    this.spanLogToggle = spanLogToggle;
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    List<SpanLog> logs = span.getSpanLogs();
+    if (logs == null || logs.isEmpty() ||
+        (spanLogToggle != null && spanLogToggle.isSpanLogReportingDisabled())) {
+      forward(span);
+      return;
+    }
+    List<SpanLog> limited = limiter.limit(logs);
+    if (limited == logs) {
+      forward(span);
+      return;
+    }
+    spansLimited.increment();
+    forward(FinishedSpan.withSpanLogs(span, limited));
+  }
+
+  public SpanLogLimiter getLimiter() {
+    return limiter;
+  }
+
+  public long getSpansLimited() {
+    return spansLimited.sum();
+  }
+}
@@ -0,0 +1,318 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the span logs of chatty spans from blowing up the size of what is sent, instead of
+ * disabling span logs altogether.
+ *
+ * <ul>
+ * <li>Each span reports at most the configured number of log entries, the first ones.</li>
+ * <li>Field values longer than the configured number of UTF-8 bytes are truncated.</li>
+ * <li>An entry whose fields equal those of the entry before it is dropped, and the entry kept
+ * gets a {@value #REPEATED} field with the number of times it occurred in a row.</li>
+ * <li>The span logs of all spans share a budget of bytes per second, in bursts of up to one
+ * second's worth. Once it is spent, the remaining entries of a span are dropped.</li>
+ * </ul>
+ *
+ * The entries are sized and limited in a single pass, in the order they are serialized in, and
+ * the pass stops at the first entry over a limit. The logs are only copied once an entry has to
+ * change, so spans within the limits cost no allocation.
+ */
+public final class SpanLogLimiter {
+  public static final String REPEATED = "repeated";
+
+  // What a serialized entry and field take besides the field keys and values.
+  private static final int ENTRY_OVERHEAD = 32;
+  private static final int FIELD_OVERHEAD = 6;
+
+  private final int maxEntries;
+  private final int maxFieldBytes;
+  private final boolean deduplicate;
+  // Zero if the bytes per second are not limited.
+  private final double nanosPerByte;
+  private final long burstNanos;
+  private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+  private final LongAdder entriesDropped = new LongAdder();
+  private final LongAdder entriesDeduplicated = new LongAdder();
+  private final LongAdder fieldsTruncated = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+
+  public static final class Builder {
+    private int maxEntries;
+    private int maxFieldBytes;
+    private long maxBytesPerSecond;
+    private boolean deduplicate;
+
+    /**
+     * Sets the most log entries reported per span. Defaults to no limit.
+     */
+    public Builder maxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Sets the most UTF-8 bytes reported per field value. Defaults to no limit.
+     */
+    public Builder maxFieldBytes(int maxFieldBytes) {
+      this.maxFieldBytes = maxFieldBytes;
+      return this;
+    }
+
+    /**
+     * Sets the most span log bytes reported per second across all spans. Defaults to no limit.
+     */
+    public Builder maxBytesPerSecond(long maxBytesPerSecond) {
+      this.maxBytesPerSecond = maxBytesPerSecond;
+      return this;
+    }
+
+    /**
+     * Collapses runs of log entries with the same fields into their first entry.
+     */
+    public Builder deduplicate() {
+      this.deduplicate = true;
+      return this;
+    }
+
+    public SpanLogLimiter build() {
+      if (maxEntries < 0) {
+        throw new IllegalArgumentException("Max entries must not be negative");
+      }
+      if (maxFieldBytes < 0) {
+        throw new IllegalArgumentException("Max field bytes must not be negative");
+      }
+      if (maxBytesPerSecond < 0) {
+        throw new IllegalArgumentException("Max bytes per second must not be negative");
+      }
+      return new SpanLogLimiter(this);
+    }
+  }
+
+  private SpanLogLimiter(Builder builder) {
+    this.maxEntries = builder.maxEntries;
+    this.maxFieldBytes = builder.maxFieldBytes;
+    this.deduplicate = builder.deduplicate;
+    if (builder.maxBytesPerSecond > 0) {
+      this.nanosPerByte = (double) TimeUnit.SECONDS.toNanos(1) / builder.maxBytesPerSecond;
+      this.burstNanos = TimeUnit.SECONDS.toNanos(1);
+    } else {
+      this.nanosPerByte = 0;
+      this.burstNanos = 0;
+    }
+  }
+
+  /**
+   * Registers gauges for the number of dropped, deduplicated and truncated entries and fields,
+   * and for the number of span log bytes let through.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("entries.dropped"),
+        () -> (() -> (double) entriesDropped.sum()));
+    metricsReporter.newGauge(metricName("entries.deduplicated"),
+        () -> (() -> (double) entriesDeduplicated.sum()));
+    metricsReporter.newGauge(metricName("fields.truncated"),
+        () -> (() -> (double) fieldsTruncated.sum()));
+    metricsReporter.newGauge(metricName("bytes"), () -> (() -> (double) bytes.sum()));
+  }
+
+  private static MetricName metricName(String name) {
+    return new MetricName("span_logs." + name, Collections.emptyMap());
+  }
+
+  /**
+   * @param logs A span's logs.
+   * @return The same list if every entry is within the limits, or else a new list of the
+   *     entries to report.
+   */
+  public List<SpanLog> limit(List<SpanLog> logs) {
+    if (logs == null || logs.isEmpty()) {
+      return logs;
+    }
+    List<SpanLog> limited = null;
+    // The entry a run of equal entries is collapsed into, and the length of the run.
+    SpanLog runStart = null;
+    int runLength = 0;
+    int kept = 0;
+    long keptBytes = 0;
+    int i = 0;
+    for (; i < logs.size(); i++) {
+      SpanLog log = logs.get(i);
+      if (deduplicate && runStart != null && runStart.getFields().equals(log.getFields())) {
+        if (limited == null) {
+          limited = new ArrayList<>(logs.subList(0, i));
+        }
+        runLength++;
+        entriesDeduplicated.increment();
+        continue;
+      }
+      if (runLength > 1) {
+        limited.set(limited.size() - 1, withRepeated(limited.get(limited.size() - 1), runLength));
+      }
+      if (maxEntries > 0 && kept >= maxEntries) {
+        break;
+      }
+      SpanLog truncated = truncate(log);
+      long entryBytes = size(truncated);
+      if (!tryAcquire(entryBytes)) {
+        break;
+      }
+      if (truncated != log && limited == null) {
+        limited = new ArrayList<>(logs.subList(0, i));
+      }
+      if (limited != null) {
+        limited.add(truncated);
+      }
+      runStart = log;
+      runLength = 1;
+      kept++;
+      keptBytes += entryBytes;
+    }
+    if (i < logs.size()) {
+      if (limited == null) {
+        limited = new ArrayList<>(logs.subList(0, i));
+      }
+      entriesDropped.add(logs.size() - i);
+    } else if (runLength > 1) {
+      limited.set(limited.size() - 1, withRepeated(limited.get(limited.size() - 1), runLength));
+    }
+    bytes.add(keptBytes);
+    return limited == null ? logs : limited;
+  }
+
+  private static SpanLog withRepeated(SpanLog log, int runLength) {
+    Map<String, String> fields = new LinkedHashMap<>(log.getFields());
+    fields.put(REPEATED, Integer.toString(runLength));
+    return new SpanLog(log.getTimestamp(), fields);
+  }
+
+  /**
+   * @return The entry itself if none of its field values is too long, or else a copy with the
+   *     long values truncated.
+   */
+  private SpanLog truncate(SpanLog log) {
+    if (maxFieldBytes == 0) {
+      return log;
+    }
+    Map<String, String> fields = null;
+    for (Map.Entry<String, String> field : log.getFields().entrySet()) {
+      String value = field.getValue();
+      int end = value == null ? -1 : truncatedLength(value, maxFieldBytes);
+      if (value != null && end < value.length()) {
+        if (fields == null) {
+          fields = new LinkedHashMap<>(log.getFields());
+        }
+        fields.put(field.getKey(), value.substring(0, end));
+        fieldsTruncated.increment();
+      }
+    }
+    return fields == null ? log : new SpanLog(log.getTimestamp(), fields);
+  }
+
+  /**
+   * @return The length of the longest prefix of the value that fits in the UTF-8 bytes, without
+   *     splitting a surrogate pair.
+   */
+  static int truncatedLength(String value, int maxBytes) {
+    int bytes = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      int charBytes;
+      if (c < 0x80) {
+        charBytes = 1;
+      } else if (c < 0x800) {
+        charBytes = 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+          Character.isLowSurrogate(value.charAt(i + 1))) {
+        if (bytes + 4 > maxBytes) {
+          return i;
+        }
+        bytes += 4;
+        i++;
+        continue;
+      } else {
+        charBytes = 3;
+      }
+      if (bytes + charBytes > maxBytes) {
+        return i;
+      }
+      bytes += charBytes;
+    }
+    return value.length();
+  }
+
+  /**
+   * @return Roughly the number of bytes the entry takes once serialized.
+   */
+  private static long size(SpanLog log) {
+    long size = ENTRY_OVERHEAD;
+    for (Map.Entry<String, String> field : log.getFields().entrySet()) {
+      size += FIELD_OVERHEAD + utf8Length(field.getKey()) + utf8Length(field.getValue());
+    }
+    return size;
+  }
+
+  private static int utf8Length(String value) {
+    if (value == null) {
+      return 0;
+    }
+    int length = value.length();
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= 0x800 && !Character.isSurrogate(c)) {
+        length += 2;
+      } else if (c >= 0x80) {
+        // Two bytes, or half of a four byte surrogate pair.
+        length++;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Takes the bytes from the shared budget, kept as the time at which the budget will be full
+   * again, as {@link SpanGuardReporter} does for spans.
+   */
+  private boolean tryAcquire(long entryBytes) {
+    if (nanosPerByte == 0) {
+      return true;
+    }
+    long cost = Math.max((long) (entryBytes * nanosPerByte), 1);
+    long now = System.nanoTime();
+    while (true) {
+      long current = fullAt.get();
+      long start = current - now > 0 ? current : now;
+      if (start + cost - now > burstNanos) {
+        return false;
+      }
+      if (fullAt.compareAndSet(current, start + cost)) {
+        return true;
+      }
+    }
+  }
+
+  public long getEntriesDropped() {
+    return entriesDropped.sum();
+  }
+
+  public long getEntriesDeduplicated() {
+    return entriesDeduplicated.sum();
+  }
+
+  public long getFieldsTruncated() {
+    return fieldsTruncated.sum();
+  }
+}
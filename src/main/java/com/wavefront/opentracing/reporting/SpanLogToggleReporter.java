@@ -0,0 +1,70 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reporter whose reporting of span logs can be turned on and off while the tracer is running.
+ *
+ * Whether a {@link WavefrontSpanReporter} reports span logs is fixed when it is built, so this
+ * reporter holds one of each, built on the same sender, and routes every span to one of them
+ * according to a volatile flag. Switching therefore never blocks or drops a span. Only the
+ * reporter with span logs owns the sender; the other one is built on a view of it that is flushed
+ * rather than closed. It is closed first, so that both have drained their queues before the
+ * sender is closed, once.
+ */
+public class SpanLogToggleReporter extends CompositeReporter {
+  private static final Logger logger = Logger.getLogger(SpanLogToggleReporter.class.getName());
+
+  private final Reporter withSpanLogs;
+  private final Reporter withoutSpanLogs;
+  private volatile boolean spanLogReportingDisabled;
+
+  /**
+   * @param withSpanLogs             Reports spans along with their span logs, and closes the
+   *                                 sender.
+   * @param withoutSpanLogs          Reports spans without their span logs, on the same sender
+   *                                 but without closing it.
+   * @param disableSpanLogReporting  Whether span logs are initially not reported.
+   */
+  public SpanLogToggleReporter(WavefrontSpanReporter withSpanLogs,
+                               WavefrontSpanReporter withoutSpanLogs,
+                               boolean disableSpanLogReporting) {
+    super(withSpanLogs, withoutSpanLogs);
+    this.withSpanLogs = withSpanLogs;
+    this.withoutSpanLogs = withoutSpanLogs;
+    this.spanLogReportingDisabled = disableSpanLogReporting;
+  }
+
+  public void setSpanLogReportingDisabled(boolean disabled) {
+    spanLogReportingDisabled = disabled;
+  }
+
+  public boolean isSpanLogReportingDisabled() {
+    return spanLogReportingDisabled;
+  }
+
+  @Override
+  public void report(WavefrontSpan span) throws IOException {
+    (spanLogReportingDisabled ? withoutSpanLogs : withSpanLogs).report(span);
+  }
+
+  @Override
+  public int getFailureCount() {
+    return withSpanLogs.getFailureCount() + withoutSpanLogs.getFailureCount();
+  }
+
+  @Override
+  public void close() {
+    for (Reporter reporter : new Reporter[] { withoutSpanLogs, withSpanLogs }) {
+      try {
+        reporter.close();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to close span reporter: " + e);
+      }
+    }
+  }
+}
@@ -0,0 +1,341 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import static com.wavefront.opentracing.sampling.SamplingUtils.toUnitInterval;
+
+/**
+ * A reporting stage that turns finished spans into RED metrics, i.e. request rate, error rate and
+ * duration distribution per operation, and only forwards a small sample of the spans themselves.
+ *
+ * Spans are aggregated in-process per operation name and the values of a few selected tags. Each
+ * combination gets a {@link StripedHistogram}, found by walking a tree of concurrent maps keyed
+ * by the operation name and then by each selected tag's value, so aggregating a span neither
+ * locks nor allocates once its combination has been seen. A background thread drains the
+ * histograms once per flush interval and sends, through the sender,
+ * <ul>
+ * <li>{@code tracing.span_metrics.invocation.count} and {@code tracing.span_metrics.error.count}
+ * as delta counters, and</li>
+ * <li>{@code tracing.span_metrics.duration.micros} as a distribution,</li>
+ * </ul>
+ * tagged with the application tags, the operation name and the selected tags. Once there are as
+ * many combinations as allowed, spans of new combinations are aggregated under operation name
+ * {@value #OVERFLOW_OPERATION} without selected tags.
+ *
+ * Every span reaching this stage is aggregated, so head sampling should be off. Spans are
+ * forwarded to the delegate at the span sampling rate, decided per trace.
+ */
+public class SpanMetricsReporter extends DelegatingReporter {
+  private static final Logger logger = Logger.getLogger(SpanMetricsReporter.class.getName());
+
+  private static final String METRIC_PREFIX = "tracing.span_metrics.";
+  private static final String ERROR_TAG_KEY = "error";
+  private static final String OPERATION_TAG_KEY = "operationName";
+  static final String OVERFLOW_OPERATION = "other";
+  // Stands in for a selected tag the span does not have.
+  private static final String NO_VALUE = "";
+  private static final Set<HistogramGranularity> GRANULARITIES =
+      Collections.unmodifiableSet(EnumSet.of(HistogramGranularity.MINUTE));
+
+  private final WavefrontSender sender;
+  @Nullable
+  private final String source;
+  private final Map<String, String> applicationPointTags;
+  private final String[] tagKeys;
+  private final double spanSamplingRate;
+  private final int maxKeys;
+  private final int stripes;
+
+  // Operation name, then the value of each selected tag in turn, down to the histograms.
+  private final ConcurrentMap<String, Object> tree = new ConcurrentHashMap<>();
+  private final List<Key> keys = new CopyOnWriteArrayList<>();
+  private final AtomicInteger keyCount = new AtomicInteger();
+  private final Key overflowKey;
+  private final StripedHistogram.Snapshot snapshot = new StripedHistogram.Snapshot();
+  private final ScheduledExecutorService flushService;
+
+  private final LongAdder spansAggregated = new LongAdder();
+  private final LongAdder spansOverflowed = new LongAdder();
+  private final LongAdder flushFailures = new LongAdder();
+
+  public static final class Builder {
+    private final List<String> tagKeys = new ArrayList<>();
+    private double spanSamplingRate = 0.001;
+    private long flushIntervalMillis = TimeUnit.MINUTES.toMillis(1);
+    private int maxKeys = 1000;
+    @Nullable
+    private String source;
+    private boolean virtualThreads;
+
+    /**
+     * Adds a tag whose values, besides the operation name, tell apart the aggregated metrics.
+     * Keep to tags with few values, e.g. {@code http.status_code}.
+     */
+    public Builder addTagKey(String tagKey) {
+      tagKeys.add(tagKey);
+      return this;
+    }
+
+    /**
+     * Sets the fraction of traces whose spans are forwarded as spans. Defaults to 0.001.
+     */
+    public Builder spanSamplingRate(double spanSamplingRate) {
+      this.spanSamplingRate = spanSamplingRate;
+      return this;
+    }
+
+    /**
+     * Sets how often the metrics are sent. Defaults to 1 minute.
+     */
+    public Builder flushInterval(long duration, TimeUnit unit) {
+      this.flushIntervalMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the number of combinations of operation name and tag values aggregated separately.
+     * Defaults to 1000.
+     */
+    public Builder maxKeys(int maxKeys) {
+      this.maxKeys = maxKeys;
+      return this;
+    }
+
+    /**
+     * Sets the source of the metrics. Defaults to the sender's default.
+     */
+    public Builder withSource(String source) {
+      this.source = source;
+      return this;
+    }
+
+    /**
+     * Runs the flushing of the metrics on a virtual thread, if the JDK supports them.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
+      return this;
+    }
+
+    /**
+     * @param delegate        Reporter to forward the sampled spans to.
+     * @param sender          Sender to send the metrics through.
+     * @param applicationTags Application tags to tag the metrics with.
+     */
+    public SpanMetricsReporter build(Reporter delegate, WavefrontSender sender,
+                                     ApplicationTags applicationTags) {
+      if (spanSamplingRate < 0.0 || spanSamplingRate > 1.0) {
+        throw new IllegalArgumentException("Span sampling rate must be between 0.0 and 1.0");
+      }
+      if (flushIntervalMillis < 1 || maxKeys < 1) {
+        throw new IllegalArgumentException("Flush interval and maximum keys must be positive");
+      }
+      return new SpanMetricsReporter(delegate, sender, applicationTags, this);
+    }
+  }
+
+  private SpanMetricsReporter(Reporter delegate, WavefrontSender sender,
+                              ApplicationTags applicationTags, Builder builder) {
+    super(delegate);
+    this.sender = sender;
+    this.source = builder.source;
+    this.applicationPointTags = StaticTags.of(applicationTags).asMap();
+    this.tagKeys = builder.tagKeys.toArray(new String[0]);
+    this.spanSamplingRate = builder.spanSamplingRate;
+    this.maxKeys = builder.maxKeys;
+    this.stripes = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+    this.overflowKey = new Key(OVERFLOW_OPERATION, new String[0], new StripedHistogram(stripes));
+    keys.add(overflowKey);
+    this.flushService = ReportingThreads.newScheduledExecutor("wavefront-span-metrics-reporter",
+        builder.virtualThreads);
+    this.flushService.scheduleAtFixedRate(this::flush, builder.flushIntervalMillis,
+        builder.flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Registers gauges for the number of aggregated combinations and spans.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("keys"), () -> (() -> (double) keyCount.get()));
+    metricsReporter.newGauge(metricName("spans.aggregated"),
+        () -> (() -> (double) spansAggregated.sum()));
+    metricsReporter.newGauge(metricName("spans.overflowed"),
+        () -> (() -> (double) spansOverflowed.sum()));
+  }
+
+  private static MetricName metricName(String name) {
+    return new MetricName("span_metrics." + name, Collections.emptyMap());
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    List<Pair<String, String>> tags = span.getTagsAsList();
+    histogram(span.getOperationName(), tags).record(span.getDurationMicroseconds(),
+        "true".equalsIgnoreCase(tagValue(tags, ERROR_TAG_KEY)));
+    spansAggregated.increment();
+    if (spanSamplingRate > 0 &&
+        toUnitInterval(span.context().getTraceId().getLeastSignificantBits()) < spanSamplingRate) {
+      forward(span);
+    }
+  }
+
+  private StripedHistogram histogram(String operationName, List<Pair<String, String>> tags) {
+    Object node = tree.get(operationName);
+    if (node == null) {
+      node = addNode(tree, operationName, operationName, tags, 0);
+    }
+    for (int depth = 0; depth < tagKeys.length; depth++) {
+      @SuppressWarnings("unchecked")
+      ConcurrentMap<String, Object> children = (ConcurrentMap<String, Object>) node;
+      String value = tagValue(tags, tagKeys[depth]);
+      if (value == null) {
+        value = NO_VALUE;
+      }
+      node = children.get(value);
+      if (node == null) {
+        node = addNode(children, value, operationName, tags, depth + 1);
+      }
+    }
+    return (StripedHistogram) node;
+  }
+
+  /**
+   * Adds the node below the one the span has reached, or the histogram if the span has reached
+   * the last level. Only happens the first time a combination is seen.
+   */
+  private Object addNode(ConcurrentMap<String, Object> children, String value,
+                         String operationName, List<Pair<String, String>> tags, int depth) {
+    if (depth < tagKeys.length) {
+      return children.computeIfAbsent(value, k -> new ConcurrentHashMap<String, Object>());
+    }
+    Object histogram = children.computeIfAbsent(value, k -> newHistogram(operationName, tags));
+    if (histogram == null) {
+      // Not added, so the next span of this combination comes back here.
+      spansOverflowed.increment();
+      return overflowKey.histogram;
+    }
+    return histogram;
+  }
+
+  @Nullable
+  private StripedHistogram newHistogram(String operationName, List<Pair<String, String>> tags) {
+    if (keyCount.incrementAndGet() > maxKeys) {
+      keyCount.decrementAndGet();
+      return null;
+    }
+    String[] tagValues = new String[tagKeys.length];
+    for (int i = 0; i < tagKeys.length; i++) {
+      tagValues[i] = tagValue(tags, tagKeys[i]);
+    }
+    Key key = new Key(operationName, tagValues, new StripedHistogram(stripes));
+    keys.add(key);
+    return key.histogram;
+  }
+
+  @Nullable
+  private static String tagValue(List<Pair<String, String>> tags, String key) {
+    for (int i = 0; i < tags.size(); i++) {
+      Pair<String, String> tag = tags.get(i);
+      if (key.equals(tag._1)) {
+        return tag._2;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Sends the metrics aggregated since the previous flush.
+   */
+  void flush() {
+    long timestamp = System.currentTimeMillis();
+    for (Key key : keys) {
+      key.histogram.drain(snapshot);
+      if (snapshot.getCount() == 0) {
+        continue;
+      }
+      try {
+        sender.sendDeltaCounter(METRIC_PREFIX + "invocation.count", snapshot.getCount(), source,
+            key.pointTags);
+        if (snapshot.getErrors() > 0) {
+          sender.sendDeltaCounter(METRIC_PREFIX + "error.count", snapshot.getErrors(), source,
+              key.pointTags);
+        }
+        sender.sendDistribution(METRIC_PREFIX + "duration.micros", snapshot.getCentroids(),
+            GRANULARITIES, timestamp, source, key.pointTags);
+      } catch (IOException | RuntimeException e) {
+        flushFailures.increment();
+        logger.log(Level.FINE, "Failed to send span metrics", e);
+      }
+    }
+  }
+
+  public long getSpansAggregated() {
+    return spansAggregated.sum();
+  }
+
+  @Override
+  public int getFailureCount() {
+    return super.getFailureCount() + flushFailures.intValue();
+  }
+
+  /**
+   * Sends the metrics aggregated so far and closes the delegate.
+   */
+  @Override
+  public void close() {
+    flushService.shutdownNow();
+    try {
+      flushService.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    super.close();
+  }
+
+  /**
+   * One combination of operation name and selected tag values, with its point tags.
+   */
+  private final class Key {
+    final StripedHistogram histogram;
+    final Map<String, String> pointTags;
+
+    Key(String operationName, String[] tagValues, StripedHistogram histogram) {
+      this.histogram = histogram;
+      Map<String, String> pointTags = new HashMap<>(applicationPointTags);
+      pointTags.put(OPERATION_TAG_KEY, operationName);
+      for (int i = 0; i < tagValues.length; i++) {
+        if (tagValues[i] != null) {
+          pointTags.put(tagKeys[i], tagValues[i]);
+        }
+      }
+      this.pointTags = Collections.unmodifiableMap(pointTags);
+    }
+  }
+}
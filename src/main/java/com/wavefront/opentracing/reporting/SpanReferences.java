@@ -0,0 +1,54 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.Reference;
+import com.wavefront.opentracing.WavefrontSpanContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Converts between the references of a span and the span IDs they refer to, as the sender takes
+ * them.
+ */
+final class SpanReferences {
+
+  private SpanReferences() {
+  }
+
+  /**
+   * @return The IDs of the referenced spans, or {@code null} if there are none, as the sender
+   *     expects.
+   */
+  @Nullable
+  static List<UUID> spanIds(@Nullable List<Reference> references) {
+    if (references == null || references.isEmpty()) {
+      return null;
+    }
+    List<UUID> spanIds = new ArrayList<>(references.size());
+    for (Reference reference : references) {
+      spanIds.add(reference.getSpanContext().getSpanId());
+    }
+    return spanIds;
+  }
+
+  /**
+   * @param traceId The trace the referenced spans belong to.
+   * @param spanIds The IDs of the referenced spans, if any.
+   * @param type    The type of the references, e.g. {@link io.opentracing.References#CHILD_OF}.
+   * @return References to the spans, or {@code null} if there are none.
+   */
+  @Nullable
+  static List<Reference> references(UUID traceId, @Nullable List<UUID> spanIds, String type) {
+    if (spanIds == null || spanIds.isEmpty()) {
+      return null;
+    }
+    List<Reference> references = new ArrayList<>(spanIds.size());
+    for (UUID spanId : spanIds) {
+      references.add(new Reference(new WavefrontSpanContext(traceId, spanId), type));
+    }
+    return references;
+  }
+}
@@ -0,0 +1,108 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of spans backed by a pre-allocated ring of slots.
+ *
+ * Each slot carries a sequence number that tells producers and consumers whose turn it is, so
+ * that an offer or a poll is a single CAS on the tail or head in the common case (Vyukov's bounded
+ * MPMC queue). Polling is safe from several threads, which the drop-oldest overflow policy relies
+ * on to evict from the producer side.
+ */
+final class SpanRingBuffer {
+  private final int mask;
+  private final WavefrontSpan[] spans;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+
+  SpanRingBuffer(int capacity) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Capacity must be at least 2");
+    }
+    int size = Integer.highestOneBit(capacity - 1) << 1;
+    if (size <= 0) {
+      throw new IllegalArgumentException("Capacity is too large: " + capacity);
+    }
+    this.mask = size - 1;
+    this.spans = new WavefrontSpan[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * @return {@code false} if the buffer is full.
+   */
+  boolean offer(WavefrontSpan span) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          spans[index] = span;
+          sequences.lazySet(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * @return The oldest span, or {@code null} if the buffer is empty.
+   */
+  WavefrontSpan poll() {
+    long position = head.get();
+    while (true) {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          WavefrontSpan span = spans[index];
+          spans[index] = null;
+          sequences.lazySet(index, position + mask + 1);
+          return span;
+        }
+        position = head.get();
+      } else if (difference < 0) {
+        return null;
+      } else {
+        position = head.get();
+      }
+    }
+  }
+
+  /**
+   * Moves up to {@code batch.length} spans into the given array.
+   *
+   * @return The number of spans moved.
+   */
+  int drainTo(WavefrontSpan[] batch) {
+    int count = 0;
+    WavefrontSpan span;
+    while (count < batch.length && (span = poll()) != null) {
+      batch[count++] = span;
+    }
+    return count;
+  }
+
+  int size() {
+    long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(size, capacity()));
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,348 @@
+package com.wavefront.opentracing.reporting;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A FIFO queue of byte records kept in memory-mapped, append-only segment files.
+ *
+ * Each segment is a file of a fixed size holding records of the form {@code [length][bytes]}.
+ * The length is written after the bytes, so a record only becomes visible once complete, and a
+ * zero length marks the end of the segment. Removing a record negates its length in place, which
+ * lets a queue reopened on the same directory resume after the records already removed. A
+ * segment file is deleted once all of its records have been removed and it is no longer written
+ * to.
+ *
+ * The queue never takes up more than the configured number of bytes on disk: when the segments
+ * are full, {@link #append(byte[])} rejects the record.
+ */
+final class SpillQueue implements Closeable {
+  private static final Logger logger = Logger.getLogger(SpillQueue.class.getName());
+
+  private static final String SEGMENT_PREFIX = "spans-";
+  private static final String SEGMENT_SUFFIX = ".spill";
+  private static final int LENGTH_BYTES = Integer.BYTES;
+
+  private final File directory;
+  private final long maxBytes;
+  private final int segmentSize;
+
+  // Guards the segments. A lock rather than a monitor, so that a virtual thread spilling a span
+  // is not pinned.
+  private final ReentrantLock lock = new ReentrantLock();
+  // Oldest first; the last segment is the one being written to.
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private long nextSequence;
+  private volatile long size;
+
+  SpillQueue(File directory, long maxBytes, int segmentSize) throws IOException {
+    if (segmentSize <= LENGTH_BYTES || maxBytes < segmentSize) {
+      throw new IllegalArgumentException("Invalid segment size " + segmentSize +
+          " or maximum size " + maxBytes);
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Failed to create directory " + directory);
+    }
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.segmentSize = segmentSize;
+    recover();
+  }
+
+  /**
+   * Reopens the segments left behind in the directory, oldest first. They are only read from;
+   * new records always go into a new segment.
+   */
+  private void recover() throws IOException {
+    File[] files = directory.listFiles((dir, name) ->
+        name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+    if (files == null) {
+      throw new IOException("Failed to list directory " + directory);
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      long sequence;
+      try {
+        sequence = Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length(),
+            file.getName().length() - SEGMENT_SUFFIX.length()));
+      } catch (NumberFormatException e) {
+        continue;
+      }
+      nextSequence = Math.max(nextSequence, sequence + 1);
+      Segment segment = new Segment(file, (int) Math.min(file.length(), Integer.MAX_VALUE));
+      if (segment.records == 0 || (segments.size() + 1L) * segmentSize > maxBytes) {
+        segment.delete();
+      } else {
+        segment.sealed = true;
+        segments.addLast(segment);
+        size += segment.records;
+      }
+    }
+  }
+
+  /**
+   * Appends a record to the end of the queue.
+   *
+   * @return {@code false} if the record was rejected because the queue is full or the record does
+   * not fit into a segment.
+   */
+  boolean append(byte[] record) throws IOException {
+    lock.lock();
+    try {
+      int needed = LENGTH_BYTES + record.length;
+      if (needed > segmentSize) {
+        return false;
+      }
+      Segment last = segments.peekLast();
+      if (last == null || last.sealed || last.remaining() < needed) {
+        if (last != null) {
+          last.sealed = true;
+          deleteRemovedHead();
+        }
+        if ((segments.size() + 1L) * segmentSize > maxBytes) {
+          return false;
+        }
+        last = new Segment(new File(directory, String.format("%s%019d%s", SEGMENT_PREFIX,
+            nextSequence++, SEGMENT_SUFFIX)), segmentSize);
+        segments.addLast(last);
+      }
+      last.append(record);
+      size++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns up to {@code max} records from the head of the queue without removing them.
+   */
+  List<byte[]> peek(int max) {
+    return peek(0, max);
+  }
+
+  /**
+   * Returns up to {@code max} records without removing them, starting {@code skip} records after
+   * the head of the queue, e.g. after records already returned but not yet removed.
+   */
+  List<byte[]> peek(long skip, int max) {
+    lock.lock();
+    try {
+      List<byte[]> records = new ArrayList<>(Math.min(max, 1024));
+      for (Iterator<Segment> it = segments.iterator(); it.hasNext() && records.size() < max; ) {
+        Segment segment = it.next();
+        if (skip >= segment.records) {
+          skip -= segment.records;
+          continue;
+        }
+        segment.peek((int) skip, max - records.size(), records);
+        skip = 0;
+      }
+      return records;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes {@code count} records from the head of the queue, typically the ones just returned
+   * by {@link #peek(int)}.
+   */
+  void remove(int count) {
+    lock.lock();
+    try {
+      for (int i = 0; i < count; i++) {
+        Segment head = segments.peekFirst();
+        if (head == null || !head.removeFirst()) {
+          break;
+        }
+        size--;
+        deleteRemovedHead();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void deleteRemovedHead() {
+    Segment head;
+    while ((head = segments.peekFirst()) != null && head.sealed && head.isRemoved()) {
+      segments.removeFirst();
+      head.delete();
+    }
+  }
+
+  /**
+   * @return The number of records in the queue.
+   */
+  long size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return The number of bytes the segment files take up on disk.
+   */
+  long getSizeBytes() {
+    lock.lock();
+    try {
+      return (long) segments.size() * segmentSize;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int getSegmentCount() {
+    lock.lock();
+    try {
+      return segments.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Writes the segments back to disk. The queue must not be used afterwards.
+   */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      for (Segment segment : segments) {
+        segment.buffer.force();
+      }
+      segments.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * One memory-mapped segment file.
+   */
+  private static final class Segment {
+    final File file;
+    final MappedByteBuffer buffer;
+    // Position of the first record not yet removed, and of the end of the last record.
+    int readPosition;
+    int writePosition;
+    int records;
+    boolean sealed;
+
+    Segment(File file, int size) throws IOException {
+      this.file = file;
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+           FileChannel channel = raf.getChannel()) {
+        // The mapping stays valid after the channel is closed.
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+      scan();
+    }
+
+    /**
+     * Finds the records of an existing file; a new file reads as zeros, i.e. as empty.
+     */
+    private void scan() {
+      int position = 0;
+      boolean removedPrefix = true;
+      while (position + LENGTH_BYTES <= buffer.capacity()) {
+        int length = buffer.getInt(position);
+        int recordLength = Math.abs(length);
+        if (length == 0 || length == Integer.MIN_VALUE ||
+            recordLength > buffer.capacity() - position - LENGTH_BYTES) {
+          break;
+        }
+        if (length > 0) {
+          removedPrefix = false;
+          records++;
+        } else if (removedPrefix) {
+          readPosition = position + LENGTH_BYTES + recordLength;
+        }
+        position += LENGTH_BYTES + recordLength;
+      }
+      writePosition = position;
+    }
+
+    int remaining() {
+      return buffer.capacity() - writePosition;
+    }
+
+    void append(byte[] record) {
+      int position = writePosition;
+      ByteBuffer target = buffer.duplicate();
+      target.position(position + LENGTH_BYTES);
+      target.put(record);
+      buffer.putInt(position, record.length);
+      writePosition = position + LENGTH_BYTES + record.length;
+      records++;
+    }
+
+    void peek(int skip, int max, List<byte[]> into) {
+      int position = readPosition;
+      int found = 0;
+      while (found < max && position < writePosition) {
+        int length = buffer.getInt(position);
+        if (length > 0 && skip > 0) {
+          skip--;
+        } else if (length > 0) {
+          byte[] record = new byte[length];
+          ByteBuffer source = buffer.duplicate();
+          source.position(position + LENGTH_BYTES);
+          source.get(record);
+          into.add(record);
+          found++;
+        }
+        position += LENGTH_BYTES + Math.abs(length);
+      }
+    }
+
+    /**
+     * @return {@code false} if the segment has no records left.
+     */
+    boolean removeFirst() {
+      while (readPosition < writePosition) {
+        int length = buffer.getInt(readPosition);
+        int position = readPosition;
+        readPosition += LENGTH_BYTES + Math.abs(length);
+        if (length > 0) {
+          buffer.putInt(position, -length);
+          records--;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    boolean isRemoved() {
+      return records == 0;
+    }
+
+    void delete() {
+      // The mapping itself is released once the buffer is garbage collected.
+      if (!file.delete()) {
+        logger.log(Level.WARNING, "Failed to delete spill segment " + file);
+      }
+    }
+  }
+}
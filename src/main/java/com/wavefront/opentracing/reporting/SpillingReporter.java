@@ -0,0 +1,536 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.FinishedSpan;
+import com.wavefront.opentracing.Reference;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import io.opentracing.References;
+
+/**
+ * A reporting stage that spills spans to disk while the sender is failing, e.g. while the proxy
+ * restarts, instead of letting them pile up in memory or get lost.
+ *
+ * Spans are forwarded to the delegate as long as its failure count stays the same. Once it grows,
+ * every span is appended to a {@link SpillQueue} of memory-mapped segment files instead. The
+ * failure count is checked for every span as well as periodically, but only shows failures once
+ * the sender has failed: spans that the span reporter or a transport behind it had already
+ * accepted by then, e.g. spans waiting in the span reporter's queue, are not spilled, and are
+ * lost if sending them fails too.
+ *
+ * A background thread periodically replays the spilled spans in order through the delegate, so
+ * that they take the same path as any other span. Replayed spans are only removed from disk once
+ * a retry interval has passed without the delegate's failure count growing, which leaves the
+ * span reporter time to send them. While the sender is failing, one batch is replayed per retry
+ * interval to find out whether it has recovered. Once a replay went through, batches are replayed
+ * back to back as long as the failure count stays the same, until every spilled span has been
+ * handed to the delegate; from then on, spans go to the delegate as before, even while the last
+ * replayed spans wait to be removed from disk. Replay is at-least-once: spans replayed before a
+ * failure shows are replayed again. Spans still spilled when the reporter is closed are handed to
+ * the delegate before it is closed, and stay on disk if that fails, to be replayed by the next
+ * reporter opened on the same directory.
+ *
+ * Tags that are one of the reporter's {@link StaticTags} are not written out with every spilled
+ * span: a span only records which of them it had, and gets the shared tags back on replay.
+ */
+public class SpillingReporter extends DelegatingReporter {
+  private static final Logger logger = Logger.getLogger(SpillingReporter.class.getName());
+
+  private static final int FORMAT_VERSION = 2;
+  // The static tags a span had are recorded in one long.
+  private static final int MAX_STATIC_TAGS = Long.SIZE;
+  private static final int REPLAY_BATCH_SIZE = 500;
+
+  private final WavefrontSender wavefrontSender;
+  @Nullable
+  private final StaticTags staticTags;
+  private final SpillQueue queue;
+  private final ScheduledExecutorService replayService;
+
+  private volatile boolean spilling;
+  // Whether every spilled span has been handed to the delegate since spilling last stopped, so
+  // that new spans no longer need to queue up behind them.
+  private volatile boolean replayCaughtUp;
+  // The delegate's failure count when spilling last stopped, written by the replay thread.
+  private volatile int failureBaseline;
+  // The spans handed to the delegate by the last replay and not yet removed from disk, and the
+  // delegate's failure count before they were. Only accessed by the replay thread.
+  private long replayPending;
+  private int replayFailureBaseline;
+
+  private final LongAdder spansSpilled = new LongAdder();
+  private final LongAdder spansReplayed = new LongAdder();
+  private final LongAdder spansDropped = new LongAdder();
+
+  public static final class Builder {
+    private File directory;
+    private long maxBytes = 256L * 1024 * 1024;
+    private int segmentSize = 16 * 1024 * 1024;
+    private long retryIntervalMillis = 1000;
+    private StaticTags staticTags;
+    private boolean virtualThreads;
+
+    /**
+     * Sets the directory that holds the segment files. Required.
+     */
+    public Builder directory(File directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    /**
+     * Sets the most bytes the segment files may take up on disk. Spans that do not fit are
+     * dropped. Defaults to 256 MiB.
+     */
+    public Builder maxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Sets the size of each segment file. Defaults to 16 MiB.
+     */
+    public Builder segmentSize(int segmentSize) {
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * Sets how often spilled spans are replayed, which is also how long replayed spans have to be
+     * sent before they are removed from disk. Defaults to 1 second.
+     */
+    public Builder retryInterval(long duration, TimeUnit unit) {
+      this.retryIntervalMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the tags every span is expected to carry, typically the tracer's application tags.
+     * They are left out of spilled spans and attached again on replay.
+     */
+    public Builder withStaticTags(StaticTags staticTags) {
+      this.staticTags = staticTags;
+      return this;
+    }
+
+    /**
+     * Runs the replay on a virtual thread, if the JDK supports them.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
+      return this;
+    }
+
+    /**
+     * @param delegate        The reporter spans are forwarded to while the sender is healthy,
+     *                        and spilled spans are replayed through.
+     * @param wavefrontSender The delegate's sender, flushed after spilled spans are replayed.
+     */
+    public SpillingReporter build(Reporter delegate, WavefrontSender wavefrontSender)
+        throws IOException {
+      if (directory == null) {
+        throw new IllegalArgumentException("A spill directory is required");
+      }
+      if (retryIntervalMillis < 1) {
+        throw new IllegalArgumentException("Retry interval must be positive");
+      }
+      return new SpillingReporter(delegate, wavefrontSender, this);
+    }
+  }
+
+  private SpillingReporter(Reporter delegate, WavefrontSender wavefrontSender, Builder builder)
+      throws IOException {
+    super(delegate);
+    this.wavefrontSender = wavefrontSender;
+    this.staticTags = builder.staticTags;
+    this.queue = new SpillQueue(builder.directory, builder.maxBytes, builder.segmentSize);
+    this.failureBaseline = delegate.getFailureCount();
+    if (!queue.isEmpty()) {
+      logger.log(Level.INFO, "Replaying " + queue.size() + " spans spilled to " +
+          builder.directory);
+    }
+    this.replayService = ReportingThreads.newScheduledExecutor("wavefront-span-spiller",
+        builder.virtualThreads);
+    this.replayService.scheduleWithFixedDelay(this::checkAndReplay, builder.retryIntervalMillis,
+        builder.retryIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Registers gauges for the spill queue and the number of spilled, replayed and dropped spans.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("active"), () -> (() -> spilling ? 1.0 : 0.0));
+    metricsReporter.newGauge(metricName("queue.size"), () -> (() -> (double) queue.size()));
+    metricsReporter.newGauge(metricName("queue.bytes"),
+        () -> (() -> (double) queue.getSizeBytes()));
+    metricsReporter.newGauge(metricName("spans.spilled"),
+        () -> (() -> (double) spansSpilled.sum()));
+    metricsReporter.newGauge(metricName("spans.replayed"),
+        () -> (() -> (double) spansReplayed.sum()));
+    metricsReporter.newGauge(metricName("spans.dropped"),
+        () -> (() -> (double) spansDropped.sum()));
+  }
+
+  private static MetricName metricName(String name) {
+    return new MetricName("spill." + name, Collections.emptyMap());
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    if (!spilling && delegate.getFailureCount() > failureBaseline) {
+      startSpilling();
+    }
+    // Keep spilling until replay has caught up, so that spans are reported in order.
+    if (spilling || (!replayCaughtUp && !queue.isEmpty())) {
+      spill(span);
+    } else {
+      forward(span);
+    }
+  }
+
+  private void spill(WavefrontSpan span) {
+    try {
+      if (queue.append(encode(span, staticTags))) {
+        spansSpilled.increment();
+        return;
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.FINE, "Failed to spill span", e);
+    }
+    spansDropped.increment();
+  }
+
+  private void startSpilling() {
+    if (!spilling) {
+      spilling = true;
+      replayCaughtUp = false;
+      logger.log(Level.WARNING, "Sender is failing, spilling spans to " + queue.getDirectory());
+    }
+  }
+
+  private void checkAndReplay() {
+    try {
+      int failures = delegate.getFailureCount();
+      if (replayPending > 0) {
+        if (failures == replayFailureBaseline) {
+          // Only a successful replay shows that the sender has recovered, so spilling goes on at
+          // least until there is a span to replay.
+          spilling = false;
+          failureBaseline = failures;
+          queue.remove((int) replayPending);
+          spansReplayed.add(replayPending);
+        } else {
+          replayCaughtUp = false;
+        }
+        replayPending = 0;
+      }
+      if (!spilling && failures > failureBaseline) {
+        startSpilling();
+      }
+      replayFailureBaseline = delegate.getFailureCount();
+      // Replay back to back once the sender has recovered, so that replay keeps up with spans
+      // spilled at more than a batch per retry interval.
+      do {
+        int replayed = replay(replayPending, REPLAY_BATCH_SIZE);
+        if (replayed == 0) {
+          replayCaughtUp = !spilling;
+          break;
+        }
+        replayPending += replayed;
+      } while (!spilling && !replayService.isShutdown() &&
+          delegate.getFailureCount() == replayFailureBaseline);
+    } catch (RuntimeException e) {
+      replayPending = 0;
+      logger.log(Level.WARNING, "Failed to replay spilled spans", e);
+    }
+  }
+
+  /**
+   * Hands the oldest spilled spans after the {@code skip} already handed over to the delegate,
+   * without removing them from disk.
+   *
+   * @return The number of spans to remove from disk once they have been sent, including the
+   *     unreadable ones.
+   */
+  private int replay(long skip, int count) {
+    List<byte[]> records = queue.peek(skip, count);
+    for (byte[] record : records) {
+      FinishedSpan span;
+      try {
+        span = decode(record, staticTags).toFinishedSpan();
+      } catch (IOException e) {
+        spansDropped.increment();
+        logger.log(Level.FINE, "Dropping unreadable spilled span", e);
+        continue;
+      }
+      forward(span);
+    }
+    try {
+      wavefrontSender.flush();
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.FINE, "Failed to flush replayed spans", e);
+    }
+    return records.size();
+  }
+
+  public boolean isSpilling() {
+    return spilling;
+  }
+
+  public long getSpansSpilled() {
+    return spansSpilled.sum();
+  }
+
+  public long getSpansReplayed() {
+    return spansReplayed.sum();
+  }
+
+  public long getSpansDropped() {
+    return spansDropped.sum();
+  }
+
+  /**
+   * @return The number of spans currently spilled to disk.
+   */
+  public long getQueueSize() {
+    return queue.size();
+  }
+
+  /**
+   * Makes a last attempt at replaying the spilled spans, closes the delegate, and removes the
+   * replayed spans from disk unless the delegate failed meanwhile.
+   */
+  @Override
+  public void close() {
+    replayService.shutdown();
+    try {
+      replayService.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    int failures = replayPending > 0 ? replayFailureBaseline : delegate.getFailureCount();
+    long replayed = queue.isEmpty() ? 0 : replay(0, Integer.MAX_VALUE);
+    // Closing the delegate sends what it still holds, so its failure count is final afterwards.
+    super.close();
+    if (replayed > 0) {
+      if (delegate.getFailureCount() == failures) {
+        queue.remove((int) replayed);
+        spansReplayed.add(replayed);
+      } else {
+        logger.log(Level.WARNING, queue.size() + " spilled spans left in " +
+            queue.getDirectory());
+      }
+    }
+    queue.close();
+  }
+
+  static byte[] encode(WavefrontSpan span, @Nullable StaticTags staticTags) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    DataOutputStream out = new DataOutputStream(bytes);
+    WavefrontSpanContext context = span.context();
+    out.writeByte(FORMAT_VERSION);
+    writeString(out, span.getOperationName());
+    out.writeLong(span.getStartTimeMicros() / 1000);
+    out.writeLong(span.getDurationMicroseconds() / 1000);
+    writeUuid(out, context.getTraceId());
+    writeUuid(out, context.getSpanId());
+    writeReferences(out, span.getParents());
+    writeReferences(out, span.getFollows());
+    List<Pair<String, String>> tags = span.getTagsAsList();
+    long staticTagMask = 0;
+    for (Pair<String, String> tag : tags) {
+      staticTagMask |= staticTagBit(staticTags, tag);
+    }
+    out.writeLong(staticTagMask);
+    if (staticTagMask != 0) {
+      out.writeInt(staticTags.fingerprint());
+    }
+    out.writeInt(tags.size() - Long.bitCount(staticTagMask));
+    // Leave out the first occurrence of each static tag, which the mask stands for.
+    long leftOut = 0;
+    for (Pair<String, String> tag : tags) {
+      long bit = staticTagBit(staticTags, tag);
+      if ((leftOut & bit) == 0 && bit != 0) {
+        leftOut |= bit;
+        continue;
+      }
+      writeString(out, tag._1);
+      writeString(out, tag._2);
+    }
+    List<SpanLog> spanLogs = span.getSpanLogs();
+    out.writeInt(spanLogs == null ? 0 : spanLogs.size());
+    if (spanLogs != null) {
+      for (SpanLog spanLog : spanLogs) {
+        out.writeLong(spanLog.getTimestamp());
+        out.writeInt(spanLog.getFields().size());
+        for (Map.Entry<String, String> field : spanLog.getFields().entrySet()) {
+          writeString(out, field.getKey());
+          writeString(out, field.getValue());
+        }
+      }
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  static SpilledSpan decode(byte[] record, @Nullable StaticTags staticTags) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    if (in.readByte() != FORMAT_VERSION) {
+      throw new IOException("Unknown spilled span format");
+    }
+    SpilledSpan span = new SpilledSpan();
+    span.operationName = readString(in);
+    span.startMillis = in.readLong();
+    span.durationMillis = in.readLong();
+    span.traceId = readUuid(in);
+    span.spanId = readUuid(in);
+    span.parents = readUuids(in);
+    span.follows = readUuids(in);
+    long staticTagMask = in.readLong();
+    if (staticTagMask != 0 && (staticTags == null || in.readInt() != staticTags.fingerprint())) {
+      throw new IOException("Spilled span refers to other static tags");
+    }
+    int tagCount = in.readInt();
+    span.tags = new ArrayList<>(tagCount + Long.bitCount(staticTagMask));
+    // The shared static tags come first, as the tracer puts them.
+    for (long mask = staticTagMask; mask != 0; mask &= mask - 1) {
+      span.tags.add(staticTags.get(Long.numberOfTrailingZeros(mask)));
+    }
+    for (int i = 0; i < tagCount; i++) {
+      span.tags.add(Pair.of(readString(in), readString(in)));
+    }
+    int spanLogCount = in.readInt();
+    if (spanLogCount > 0) {
+      span.spanLogs = new ArrayList<>(spanLogCount);
+      for (int i = 0; i < spanLogCount; i++) {
+        long timestamp = in.readLong();
+        int fieldCount = in.readInt();
+        Map<String, String> fields = new HashMap<>(fieldCount * 2);
+        for (int j = 0; j < fieldCount; j++) {
+          fields.put(readString(in), readString(in));
+        }
+        span.spanLogs.add(new SpanLog(timestamp, fields));
+      }
+    }
+    return span;
+  }
+
+  /**
+   * @return The bit that stands for the given tag in a mask of static tags, or 0 if the tag is
+   *     not one of them.
+   */
+  private static long staticTagBit(@Nullable StaticTags staticTags, Pair<String, String> tag) {
+    if (staticTags == null) {
+      return 0;
+    }
+    int index = staticTags.indexOf(tag._1, tag._2);
+    return index >= 0 && index < MAX_STATIC_TAGS ? 1L << index : 0;
+  }
+
+  private static void writeReferences(DataOutputStream out, @Nullable List<Reference> references)
+      throws IOException {
+    out.writeInt(references == null ? 0 : references.size());
+    if (references != null) {
+      for (Reference reference : references) {
+        writeUuid(out, reference.getSpanContext().getSpanId());
+      }
+    }
+  }
+
+  @Nullable
+  private static List<UUID> readUuids(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    if (count == 0) {
+      return null;
+    }
+    List<UUID> uuids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      uuids.add(readUuid(in));
+    }
+    return uuids;
+  }
+
+  private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+    out.writeLong(uuid.getMostSignificantBits());
+    out.writeLong(uuid.getLeastSignificantBits());
+  }
+
+  private static UUID readUuid(DataInputStream in) throws IOException {
+    return new UUID(in.readLong(), in.readLong());
+  }
+
+  private static void writeString(DataOutputStream out, @Nullable String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Nullable
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > in.available()) {
+      throw new IOException("Truncated spilled span");
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The fields of a spilled span that the sender needs to report it.
+   */
+  static final class SpilledSpan {
+    FinishedSpan toFinishedSpan() {
+      return new FinishedSpan(operationName, new WavefrontSpanContext(traceId, spanId),
+          TimeUnit.MILLISECONDS.toMicros(startMillis),
+          TimeUnit.MILLISECONDS.toMicros(durationMillis),
+          SpanReferences.references(traceId, parents, References.CHILD_OF),
+          SpanReferences.references(traceId, follows, References.FOLLOWS_FROM), tags, spanLogs);
+    }
+
+
+    String operationName;
+    long startMillis;
+    long durationMillis;
+    UUID traceId;
+    UUID spanId;
+    List<UUID> parents;
+    List<UUID> follows;
+    List<Pair<String, String>> tags;
+    List<SpanLog> spanLogs;
+  }
+}
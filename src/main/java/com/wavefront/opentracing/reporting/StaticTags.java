@@ -0,0 +1,138 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The tags that every span of a tracer carries because of its {@link ApplicationTags}, i.e. the
+ * application, service, cluster and shard tags followed by the custom tags in key order.
+ *
+ * They are computed once into a flat array of interned keys and values, and equal application
+ * tags share one instance, so reporting stages can refer to them instead of copying them per
+ * span or per metric. {@link #indexOf(String, String)} finds a span's tag among them, comparing
+ * by reference before comparing by value.
+ */
+public final class StaticTags {
+  private static final String NULL_TAG_VALUE = "none";
+  private static final ConcurrentMap<List<String>, StaticTags> INSTANCES =
+      new ConcurrentHashMap<>();
+
+  // Keys at even indices, each followed by its value.
+  private final String[] keyValues;
+  private final List<Pair<String, String>> pairs;
+  private final Map<String, String> map;
+  private final int fingerprint;
+
+  private StaticTags(String[] keyValues) {
+    this.keyValues = keyValues;
+    this.fingerprint = Arrays.hashCode(keyValues);
+    List<Pair<String, String>> pairs = new ArrayList<>(keyValues.length / 2);
+    Map<String, String> map = new LinkedHashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      pairs.add(Pair.of(keyValues[i], keyValues[i + 1]));
+      map.put(keyValues[i], keyValues[i + 1]);
+    }
+    this.pairs = Collections.unmodifiableList(pairs);
+    this.map = Collections.unmodifiableMap(map);
+  }
+
+  /**
+   * @return The static tags of the given application tags, shared with every other caller that
+   *     passes equal application tags.
+   */
+  public static StaticTags of(ApplicationTags applicationTags) {
+    Map<String, String> tags = new LinkedHashMap<>();
+    tags.put("application", applicationTags.getApplication());
+    tags.put("service", applicationTags.getService());
+    tags.put("cluster", applicationTags.getCluster() == null ? NULL_TAG_VALUE :
+        applicationTags.getCluster());
+    tags.put("shard", applicationTags.getShard() == null ? NULL_TAG_VALUE :
+        applicationTags.getShard());
+    if (applicationTags.getCustomTags() != null) {
+      for (Map.Entry<String, String> tag :
+          new TreeMap<>(applicationTags.getCustomTags()).entrySet()) {
+        tags.putIfAbsent(tag.getKey(), tag.getValue());
+      }
+    }
+    String[] keyValues = new String[tags.size() * 2];
+    int i = 0;
+    for (Map.Entry<String, String> tag : tags.entrySet()) {
+      keyValues[i++] = intern(tag.getKey());
+      keyValues[i++] = intern(tag.getValue());
+    }
+    return INSTANCES.computeIfAbsent(Arrays.asList(keyValues), key -> new StaticTags(keyValues));
+  }
+
+  private static String intern(String value) {
+    return value == null ? null : value.intern();
+  }
+
+  public int size() {
+    return keyValues.length / 2;
+  }
+
+  public String getKey(int index) {
+    return keyValues[index * 2];
+  }
+
+  public String getValue(int index) {
+    return keyValues[index * 2 + 1];
+  }
+
+  /**
+   * @return The index of the given tag, or -1 if it is not one of the static tags.
+   */
+  public int indexOf(String key, String value) {
+    for (int i = 0; i < keyValues.length; i += 2) {
+      if (keyValues[i] == key && keyValues[i + 1] == value) {
+        return i / 2;
+      }
+    }
+    for (int i = 0; i < keyValues.length; i += 2) {
+      if (keyValues[i].equals(key) && keyValues[i + 1] != null &&
+          keyValues[i + 1].equals(value)) {
+        return i / 2;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return A hash of the tags that stays the same across processes, to tell apart data written
+   *     against different static tags.
+   */
+  public int fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @return The tag at the given index, the same instance on every call.
+   */
+  public Pair<String, String> get(int index) {
+    return pairs.get(index);
+  }
+
+  /**
+   * @return The tags in order, as an unmodifiable list that is the same on every call.
+   */
+  public List<Pair<String, String>> asList() {
+    return pairs;
+  }
+
+  /**
+   * @return The tags in order, as an unmodifiable map that is the same on every call.
+   */
+  public Map<String, String> asMap() {
+    return map;
+  }
+}
@@ -0,0 +1,135 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, along with a count of errors, that many threads can record into
+ * without locking or allocating.
+ *
+ * Values fall into log-linear buckets: four per power of two, so a value is represented by the
+ * middle of its bucket with a relative error of at most 12.5%. The counts live in one
+ * {@link AtomicLongArray} split into stripes, and each thread records into the stripe picked by
+ * its ID, so threads on different cores rarely write to the same cache line.
+ * {@link #drain(Snapshot)} takes the counts recorded since the previous drain with an atomic
+ * exchange per slot, so no recording is ever lost between two drains.
+ */
+final class StripedHistogram {
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Values up to 2^41 - 1, about 25 days in microseconds; larger ones go into the last bucket.
+  // Values below 4 get a bucket each, which is where powers of two 0 and 1 would go.
+  private static final int MAX_EXPONENT = 40;
+  static final int BUCKETS = MAX_EXPONENT * SUB_BUCKETS;
+  // Each stripe holds the buckets followed by the error count, padded to whole cache lines.
+  private static final int STRIPE_LENGTH = (BUCKETS + 1 + 7) & ~7;
+  private static final int ERRORS = BUCKETS;
+
+  private final AtomicLongArray counts;
+  private final int stripeMask;
+
+  /**
+   * @param stripes The number of stripes, rounded up to a power of two.
+   */
+  StripedHistogram(int stripes) {
+    int rounded = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    this.stripeMask = rounded - 1;
+    this.counts = new AtomicLongArray((stripeMask + 1) * STRIPE_LENGTH);
+  }
+
+  /**
+   * Records a value, typically a duration in microseconds.
+   */
+  void record(long value, boolean error) {
+    int offset = ((int) Thread.currentThread().getId() & stripeMask) * STRIPE_LENGTH;
+    counts.incrementAndGet(offset + bucket(value));
+    if (error) {
+      counts.incrementAndGet(offset + ERRORS);
+    }
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(value, 0);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return The value that stands for every value in the bucket.
+   */
+  static double midpoint(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    return lower + width / 2.0;
+  }
+
+  /**
+   * Moves the counts recorded since the previous drain into the snapshot.
+   */
+  void drain(Snapshot snapshot) {
+    snapshot.clear();
+    for (int offset = 0; offset < counts.length(); offset += STRIPE_LENGTH) {
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        if (counts.get(offset + bucket) != 0) {
+          long count = counts.getAndSet(offset + bucket, 0);
+          snapshot.buckets[bucket] += count;
+          snapshot.count += count;
+        }
+      }
+      if (counts.get(offset + ERRORS) != 0) {
+        snapshot.errors += counts.getAndSet(offset + ERRORS, 0);
+      }
+    }
+  }
+
+  /**
+   * The counts taken by one drain, reused from drain to drain.
+   */
+  static final class Snapshot {
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long errors;
+
+    long getCount() {
+      return count;
+    }
+
+    long getErrors() {
+      return errors;
+    }
+
+    /**
+     * @return The non-empty buckets as centroids, i.e. pairs of value and count.
+     */
+    List<Pair<Double, Integer>> getCentroids() {
+      List<Pair<Double, Integer>> centroids = new ArrayList<>();
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        if (buckets[bucket] != 0) {
+          centroids.add(Pair.of(midpoint(bucket), (int) Math.min(buckets[bucket],
+              Integer.MAX_VALUE)));
+        }
+      }
+      return centroids;
+    }
+
+    private void clear() {
+      Arrays.fill(buckets, 0);
+      count = 0;
+      errors = 0;
+    }
+  }
+}
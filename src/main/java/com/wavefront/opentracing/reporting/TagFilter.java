@@ -0,0 +1,288 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Drops or rewrites the values of span tags by declarative rules, e.g. to keep user IDs or the
+ * query strings of URLs from leaving the process.
+ *
+ * Each rule applies to a tag key, or to every key starting with a prefix when it ends with
+ * {@code *}. The rules are compiled when the filter is built: exact keys into a hash map and
+ * prefixes into a trie, so that looking up the rule of a tag neither allocates nor depends on
+ * the number of rules. A key's own rule takes precedence over prefixes, and a longer prefix over
+ * a shorter one. Of several rules for the same key or prefix, the one that reveals the least
+ * wins: dropping, then hashing, then redacting, then stripping query strings.
+ *
+ * Only tags that a rule changes cost anything beyond the lookup, and regular expressions are
+ * only run for the keys of rules that need one.
+ */
+public final class TagFilter {
+  /**
+   * The value that replaces the matches of redaction patterns.
+   */
+  public static final String REDACTED = "redacted";
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  });
+
+  private final Map<String, Rule> keys;
+  private final Node prefixes;
+  private final int size;
+
+  private final LongAdder tagsDropped = new LongAdder();
+  private final LongAdder tagsRewritten = new LongAdder();
+
+  /**
+   * What a rule does to the tags it applies to, from the one that reveals the least.
+   */
+  private enum Action {
+    DROP, HASH, REDACT, STRIP_QUERY
+  }
+
+  public static final class Builder {
+    private final Map<String, Rule> keys = new HashMap<>();
+    private final Map<String, Rule> prefixes = new HashMap<>();
+
+    /**
+     * Drops the tags with the key, or with keys starting with the prefix before a trailing
+     * {@code *}.
+     */
+    public Builder drop(String key) {
+      return add(key, new Rule(Action.DROP, null));
+    }
+
+    /**
+     * Replaces the values of the tags with the key, or prefix, with the first 16 hex digits of
+     * their SHA-256 hash, which keeps them apart without revealing them. Values that can only
+     * take a few values can still be guessed.
+     */
+    public Builder hash(String key) {
+      return add(key, new Rule(Action.HASH, null));
+    }
+
+    /**
+     * Replaces the matches of the pattern in the values of the tags with the key, or prefix,
+     * with {@link #REDACTED}.
+     */
+    public Builder redact(String key, Pattern pattern) {
+      if (pattern == null) {
+        throw new IllegalArgumentException("A pattern is required");
+      }
+      return add(key, new Rule(Action.REDACT, pattern));
+    }
+
+    /**
+     * Removes the query string and fragment, from the first {@code ?} or {@code #} on, from the
+     * values of the tags with the key, or prefix.
+     */
+    public Builder stripQuery(String key) {
+      return add(key, new Rule(Action.STRIP_QUERY, null));
+    }
+
+    private Builder add(String key, Rule rule) {
+      if (key == null || key.isEmpty()) {
+        throw new IllegalArgumentException("A tag key is required");
+      }
+      Map<String, Rule> rules = keys;
+      if (key.endsWith("*")) {
+        key = key.substring(0, key.length() - 1);
+        rules = prefixes;
+      }
+      rules.merge(key, rule, (existing, added) ->
+          added.action.compareTo(existing.action) < 0 ? added : existing);
+      return this;
+    }
+
+    public TagFilter build() {
+      Node root = new Node();
+      for (Map.Entry<String, Rule> prefix : prefixes.entrySet()) {
+        Node node = root;
+        String key = prefix.getKey();
+        for (int i = 0; i < key.length(); i++) {
+          node = node.child(key.charAt(i), true);
+        }
+        node.rule = prefix.getValue();
+      }
+      return new TagFilter(new HashMap<>(keys), root, keys.size() + prefixes.size());
+    }
+  }
+
+  private TagFilter(Map<String, Rule> keys, Node prefixes, int size) {
+    this.keys = keys;
+    this.prefixes = prefixes;
+    this.size = size;
+  }
+
+  /**
+   * @return The number of rules.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return The tags as the rules leave them, the given list itself if no rule changed any tag.
+   */
+  public List<Pair<String, String>> filter(List<Pair<String, String>> tags) {
+    return filter(tags, true);
+  }
+
+  /**
+   * @param count Whether to count the dropped and rewritten tags, false for copies of spans that
+   *              are reported too.
+   */
+  List<Pair<String, String>> filter(List<Pair<String, String>> tags, boolean count) {
+    List<Pair<String, String>> filtered = null;
+    for (int i = 0; i < tags.size(); i++) {
+      Pair<String, String> tag = tags.get(i);
+      Rule rule = tag._1 == null || tag._2 == null ? null : rule(tag._1);
+      String value = rule == null ? tag._2 : apply(rule, tag._2);
+      if (value == tag._2) {
+        if (filtered != null) {
+          filtered.add(tag);
+        }
+        continue;
+      }
+      if (filtered == null) {
+        filtered = new ArrayList<>(tags.size());
+        filtered.addAll(tags.subList(0, i));
+      }
+      if (value != null) {
+        filtered.add(Pair.of(tag._1, value));
+      }
+      if (count) {
+        (value == null ? tagsDropped : tagsRewritten).increment();
+      }
+    }
+    return filtered == null ? tags : filtered;
+  }
+
+  @Nullable
+  private Rule rule(String key) {
+    Rule rule = keys.get(key);
+    if (rule != null) {
+      return rule;
+    }
+    Node node = prefixes;
+    rule = node.rule;
+    for (int i = 0; i < key.length(); i++) {
+      node = node.child(key.charAt(i), false);
+      if (node == null) {
+        break;
+      }
+      if (node.rule != null) {
+        rule = node.rule;
+      }
+    }
+    return rule;
+  }
+
+  /**
+   * @return The new value, {@code null} to drop the tag, or the value itself if it is unchanged.
+   */
+  @Nullable
+  private static String apply(Rule rule, String value) {
+    switch (rule.action) {
+      case DROP:
+        return null;
+      case HASH:
+        return hash(value);
+      case REDACT:
+        Matcher matcher = rule.pattern.matcher(value);
+        return matcher.find() ? matcher.replaceAll(REDACTED) : value;
+      case STRIP_QUERY:
+        for (int i = 0; i < value.length(); i++) {
+          char c = value.charAt(i);
+          if (c == '?' || c == '#') {
+            return value.substring(0, i);
+          }
+        }
+        return value;
+      default:
+        throw new IllegalStateException("Unknown action " + rule.action);
+    }
+  }
+
+  static String hash(String value) {
+    byte[] digest = SHA_256.get().digest(value.getBytes(StandardCharsets.UTF_8));
+    char[] hex = new char[16];
+    for (int i = 0; i < hex.length / 2; i++) {
+      hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+      hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  public long getTagsDropped() {
+    return tagsDropped.sum();
+  }
+
+  public long getTagsRewritten() {
+    return tagsRewritten.sum();
+  }
+
+  private static final class Rule {
+    private final Action action;
+    @Nullable
+    private final Pattern pattern;
+
+    private Rule(Action action, @Nullable Pattern pattern) {
+      this.action = action;
+      this.pattern = pattern;
+    }
+  }
+
+  /**
+   * A node of the prefix trie, its children kept sorted by character.
+   */
+  private static final class Node {
+    private char[] labels = new char[0];
+    private Node[] children = new Node[0];
+    @Nullable
+    private Rule rule;
+
+    @Nullable
+    private Node child(char label, boolean create) {
+      int index = Arrays.binarySearch(labels, label);
+      if (index >= 0) {
+        return children[index];
+      }
+      if (!create) {
+        return null;
+      }
+      index = -index - 1;
+      Node child = new Node();
+      char[] newLabels = new char[labels.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(labels, 0, newLabels, 0, index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      newLabels[index] = label;
+      newChildren[index] = child;
+      System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+      System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+      labels = newLabels;
+      children = newChildren;
+      return child;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.FinishedSpan;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.common.Pair;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A reporting stage that drops or rewrites span tags with a {@link TagFilter} before spans are
+ * reported.
+ *
+ * Spans whose tags the filter leaves unchanged are forwarded to the delegate as they are. Since a
+ * finished span's tags cannot be changed, spans whose tags it changed are forwarded as a
+ * {@link FinishedSpan} with the filtered tags, so that the stages behind this one, e.g. the
+ * span log limits, still apply to them.
+ */
+public class TagFilterReporter extends DelegatingReporter {
+  private final TagFilter tagFilter;
+
+  private final LongAdder spansFiltered = new LongAdder();
+
+  /**
+   * @param delegate  The reporter spans are forwarded to.
+   * @param tagFilter The rules for the tags.
+   */
+  public TagFilterReporter(Reporter delegate, TagFilter tagFilter) {
+    super(delegate);
+    if (tagFilter == null) {
+      throw new IllegalArgumentException("A tag filter is required");
+    }
+    this.tagFilter = tagFilter;
+  }
+
+  /**
+   * Registers gauges for the number of filtered spans and dropped and rewritten tags.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("spans.filtered"),
+        () -> (() -> (double) spansFiltered.sum()));
+    metricsReporter.newGauge(metricName("tags.dropped"),
+        () -> (() -> (double) tagFilter.getTagsDropped()));
+    metricsReporter.newGauge(metricName("tags.rewritten"),
+        () -> (() -> (double) tagFilter.getTagsRewritten()));
+  }
+
+  private static MetricName metricName(String name) {
+    return new MetricName("tag_filter." + name, Collections.emptyMap());
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    List<Pair<String, String>> tags = span.getTagsAsList();
+    List<Pair<String, String>> filtered = tagFilter.filter(tags);
+    if (filtered == tags) {
+      forward(span);
+      return;
+    }
+    spansFiltered.increment();
+    forward(FinishedSpan.withTags(span, filtered));
+  }
+
+  public TagFilter getTagFilter() {
+    return tagFilter;
+  }
+
+  public long getSpansFiltered() {
+    return spansFiltered.sum();
+  }
+}
@@ -0,0 +1,385 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.wavefront.opentracing.sampling.SamplingUtils.toUnitInterval;
+
+/**
+ * A reporting stage that samples whole traces after the fact. Finished spans are buffered by
+ * trace ID until the trace's local root finishes, and the trace is then kept if any of its spans
+ * is tagged {@code error=true} or took at least the latency threshold, or otherwise at the base
+ * rate.
+ *
+ * A span is taken to be the local root of its trace if it has no parent, or if it is a
+ * {@code server} or {@code consumer} span, i.e. where a trace enters this process. Traces whose
+ * local root never finishes are decided once they have been buffered for the decision wait. To
+ * keep memory bounded, the oldest traces are also decided early whenever the estimated size of
+ * the buffered spans exceeds the byte budget. Spans that arrive after their trace was decided
+ * follow the decision.
+ */
+public class TailSamplingReporter extends DelegatingReporter {
+  private static final String ERROR_TAG_KEY = "error";
+  private static final String SPAN_KIND_TAG_KEY = "span.kind";
+  // Decisions remembered for spans that finish after their trace was decided.
+  private static final int MAX_REMEMBERED_DECISIONS = 10000;
+  // Rough per-object overheads used to estimate the footprint of a buffered span.
+  private static final int SPAN_OVERHEAD_BYTES = 256;
+  private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+  private final long latencyThresholdMicros;
+  private final double baseRate;
+  private final long decisionWaitNanos;
+  private final long maxBufferedBytes;
+
+  private final ConcurrentMap<UUID, TraceBuffer> traces = new ConcurrentHashMap<>();
+  // Buffered traces, oldest first; decided traces are skipped when they reach the head.
+  private final ConcurrentLinkedQueue<TraceBuffer> traceOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicLong bufferedBytes = new AtomicLong();
+  private final ConcurrentMap<UUID, Boolean> decisions = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<UUID> decisionOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger decisionCount = new AtomicInteger();
+  private final ScheduledExecutorService evictionService;
+
+  private final LongAdder tracesKeptForError = new LongAdder();
+  private final LongAdder tracesKeptForLatency = new LongAdder();
+  private final LongAdder tracesKeptAtBaseRate = new LongAdder();
+  private final LongAdder tracesDropped = new LongAdder();
+  private final LongAdder tracesEvictedForAge = new LongAdder();
+  private final LongAdder tracesEvictedForBytes = new LongAdder();
+  private final LongAdder lateSpans = new LongAdder();
+
+  public static final class Builder {
+    private long latencyThresholdMillis = 1000;
+    private double baseRate = 0.1;
+    private long decisionWaitMillis = 5000;
+    private long maxBufferedBytes = 16 * 1024 * 1024;
+    private boolean virtualThreads;
+
+    /**
+     * Keeps every trace with a span that took at least this long. Defaults to 1 second.
+     */
+    public Builder latencyThreshold(long duration, TimeUnit unit) {
+      this.latencyThresholdMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the fraction of the remaining traces to keep, between 0.0 and 1.0. Defaults to 0.1.
+     */
+    public Builder baseRate(double baseRate) {
+      this.baseRate = baseRate;
+      return this;
+    }
+
+    /**
+     * Sets how long a trace stays buffered without its local root finishing before it is
+     * decided. Defaults to 5 seconds.
+     */
+    public Builder decisionWait(long duration, TimeUnit unit) {
+      this.decisionWaitMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Sets the estimated number of bytes that buffered spans may take up. Defaults to 16 MiB.
+     */
+    public Builder maxBufferedBytes(long maxBufferedBytes) {
+      this.maxBufferedBytes = maxBufferedBytes;
+      return this;
+    }
+
+    /**
+     * Runs the eviction of expired traces on a virtual thread, if the JDK supports them.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
+      return this;
+    }
+
+    public TailSamplingReporter build(Reporter delegate) {
+      if (baseRate < 0.0 || baseRate > 1.0) {
+        throw new IllegalArgumentException("Base rate must be between 0.0 and 1.0");
+      }
+      if (decisionWaitMillis < 1 || maxBufferedBytes < 1) {
+        throw new IllegalArgumentException("Decision wait and byte budget must be positive");
+      }
+      return new TailSamplingReporter(delegate, this);
+    }
+  }
+
+  private TailSamplingReporter(Reporter delegate, Builder builder) {
+    super(delegate);
+    this.latencyThresholdMicros = TimeUnit.MILLISECONDS.toMicros(builder.latencyThresholdMillis);
+    this.baseRate = builder.baseRate;
+    this.decisionWaitNanos = TimeUnit.MILLISECONDS.toNanos(builder.decisionWaitMillis);
+    this.maxBufferedBytes = builder.maxBufferedBytes;
+    this.evictionService = ReportingThreads.newScheduledExecutor(
+        "wavefront-tail-sampling-reporter", builder.virtualThreads);
+    long period = Math.max(1, builder.decisionWaitMillis / 4);
+    this.evictionService.scheduleAtFixedRate(this::evictExpiredTraces, period, period,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Registers gauges for the buffer and the number of traces kept, dropped and evicted.
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    metricsReporter.newGauge(metricName("buffer.traces"), () -> (() -> (double) traces.size()));
+    metricsReporter.newGauge(metricName("buffer.bytes"),
+        () -> (() -> (double) bufferedBytes.get()));
+    metricsReporter.newGauge(metricName("traces.kept.error"),
+        () -> (() -> (double) tracesKeptForError.sum()));
+    metricsReporter.newGauge(metricName("traces.kept.latency"),
+        () -> (() -> (double) tracesKeptForLatency.sum()));
+    metricsReporter.newGauge(metricName("traces.kept.base_rate"),
+        () -> (() -> (double) tracesKeptAtBaseRate.sum()));
+    metricsReporter.newGauge(metricName("traces.dropped"),
+        () -> (() -> (double) tracesDropped.sum()));
+    metricsReporter.newGauge(metricName("traces.evicted.age"),
+        () -> (() -> (double) tracesEvictedForAge.sum()));
+    metricsReporter.newGauge(metricName("traces.evicted.bytes"),
+        () -> (() -> (double) tracesEvictedForBytes.sum()));
+    metricsReporter.newGauge(metricName("spans.late"), () -> (() -> (double) lateSpans.sum()));
+  }
+
+  private static MetricName metricName(String name) {
+    return new MetricName("tail_sampling." + name, Collections.emptyMap());
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    UUID traceId = span.context().getTraceId();
+    long bytes = estimateBytes(span);
+    boolean localRoot = isLocalRoot(span);
+    while (true) {
+      Boolean decision = decisions.get(traceId);
+      if (decision != null) {
+        lateSpans.increment();
+        if (decision) {
+          forward(span);
+        }
+        return;
+      }
+      TraceBuffer trace = traces.computeIfAbsent(traceId, id -> {
+        TraceBuffer created = new TraceBuffer(id);
+        traceOrder.add(created);
+        return created;
+      });
+      if (trace.add(span, bytes, latencyThresholdMicros)) {
+        bufferedBytes.addAndGet(bytes);
+        if (localRoot) {
+          decide(trace);
+        }
+        break;
+      }
+      // The trace was decided concurrently; retry to pick up the decision.
+    }
+    while (bufferedBytes.get() > maxBufferedBytes) {
+      TraceBuffer oldest = traceOrder.poll();
+      if (oldest == null) {
+        break;
+      }
+      if (decide(oldest)) {
+        tracesEvictedForBytes.increment();
+      }
+    }
+  }
+
+  private void evictExpiredTraces() {
+    long now = System.nanoTime();
+    TraceBuffer oldest;
+    while ((oldest = traceOrder.peek()) != null &&
+        (oldest.isDecided() || now - oldest.createdNanos >= decisionWaitNanos)) {
+      if (traceOrder.remove(oldest) && decide(oldest)) {
+        tracesEvictedForAge.increment();
+      }
+    }
+  }
+
+  /**
+   * Decides whether to keep a trace and reports its spans if so.
+   *
+   * @return {@code false} if the trace had already been decided.
+   */
+  private boolean decide(TraceBuffer trace) {
+    List<WavefrontSpan> spans = trace.close();
+    if (spans == null) {
+      return false;
+    }
+    boolean keep;
+    if (trace.hasError) {
+      keep = true;
+      tracesKeptForError.increment();
+    } else if (trace.overLatencyThreshold) {
+      keep = true;
+      tracesKeptForLatency.increment();
+    } else if (toUnitInterval(trace.traceId.getLeastSignificantBits()) < baseRate) {
+      keep = true;
+      tracesKeptAtBaseRate.increment();
+    } else {
+      keep = false;
+      tracesDropped.increment();
+    }
+    // Publish the decision before unbuffering the trace, so that a concurrent span either finds
+    // the decision or the closed buffer and never starts a second buffer for the same trace.
+    rememberDecision(trace.traceId, keep);
+    traces.remove(trace.traceId, trace);
+    bufferedBytes.addAndGet(-trace.bytes);
+    if (keep) {
+      for (WavefrontSpan span : spans) {
+        forward(span);
+      }
+    }
+    return true;
+  }
+
+  private void rememberDecision(UUID traceId, boolean keep) {
+    decisions.put(traceId, keep);
+    decisionOrder.add(traceId);
+    if (decisionCount.incrementAndGet() > MAX_REMEMBERED_DECISIONS) {
+      UUID forgotten = decisionOrder.poll();
+      if (forgotten != null) {
+        decisions.remove(forgotten);
+        decisionCount.decrementAndGet();
+      }
+    }
+  }
+
+  private static boolean isLocalRoot(WavefrontSpan span) {
+    if (isNullOrEmpty(span.getParents()) && isNullOrEmpty(span.getFollows())) {
+      return true;
+    }
+    for (Pair<String, String> tag : span.getTagsAsList()) {
+      if (SPAN_KIND_TAG_KEY.equals(tag._1)) {
+        return "server".equals(tag._2) || "consumer".equals(tag._2);
+      }
+    }
+    return false;
+  }
+
+  private static boolean isNullOrEmpty(List<?> list) {
+    return list == null || list.isEmpty();
+  }
+
+  private static long estimateBytes(WavefrontSpan span) {
+    long bytes = SPAN_OVERHEAD_BYTES + 2L * span.getOperationName().length();
+    for (Pair<String, String> tag : span.getTagsAsList()) {
+      bytes += ENTRY_OVERHEAD_BYTES + 2L * (tag._1.length() + tag._2.length());
+    }
+    if (span.getSpanLogs() == null) {
+      return bytes;
+    }
+    for (SpanLog log : span.getSpanLogs()) {
+      bytes += ENTRY_OVERHEAD_BYTES;
+      for (Map.Entry<String, String> field : log.getFields().entrySet()) {
+        bytes += ENTRY_OVERHEAD_BYTES + 2L * (field.getKey().length() +
+            (field.getValue() == null ? 0 : field.getValue().length()));
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Decides every buffered trace, then closes the delegate.
+   */
+  @Override
+  public void close() {
+    evictionService.shutdownNow();
+    TraceBuffer trace;
+    while ((trace = traceOrder.poll()) != null) {
+      decide(trace);
+    }
+    super.close();
+  }
+
+  /**
+   * The buffered spans of one trace, along with what is known about them so far.
+   */
+  private static final class TraceBuffer {
+    final UUID traceId;
+    final long createdNanos = System.nanoTime();
+    // A lock rather than a monitor, so that a virtual thread finishing a span is not pinned.
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock; null once the trace has been decided.
+    private List<WavefrontSpan> spans = new ArrayList<>(4);
+    volatile long bytes;
+    volatile boolean hasError;
+    volatile boolean overLatencyThreshold;
+
+    TraceBuffer(UUID traceId) {
+      this.traceId = traceId;
+    }
+
+    /**
+     * @return {@code false} if the trace has already been decided.
+     */
+    boolean add(WavefrontSpan span, long spanBytes, long latencyThresholdMicros) {
+      lock.lock();
+      try {
+        if (spans == null) {
+          return false;
+        }
+        spans.add(span);
+        bytes += spanBytes;
+        if (span.getDurationMicroseconds() >= latencyThresholdMicros) {
+          overLatencyThreshold = true;
+        }
+        if (!hasError) {
+          for (Pair<String, String> tag : span.getTagsAsList()) {
+            if (ERROR_TAG_KEY.equals(tag._1) && "true".equalsIgnoreCase(tag._2)) {
+              hasError = true;
+              break;
+            }
+          }
+        }
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Marks the trace as decided.
+     *
+     * @return The buffered spans, or {@code null} if the trace had already been decided.
+     */
+    List<WavefrontSpan> close() {
+      lock.lock();
+      try {
+        List<WavefrontSpan> closed = spans;
+        spans = null;
+        return closed;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    boolean isDecided() {
+      lock.lock();
+      try {
+        return spans == null;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Owns the internal metrics reporter of a single tracer's reporting stages.
+ *
+ * Tracers share their span reporter, and with it the internal metrics reporter of the shared
+ * reporting, but each has its own stages. Their metrics are registered with a reporter of the
+ * tracer's own, tagged to tell tracers apart, so that the stages of one tracer never take the
+ * place of another's. Placed right in front of the shared reporting, this stage reports the
+ * metrics once more and stops the reporter after the stages in front of it are closed, before
+ * the shared reporting is released, so that closed stages leave no metrics behind.
+ */
+public final class TracerMetricsReporter extends DelegatingReporter {
+  private static final Logger logger = Logger.getLogger(TracerMetricsReporter.class.getName());
+
+  private final WavefrontInternalReporter metricsReporter;
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /**
+   * @param delegate        The shared reporting spans are forwarded to.
+   * @param metricsReporter The tracer's internal metrics reporter, stopped on close.
+   */
+  public TracerMetricsReporter(Reporter delegate, WavefrontInternalReporter metricsReporter) {
+    super(delegate);
+    this.metricsReporter = metricsReporter;
+  }
+
+  /**
+   * @return The internal metrics reporter the tracer's stages register their metrics with.
+   */
+  public WavefrontInternalReporter getMetricsReporter() {
+    return metricsReporter;
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      try {
+        metricsReporter.report();
+      } catch (RuntimeException e) {
+        logger.log(Level.FINE, "Failed to report internal metrics", e);
+      }
+      metricsReporter.stop();
+    }
+    super.close();
+  }
+}
@@ -0,0 +1,146 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.DelegatingReporter;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static com.wavefront.opentracing.sampling.SamplingUtils.toUnitInterval;
+
+/**
+ * An early {@link Sampler} that keeps the number of reported spans close to a target rate by
+ * adjusting its sampling probability once per second from the observed throughput.
+ *
+ * The sampler is consulted once per locally started trace, while the target is expressed in
+ * spans. It therefore also needs to see the spans that are actually reported: wrap the tracer's
+ * reporter with {@link #countReportedSpans(Reporter)}, and the sampler learns the average number
+ * of spans per sampled trace from that.
+ *
+ * Decisions are derived from the trace ID, so retries of the same trace are sampled consistently
+ * for as long as the probability stays the same. All counters are {@link LongAdder}s and the
+ * once-a-second adjustment is claimed with a single CAS, so the hot path never blocks. Between
+ * adjustments a burst is capped at {@link #BURST_FACTOR} times the target, which bounds the
+ * reported rate while the probability catches up with a sudden change in load.
+ */
+public class AdaptiveSampler implements Sampler {
+  static final long ADJUSTMENT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  static final double BURST_FACTOR = 2.0;
+  private static final double MIN_PROBABILITY = 1.0e-6;
+  // Weight of the newest observation when the probability increases or spans per trace change.
+  private static final double SMOOTHING = 0.5;
+
+  private final double targetSpansPerSecond;
+  private final LongSupplier nanoClock;
+
+  private final LongAdder decisions = new LongAdder();
+  private final LongAdder sampledDecisions = new LongAdder();
+  private final LongAdder reportedSpans = new LongAdder();
+  private final AtomicLong nextAdjustmentNanos;
+  private volatile long lastAdjustmentNanos;
+  private volatile double spansPerTrace = 1.0;
+  private volatile double probability = 1.0;
+  // Budget of sampled traces for the current interval before the burst cap kicks in.
+  private volatile long burstBudget;
+
+  public AdaptiveSampler(double targetSpansPerSecond) {
+    this(targetSpansPerSecond, System::nanoTime);
+  }
+
+  AdaptiveSampler(double targetSpansPerSecond, LongSupplier nanoClock) {
+    if (targetSpansPerSecond <= 0) {
+      throw new IllegalArgumentException("Target spans per second must be positive");
+    }
+    this.targetSpansPerSecond = targetSpansPerSecond;
+    this.nanoClock = nanoClock;
+    long now = nanoClock.getAsLong();
+    this.lastAdjustmentNanos = now;
+    this.nextAdjustmentNanos = new AtomicLong(now + ADJUSTMENT_INTERVAL_NANOS);
+    this.burstBudget = burstBudget(1.0);
+  }
+
+  @Override
+  public boolean sample(String operationName, long traceId, long duration) {
+    maybeAdjust();
+    decisions.increment();
+    if (toUnitInterval(traceId) >= probability) {
+      return false;
+    }
+    // Only sampled decisions pay for reading the adder, and those are bounded by the target.
+    if (sampledDecisions.sum() >= burstBudget) {
+      return false;
+    }
+    sampledDecisions.increment();
+    return true;
+  }
+
+  @Override
+  public boolean isEarly() {
+    return true;
+  }
+
+  /**
+   * @return The current sampling probability.
+   */
+  public double getProbability() {
+    return probability;
+  }
+
+  public double getTargetSpansPerSecond() {
+    return targetSpansPerSecond;
+  }
+
+  /**
+   * Wraps the tracer's reporter so that this sampler observes the spans that are reported.
+   */
+  public Reporter countReportedSpans(Reporter reporter) {
+    return new DelegatingReporter(reporter) {
+      @Override
+      public void report(WavefrontSpan span) {
+        spanReported();
+        forward(span);
+      }
+    };
+  }
+
+  void spanReported() {
+    reportedSpans.increment();
+  }
+
+  private void maybeAdjust() {
+    long now = nanoClock.getAsLong();
+    long next = nextAdjustmentNanos.get();
+    if (now - next < 0 || !nextAdjustmentNanos.compareAndSet(next,
+        now + ADJUSTMENT_INTERVAL_NANOS)) {
+      return;
+    }
+    double elapsedSeconds = Math.max(now - lastAdjustmentNanos, 1) / 1.0e9;
+    lastAdjustmentNanos = now;
+    long offered = decisions.sumThenReset();
+    long sampled = sampledDecisions.sumThenReset();
+    long reported = reportedSpans.sumThenReset();
+
+    if (sampled > 0 && reported > 0) {
+      spansPerTrace = SMOOTHING * ((double) reported / sampled) + (1 - SMOOTHING) * spansPerTrace;
+    }
+    if (offered > 0) {
+      double offeredSpansPerSecond = offered / elapsedSeconds * spansPerTrace;
+      double ideal = Math.max(MIN_PROBABILITY,
+          Math.min(1.0, targetSpansPerSecond / offeredSpansPerSecond));
+      // Back off at once when load grows, but ramp up gradually to avoid oscillating.
+      probability = ideal < probability ? ideal :
+          SMOOTHING * ideal + (1 - SMOOTHING) * probability;
+    }
+    burstBudget = burstBudget(spansPerTrace);
+  }
+
+  private long burstBudget(double spansPerTrace) {
+    double intervalSeconds = ADJUSTMENT_INTERVAL_NANOS / 1.0e9;
+    return Math.max(1, (long) (BURST_FACTOR * targetSpansPerSecond * intervalSeconds /
+        spansPerTrace));
+  }
+}
@@ -0,0 +1,52 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Sampler} that samples a span only if every one of its samplers does.
+ *
+ * {@link com.wavefront.opentracing.WavefrontTracer} reports a span as soon as any one of its
+ * registered samplers samples it. Wrapping several samplers in an AllOfSampler narrows that down,
+ * e.g. to "1% of the spans that took longer than 100ms". The decision is early only if all of
+ * the wrapped samplers are early; otherwise it is deferred until the span finishes and its
+ * duration is known.
+ */
+public class AllOfSampler implements Sampler {
+  private final Sampler[] samplers;
+  private final boolean early;
+
+  public AllOfSampler(List<Sampler> samplers) {
+    if (samplers == null || samplers.isEmpty()) {
+      throw new IllegalArgumentException("At least one sampler is required");
+    }
+    this.samplers = samplers.toArray(new Sampler[0]);
+    boolean allEarly = true;
+    for (Sampler sampler : this.samplers) {
+      allEarly &= sampler.isEarly();
+    }
+    this.early = allEarly;
+  }
+
+  @Override
+  public boolean sample(String operationName, long traceId, long duration) {
+    for (Sampler sampler : samplers) {
+      if (!sampler.sample(operationName, traceId, duration)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isEarly() {
+    return early;
+  }
+
+  public List<Sampler> getSamplers() {
+    return Collections.unmodifiableList(Arrays.asList(samplers));
+  }
+}
@@ -0,0 +1,129 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.DelegatingReporter;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Sampling whose samplers can be replaced while the tracer is running, e.g. when the
+ * configuration file changes.
+ *
+ * The samplers of a {@link com.wavefront.opentracing.WavefrontTracer} are fixed when it is built.
+ * Register the two samplers returned by {@link #getSamplers()} instead: one stands in for the
+ * current early samplers and one for the samplers that decide once a span has finished, and both
+ * sample a span if any one of the current samplers they stand in for does. With no current
+ * samplers at all, every span is sampled, like a tracer without samplers.
+ *
+ * {@link #update} publishes the new samplers with a single volatile write, so a span sees either
+ * the old or the new samplers and sampling never blocks.
+ */
+public class ReloadableSampling {
+  private volatile Current current;
+
+  private final Sampler early = new View(true);
+  private final Sampler late = new View(false);
+
+  /**
+   * @param samplers        The initial samplers, as they would be registered with the tracer.
+   * @param adaptiveSampler The adaptive sampler among them, if any.
+   */
+  public ReloadableSampling(List<Sampler> samplers, @Nullable AdaptiveSampler adaptiveSampler) {
+    update(samplers, adaptiveSampler);
+  }
+
+  /**
+   * Replaces the samplers.
+   *
+   * @param samplers        The new samplers, as they would be registered with the tracer.
+   * @param adaptiveSampler The adaptive sampler among them, if any.
+   */
+  public void update(List<Sampler> samplers, @Nullable AdaptiveSampler adaptiveSampler) {
+    current = new Current(samplers, adaptiveSampler);
+  }
+
+  /**
+   * @return The samplers to register with the tracer.
+   */
+  public List<Sampler> getSamplers() {
+    return Arrays.asList(early, late);
+  }
+
+  /**
+   * @return The samplers currently in effect.
+   */
+  public List<Sampler> getCurrentSamplers() {
+    return current.samplers;
+  }
+
+  /**
+   * Wraps the tracer's reporter so that the current adaptive sampler, if any, observes the spans
+   * that are reported. See {@link AdaptiveSampler#countReportedSpans(Reporter)}.
+   */
+  public Reporter countReportedSpans(Reporter reporter) {
+    return new DelegatingReporter(reporter) {
+      @Override
+      public void report(WavefrontSpan span) {
+        AdaptiveSampler adaptiveSampler = current.adaptiveSampler;
+        if (adaptiveSampler != null) {
+          adaptiveSampler.spanReported();
+        }
+        forward(span);
+      }
+    };
+  }
+
+  private static final class Current {
+    final List<Sampler> samplers;
+    final Sampler[] early;
+    final Sampler[] late;
+    @Nullable
+    final AdaptiveSampler adaptiveSampler;
+
+    Current(List<Sampler> samplers, @Nullable AdaptiveSampler adaptiveSampler) {
+      this.samplers = Collections.unmodifiableList(new ArrayList<>(samplers));
+      List<Sampler> early = new ArrayList<>();
+      List<Sampler> late = new ArrayList<>();
+      for (Sampler sampler : samplers) {
+        (sampler.isEarly() ? early : late).add(sampler);
+      }
+      this.early = early.toArray(new Sampler[0]);
+      this.late = late.toArray(new Sampler[0]);
+      this.adaptiveSampler = adaptiveSampler;
+    }
+  }
+
+  private final class View implements Sampler {
+    private final boolean isEarly;
+
+    View(boolean isEarly) {
+      this.isEarly = isEarly;
+    }
+
+    @Override
+    public boolean sample(String operationName, long traceId, long duration) {
+      Current samplers = current;
+      if (samplers.samplers.isEmpty()) {
+        return true;
+      }
+      for (Sampler sampler : isEarly ? samplers.early : samplers.late) {
+        if (sampler.sample(operationName, traceId, duration)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isEarly() {
+      return isEarly;
+    }
+  }
+}
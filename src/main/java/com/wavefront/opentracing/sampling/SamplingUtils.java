@@ -0,0 +1,18 @@
+package com.wavefront.opentracing.sampling;
+
+/**
+ * Helpers shared by the bundle's samplers.
+ */
+public final class SamplingUtils {
+  private SamplingUtils() {}
+
+  /**
+   * Maps a trace ID onto [0, 1), mixing its bits first so that sequential IDs spread evenly.
+   * Comparing the result with a rate gives the same decision for every span of a trace.
+   */
+  public static double toUnitInterval(long traceId) {
+    long mixed = traceId * 0x9E3779B97F4A7C15L;
+    mixed ^= mixed >>> 32;
+    return (mixed >>> 11) * 0x1.0p-53;
+  }
+}
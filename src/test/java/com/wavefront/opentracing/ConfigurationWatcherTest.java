@@ -0,0 +1,69 @@
+package com.wavefront.opentracing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ConfigurationWatcher}.
+ */
+public class ConfigurationWatcherTest {
+  private final List<Map<String, String>> reloads = new CopyOnWriteArrayList<>();
+  private File configurationFile;
+  private ConfigurationWatcher watcher;
+
+  @Before
+  public void beforeTest() throws IOException {
+    configurationFile = File.createTempFile("tracer", ".properties");
+    write(TracerParameters.SAMPLING_RATE + "=1.0\n");
+    System.setProperty(Configuration.CONFIGURATION_FILE_KEY, configurationFile.getAbsolutePath());
+    // Polled by hand only.
+    watcher = new ConfigurationWatcher(configurationFile, Long.MAX_VALUE / 2, reloads::add);
+  }
+
+  @After
+  public void afterTest() {
+    watcher.close();
+    System.clearProperty(Configuration.CONFIGURATION_FILE_KEY);
+    System.clearProperty(TracerParameters.SAMPLING_RATE);
+    configurationFile.delete();
+  }
+
+  @Test
+  public void testReloadsChangedFile() throws IOException {
+    watcher.poll();
+    assertEquals(0, reloads.size());
+
+    write(TracerParameters.SAMPLING_RATE + "=0.25\n" +
+        TracerParameters.DISABLE_SPAN_LOG_REPORTING + "=true\n");
+    watcher.poll();
+    assertEquals(1, reloads.size());
+    assertEquals("0.25", reloads.get(0).get(TracerParameters.SAMPLING_RATE));
+    assertEquals("true", reloads.get(0).get(TracerParameters.DISABLE_SPAN_LOG_REPORTING));
+
+    watcher.poll();
+    assertEquals(1, reloads.size());
+  }
+
+  @Test
+  public void testSystemPropertiesTakePrecedence() throws IOException {
+    System.setProperty(TracerParameters.SAMPLING_RATE, "0.5");
+    write(TracerParameters.SAMPLING_RATE + "=0.25\n");
+    watcher.poll();
+    assertEquals("0.5", reloads.get(0).get(TracerParameters.SAMPLING_RATE));
+  }
+
+  private void write(String properties) throws IOException {
+    Files.write(configurationFile.toPath(), properties.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,94 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.WavefrontSender;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link LazyWavefrontSender}.
+ */
+public class LazyWavefrontSenderTest {
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+  private final CountDownLatch ready = new CountDownLatch(1);
+
+  @Test
+  public void testForwardsOnceCreated() throws Exception {
+    WavefrontSender sender = LazyWavefrontSender.create(() -> {
+      ready.await();
+      return recordingSender();
+    });
+
+    // Nothing waits for the actual sender except sending data.
+    assertEquals(0, sender.getFailureCount());
+    sender.flush();
+    CountDownLatch sent = new CountDownLatch(1);
+    Thread reporter = new Thread(() -> {
+      try {
+        sender.sendSpan("op", 0, 1, "source", UUID.randomUUID(), UUID.randomUUID(), null, null,
+            null, null);
+        sent.countDown();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    reporter.start();
+    assertFalse(sent.await(100, TimeUnit.MILLISECONDS));
+    assertTrue(calls.isEmpty());
+
+    ready.countDown();
+    assertTrue(sent.await(5, TimeUnit.SECONDS));
+    sender.flush();
+    sender.close();
+    assertEquals("[sendSpan, flush, close]", calls.toString());
+  }
+
+  @Test
+  public void testClosesSenderCreatedAfterClose() throws Exception {
+    WavefrontSender sender = LazyWavefrontSender.create(() -> {
+      ready.await();
+      return recordingSender();
+    });
+    sender.close();
+    ready.countDown();
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (calls.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals("[close]", calls.toString());
+  }
+
+  @Test
+  public void testFailsSendingIfCreationFails() {
+    WavefrontSender sender = LazyWavefrontSender.create(() -> {
+      throw new IOException("unreachable");
+    });
+    try {
+      sender.sendMetric("metric", 1.0, null, null, null);
+      fail();
+    } catch (IOException e) {
+      assertEquals("unreachable", e.getCause().getMessage());
+    }
+  }
+
+  private WavefrontSender recordingSender() {
+    return (WavefrontSender) Proxy.newProxyInstance(WavefrontSender.class.getClassLoader(),
+        new Class<?>[] { WavefrontSender.class }, (proxy, method, args) -> {
+          calls.add(method.getName());
+          return method.getReturnType() == int.class ? 0 : null;
+        });
+  }
+}
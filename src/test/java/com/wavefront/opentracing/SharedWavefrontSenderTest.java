@@ -0,0 +1,39 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.WavefrontSender;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link SharedWavefrontSender}.
+ */
+public class SharedWavefrontSenderTest {
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void testFlushesInsteadOfClosing() throws Exception {
+    WavefrontSender owned = recordingSender();
+    WavefrontSender shared = SharedWavefrontSender.of(owned);
+
+    shared.sendSpan("op", 0, 1, "source", UUID.randomUUID(), UUID.randomUUID(), null, null, null,
+        null);
+    shared.close();
+    owned.close();
+    assertEquals("[sendSpan, flush, close]", calls.toString());
+  }
+
+  private WavefrontSender recordingSender() {
+    return (WavefrontSender) Proxy.newProxyInstance(WavefrontSender.class.getClassLoader(),
+        new Class<?>[] { WavefrontSender.class }, (proxy, method, args) -> {
+          calls.add(method.getName());
+          return method.getReturnType() == int.class ? 0 : null;
+        });
+  }
+}
@@ -0,0 +1,77 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.opentracing.reporting.RecordingReporter;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ShutdownHook}.
+ */
+public class ShutdownHookTest {
+  private final ShutdownHook hook = new ShutdownHook();
+
+  @Test
+  public void testClosesRegisteredTracers() {
+    RecordingReporter first = new RecordingReporter();
+    RecordingReporter second = new RecordingReporter();
+    register(first, 1000);
+    register(second, 1000);
+    assertEquals(2, hook.size());
+
+    assertEquals(0, hook.closeAll());
+    assertTrue(first.isClosed());
+    assertTrue(second.isClosed());
+    assertEquals(0, hook.size());
+  }
+
+  @Test
+  public void testClosingTracerUnregistersIt() throws Exception {
+    RecordingReporter reporter = new RecordingReporter();
+    Closeable tracer = register(reporter, 1000);
+
+    tracer.close();
+    assertEquals(0, hook.size());
+    assertTrue(reporter.isClosed());
+  }
+
+  @Test
+  public void testWaitsNoLongerThanTimeout() {
+    CountDownLatch released = new CountDownLatch(1);
+    ShutdownHook.Registration registration =
+        hook.newRegistration(new RecordingReporter(), 50);
+    registration.register(() -> {
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    long start = System.nanoTime();
+    assertEquals(1, hook.closeAll());
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    released.countDown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequiresPositiveTimeout() {
+    hook.newRegistration(new RecordingReporter(), 0);
+  }
+
+  /**
+   * @return A stand-in for a tracer, which closes its reporter like a tracer does.
+   */
+  private Closeable register(RecordingReporter reporter, long timeoutMillis) {
+    ShutdownHook.Registration registration = hook.newRegistration(reporter, timeoutMillis);
+    Closeable tracer = registration::close;
+    registration.register(tracer);
+    return tracer;
+  }
+}
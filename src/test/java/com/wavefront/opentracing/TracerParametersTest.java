@@ -1,5 +1,13 @@
 package com.wavefront.opentracing;
 
+import com.wavefront.opentracing.propagation.B3Propagator;
+import com.wavefront.opentracing.propagation.CompositePropagator;
+import com.wavefront.opentracing.propagation.TraceContextPropagator;
+import com.wavefront.opentracing.sampling.AdaptiveSampler;
+import com.wavefront.opentracing.sampling.AllOfSampler;
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -7,15 +15,24 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 import static com.wavefront.opentracing.TracerParameters.getParameters;
 import static com.wavefront.opentracing.TracerParameters.toCustomTags;
+import static com.wavefront.opentracing.TracerParameters.toPropagator;
+import static com.wavefront.opentracing.TracerParameters.toProxyAddresses;
+import static com.wavefront.opentracing.TracerParameters.toSamplers;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.powermock.api.easymock.PowerMock.mockStaticPartial;
 import static org.powermock.api.easymock.PowerMock.replay;
 import static org.powermock.api.easymock.PowerMock.verify;
@@ -49,6 +66,87 @@ public class TracerParametersTest {
   private final static String SOURCE = "source";
   private final static String DISABLE_SPAN_LOG_REPORTING = "false";
 
+  private final static String SAMPLING_RATE = "0.1";
+  private final static String SAMPLING_DURATION_MS = "100";
+  private final static String SAMPLING_POLICY = "all";
+  private final static String SAMPLING_TARGET_SPANS_PER_SECOND = "500";
+
+  private final static String ASYNC_REPORTING = "true";
+  private final static String ASYNC_REPORTING_QUEUE_SIZE = "10000";
+  private final static String ASYNC_REPORTING_BATCH_SIZE = "200";
+  private final static String ASYNC_REPORTING_FLUSH_INTERVAL_MS = "500";
+  private final static String ASYNC_REPORTING_OVERFLOW_POLICY = "drop-oldest";
+
+  private final static String TAIL_SAMPLING = "true";
+  private final static String TAIL_SAMPLING_LATENCY_THRESHOLD_MS = "500";
+  private final static String TAIL_SAMPLING_BASE_RATE = "0.05";
+  private final static String TAIL_SAMPLING_DECISION_WAIT_MS = "2000";
+  private final static String TAIL_SAMPLING_MAX_BUFFERED_BYTES = "1048576";
+
+  private final static String REPORTING_DESTINATIONS = "/tmp/direct.yaml";
+  private final static String REPORTING_DESTINATIONS_QUEUE_SIZE = "1000";
+  private final static String REPORTING_DESTINATIONS_OVERFLOW_POLICY = "drop-oldest";
+
+  private final static String SPILL_DIRECTORY = "/tmp/wavefront-spill";
+  private final static String SPILL_MAX_BYTES = "1048576";
+  private final static String SPILL_SEGMENT_SIZE = "65536";
+
+  private final static String LAZY_STARTUP = "true";
+
+  private final static String WATCH_CONFIGURATION_FILE = "true";
+  private final static String WATCH_CONFIGURATION_FILE_INTERVAL_MS = "5000";
+
+  private final static String SPAN_METRICS = "true";
+  private final static String SPAN_METRICS_TAG_KEYS = "http.method";
+  private final static String SPAN_METRICS_SPAN_SAMPLING_RATE = "0.01";
+  private final static String SPAN_METRICS_FLUSH_INTERVAL_MS = "10000";
+  private final static String SPAN_METRICS_MAX_KEYS = "500";
+
+  private final static String GUARD_MAX_SPANS_PER_SECOND = "100";
+  private final static String GUARD_MAX_TAG_VALUES = "500";
+  private final static String GUARD_PLACEHOLDER = "overflow";
+
+  private final static String VIRTUAL_THREADS = "true";
+
+  private final static String INTERNAL_METRICS_INTERVAL_MS = "30000";
+  private final static String INTERNAL_METRICS_DETAILED = "true";
+
+  private final static String SHUTDOWN_HOOK = "true";
+  private final static String SHUTDOWN_HOOK_TIMEOUT_MS = "10000";
+
+  private final static String SAMPLING_PROPAGATION = "true";
+
+  private final static String PROPAGATORS = "w3c,b3";
+
+  private final static String SPAN_LOGS_MAX_ENTRIES = "50";
+  private final static String SPAN_LOGS_MAX_FIELD_BYTES = "1024";
+  private final static String SPAN_LOGS_MAX_BYTES_PER_SECOND = "1000000";
+  private final static String SPAN_LOGS_DEDUPLICATE = "true";
+
+  private final static String DIRECT_PIPELINED = "true";
+  private final static String DIRECT_COMPRESSION = "gzip";
+  private final static String DIRECT_MAX_IN_FLIGHT = "8";
+  private final static String DIRECT_MAX_BATCH_SIZE = "5000";
+  private final static String DIRECT_TARGET_LATENCY_MS = "500";
+
+  private final static String PROXY_TRACING_CONNECTIONS = "8";
+  private final static String PROXY_TRACING_HOSTS = "proxy1:30000,proxy2";
+  private final static String PROXY_TRACING_BUFFER_SIZE = "65536";
+
+  private final static String TAGS_DROP = "user.id";
+  private final static String TAGS_HASH = "session.*";
+  private final static String TAGS_REDACT = "db.statement";
+  private final static String TAGS_REDACT_PATTERN = "'[^']*'";
+  private final static String TAGS_STRIP_QUERY = "http.url";
+
+  private final static String RECENT_SPANS_CAPACITY = "5000";
+  private final static String RECENT_SPANS_MAX_SPAN_BYTES = "2048";
+
+  private final static String FILE_DIRECTORY = "/var/tmp/wavefront-capture";
+  private final static String FILE_MAX_BYTES = "67108864";
+  private final static String FILE_MAX_FILES = "10";
+  private final static String FILE_COMPRESSION = "gzip";
+
   @Before
   public void beforeTest() {
     // Clear all the parameters.
@@ -81,6 +179,99 @@ public class TracerParametersTest {
     System.setProperty(TracerParameters.SOURCE, SOURCE);
     System.setProperty(TracerParameters.DISABLE_SPAN_LOG_REPORTING, DISABLE_SPAN_LOG_REPORTING);
 
+    System.setProperty(TracerParameters.SAMPLING_RATE, SAMPLING_RATE);
+    System.setProperty(TracerParameters.SAMPLING_DURATION_MS, SAMPLING_DURATION_MS);
+    System.setProperty(TracerParameters.SAMPLING_POLICY, SAMPLING_POLICY);
+    System.setProperty(TracerParameters.SAMPLING_TARGET_SPANS_PER_SECOND,
+        SAMPLING_TARGET_SPANS_PER_SECOND);
+
+    System.setProperty(TracerParameters.ASYNC_REPORTING, ASYNC_REPORTING);
+    System.setProperty(TracerParameters.ASYNC_REPORTING_QUEUE_SIZE, ASYNC_REPORTING_QUEUE_SIZE);
+    System.setProperty(TracerParameters.ASYNC_REPORTING_BATCH_SIZE, ASYNC_REPORTING_BATCH_SIZE);
+    System.setProperty(TracerParameters.ASYNC_REPORTING_FLUSH_INTERVAL_MS,
+        ASYNC_REPORTING_FLUSH_INTERVAL_MS);
+    System.setProperty(TracerParameters.ASYNC_REPORTING_OVERFLOW_POLICY,
+        ASYNC_REPORTING_OVERFLOW_POLICY);
+
+    System.setProperty(TracerParameters.TAIL_SAMPLING, TAIL_SAMPLING);
+    System.setProperty(TracerParameters.TAIL_SAMPLING_LATENCY_THRESHOLD_MS,
+        TAIL_SAMPLING_LATENCY_THRESHOLD_MS);
+    System.setProperty(TracerParameters.TAIL_SAMPLING_BASE_RATE, TAIL_SAMPLING_BASE_RATE);
+    System.setProperty(TracerParameters.TAIL_SAMPLING_DECISION_WAIT_MS,
+        TAIL_SAMPLING_DECISION_WAIT_MS);
+    System.setProperty(TracerParameters.TAIL_SAMPLING_MAX_BUFFERED_BYTES,
+        TAIL_SAMPLING_MAX_BUFFERED_BYTES);
+
+    System.setProperty(TracerParameters.REPORTING_DESTINATIONS, REPORTING_DESTINATIONS);
+    System.setProperty(TracerParameters.REPORTING_DESTINATIONS_QUEUE_SIZE,
+        REPORTING_DESTINATIONS_QUEUE_SIZE);
+    System.setProperty(TracerParameters.REPORTING_DESTINATIONS_OVERFLOW_POLICY,
+        REPORTING_DESTINATIONS_OVERFLOW_POLICY);
+
+    System.setProperty(TracerParameters.SPILL_DIRECTORY, SPILL_DIRECTORY);
+    System.setProperty(TracerParameters.SPILL_MAX_BYTES, SPILL_MAX_BYTES);
+    System.setProperty(TracerParameters.SPILL_SEGMENT_SIZE, SPILL_SEGMENT_SIZE);
+
+    System.setProperty(TracerParameters.LAZY_STARTUP, LAZY_STARTUP);
+
+    System.setProperty(TracerParameters.WATCH_CONFIGURATION_FILE, WATCH_CONFIGURATION_FILE);
+    System.setProperty(TracerParameters.WATCH_CONFIGURATION_FILE_INTERVAL_MS,
+        WATCH_CONFIGURATION_FILE_INTERVAL_MS);
+
+    System.setProperty(TracerParameters.SPAN_METRICS, SPAN_METRICS);
+    System.setProperty(TracerParameters.SPAN_METRICS_TAG_KEYS, SPAN_METRICS_TAG_KEYS);
+    System.setProperty(TracerParameters.SPAN_METRICS_SPAN_SAMPLING_RATE,
+        SPAN_METRICS_SPAN_SAMPLING_RATE);
+    System.setProperty(TracerParameters.SPAN_METRICS_FLUSH_INTERVAL_MS,
+        SPAN_METRICS_FLUSH_INTERVAL_MS);
+    System.setProperty(TracerParameters.SPAN_METRICS_MAX_KEYS, SPAN_METRICS_MAX_KEYS);
+
+    System.setProperty(TracerParameters.GUARD_MAX_SPANS_PER_SECOND, GUARD_MAX_SPANS_PER_SECOND);
+    System.setProperty(TracerParameters.GUARD_MAX_TAG_VALUES, GUARD_MAX_TAG_VALUES);
+    System.setProperty(TracerParameters.GUARD_PLACEHOLDER, GUARD_PLACEHOLDER);
+
+    System.setProperty(TracerParameters.VIRTUAL_THREADS, VIRTUAL_THREADS);
+
+    System.setProperty(TracerParameters.INTERNAL_METRICS_INTERVAL_MS, INTERNAL_METRICS_INTERVAL_MS);
+    System.setProperty(TracerParameters.INTERNAL_METRICS_DETAILED, INTERNAL_METRICS_DETAILED);
+
+    System.setProperty(TracerParameters.SHUTDOWN_HOOK, SHUTDOWN_HOOK);
+    System.setProperty(TracerParameters.SHUTDOWN_HOOK_TIMEOUT_MS, SHUTDOWN_HOOK_TIMEOUT_MS);
+
+    System.setProperty(TracerParameters.SAMPLING_PROPAGATION, SAMPLING_PROPAGATION);
+
+    System.setProperty(TracerParameters.PROPAGATORS, PROPAGATORS);
+
+    System.setProperty(TracerParameters.SPAN_LOGS_MAX_ENTRIES, SPAN_LOGS_MAX_ENTRIES);
+    System.setProperty(TracerParameters.SPAN_LOGS_MAX_FIELD_BYTES, SPAN_LOGS_MAX_FIELD_BYTES);
+    System.setProperty(TracerParameters.SPAN_LOGS_MAX_BYTES_PER_SECOND,
+        SPAN_LOGS_MAX_BYTES_PER_SECOND);
+    System.setProperty(TracerParameters.SPAN_LOGS_DEDUPLICATE, SPAN_LOGS_DEDUPLICATE);
+
+    System.setProperty(TracerParameters.DIRECT_PIPELINED, DIRECT_PIPELINED);
+    System.setProperty(TracerParameters.DIRECT_COMPRESSION, DIRECT_COMPRESSION);
+    System.setProperty(TracerParameters.DIRECT_MAX_IN_FLIGHT, DIRECT_MAX_IN_FLIGHT);
+    System.setProperty(TracerParameters.DIRECT_MAX_BATCH_SIZE, DIRECT_MAX_BATCH_SIZE);
+    System.setProperty(TracerParameters.DIRECT_TARGET_LATENCY_MS, DIRECT_TARGET_LATENCY_MS);
+
+    System.setProperty(TracerParameters.PROXY_TRACING_CONNECTIONS, PROXY_TRACING_CONNECTIONS);
+    System.setProperty(TracerParameters.PROXY_TRACING_HOSTS, PROXY_TRACING_HOSTS);
+    System.setProperty(TracerParameters.PROXY_TRACING_BUFFER_SIZE, PROXY_TRACING_BUFFER_SIZE);
+
+    System.setProperty(TracerParameters.TAGS_DROP, TAGS_DROP);
+    System.setProperty(TracerParameters.TAGS_HASH, TAGS_HASH);
+    System.setProperty(TracerParameters.TAGS_REDACT, TAGS_REDACT);
+    System.setProperty(TracerParameters.TAGS_REDACT_PATTERN, TAGS_REDACT_PATTERN);
+    System.setProperty(TracerParameters.TAGS_STRIP_QUERY, TAGS_STRIP_QUERY);
+
+    System.setProperty(TracerParameters.RECENT_SPANS_CAPACITY, RECENT_SPANS_CAPACITY);
+    System.setProperty(TracerParameters.RECENT_SPANS_MAX_SPAN_BYTES, RECENT_SPANS_MAX_SPAN_BYTES);
+
+    System.setProperty(TracerParameters.FILE_DIRECTORY, FILE_DIRECTORY);
+    System.setProperty(TracerParameters.FILE_MAX_BYTES, FILE_MAX_BYTES);
+    System.setProperty(TracerParameters.FILE_MAX_FILES, FILE_MAX_FILES);
+    System.setProperty(TracerParameters.FILE_COMPRESSION, FILE_COMPRESSION);
+
     assertValidParameters(getParameters());
   }
 
@@ -108,6 +299,99 @@ public class TracerParametersTest {
     props.setProperty(TracerParameters.SOURCE, SOURCE);
     props.setProperty(TracerParameters.DISABLE_SPAN_LOG_REPORTING, DISABLE_SPAN_LOG_REPORTING);
 
+    props.setProperty(TracerParameters.SAMPLING_RATE, SAMPLING_RATE);
+    props.setProperty(TracerParameters.SAMPLING_DURATION_MS, SAMPLING_DURATION_MS);
+    props.setProperty(TracerParameters.SAMPLING_POLICY, SAMPLING_POLICY);
+    props.setProperty(TracerParameters.SAMPLING_TARGET_SPANS_PER_SECOND,
+        SAMPLING_TARGET_SPANS_PER_SECOND);
+
+    props.setProperty(TracerParameters.ASYNC_REPORTING, ASYNC_REPORTING);
+    props.setProperty(TracerParameters.ASYNC_REPORTING_QUEUE_SIZE, ASYNC_REPORTING_QUEUE_SIZE);
+    props.setProperty(TracerParameters.ASYNC_REPORTING_BATCH_SIZE, ASYNC_REPORTING_BATCH_SIZE);
+    props.setProperty(TracerParameters.ASYNC_REPORTING_FLUSH_INTERVAL_MS,
+        ASYNC_REPORTING_FLUSH_INTERVAL_MS);
+    props.setProperty(TracerParameters.ASYNC_REPORTING_OVERFLOW_POLICY,
+        ASYNC_REPORTING_OVERFLOW_POLICY);
+
+    props.setProperty(TracerParameters.TAIL_SAMPLING, TAIL_SAMPLING);
+    props.setProperty(TracerParameters.TAIL_SAMPLING_LATENCY_THRESHOLD_MS,
+        TAIL_SAMPLING_LATENCY_THRESHOLD_MS);
+    props.setProperty(TracerParameters.TAIL_SAMPLING_BASE_RATE, TAIL_SAMPLING_BASE_RATE);
+    props.setProperty(TracerParameters.TAIL_SAMPLING_DECISION_WAIT_MS,
+        TAIL_SAMPLING_DECISION_WAIT_MS);
+    props.setProperty(TracerParameters.TAIL_SAMPLING_MAX_BUFFERED_BYTES,
+        TAIL_SAMPLING_MAX_BUFFERED_BYTES);
+
+    props.setProperty(TracerParameters.REPORTING_DESTINATIONS, REPORTING_DESTINATIONS);
+    props.setProperty(TracerParameters.REPORTING_DESTINATIONS_QUEUE_SIZE,
+        REPORTING_DESTINATIONS_QUEUE_SIZE);
+    props.setProperty(TracerParameters.REPORTING_DESTINATIONS_OVERFLOW_POLICY,
+        REPORTING_DESTINATIONS_OVERFLOW_POLICY);
+
+    props.setProperty(TracerParameters.SPILL_DIRECTORY, SPILL_DIRECTORY);
+    props.setProperty(TracerParameters.SPILL_MAX_BYTES, SPILL_MAX_BYTES);
+    props.setProperty(TracerParameters.SPILL_SEGMENT_SIZE, SPILL_SEGMENT_SIZE);
+
+    props.setProperty(TracerParameters.LAZY_STARTUP, LAZY_STARTUP);
+
+    props.setProperty(TracerParameters.WATCH_CONFIGURATION_FILE, WATCH_CONFIGURATION_FILE);
+    props.setProperty(TracerParameters.WATCH_CONFIGURATION_FILE_INTERVAL_MS,
+        WATCH_CONFIGURATION_FILE_INTERVAL_MS);
+
+    props.setProperty(TracerParameters.SPAN_METRICS, SPAN_METRICS);
+    props.setProperty(TracerParameters.SPAN_METRICS_TAG_KEYS, SPAN_METRICS_TAG_KEYS);
+    props.setProperty(TracerParameters.SPAN_METRICS_SPAN_SAMPLING_RATE,
+        SPAN_METRICS_SPAN_SAMPLING_RATE);
+    props.setProperty(TracerParameters.SPAN_METRICS_FLUSH_INTERVAL_MS,
+        SPAN_METRICS_FLUSH_INTERVAL_MS);
+    props.setProperty(TracerParameters.SPAN_METRICS_MAX_KEYS, SPAN_METRICS_MAX_KEYS);
+
+    props.setProperty(TracerParameters.GUARD_MAX_SPANS_PER_SECOND, GUARD_MAX_SPANS_PER_SECOND);
+    props.setProperty(TracerParameters.GUARD_MAX_TAG_VALUES, GUARD_MAX_TAG_VALUES);
+    props.setProperty(TracerParameters.GUARD_PLACEHOLDER, GUARD_PLACEHOLDER);
+
+    props.setProperty(TracerParameters.VIRTUAL_THREADS, VIRTUAL_THREADS);
+
+    props.setProperty(TracerParameters.INTERNAL_METRICS_INTERVAL_MS, INTERNAL_METRICS_INTERVAL_MS);
+    props.setProperty(TracerParameters.INTERNAL_METRICS_DETAILED, INTERNAL_METRICS_DETAILED);
+
+    props.setProperty(TracerParameters.SHUTDOWN_HOOK, SHUTDOWN_HOOK);
+    props.setProperty(TracerParameters.SHUTDOWN_HOOK_TIMEOUT_MS, SHUTDOWN_HOOK_TIMEOUT_MS);
+
+    props.setProperty(TracerParameters.SAMPLING_PROPAGATION, SAMPLING_PROPAGATION);
+
+    props.setProperty(TracerParameters.PROPAGATORS, PROPAGATORS);
+
+    props.setProperty(TracerParameters.SPAN_LOGS_MAX_ENTRIES, SPAN_LOGS_MAX_ENTRIES);
+    props.setProperty(TracerParameters.SPAN_LOGS_MAX_FIELD_BYTES, SPAN_LOGS_MAX_FIELD_BYTES);
+    props.setProperty(TracerParameters.SPAN_LOGS_MAX_BYTES_PER_SECOND,
+        SPAN_LOGS_MAX_BYTES_PER_SECOND);
+    props.setProperty(TracerParameters.SPAN_LOGS_DEDUPLICATE, SPAN_LOGS_DEDUPLICATE);
+
+    props.setProperty(TracerParameters.DIRECT_PIPELINED, DIRECT_PIPELINED);
+    props.setProperty(TracerParameters.DIRECT_COMPRESSION, DIRECT_COMPRESSION);
+    props.setProperty(TracerParameters.DIRECT_MAX_IN_FLIGHT, DIRECT_MAX_IN_FLIGHT);
+    props.setProperty(TracerParameters.DIRECT_MAX_BATCH_SIZE, DIRECT_MAX_BATCH_SIZE);
+    props.setProperty(TracerParameters.DIRECT_TARGET_LATENCY_MS, DIRECT_TARGET_LATENCY_MS);
+
+    props.setProperty(TracerParameters.PROXY_TRACING_CONNECTIONS, PROXY_TRACING_CONNECTIONS);
+    props.setProperty(TracerParameters.PROXY_TRACING_HOSTS, PROXY_TRACING_HOSTS);
+    props.setProperty(TracerParameters.PROXY_TRACING_BUFFER_SIZE, PROXY_TRACING_BUFFER_SIZE);
+
+    props.setProperty(TracerParameters.TAGS_DROP, TAGS_DROP);
+    props.setProperty(TracerParameters.TAGS_HASH, TAGS_HASH);
+    props.setProperty(TracerParameters.TAGS_REDACT, TAGS_REDACT);
+    props.setProperty(TracerParameters.TAGS_REDACT_PATTERN, TAGS_REDACT_PATTERN);
+    props.setProperty(TracerParameters.TAGS_STRIP_QUERY, TAGS_STRIP_QUERY);
+
+    props.setProperty(TracerParameters.RECENT_SPANS_CAPACITY, RECENT_SPANS_CAPACITY);
+    props.setProperty(TracerParameters.RECENT_SPANS_MAX_SPAN_BYTES, RECENT_SPANS_MAX_SPAN_BYTES);
+
+    props.setProperty(TracerParameters.FILE_DIRECTORY, FILE_DIRECTORY);
+    props.setProperty(TracerParameters.FILE_MAX_BYTES, FILE_MAX_BYTES);
+    props.setProperty(TracerParameters.FILE_MAX_FILES, FILE_MAX_FILES);
+    props.setProperty(TracerParameters.FILE_COMPRESSION, FILE_COMPRESSION);
+
     File file = null;
     try {
       file = Utils.savePropertiesToTempFile(props);
@@ -163,6 +447,76 @@ public class TracerParametersTest {
     assertEquals("PA", customTags.get("loc"));
   }
 
+  @Test
+  public void testToSamplers_NoProperty() {
+    assertTrue(toSamplers(getParameters()).isEmpty());
+  }
+
+  @Test
+  public void testToSamplers_AnyPolicy() {
+    System.setProperty(TracerParameters.SAMPLING_RATE, "0.5");
+    System.setProperty(TracerParameters.SAMPLING_DURATION_MS, "100");
+    List<Sampler> samplers = toSamplers(getParameters());
+    assertEquals(2, samplers.size());
+    assertTrue(samplers.get(0) instanceof RateSampler);
+    assertTrue(samplers.get(1) instanceof DurationSampler);
+  }
+
+  @Test
+  public void testToSamplers_AllPolicy() {
+    System.setProperty(TracerParameters.SAMPLING_RATE, "1.0");
+    System.setProperty(TracerParameters.SAMPLING_DURATION_MS, "100");
+    System.setProperty(TracerParameters.SAMPLING_POLICY, "all");
+    List<Sampler> samplers = toSamplers(getParameters());
+    assertEquals(1, samplers.size());
+    assertTrue(samplers.get(0) instanceof AllOfSampler);
+    assertFalse(samplers.get(0).isEarly());
+    assertTrue(samplers.get(0).sample("op", 1L, 101));
+    assertFalse(samplers.get(0).sample("op", 1L, 99));
+  }
+
+  @Test
+  public void testToSamplers_TargetSpansPerSecond() {
+    System.setProperty(TracerParameters.SAMPLING_TARGET_SPANS_PER_SECOND, "500");
+    System.setProperty(TracerParameters.SAMPLING_RATE, "0.5");
+    List<Sampler> samplers = toSamplers(getParameters());
+    assertEquals(1, samplers.size());
+    assertTrue(samplers.get(0) instanceof AdaptiveSampler);
+    assertEquals(500.0, ((AdaptiveSampler) samplers.get(0)).getTargetSpansPerSecond(), 0.0);
+  }
+
+  @Test
+  public void testToSamplers_InvalidValues() {
+    System.setProperty(TracerParameters.SAMPLING_RATE, "1.5");
+    System.setProperty(TracerParameters.SAMPLING_DURATION_MS, "abc");
+    System.setProperty(TracerParameters.SAMPLING_TARGET_SPANS_PER_SECOND, "-1");
+    assertTrue(toSamplers(getParameters()).isEmpty());
+  }
+
+  @Test
+  public void testToPropagator() {
+    assertNull(toPropagator(getParameters()));
+    System.setProperty(TracerParameters.SAMPLING_PROPAGATION, "true");
+    assertTrue(toPropagator(getParameters()) instanceof TraceContextPropagator);
+    System.setProperty(TracerParameters.PROPAGATORS, " B3, unknown ,b3");
+    assertTrue(toPropagator(getParameters()) instanceof B3Propagator);
+    System.setProperty(TracerParameters.PROPAGATORS, "w3c,b3");
+    assertTrue(toPropagator(getParameters()) instanceof CompositePropagator);
+    System.setProperty(TracerParameters.PROPAGATORS, "unknown");
+    assertNull(toPropagator(getParameters()));
+  }
+
+  @Test
+  public void testToProxyAddresses() {
+    assertEquals(Collections.emptyList(), toProxyAddresses(getParameters(), null, 30000));
+    assertEquals(Collections.singletonList(InetSocketAddress.createUnresolved("proxy", 30000)),
+        toProxyAddresses(getParameters(), "proxy", 30000));
+    System.setProperty(TracerParameters.PROXY_TRACING_HOSTS, "proxy1:40000, proxy2,:1,proxy3:x");
+    assertEquals(Arrays.asList(InetSocketAddress.createUnresolved("proxy1", 40000),
+        InetSocketAddress.createUnresolved("proxy2", 30000)),
+        toProxyAddresses(getParameters(), "proxy", 30000));
+  }
+
   private static void assertValidParameters(Map<String, String> params) {
     assertNotNull(params);
 
@@ -187,5 +541,103 @@ public class TracerParametersTest {
     assertEquals(SOURCE, params.get(TracerParameters.SOURCE));
     assertEquals(DISABLE_SPAN_LOG_REPORTING,
         params.get(TracerParameters.DISABLE_SPAN_LOG_REPORTING));
+
+    assertEquals(SAMPLING_RATE, params.get(TracerParameters.SAMPLING_RATE));
+    assertEquals(SAMPLING_DURATION_MS, params.get(TracerParameters.SAMPLING_DURATION_MS));
+    assertEquals(SAMPLING_POLICY, params.get(TracerParameters.SAMPLING_POLICY));
+    assertEquals(SAMPLING_TARGET_SPANS_PER_SECOND,
+        params.get(TracerParameters.SAMPLING_TARGET_SPANS_PER_SECOND));
+
+    assertEquals(ASYNC_REPORTING, params.get(TracerParameters.ASYNC_REPORTING));
+    assertEquals(ASYNC_REPORTING_QUEUE_SIZE,
+        params.get(TracerParameters.ASYNC_REPORTING_QUEUE_SIZE));
+    assertEquals(ASYNC_REPORTING_BATCH_SIZE,
+        params.get(TracerParameters.ASYNC_REPORTING_BATCH_SIZE));
+    assertEquals(ASYNC_REPORTING_FLUSH_INTERVAL_MS,
+        params.get(TracerParameters.ASYNC_REPORTING_FLUSH_INTERVAL_MS));
+    assertEquals(ASYNC_REPORTING_OVERFLOW_POLICY,
+        params.get(TracerParameters.ASYNC_REPORTING_OVERFLOW_POLICY));
+
+    assertEquals(TAIL_SAMPLING, params.get(TracerParameters.TAIL_SAMPLING));
+    assertEquals(TAIL_SAMPLING_LATENCY_THRESHOLD_MS,
+        params.get(TracerParameters.TAIL_SAMPLING_LATENCY_THRESHOLD_MS));
+    assertEquals(TAIL_SAMPLING_BASE_RATE, params.get(TracerParameters.TAIL_SAMPLING_BASE_RATE));
+    assertEquals(TAIL_SAMPLING_DECISION_WAIT_MS,
+        params.get(TracerParameters.TAIL_SAMPLING_DECISION_WAIT_MS));
+    assertEquals(TAIL_SAMPLING_MAX_BUFFERED_BYTES,
+        params.get(TracerParameters.TAIL_SAMPLING_MAX_BUFFERED_BYTES));
+
+    assertEquals(REPORTING_DESTINATIONS, params.get(TracerParameters.REPORTING_DESTINATIONS));
+    assertEquals(REPORTING_DESTINATIONS_QUEUE_SIZE,
+        params.get(TracerParameters.REPORTING_DESTINATIONS_QUEUE_SIZE));
+    assertEquals(REPORTING_DESTINATIONS_OVERFLOW_POLICY,
+        params.get(TracerParameters.REPORTING_DESTINATIONS_OVERFLOW_POLICY));
+
+    assertEquals(SPILL_DIRECTORY, params.get(TracerParameters.SPILL_DIRECTORY));
+    assertEquals(SPILL_MAX_BYTES, params.get(TracerParameters.SPILL_MAX_BYTES));
+    assertEquals(SPILL_SEGMENT_SIZE, params.get(TracerParameters.SPILL_SEGMENT_SIZE));
+
+    assertEquals(LAZY_STARTUP, params.get(TracerParameters.LAZY_STARTUP));
+
+    assertEquals(WATCH_CONFIGURATION_FILE, params.get(TracerParameters.WATCH_CONFIGURATION_FILE));
+    assertEquals(WATCH_CONFIGURATION_FILE_INTERVAL_MS,
+        params.get(TracerParameters.WATCH_CONFIGURATION_FILE_INTERVAL_MS));
+
+    assertEquals(SPAN_METRICS, params.get(TracerParameters.SPAN_METRICS));
+    assertEquals(SPAN_METRICS_TAG_KEYS, params.get(TracerParameters.SPAN_METRICS_TAG_KEYS));
+    assertEquals(SPAN_METRICS_SPAN_SAMPLING_RATE,
+        params.get(TracerParameters.SPAN_METRICS_SPAN_SAMPLING_RATE));
+    assertEquals(SPAN_METRICS_FLUSH_INTERVAL_MS,
+        params.get(TracerParameters.SPAN_METRICS_FLUSH_INTERVAL_MS));
+    assertEquals(SPAN_METRICS_MAX_KEYS, params.get(TracerParameters.SPAN_METRICS_MAX_KEYS));
+
+    assertEquals(GUARD_MAX_SPANS_PER_SECOND,
+        params.get(TracerParameters.GUARD_MAX_SPANS_PER_SECOND));
+    assertEquals(GUARD_MAX_TAG_VALUES, params.get(TracerParameters.GUARD_MAX_TAG_VALUES));
+    assertEquals(GUARD_PLACEHOLDER, params.get(TracerParameters.GUARD_PLACEHOLDER));
+
+    assertEquals(VIRTUAL_THREADS, params.get(TracerParameters.VIRTUAL_THREADS));
+
+    assertEquals(INTERNAL_METRICS_INTERVAL_MS,
+        params.get(TracerParameters.INTERNAL_METRICS_INTERVAL_MS));
+    assertEquals(INTERNAL_METRICS_DETAILED, params.get(TracerParameters.INTERNAL_METRICS_DETAILED));
+
+    assertEquals(SHUTDOWN_HOOK, params.get(TracerParameters.SHUTDOWN_HOOK));
+    assertEquals(SHUTDOWN_HOOK_TIMEOUT_MS, params.get(TracerParameters.SHUTDOWN_HOOK_TIMEOUT_MS));
+
+    assertEquals(SAMPLING_PROPAGATION, params.get(TracerParameters.SAMPLING_PROPAGATION));
+
+    assertEquals(PROPAGATORS, params.get(TracerParameters.PROPAGATORS));
+
+    assertEquals(SPAN_LOGS_MAX_ENTRIES, params.get(TracerParameters.SPAN_LOGS_MAX_ENTRIES));
+    assertEquals(SPAN_LOGS_MAX_FIELD_BYTES, params.get(TracerParameters.SPAN_LOGS_MAX_FIELD_BYTES));
+    assertEquals(SPAN_LOGS_MAX_BYTES_PER_SECOND,
+        params.get(TracerParameters.SPAN_LOGS_MAX_BYTES_PER_SECOND));
+    assertEquals(SPAN_LOGS_DEDUPLICATE, params.get(TracerParameters.SPAN_LOGS_DEDUPLICATE));
+
+    assertEquals(DIRECT_PIPELINED, params.get(TracerParameters.DIRECT_PIPELINED));
+    assertEquals(DIRECT_COMPRESSION, params.get(TracerParameters.DIRECT_COMPRESSION));
+    assertEquals(DIRECT_MAX_IN_FLIGHT, params.get(TracerParameters.DIRECT_MAX_IN_FLIGHT));
+    assertEquals(DIRECT_MAX_BATCH_SIZE, params.get(TracerParameters.DIRECT_MAX_BATCH_SIZE));
+    assertEquals(DIRECT_TARGET_LATENCY_MS, params.get(TracerParameters.DIRECT_TARGET_LATENCY_MS));
+
+    assertEquals(PROXY_TRACING_CONNECTIONS, params.get(TracerParameters.PROXY_TRACING_CONNECTIONS));
+    assertEquals(PROXY_TRACING_HOSTS, params.get(TracerParameters.PROXY_TRACING_HOSTS));
+    assertEquals(PROXY_TRACING_BUFFER_SIZE, params.get(TracerParameters.PROXY_TRACING_BUFFER_SIZE));
+
+    assertEquals(TAGS_DROP, params.get(TracerParameters.TAGS_DROP));
+    assertEquals(TAGS_HASH, params.get(TracerParameters.TAGS_HASH));
+    assertEquals(TAGS_REDACT, params.get(TracerParameters.TAGS_REDACT));
+    assertEquals(TAGS_REDACT_PATTERN, params.get(TracerParameters.TAGS_REDACT_PATTERN));
+    assertEquals(TAGS_STRIP_QUERY, params.get(TracerParameters.TAGS_STRIP_QUERY));
+
+    assertEquals(RECENT_SPANS_CAPACITY, params.get(TracerParameters.RECENT_SPANS_CAPACITY));
+    assertEquals(RECENT_SPANS_MAX_SPAN_BYTES,
+        params.get(TracerParameters.RECENT_SPANS_MAX_SPAN_BYTES));
+
+    assertEquals(FILE_DIRECTORY, params.get(TracerParameters.FILE_DIRECTORY));
+    assertEquals(FILE_MAX_BYTES, params.get(TracerParameters.FILE_MAX_BYTES));
+    assertEquals(FILE_MAX_FILES, params.get(TracerParameters.FILE_MAX_FILES));
+    assertEquals(FILE_COMPRESSION, params.get(TracerParameters.FILE_COMPRESSION));
   }
 }
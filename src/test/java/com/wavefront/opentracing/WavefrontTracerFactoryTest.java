@@ -2,14 +2,32 @@ package com.wavefront.opentracing;
 
 import com.wavefront.config.ApplicationTagsConfig;
 import com.wavefront.config.WavefrontReportingConfig;
+import com.wavefront.opentracing.propagation.B3Propagator;
+import com.wavefront.opentracing.propagation.TraceContextPropagator;
+import com.wavefront.opentracing.reporting.ReportingRegistry;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapAdapter;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import static com.wavefront.config.WavefrontReportingConfig.directReporting;
 import static com.wavefront.config.WavefrontReportingConfig.proxyReporting;
@@ -17,6 +35,9 @@ import static com.wavefront.opentracing.TracerParameters.APP_TAGS_YAML_FILE;
 import static com.wavefront.opentracing.TracerParameters.REPORTING_YAML_FILE;
 import static com.wavefront.opentracing.Utils.savePropertiesToTempFile;
 import static com.wavefront.opentracing.Utils.saveToTempYamlFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -26,6 +47,9 @@ import static org.junit.Assert.assertTrue;
  * @author Han Zhang (zhanghan@vmware.com)
  */
 public class WavefrontTracerFactoryTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private Tracer tracer;
   private File configurationFile;
   private File applicationTagsYamlFile;
@@ -186,4 +210,516 @@ public class WavefrontTracerFactoryTest {
     tracer = new WavefrontTracerFactory().getTracer();
     assertTrue(tracer instanceof WavefrontTracer);
   }
+
+  @Test
+  public void getTracer_withSampling() throws IOException {
+    File directory = captureReporting();
+    System.setProperty(TracerParameters.SAMPLING_RATE, "1.0");
+    System.setProperty(TracerParameters.SAMPLING_DURATION_MS, "100");
+    System.setProperty(TracerParameters.SAMPLING_POLICY, "all");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    long start = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    tracer.buildSpan("fast").withStartTimestamp(start).start().finish(start + 10_000);
+    tracer.buildSpan("slow").withStartTimestamp(start).start().finish(start + 200_000);
+
+    // Every span passes the rate, but only one the duration, and both have to sample it.
+    assertEquals(Collections.singletonList("slow"),
+        operationNames(spanLines(closeAndReadCapture(directory))));
+  }
+
+  @Test
+  public void getTracer_withAdaptiveSampling() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.SAMPLING_TARGET_SPANS_PER_SECOND, "100");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withAsyncReporting() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.ASYNC_REPORTING, "true");
+    System.setProperty(TracerParameters.ASYNC_REPORTING_BATCH_SIZE, "100");
+    System.setProperty(TracerParameters.ASYNC_REPORTING_OVERFLOW_POLICY, "block");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withTailSampling() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.TAIL_SAMPLING, "true");
+    System.setProperty(TracerParameters.TAIL_SAMPLING_LATENCY_THRESHOLD_MS, "500");
+    System.setProperty(TracerParameters.TAIL_SAMPLING_BASE_RATE, "0.05");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withReportingDestinations() throws IOException {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "proxy");
+    System.setProperty(TracerParameters.PROXY_HOST, "test-host");
+    System.setProperty(TracerParameters.PROXY_METRICS_PORT, "0");
+
+    WavefrontReportingConfig wfReportingConfig = new WavefrontReportingConfig();
+    wfReportingConfig.setReportingMechanism(directReporting);
+    wfReportingConfig.setServer("test-server");
+    wfReportingConfig.setToken("test-token");
+    wfReportingConfigYamlFile = saveToTempYamlFile(wfReportingConfig);
+    System.setProperty(TracerParameters.REPORTING_DESTINATIONS,
+        wfReportingConfigYamlFile.getAbsolutePath());
+    System.setProperty(TracerParameters.REPORTING_DESTINATIONS_OVERFLOW_POLICY, "drop-oldest");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withReportingDestinationsOfTheSameFileName() throws IOException {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "proxy");
+    System.setProperty(TracerParameters.PROXY_HOST, "test-host");
+    System.setProperty(TracerParameters.PROXY_METRICS_PORT, "0");
+
+    WavefrontReportingConfig wfReportingConfig = new WavefrontReportingConfig();
+    wfReportingConfig.setReportingMechanism(directReporting);
+    wfReportingConfig.setServer("test-server");
+    wfReportingConfig.setToken("test-token");
+    wfReportingConfigYamlFile = saveToTempYamlFile(wfReportingConfig);
+    File[] directories = new File[] { Files.createTempDirectory("east").toFile(),
+        Files.createTempDirectory("west").toFile() };
+    try {
+      StringBuilder destinations = new StringBuilder();
+      for (File directory : directories) {
+        File yamlFile = new File(directory, "destination.yaml");
+        Files.copy(wfReportingConfigYamlFile.toPath(), yamlFile.toPath());
+        destinations.append(destinations.length() == 0 ? "" : ",").
+            append(yamlFile.getAbsolutePath());
+      }
+      System.setProperty(TracerParameters.REPORTING_DESTINATIONS, destinations.toString());
+
+      tracer = new WavefrontTracerFactory().getTracer();
+      assertTrue(tracer instanceof WavefrontTracer);
+    } finally {
+      if (tracer != null) {
+        tracer.close();
+        tracer = null;
+      }
+      for (File directory : directories) {
+        new File(directory, "destination.yaml").delete();
+        directory.delete();
+      }
+    }
+  }
+
+  @Test
+  public void getTracer_withInvalidReportingDestination() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.REPORTING_DESTINATIONS, "does-not-exist.yaml");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertNull(tracer);
+  }
+
+  @Test
+  public void getTracer_withSpilling() throws IOException {
+    File spillDirectory = Files.createTempDirectory("spill").toFile();
+    try {
+      System.setProperty(TracerParameters.APPLICATION, "test-app");
+      System.setProperty(TracerParameters.SERVICE, "test-service");
+      System.setProperty(TracerParameters.REPORTING_MECHANISM, "proxy");
+      System.setProperty(TracerParameters.PROXY_HOST, "test-host");
+      System.setProperty(TracerParameters.PROXY_METRICS_PORT, "0");
+      System.setProperty(TracerParameters.SPILL_DIRECTORY, spillDirectory.getAbsolutePath());
+      System.setProperty(TracerParameters.SPILL_SEGMENT_SIZE, "65536");
+
+      tracer = new WavefrontTracerFactory().getTracer();
+      assertTrue(tracer instanceof WavefrontTracer);
+    } finally {
+      if (tracer != null) {
+        tracer.close();
+        tracer = null;
+      }
+      File[] files = spillDirectory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      spillDirectory.delete();
+    }
+  }
+
+  @Test
+  public void getTracer_withLazyStartup() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "proxy");
+    System.setProperty(TracerParameters.PROXY_HOST, "test-host");
+    System.setProperty(TracerParameters.PROXY_METRICS_PORT, "0");
+    System.setProperty(TracerParameters.LAZY_STARTUP, "true");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withWatchedConfigurationFile() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.SAMPLING_RATE, "0.5");
+    System.setProperty(TracerParameters.ASYNC_REPORTING, "true");
+    System.setProperty(TracerParameters.WATCH_CONFIGURATION_FILE, "true");
+    System.setProperty(TracerParameters.WATCH_CONFIGURATION_FILE_INTERVAL_MS, "100");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withSpanMetrics() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.SPAN_METRICS, "true");
+    System.setProperty(TracerParameters.SPAN_METRICS_TAG_KEYS, "http.method,http.status_code");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withGuard() throws IOException {
+    File directory = captureReporting();
+    System.setProperty(TracerParameters.GUARD_MAX_SPANS_PER_SECOND, "2");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    for (int i = 0; i < 50; i++) {
+      tracer.buildSpan("flood").start().finish();
+    }
+    tracer.buildSpan("other").start().finish();
+
+    // The flooding operation is held to its burst, without holding up the other one.
+    List<String> operationNames = operationNames(spanLines(closeAndReadCapture(directory)));
+    assertTrue(operationNames.contains("other"));
+    int flood = Collections.frequency(operationNames, "flood");
+    assertTrue(flood >= 1 && flood <= 5);
+  }
+
+  @Test
+  public void getTracer_withGuardOnTagValues() throws IOException {
+    File directory = captureReporting();
+    System.setProperty(TracerParameters.GUARD_MAX_TAG_VALUES, "2");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    for (int i = 0; i < 20; i++) {
+      tracer.buildSpan("test-operation").withTag("user.id", "user-" + i).start().finish();
+    }
+
+    // Once the key has more values than allowed, its values are replaced.
+    List<String> spanLines = spanLines(closeAndReadCapture(directory));
+    assertEquals(20, spanLines.size());
+    assertTrue(spanLines.get(0).contains("\"user.id\"=\"user-0\""));
+    assertTrue(spanLines.get(19).contains("\"user.id\"=\"overflow\""));
+    assertTrue(spanLines.get(19).contains("\"application\"=\"test-app\""));
+  }
+
+  @Test
+  public void getTracer_withSpanLogLimits() throws IOException {
+    File directory = captureReporting();
+    System.setProperty(TracerParameters.SPAN_LOGS_MAX_ENTRIES, "10");
+    System.setProperty(TracerParameters.SPAN_LOGS_MAX_FIELD_BYTES, "256");
+    System.setProperty(TracerParameters.SPAN_LOGS_DEDUPLICATE, "true");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    Span span = tracer.buildSpan("test-operation").start();
+    for (int i = 0; i < 3; i++) {
+      span.log("retrying");
+    }
+    span.log(Collections.singletonMap("payload", repeat('x', 1000)));
+    for (int i = 0; i < 20; i++) {
+      span.log("event-" + i);
+    }
+    span.finish();
+
+    String spanLogs = null;
+    for (String line : closeAndReadCapture(directory)) {
+      if (line.startsWith("{\"traceId\"")) {
+        spanLogs = line;
+      }
+    }
+    assertNotNull(spanLogs);
+    assertEquals(10, spanLogs.split("\\{\"timestamp\"", -1).length - 1);
+    assertTrue(spanLogs.contains("\"repeated\":\"3\""));
+    assertTrue(spanLogs.contains(repeat('x', 256)));
+    assertFalse(spanLogs.contains(repeat('x', 257)));
+    assertTrue(spanLogs.contains("event-7"));
+    assertFalse(spanLogs.contains("event-8"));
+  }
+
+  @Test
+  public void getTracer_withTagFilter() throws IOException {
+    File directory = captureReporting();
+    System.setProperty(TracerParameters.TAGS_DROP, "user.id");
+    System.setProperty(TracerParameters.TAGS_HASH, "session.*");
+    System.setProperty(TracerParameters.TAGS_REDACT, "db.statement");
+    System.setProperty(TracerParameters.TAGS_REDACT_PATTERN, "'[^']*'");
+    System.setProperty(TracerParameters.TAGS_STRIP_QUERY, "http.url");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    tracer.buildSpan("test-operation").
+        withTag("user.id", "42").
+        withTag("session.id", "abc").
+        withTag("db.statement", "select * from t where name = 'bob'").
+        withTag("http.url", "http://host/path?q=1").
+        start().finish();
+
+    List<String> spanLines = spanLines(closeAndReadCapture(directory));
+    assertEquals(1, spanLines.size());
+    String spanLine = spanLines.get(0);
+    assertFalse(spanLine.contains("\"user.id\""));
+    assertTrue(spanLine.contains("\"session.id\"="));
+    assertFalse(spanLine.contains("\"abc\""));
+    assertTrue(spanLine.contains("\"db.statement\"="));
+    assertFalse(spanLine.contains("bob"));
+    assertTrue(spanLine.contains("\"http.url\"=\"http://host/path\""));
+  }
+
+  @Test
+  public void getTracer_withFileReporting() throws IOException {
+    File directory = temporaryFolder.newFolder("capture");
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "file");
+    System.setProperty(TracerParameters.FILE_DIRECTORY, directory.getPath());
+    System.setProperty(TracerParameters.FILE_COMPRESSION, "gzip");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+    // Closes the capture files before the folder is deleted.
+    tracer.close();
+    tracer = null;
+  }
+
+  @Test
+  public void getTracer_withRecentSpans() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.RECENT_SPANS_CAPACITY, "1000");
+    System.setProperty(TracerParameters.RECENT_SPANS_MAX_SPAN_BYTES, "512");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withInvalidTagFilter() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.TAGS_REDACT, "db.statement");
+    System.setProperty(TracerParameters.TAGS_REDACT_PATTERN, "[unclosed");
+
+    assertNull(new WavefrontTracerFactory().getTracer());
+  }
+
+  @Test
+  public void getTracer_withInternalMetrics() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.INTERNAL_METRICS_INTERVAL_MS, "10000");
+    System.setProperty(TracerParameters.INTERNAL_METRICS_DETAILED, "true");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withShutdownHook() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.ASYNC_REPORTING, "true");
+    System.setProperty(TracerParameters.SHUTDOWN_HOOK, "true");
+    System.setProperty(TracerParameters.SHUTDOWN_HOOK_TIMEOUT_MS, "2000");
+    int registered = ShutdownHook.getInstance().size();
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+    assertEquals(registered + 1, ShutdownHook.getInstance().size());
+    tracer.close();
+    tracer = null;
+    assertEquals(registered, ShutdownHook.getInstance().size());
+  }
+
+  @Test
+  public void getTracer_withSamplingPropagation() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.SAMPLING_RATE, "0.1");
+    System.setProperty(TracerParameters.SAMPLING_PROPAGATION, "true");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    Map<String, String> headers = new HashMap<>();
+    headers.put(TraceContextPropagator.TRACE_PARENT,
+        "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00");
+    SpanContext upstream = tracer.extract(Format.Builtin.HTTP_HEADERS,
+        new TextMapAdapter(headers));
+    Span span = tracer.buildSpan("test-operation").asChildOf(upstream).start();
+    // The span follows the upstream decision not to sample the trace.
+    assertEquals(Boolean.FALSE, ((WavefrontSpanContext) span.context()).getSamplingDecision());
+    span.finish();
+  }
+
+  @Test
+  public void getTracer_withProxyConnectionPool() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "proxy");
+    System.setProperty(TracerParameters.PROXY_HOST, "test-host");
+    System.setProperty(TracerParameters.PROXY_TRACING_PORT, "30000");
+    System.setProperty(TracerParameters.PROXY_TRACING_CONNECTIONS, "2");
+    System.setProperty(TracerParameters.PROXY_TRACING_HOSTS, "test-host,other-test-host:30001");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+  }
+
+  @Test
+  public void getTracer_withPropagators() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    System.setProperty(TracerParameters.PROPAGATORS, "w3c,b3");
+
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(tracer instanceof WavefrontTracer);
+    Span span = tracer.buildSpan("test-operation").start();
+    Map<String, String> headers = new HashMap<>();
+    tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(headers));
+    span.finish();
+    assertTrue(headers.containsKey(TraceContextPropagator.TRACE_PARENT));
+    assertTrue(headers.containsKey(B3Propagator.TRACE_ID));
+  }
+
+  @Test
+  public void getTracer_sharesReporting() {
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "direct");
+    System.setProperty(TracerParameters.SERVER, "test-server");
+    System.setProperty(TracerParameters.TOKEN, "test-token");
+    int registered = ReportingRegistry.getInstance().size();
+
+    Tracer first = new WavefrontTracerFactory().getTracer();
+    tracer = new WavefrontTracerFactory().getTracer();
+    assertTrue(first instanceof WavefrontTracer);
+    assertTrue(tracer instanceof WavefrontTracer);
+    assertEquals(registered + 1, ReportingRegistry.getInstance().size());
+
+    first.close();
+    assertEquals(registered + 1, ReportingRegistry.getInstance().size());
+    tracer.close();
+    tracer = null;
+    assertEquals(registered, ReportingRegistry.getInstance().size());
+  }
+
+  /**
+   * Has the tracer write what it reports to capture files instead of sending it.
+   *
+   * @return The directory of the capture files.
+   */
+  private File captureReporting() throws IOException {
+    File directory = temporaryFolder.newFolder("capture");
+    System.setProperty(TracerParameters.APPLICATION, "test-app");
+    System.setProperty(TracerParameters.SERVICE, "test-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "file");
+    System.setProperty(TracerParameters.FILE_DIRECTORY, directory.getPath());
+    return directory;
+  }
+
+  /**
+   * Closes the tracer, which flushes the capture files, and reads them back.
+   *
+   * @return The lines of the capture files in the directory, in the order they were written.
+   */
+  private List<String> closeAndReadCapture(File directory) throws IOException {
+    tracer.close();
+    tracer = null;
+    File[] files = directory.listFiles();
+    assertNotNull(files);
+    Arrays.sort(files);
+    List<String> lines = new ArrayList<>();
+    for (File file : files) {
+      lines.addAll(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+    return lines;
+  }
+
+  private static List<String> spanLines(List<String> lines) {
+    List<String> spanLines = new ArrayList<>();
+    for (String line : lines) {
+      if (line.startsWith("\"") && line.contains(" traceId=")) {
+        spanLines.add(line);
+      }
+    }
+    return spanLines;
+  }
+
+  private static List<String> operationNames(List<String> spanLines) {
+    List<String> names = new ArrayList<>();
+    for (String line : spanLines) {
+      names.add(line.substring(1, line.indexOf('"', 1)));
+    }
+    return names;
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
 }
@@ -0,0 +1,69 @@
+package com.wavefront.opentracing.benchmark;
+
+import com.wavefront.sdk.common.WavefrontSender;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process {@link WavefrontSender} for benchmarks. It reads every argument it is given but
+ * does no I/O, so a benchmark measures the bundle and the tracer rather than the network.
+ */
+final class FakeWavefrontSender implements InvocationHandler {
+  private final LongAdder sends = new LongAdder();
+  private volatile long sink;
+
+  private FakeWavefrontSender() {
+  }
+
+  static WavefrontSender create() {
+    return (WavefrontSender) Proxy.newProxyInstance(WavefrontSender.class.getClassLoader(),
+        new Class<?>[] { WavefrontSender.class }, new FakeWavefrontSender());
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) {
+    if (method.getName().startsWith("send")) {
+      sends.increment();
+      long size = 0;
+      for (Object arg : args) {
+        size += size(arg);
+      }
+      sink += size;
+      return null;
+    }
+    switch (method.getName()) {
+      case "getFailureCount":
+        return 0;
+      case "getClientId":
+        return "fake";
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "equals":
+        return proxy == args[0];
+      case "toString":
+        return "FakeWavefrontSender[" + sends.sum() + " sends]";
+      default:
+        return null;
+    }
+  }
+
+  private static long size(Object arg) {
+    if (arg instanceof CharSequence) {
+      return ((CharSequence) arg).length();
+    } else if (arg instanceof Collection) {
+      long size = 0;
+      for (Object element : (Collection<?>) arg) {
+        size += 1 + (element == null ? 0 : element.hashCode() & 0xF);
+      }
+      return size;
+    } else if (arg instanceof Map) {
+      return ((Map<?, ?>) arg).size();
+    }
+    return arg == null ? 0 : 1;
+  }
+}
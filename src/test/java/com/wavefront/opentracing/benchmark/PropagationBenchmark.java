@@ -0,0 +1,105 @@
+package com.wavefront.opentracing.benchmark;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.propagation.B3Propagator;
+import com.wavefront.opentracing.propagation.Propagator;
+import com.wavefront.opentracing.propagation.TraceContextPropagator;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+import io.opentracing.propagation.TextMapAdapter;
+
+/**
+ * Measures injecting a span context into, and extracting it from, HTTP-style headers with the
+ * tracer's default propagator, the W3C Trace Context propagator and the B3 propagator, with and
+ * without baggage.
+ *
+ * Run with {@code java -cp <test classpath>
+ * com.wavefront.opentracing.benchmark.PropagationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropagationBenchmark {
+
+  @Param({"default", "w3c", "b3"})
+  public String propagator;
+
+  @Param({"0", "4"})
+  public int baggageItems;
+
+  private WavefrontTracer tracer;
+  private Span span;
+  private Map<String, String> headers;
+
+  @Setup
+  public void setup() {
+    WavefrontTracer.Builder builder = new WavefrontTracer.Builder(
+        new SamplingBenchmark.SerializingReporter(),
+        new ApplicationTags.Builder("benchmark-app", "benchmark-service").build());
+    Propagator<TextMap> textMapPropagator = null;
+    if ("w3c".equals(propagator)) {
+      textMapPropagator = new TraceContextPropagator();
+    } else if ("b3".equals(propagator)) {
+      textMapPropagator = new B3Propagator();
+    }
+    if (textMapPropagator != null) {
+      builder.registerPropagator(Format.Builtin.HTTP_HEADERS, textMapPropagator);
+    }
+    tracer = builder.build();
+    span = tracer.buildSpan("benchmark-operation").start();
+    for (int i = 0; i < baggageItems; i++) {
+      span.setBaggageItem("item" + i, "value" + i);
+    }
+    headers = inject();
+  }
+
+  @TearDown
+  public void tearDown() {
+    span.finish();
+    tracer.close();
+  }
+
+  @Benchmark
+  public Map<String, String> inject() {
+    Map<String, String> carrier = new HashMap<>();
+    tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(carrier));
+    return carrier;
+  }
+
+  @Benchmark
+  public SpanContext extract() {
+    return tracer.extract(Format.Builtin.HTTP_HEADERS, new TextMapAdapter(headers));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PropagationBenchmark.class.getSimpleName()).build()).
+        run();
+  }
+}
@@ -0,0 +1,116 @@
+package com.wavefront.opentracing.benchmark;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.opentracing.sampling.AllOfSampler;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of creating and finishing a span with sampling turned off and with the
+ * samplers that can be configured through {@link com.wavefront.opentracing.TracerParameters}.
+ *
+ * Run with {@code java -cp <test classpath> com.wavefront.opentracing.benchmark.SamplingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplingBenchmark {
+
+  /**
+   * off: no sampler, every span is reported.
+   * rate: 1% of traces are reported.
+   * duration: spans longer than 100ms are reported.
+   * all: 1% of the traces whose spans take longer than 100ms are reported.
+   */
+  @Param({"off", "rate", "duration", "all"})
+  public String sampling;
+
+  private WavefrontTracer tracer;
+
+  @Setup
+  public void setup() {
+    WavefrontTracer.Builder builder = new WavefrontTracer.Builder(new SerializingReporter(),
+        new ApplicationTags.Builder("benchmark-app", "benchmark-service").build());
+    switch (sampling) {
+      case "rate":
+        builder.withSampler(new RateSampler(0.01));
+        break;
+      case "duration":
+        builder.withSampler(new DurationSampler(100));
+        break;
+      case "all":
+        builder.withSampler(new AllOfSampler(Arrays.asList(new RateSampler(0.01),
+            new DurationSampler(100))));
+        break;
+      default:
+        break;
+    }
+    tracer = builder.build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    tracer.close();
+  }
+
+  @Benchmark
+  public void startAndFinishSpan() {
+    tracer.buildSpan("benchmark-operation").
+        withTag("http.method", "GET").
+        withTag("http.status_code", 200).
+        start().
+        finish();
+  }
+
+  /**
+   * Stands in for {@link com.wavefront.opentracing.reporting.WavefrontSpanReporter} by touching
+   * the same span state it reads when a span is reported, without any I/O.
+   */
+  static final class SerializingReporter implements Reporter {
+    private volatile int sink;
+
+    @Override
+    public void report(WavefrontSpan span) {
+      sink += span.getOperationName().length() + span.getTagsAsList().size() +
+          span.context().getSpanId().hashCode();
+    }
+
+    @Override
+    public int getFailureCount() {
+      return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SamplingBenchmark.class.getSimpleName()).build()).run();
+  }
+}
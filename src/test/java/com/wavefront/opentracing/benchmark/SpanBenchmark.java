@@ -0,0 +1,92 @@
+package com.wavefront.opentracing.benchmark;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+
+/**
+ * Measures starting and finishing spans with a growing number of tags, reported through a
+ * {@link WavefrontSpanReporter} on an in-process {@link FakeWavefrontSender}, so that the tracer's
+ * RED metrics and span serialization are included but the network is not.
+ *
+ * Run with {@code java -cp <test classpath> com.wavefront.opentracing.benchmark.SpanBenchmark},
+ * or with {@code -prof gc} through {@code org.openjdk.jmh.Main} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpanBenchmark {
+
+  @Param({"0", "4", "16"})
+  public int tagCount;
+
+  private WavefrontTracer tracer;
+  private String[] tagKeys;
+  private String[] tagValues;
+
+  @Setup
+  public void setup() {
+    tracer = new WavefrontTracer.Builder(new WavefrontSpanReporter.Builder().
+        withSource("benchmark").build(FakeWavefrontSender.create()),
+        new ApplicationTags.Builder("benchmark-app", "benchmark-service").build()).build();
+    tagKeys = new String[tagCount];
+    tagValues = new String[tagCount];
+    for (int i = 0; i < tagCount; i++) {
+      tagKeys[i] = "tag" + i;
+      tagValues[i] = "value" + i;
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    tracer.close();
+  }
+
+  @Benchmark
+  public void startAndFinishSpan() {
+    Tracer.SpanBuilder builder = tracer.buildSpan("benchmark-operation");
+    for (int i = 0; i < tagCount; i++) {
+      builder.withTag(tagKeys[i], tagValues[i]);
+    }
+    builder.start().finish();
+  }
+
+  @Benchmark
+  public void startAndFinishChildSpan() {
+    Span parent = tracer.buildSpan("benchmark-parent").start();
+    Tracer.SpanBuilder builder = tracer.buildSpan("benchmark-operation").asChildOf(parent);
+    for (int i = 0; i < tagCount; i++) {
+      builder.withTag(tagKeys[i], tagValues[i]);
+    }
+    builder.start().finish();
+    parent.finish();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SpanBenchmark.class.getSimpleName()).build()).run();
+  }
+}
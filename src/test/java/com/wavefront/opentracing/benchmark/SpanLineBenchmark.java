@@ -0,0 +1,88 @@
+package com.wavefront.opentracing.benchmark;
+
+import com.wavefront.opentracing.reporting.SpanLineEncoder;
+import com.wavefront.opentracing.reporting.StaticTags;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a span line with the {@link SpanLineEncoder}, with the application tags
+ * encoded once up front or tag by tag for every span, for a growing number of custom application
+ * tags.
+ *
+ * Run with {@code java -cp <test classpath> com.wavefront.opentracing.benchmark.SpanLineBenchmark},
+ * or with {@code -prof gc} through {@code org.openjdk.jmh.Main} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpanLineBenchmark {
+
+  @Param({"false", "true"})
+  public boolean staticTags;
+
+  @Param({"0", "8"})
+  public int customTagCount;
+
+  private SpanLineEncoder encoder;
+  private UUID traceId;
+  private UUID spanId;
+  private List<UUID> parents;
+  private List<Pair<String, String>> tags;
+
+  @Setup
+  public void setup() {
+    Map<String, String> customTags = new HashMap<>();
+    for (int i = 0; i < customTagCount; i++) {
+      customTags.put("custom-tag" + i, "custom-value" + i);
+    }
+    StaticTags applicationTags = StaticTags.of(new ApplicationTags.Builder("benchmark-app",
+        "benchmark-service").cluster("benchmark-cluster").customTags(customTags).build());
+    encoder = new SpanLineEncoder("benchmark", staticTags ? applicationTags : null);
+    traceId = UUID.randomUUID();
+    spanId = UUID.randomUUID();
+    parents = Collections.singletonList(UUID.randomUUID());
+    // The tracer puts the application tags first, followed by the span's own tags.
+    tags = new ArrayList<>(applicationTags.asList());
+    tags.add(Pair.of("component", "jaxrs"));
+    tags.add(Pair.of("http.method", "GET"));
+    tags.add(Pair.of("http.status_code", "200"));
+  }
+
+  @Benchmark
+  public int encodeSpanLine() {
+    return encoder.encode("benchmark-operation", 1554363517965L, 12, traceId, spanId, parents,
+        null, tags).remaining();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SpanLineBenchmark.class.getSimpleName()).build()).
+        run();
+  }
+}
@@ -0,0 +1,172 @@
+package com.wavefront.opentracing.benchmark;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.opentracing.reporting.SpillingReporter;
+import com.wavefront.opentracing.reporting.StaticTags;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures spilling a span to disk with and without leaving out its {@link StaticTags}, for a
+ * growing number of custom application tags. Run with {@code -prof gc} through
+ * {@code org.openjdk.jmh.Main} to compare the bytes allocated per span.
+ *
+ * The sender always fails, so the reporter spills every span; once the queue is full, spans are
+ * encoded and dropped, which keeps the disk out of the measurement.
+ *
+ * Run with {@code java -cp <test classpath> com.wavefront.opentracing.benchmark.SpillBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpillBenchmark {
+
+  @Param({"false", "true"})
+  public boolean staticTags;
+
+  @Param({"0", "8"})
+  public int customTagCount;
+
+  private File directory;
+  private SpillingReporter reporter;
+  private WavefrontSpan span;
+
+  @Setup
+  public void setup() throws IOException, InterruptedException {
+    Map<String, String> customTags = new HashMap<>();
+    for (int i = 0; i < customTagCount; i++) {
+      customTags.put("custom-tag" + i, "custom-value" + i);
+    }
+    ApplicationTags applicationTags = new ApplicationTags.Builder("benchmark-app",
+        "benchmark-service").cluster("benchmark-cluster").customTags(customTags).build();
+    span = finishSpan(applicationTags);
+
+    FailingReporter delegate = new FailingReporter();
+    directory = Files.createTempDirectory("spill-benchmark").toFile();
+    SpillingReporter.Builder builder = new SpillingReporter.Builder().directory(directory).
+        maxBytes(1024 * 1024).segmentSize(256 * 1024).
+        retryInterval(10, TimeUnit.MILLISECONDS);
+    if (staticTags) {
+      builder.withStaticTags(StaticTags.of(applicationTags));
+    }
+    reporter = builder.build(delegate, failingSender());
+    delegate.failures = 1;
+    while (!reporter.isSpilling()) {
+      Thread.sleep(10);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    reporter.close();
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Benchmark
+  public void spillSpan() {
+    reporter.report(span);
+  }
+
+  private static WavefrontSpan finishSpan(ApplicationTags applicationTags) throws IOException {
+    WavefrontSpan[] finished = new WavefrontSpan[1];
+    Reporter recorder = new Reporter() {
+      @Override
+      public void report(WavefrontSpan span) {
+        finished[0] = span;
+      }
+
+      @Override
+      public int getFailureCount() {
+        return 0;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    WavefrontTracer tracer = new WavefrontTracer.Builder(recorder, applicationTags).build();
+    tracer.buildSpan("benchmark-operation").withTag("http.method", "GET").
+        withTag("http.status_code", 200).start().finish();
+    tracer.close();
+    return finished[0];
+  }
+
+  private static WavefrontSender failingSender() {
+    return (WavefrontSender) Proxy.newProxyInstance(WavefrontSender.class.getClassLoader(),
+        new Class<?>[] { WavefrontSender.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getFailureCount":
+              return 1;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "FailingWavefrontSender";
+            case "close":
+              return null;
+            default:
+              throw new IOException("Failing sender");
+          }
+        });
+  }
+
+  /**
+   * Stands in for a span reporter whose sender has started failing.
+   */
+  private static final class FailingReporter implements Reporter {
+    volatile int failures;
+
+    @Override
+    public void report(WavefrontSpan span) {
+    }
+
+    @Override
+    public int getFailureCount() {
+      return failures;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SpillBenchmark.class.getSimpleName()).build()).run();
+  }
+}
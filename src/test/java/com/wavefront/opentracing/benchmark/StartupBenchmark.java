@@ -0,0 +1,93 @@
+package com.wavefront.opentracing.benchmark;
+
+import com.wavefront.opentracing.TracerParameters;
+import com.wavefront.opentracing.WavefrontTracerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Tracer;
+
+/**
+ * Compares how long {@link WavefrontTracerFactory#getTracer()} takes to return a tracer reporting
+ * to a proxy, with the sender created up front and in the background
+ * ({@link TracerParameters#LAZY_STARTUP}).
+ *
+ * The tracer is closed after every call, so that each call sets up its reporting from scratch
+ * instead of sharing the reporting of the previous one. Pass {@code -p proxyHost=<host>} to
+ * measure against a host that takes time to resolve or connect to.
+ *
+ * Run with {@code java -cp <test classpath> com.wavefront.opentracing.benchmark.StartupBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+  /**
+   * eager: the sender is created before getTracer() returns.
+   * lazy: the sender is created in the background.
+   */
+  @Param({"eager", "lazy"})
+  public String startup;
+
+  @Param({"localhost"})
+  public String proxyHost;
+
+  private Tracer tracer;
+
+  @Setup
+  public void setup() {
+    System.setProperty(TracerParameters.APPLICATION, "benchmark-app");
+    System.setProperty(TracerParameters.SERVICE, "benchmark-service");
+    System.setProperty(TracerParameters.REPORTING_MECHANISM, "proxy");
+    System.setProperty(TracerParameters.PROXY_HOST, proxyHost);
+    System.setProperty(TracerParameters.PROXY_METRICS_PORT, "2878");
+    System.setProperty(TracerParameters.PROXY_TRACING_PORT, "30000");
+    System.setProperty(TracerParameters.LAZY_STARTUP, String.valueOf("lazy".equals(startup)));
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeTracer() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (String paramName : TracerParameters.ALL) {
+      System.clearProperty(paramName);
+    }
+  }
+
+  @Benchmark
+  public Tracer getTracer() {
+    tracer = new WavefrontTracerFactory().getTracer();
+    return tracer;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(StartupBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,89 @@
+package com.wavefront.opentracing.benchmark;
+
+import com.wavefront.opentracing.reporting.TagFilter;
+import com.wavefront.sdk.common.Pair;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-span cost of filtering the tags of a span with a {@link TagFilter}, for a
+ * growing number of rules, half of them tag keys and half of them prefixes, both for a span that
+ * no rule applies to and for one with a tag to drop and a URL to strip the query string from.
+ *
+ * Run with
+ * {@code java -cp <test classpath> com.wavefront.opentracing.benchmark.TagFilterBenchmark}, or
+ * with {@code -prof gc} through {@code org.openjdk.jmh.Main} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagFilterBenchmark {
+
+  @Param({"0", "10", "100", "1000"})
+  public int ruleCount;
+
+  private TagFilter tagFilter;
+  private List<Pair<String, String>> untouchedTags;
+  private List<Pair<String, String>> filteredTags;
+
+  @Setup
+  public void setup() {
+    TagFilter.Builder builder = new TagFilter.Builder();
+    for (int i = 0; i < ruleCount / 2; i++) {
+      builder.drop("rule.key" + i);
+      builder.hash("rule.prefix" + i + ".*");
+    }
+    if (ruleCount > 0) {
+      builder.drop("user.id").stripQuery("http.url");
+    }
+    tagFilter = builder.build();
+    // The tags the tracer gives a typical server span.
+    untouchedTags = new ArrayList<>();
+    untouchedTags.add(Pair.of("application", "benchmark-app"));
+    untouchedTags.add(Pair.of("service", "benchmark-service"));
+    untouchedTags.add(Pair.of("cluster", "none"));
+    untouchedTags.add(Pair.of("shard", "none"));
+    untouchedTags.add(Pair.of("component", "jaxrs"));
+    untouchedTags.add(Pair.of("span.kind", "server"));
+    untouchedTags.add(Pair.of("http.method", "GET"));
+    untouchedTags.add(Pair.of("http.status_code", "200"));
+    filteredTags = new ArrayList<>(untouchedTags);
+    filteredTags.add(Pair.of("user.id", "user-1234"));
+    filteredTags.add(Pair.of("http.url", "https://example.com/orders?page=2&token=secret"));
+  }
+
+  @Benchmark
+  public int filterUntouchedSpan() {
+    return tagFilter.filter(untouchedTags).size();
+  }
+
+  @Benchmark
+  public int filterSpanWithSensitiveTags() {
+    return tagFilter.filter(filteredTags).size();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TagFilterBenchmark.class.getSimpleName()).build()).
+        run();
+  }
+}
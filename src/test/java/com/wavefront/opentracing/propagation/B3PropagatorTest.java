@@ -0,0 +1,108 @@
+package com.wavefront.opentracing.propagation;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import io.opentracing.propagation.TextMapAdapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link B3Propagator} and {@link CompositePropagator}.
+ */
+public class B3PropagatorTest {
+  private static final UUID TRACE_ID = UUID.fromString("4bf92f35-77b3-4da6-a3ce-929d0e0e4736");
+  private static final UUID SPAN_ID = UUID.fromString("12345678-9abc-def0-00f0-67aa0ba902b7");
+
+  private final B3Propagator propagator = new B3Propagator();
+
+  @Test
+  public void testInjectsMultipleHeaders() {
+    Map<String, String> headers = new HashMap<>();
+    propagator.inject(new WavefrontSpanContext(TRACE_ID, SPAN_ID,
+        new HashMap<>(Collections.singletonMap("user", "a")), false), new TextMapAdapter(headers));
+
+    assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", headers.get("X-B3-TraceId"));
+    assertEquals("00f067aa0ba902b7", headers.get("X-B3-SpanId"));
+    assertEquals("0", headers.get("X-B3-Sampled"));
+    assertEquals(3, headers.size());
+
+    WavefrontSpanContext context = propagator.extract(new TextMapAdapter(headers));
+    assertEquals(TRACE_ID, context.getTraceId());
+    assertEquals(new UUID(0, 0x00f067aa0ba902b7L), context.getSpanId());
+    assertFalse(context.getSamplingDecision());
+  }
+
+  @Test
+  public void testExtractsMultipleHeaders() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("x-b3-traceid", "A3CE929D0E0E4736");
+    headers.put("x-b3-spanid", "00f067aa0ba902b7");
+    headers.put("x-b3-sampled", "true");
+
+    WavefrontSpanContext context = propagator.extract(new TextMapAdapter(headers));
+    assertEquals(new UUID(0, 0xa3ce929d0e0e4736L), context.getTraceId());
+    assertTrue(context.getSamplingDecision());
+
+    headers.remove("x-b3-sampled");
+    assertNull(propagator.extract(new TextMapAdapter(headers)).getSamplingDecision());
+    headers.put("X-B3-Flags", "1");
+    assertTrue(propagator.extract(new TextMapAdapter(headers)).getSamplingDecision());
+  }
+
+  @Test
+  public void testExtractsSingleHeader() {
+    WavefrontSpanContext context = extractSingle(
+        "4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-d-05e3ac9a4f6e3b90");
+    assertEquals(TRACE_ID, context.getTraceId());
+    assertEquals(new UUID(0, 0x00f067aa0ba902b7L), context.getSpanId());
+    assertTrue(context.getSamplingDecision());
+
+    assertNull(extractSingle("a3ce929d0e0e4736-00f067aa0ba902b7").getSamplingDecision());
+    assertFalse(extractSingle("a3ce929d0e0e4736-00f067aa0ba902b7-0").getSamplingDecision());
+  }
+
+  @Test
+  public void testIgnoresInvalidHeaders() {
+    assertNull(extractSingle("0"));
+    assertNull(extractSingle("a3ce929d0e0e4736-00f067aa0ba902b7-x"));
+    assertNull(extractSingle("a3ce929d0e0e473-00f067aa0ba902b7"));
+    assertNull(extractSingle("a3ce929d0e0e4736-0000000000000000"));
+    assertNull(extractSingle("a3ce929d0e0e473g-00f067aa0ba902b7"));
+    assertNull(propagator.extract(new TextMapAdapter(
+        Collections.singletonMap("X-B3-TraceId", "a3ce929d0e0e4736"))));
+  }
+
+  @Test
+  public void testCompositeInjectsAllAndExtractsFirstFound() {
+    CompositePropagator composite = new CompositePropagator(Arrays.asList(
+        new TraceContextPropagator(), propagator));
+    Map<String, String> headers = new HashMap<>();
+    composite.inject(new WavefrontSpanContext(TRACE_ID, SPAN_ID, new HashMap<>(), true),
+        new TextMapAdapter(headers));
+    assertTrue(headers.containsKey("traceparent"));
+    assertTrue(headers.containsKey("X-B3-TraceId"));
+
+    // The W3C headers keep the full span ID.
+    assertEquals(SPAN_ID, composite.extract(new TextMapAdapter(headers)).getSpanId());
+    headers.remove("traceparent");
+    assertEquals(new UUID(0, 0x00f067aa0ba902b7L),
+        composite.extract(new TextMapAdapter(headers)).getSpanId());
+    headers.clear();
+    assertNull(composite.extract(new TextMapAdapter(headers)));
+  }
+
+  private WavefrontSpanContext extractSingle(String b3) {
+    return propagator.extract(new TextMapAdapter(Collections.singletonMap("b3", b3)));
+  }
+}
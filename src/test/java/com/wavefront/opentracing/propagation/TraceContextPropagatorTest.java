@@ -0,0 +1,152 @@
+package com.wavefront.opentracing.propagation;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import io.opentracing.propagation.TextMapAdapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TraceContextPropagator}.
+ */
+public class TraceContextPropagatorTest {
+  private static final UUID TRACE_ID = UUID.fromString("4bf92f35-77b3-4da6-a3ce-929d0e0e4736");
+  private static final UUID SPAN_ID = UUID.fromString("12345678-9abc-def0-00f0-67aa0ba902b7");
+
+  private final TraceContextPropagator propagator = new TraceContextPropagator();
+
+  @Test
+  public void testInjectsSampledContext() {
+    Map<String, String> headers = inject(new WavefrontSpanContext(TRACE_ID, SPAN_ID,
+        new HashMap<>(Collections.singletonMap("user", "a b,c")), true));
+
+    assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+        headers.get("traceparent"));
+    assertEquals("wf=123456789abcdef000f067aa0ba902b7", headers.get("tracestate"));
+    assertTrue(headers.get("baggage").contains("user=a%20b%2Cc"));
+    assertTrue(headers.get("baggage").contains("sampling.priority=1"));
+  }
+
+  @Test
+  public void testRoundTripsNotSampledContext() {
+    Map<String, String> headers = inject(new WavefrontSpanContext(TRACE_ID, SPAN_ID,
+        new HashMap<>(Collections.singletonMap("user", "\u00e9t\u00e9")), false));
+    assertTrue(headers.get("traceparent").endsWith("-00"));
+
+    WavefrontSpanContext context = propagator.extract(new TextMapAdapter(headers));
+    assertEquals(TRACE_ID, context.getTraceId());
+    assertEquals(SPAN_ID, context.getSpanId());
+    assertEquals(Boolean.FALSE, context.getSamplingDecision());
+    assertEquals("\u00e9t\u00e9", context.getBaggageItem("user"));
+    assertEquals("0", context.getBaggageItem("sampling.priority"));
+  }
+
+  @Test
+  public void testExtractsContextOfOtherTracers() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    headers.put("TraceState", "congo=t61rcWkgMzE");
+
+    WavefrontSpanContext context = propagator.extract(new TextMapAdapter(headers));
+    assertEquals(TRACE_ID, context.getTraceId());
+    assertEquals(new UUID(0, 0x00f067aa0ba902b7L), context.getSpanId());
+    assertEquals(Boolean.TRUE, context.getSamplingDecision());
+  }
+
+  @Test
+  public void testFindsSpanIdAmongTraceStateEntries() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("traceparent", " 00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01 ");
+    headers.put("tracestate", "congo=t61rcWkgMzE, wf=123456789abcdef000f067aa0ba902b7 ,rojo=1");
+
+    WavefrontSpanContext context = propagator.extract(new TextMapAdapter(headers));
+    assertEquals(SPAN_ID, context.getSpanId());
+  }
+
+  @Test
+  public void testKeepsOtherTraceStateEntriesAfterOwnEntry() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    headers.put("tracestate", "congo=t61rcWkgMzE, wf=123456789abcdef000f067aa0ba902b7 ,,rojo=1");
+    WavefrontSpanContext context = propagator.extract(new TextMapAdapter(headers));
+
+    Map<String, String> injected = inject(new WavefrontSpanContext(TRACE_ID,
+        UUID.fromString("00000000-0000-0000-0000-0000000000ab"), baggage(context), true));
+    assertEquals("wf=000000000000000000000000000000ab,congo=t61rcWkgMzE,rojo=1",
+        injected.get("tracestate"));
+    assertFalse(injected.get("baggage").contains("tracestate"));
+  }
+
+  @Test
+  public void testCapsTraceStateEntries() {
+    StringBuilder traceState = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      traceState.append(i == 0 ? "" : ",").append("vendor").append(i).append("=").append(i);
+    }
+    Map<String, String> headers = new HashMap<>();
+    headers.put("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    headers.put("tracestate", traceState.toString());
+    WavefrontSpanContext context = propagator.extract(new TextMapAdapter(headers));
+
+    String injected = inject(new WavefrontSpanContext(TRACE_ID, SPAN_ID, baggage(context),
+        true)).get("tracestate");
+    String[] entries = injected.split(",");
+    assertEquals(32, entries.length);
+    assertTrue(entries[0].startsWith("wf="));
+    assertEquals("vendor0=0", entries[1]);
+    assertEquals("vendor30=30", entries[31]);
+  }
+
+  @Test
+  public void testPriorityWinsOverSampledFlag() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    headers.put("baggage", "sampling.priority=0;prop=1, other=x");
+
+    WavefrontSpanContext context = propagator.extract(new TextMapAdapter(headers));
+    assertFalse(context.getSamplingDecision());
+    assertEquals("x", context.getBaggageItem("other"));
+  }
+
+  @Test
+  public void testIgnoresInvalidTraceParent() {
+    assertNull(extract("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7"));
+    assertNull(extract("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01"));
+    assertNull(extract("00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+    assertNull(extract("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01"));
+    assertNull(extract("ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+    assertNull(extract("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-ab"));
+    assertNull(propagator.extract(new TextMapAdapter(new HashMap<>())));
+    // A later version may append fields.
+    assertTrue(extract("01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-ab") != null);
+  }
+
+  private Map<String, String> inject(WavefrontSpanContext context) {
+    Map<String, String> headers = new HashMap<>();
+    propagator.inject(context, new TextMapAdapter(headers));
+    return headers;
+  }
+
+  private WavefrontSpanContext extract(String traceParent) {
+    return propagator.extract(new TextMapAdapter(
+        Collections.singletonMap("traceparent", traceParent)));
+  }
+
+  private static Map<String, String> baggage(WavefrontSpanContext context) {
+    Map<String, String> baggage = new HashMap<>();
+    for (Map.Entry<String, String> item : context.baggageItems()) {
+      baggage.put(item.getKey(), item.getValue());
+    }
+    return baggage;
+  }
+}
@@ -0,0 +1,223 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AsyncHandOffReporter}.
+ */
+public class AsyncHandOffReporterTest {
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @Test
+  public void testReportsBufferedSpansOnClose() {
+    RecordingReporter delegate = new RecordingReporter();
+    AsyncHandOffReporter reporter = new AsyncHandOffReporter.Builder().
+        batchSize(100).flushInterval(1, TimeUnit.HOURS).build(delegate);
+    tracer = newTracer(reporter);
+
+    finishSpans("a", "b", "c");
+    tracer.close();
+    tracer = null;
+
+    assertEquals(Arrays.asList("a", "b", "c"), delegate.getOperationNames());
+    assertEquals(3, reporter.getSpansQueued());
+    assertEquals(0, reporter.getSpansDropped());
+    assertTrue(delegate.isClosed());
+  }
+
+  @Test
+  public void testFlushesPartialBatchAfterInterval() throws InterruptedException {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(new AsyncHandOffReporter.Builder().
+        batchSize(100).flushInterval(10, TimeUnit.MILLISECONDS).build(delegate));
+
+    finishSpans("a");
+    assertTrue(delegate.awaitFirstSpan());
+  }
+
+  @Test
+  public void testBatchSizeChangeTakesEffectWhileRunning() throws InterruptedException {
+    RecordingReporter delegate = new RecordingReporter();
+    AsyncHandOffReporter reporter = new AsyncHandOffReporter.Builder().
+        batchSize(100).flushInterval(1, TimeUnit.HOURS).build(delegate);
+    tracer = newTracer(reporter);
+
+    reporter.setBatchSize(1);
+    finishSpans("a");
+    assertTrue(delegate.awaitFirstSpan());
+    assertEquals(1, reporter.getBatchSize());
+  }
+
+  @Test
+  public void testDropNewest() throws InterruptedException {
+    RecordingReporter delegate = new RecordingReporter(true);
+    AsyncHandOffReporter reporter = blockedReporter(delegate, OverflowPolicy.DROP_NEWEST);
+
+    finishSpans("b", "c", "d");
+    assertEquals(1, reporter.getSpansDropped());
+    delegate.release();
+    tracer.close();
+    tracer = null;
+
+    assertEquals(Arrays.asList("a", "b", "c"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testDropOldest() throws InterruptedException {
+    RecordingReporter delegate = new RecordingReporter(true);
+    AsyncHandOffReporter reporter = blockedReporter(delegate, OverflowPolicy.DROP_OLDEST);
+
+    finishSpans("b", "c", "d");
+    assertEquals(1, reporter.getSpansDropped());
+    delegate.release();
+    tracer.close();
+    tracer = null;
+
+    assertEquals(Arrays.asList("a", "c", "d"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testBlock() throws InterruptedException {
+    RecordingReporter delegate = new RecordingReporter(true);
+    AsyncHandOffReporter reporter = blockedReporter(delegate, OverflowPolicy.BLOCK);
+
+    finishSpans("b", "c");
+    Thread producer = new Thread(() -> finishSpans("d"));
+    producer.start();
+    producer.join(100);
+    assertTrue(producer.isAlive());
+
+    delegate.release();
+    producer.join(5000);
+    assertFalse(producer.isAlive());
+    tracer.close();
+    tracer = null;
+
+    assertEquals(0, reporter.getSpansDropped());
+    assertEquals(Arrays.asList("a", "b", "c", "d"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testConcurrentProducers() throws InterruptedException {
+    RecordingReporter delegate = new RecordingReporter();
+    AsyncHandOffReporter reporter = new AsyncHandOffReporter.Builder().queueSize(1024).
+        batchSize(64).overflowPolicy(OverflowPolicy.BLOCK).build(delegate);
+    tracer = newTracer(reporter);
+
+    int threads = 4;
+    int spansPerThread = 10_000;
+    List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Thread producer = new Thread(() -> {
+        for (int j = 0; j < spansPerThread; j++) {
+          tracer.buildSpan("op").start().finish();
+        }
+      });
+      producers.add(producer);
+      producer.start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    tracer.close();
+    tracer = null;
+
+    assertEquals(threads * spansPerThread, delegate.getSpans().size());
+    assertEquals(threads * spansPerThread, reporter.getSpansQueued());
+  }
+
+  @Test
+  public void testCountsSpansLostWhenCloseTimesOut() throws InterruptedException {
+    RecordingReporter delegate = new RecordingReporter(true);
+    AsyncHandOffReporter reporter = new AsyncHandOffReporter.Builder().batchSize(1).
+        closeTimeout(50, TimeUnit.MILLISECONDS).build(delegate);
+    tracer = newTracer(reporter);
+    finishSpans("a");
+    assertTrue(delegate.awaitFirstSpan());
+    finishSpans("b", "c");
+
+    reporter.close();
+    // The span held by the delegate and the two behind it.
+    assertEquals(3, reporter.getSpansLost());
+    delegate.release();
+  }
+
+  @Test
+  public void testAccountsForSpansFinishedWhileClosing() throws InterruptedException {
+    for (int round = 0; round < 20; round++) {
+      RecordingReporter delegate = new RecordingReporter();
+      AsyncHandOffReporter reporter = new AsyncHandOffReporter.Builder().batchSize(16).
+          build(delegate);
+      WavefrontTracer tracer = newTracer(reporter);
+      AtomicBoolean stop = new AtomicBoolean();
+      AtomicInteger finished = new AtomicInteger();
+      List<Thread> producers = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        Thread producer = new Thread(() -> {
+          while (!stop.get()) {
+            tracer.buildSpan("op").start().finish();
+            finished.incrementAndGet();
+          }
+        });
+        producers.add(producer);
+        producer.start();
+      }
+      Thread.sleep(5);
+      reporter.close();
+      stop.set(true);
+      for (Thread producer : producers) {
+        producer.join();
+      }
+
+      // Every span was either reported or counted as dropped, whenever it raced with closing.
+      assertEquals(finished.get(), delegate.getSpans().size() + reporter.getSpansDropped());
+    }
+  }
+
+  /**
+   * Returns a reporter with room for two spans whose consumer is stuck reporting span "a".
+   */
+  private AsyncHandOffReporter blockedReporter(RecordingReporter delegate, OverflowPolicy policy)
+      throws InterruptedException {
+    AsyncHandOffReporter reporter = new AsyncHandOffReporter.Builder().queueSize(2).
+        batchSize(1).overflowPolicy(policy).build(delegate);
+    tracer = newTracer(reporter);
+    finishSpans("a");
+    assertTrue(delegate.awaitFirstSpan());
+    return reporter;
+  }
+
+  private void finishSpans(String... operationNames) {
+    for (String operationName : operationNames) {
+      tracer.buildSpan(operationName).start().finish();
+    }
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+  }
+}
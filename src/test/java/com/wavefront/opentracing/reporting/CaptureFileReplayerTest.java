@@ -0,0 +1,196 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CaptureFileWriter}, {@link CaptureFileSender} and {@link CaptureFileReplayer}.
+ */
+public class CaptureFileReplayerTest {
+  private final List<Object[]> sent = new CopyOnWriteArrayList<>();
+  private final WavefrontSender recordingSender = (WavefrontSender) Proxy.newProxyInstance(
+      WavefrontSender.class.getClassLoader(), new Class<?>[] { WavefrontSender.class },
+      (proxy, method, args) -> {
+        if (method.getName().startsWith("send")) {
+          Object[] call = new Object[args.length + 1];
+          call[0] = method.getName();
+          System.arraycopy(args, 0, call, 1, args.length);
+          sent.add(call);
+        }
+        return method.getReturnType() == int.class ? 0 : null;
+      });
+  private File directory;
+
+  @Before
+  public void beforeTest() throws IOException {
+    directory = Files.createTempDirectory("capture").toFile();
+  }
+
+  @After
+  public void afterTest() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testReplaysWhatWasCaptured() throws IOException {
+    WavefrontSender captureSender = CaptureFileSender.create(newWriterBuilder().
+        compression(Compression.GZIP).build(directory), "test-source");
+    UUID traceId = UUID.randomUUID();
+    UUID spanId = UUID.randomUUID();
+    UUID parentId = UUID.randomUUID();
+    Map<String, String> fields = new HashMap<>();
+    fields.put("event", "said \"hi\"\nthen left");
+    captureSender.sendSpan("op \"quoted\"", 1000, 20, null, traceId, spanId,
+        Collections.singletonList(parentId), null,
+        Arrays.asList(Pair.of("http.url", "/a b"), Pair.of("parent", "not a reference")),
+        Collections.singletonList(new SpanLog(1_000_500, fields)));
+    captureSender.sendMetric("requests", 1.5, 2000L, "other-source",
+        Collections.singletonMap("env", "test"));
+    captureSender.sendDeltaCounter("errors", 3, null, null);
+    captureSender.sendDistribution("latency", Arrays.asList(Pair.of(1.0, 2), Pair.of(5.5, 1)),
+        Collections.singleton(HistogramGranularity.MINUTE), 3000L, null, null);
+    captureSender.close();
+
+    File[] files = directory.listFiles();
+    assertEquals(1, files.length);
+    assertTrue(files[0].getName().endsWith(".wf.gz"));
+
+    CaptureFileReplayer replayer = new CaptureFileReplayer.Builder().build(recordingSender);
+    replayer.replay(Collections.singletonList(directory));
+
+    assertEquals(4, replayer.getPointsSent());
+    assertEquals(0, replayer.getLinesSkipped());
+    assertEquals(4, sent.size());
+
+    Object[] span = sent.get(0);
+    assertEquals("sendSpan", span[0]);
+    assertEquals("op \"quoted\"", span[1]);
+    assertEquals(1000L, span[2]);
+    assertEquals(20L, span[3]);
+    assertEquals("test-source", span[4]);
+    assertEquals(traceId, span[5]);
+    assertEquals(spanId, span[6]);
+    assertEquals(Collections.singletonList(parentId), span[7]);
+    assertNull(span[8]);
+    assertEquals(Arrays.asList(Pair.of("http.url", "/a b"), Pair.of("parent", "not a reference")),
+        span[9]);
+    List<SpanLog> spanLogs = (List<SpanLog>) span[10];
+    assertEquals(1, spanLogs.size());
+    assertEquals(1_000_500, spanLogs.get(0).getTimestamp());
+    assertEquals(fields, spanLogs.get(0).getFields());
+
+    assertEquals(Arrays.asList("sendMetric", "requests", 1.5, 2000L, "other-source",
+        Collections.singletonMap("env", "test")), Arrays.asList(sent.get(1)));
+    assertEquals(Arrays.asList("sendDeltaCounter", "\u2206errors", 3.0, "test-source",
+        Collections.emptyMap()), Arrays.asList(sent.get(2)));
+    assertEquals(Arrays.asList("sendDistribution", "latency",
+        Arrays.asList(Pair.of(1.0, 2), Pair.of(5.5, 1)),
+        Collections.singleton(HistogramGranularity.MINUTE), 3000L, "test-source",
+        Collections.emptyMap()), Arrays.asList(sent.get(3)));
+  }
+
+  @Test
+  public void testRotatesAndDeletesOldestFiles() throws IOException {
+    CaptureFileWriter writer = newWriterBuilder().maxFileBytes(250).maxFiles(2).bufferSize(64).
+        build(directory);
+    WavefrontSender captureSender = CaptureFileSender.create(writer, "test-source");
+    for (int i = 0; i < 20; i++) {
+      captureSender.sendSpan("op-" + i, 1000 + i, 1, null, UUID.randomUUID(), UUID.randomUUID(),
+          null, null, Collections.emptyList(), null);
+    }
+    captureSender.close();
+
+    assertEquals(20, writer.getLinesWritten());
+    File[] files = directory.listFiles();
+    assertEquals(2, files.length);
+    for (File file : files) {
+      assertTrue(file.length() <= 250);
+    }
+
+    // Only the spans of the two newest files are left, in the order they were written.
+    new CaptureFileReplayer.Builder().build(recordingSender).
+        replay(Collections.singletonList(directory));
+    assertTrue(sent.size() > 2 && sent.size() < 20);
+    for (int i = 0; i < sent.size(); i++) {
+      assertEquals("op-" + (20 - sent.size() + i), sent.get(i)[1]);
+    }
+  }
+
+  @Test
+  public void testReplaysAtRateWithShiftedTimestamps() throws IOException {
+    CaptureFileWriter writer = newWriterBuilder().build(directory);
+    WavefrontSender captureSender = CaptureFileSender.create(writer, "test-source");
+    for (int i = 0; i < 10; i++) {
+      captureSender.sendSpan("op", 1000 + i * 10, 1, null, UUID.randomUUID(),
+          UUID.randomUUID(), null, null, Collections.emptyList(), null);
+    }
+    captureSender.close();
+
+    CaptureFileReplayer replayer = new CaptureFileReplayer.Builder().pointsPerSecond(100).
+        passes(2).shiftTimestamps().build(recordingSender);
+    long startMillis = System.currentTimeMillis();
+    replayer.replay(Collections.singletonList(directory));
+    long elapsedMillis = System.currentTimeMillis() - startMillis;
+
+    assertEquals(20, sent.size());
+    // 20 points at 100 per second take 190 ms, less some slack for the timer.
+    assertTrue(elapsedMillis >= 150);
+    for (int pass = 0; pass < 2; pass++) {
+      long firstStart = (Long) sent.get(pass * 10)[2];
+      assertTrue(firstStart >= startMillis);
+      for (int i = 0; i < 10; i++) {
+        assertEquals(firstStart + i * 10, sent.get(pass * 10 + i)[2]);
+      }
+    }
+  }
+
+  @Test
+  public void testSkipsMalformedLines() throws IOException {
+    File file = new File(directory, "broken.wf");
+    Files.write(file.toPath(), Arrays.asList("\"op\" source=\"s\" traceId=x spanId=y 1 2",
+        "{\"logs\":[]}", "\"requests\" 1.0 source=\"s\"", "\"unterminated"),
+        StandardCharsets.UTF_8);
+
+    CaptureFileReplayer replayer = new CaptureFileReplayer.Builder().build(recordingSender);
+    replayer.replay(Collections.singletonList(file));
+
+    assertEquals(1, replayer.getPointsSent());
+    assertEquals(2, replayer.getLinesSkipped());
+    assertEquals("requests", sent.get(0)[1]);
+  }
+
+  private static CaptureFileWriter.Builder newWriterBuilder() {
+    return new CaptureFileWriter.Builder().flushInterval(1, TimeUnit.MINUTES);
+  }
+}
@@ -0,0 +1,59 @@
+package com.wavefront.opentracing.reporting;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CloseDeadline}.
+ */
+public class CloseDeadlineTest {
+
+  @Test
+  public void testNestedStagesShareTheDeadline() {
+    try (CloseDeadline outer = CloseDeadline.start(1000)) {
+      try (CloseDeadline inner = CloseDeadline.start(60000)) {
+        assertTrue(inner.remainingMillis() <= 1000);
+      }
+      // An earlier timeout of a nested stage still applies to that stage.
+      try (CloseDeadline inner = CloseDeadline.start(10)) {
+        assertTrue(inner.remainingMillis() <= 10);
+      }
+      // Closing a nested deadline leaves the outer one in effect.
+      try (CloseDeadline inner = CloseDeadline.start(60000)) {
+        assertTrue(inner.remainingMillis() <= 1000);
+      }
+      assertTrue(outer.remainingMillis() > 0);
+    }
+    try (CloseDeadline next = CloseDeadline.start(60000)) {
+      assertTrue(next.remainingMillis() > 1000);
+    }
+  }
+
+  @Test
+  public void testHandsDeadlineToOtherThreads() throws InterruptedException {
+    AtomicLong remaining = new AtomicLong(-1);
+    try (CloseDeadline deadline = CloseDeadline.start(1000)) {
+      Thread closer = new Thread(() -> {
+        try (CloseDeadline joined = deadline.join();
+             CloseDeadline nested = CloseDeadline.start(60000)) {
+          remaining.set(nested.remainingMillis());
+        }
+      });
+      closer.start();
+      closer.join();
+    }
+    assertTrue(remaining.get() >= 0 && remaining.get() <= 1000);
+  }
+
+  @Test
+  public void testNoTimeLeftOncePassed() throws InterruptedException {
+    try (CloseDeadline deadline = CloseDeadline.start(1)) {
+      Thread.sleep(10);
+      assertEquals(0, deadline.remainingMillis());
+    }
+  }
+}
@@ -0,0 +1,232 @@
+package com.wavefront.opentracing.reporting;
+
+import com.sun.net.httpserver.HttpServer;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link DirectIngestionReporter} against a stub HTTP server.
+ */
+public class DirectIngestionReporterTest {
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  // The operation names of the spans of each request, in the order they were received.
+  private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+  private final List<String> headers = new CopyOnWriteArrayList<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private volatile long responseDelayMillis;
+  private volatile int responseCode = 202;
+  // The number of requests still to be answered with a server error before the response code.
+  private final AtomicInteger serverErrors = new AtomicInteger();
+  private WavefrontTracer tracer;
+
+  @Before
+  public void beforeTest() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    serverExecutor = Executors.newFixedThreadPool(8);
+    server.setExecutor(serverExecutor);
+    server.createContext("/report", exchange -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        headers.add(exchange.getRequestURI().getQuery() + " " +
+            exchange.getRequestHeaders().getFirst("Content-Encoding") + " " +
+            exchange.getRequestHeaders().getFirst("Authorization"));
+        InputStream body = exchange.getRequestBody();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+          body = new GZIPInputStream(body);
+        }
+        List<String> operationNames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(body, StandardCharsets.UTF_8))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            operationNames.add(line.substring(1, line.indexOf('"', 1)));
+          }
+        }
+        requests.add(operationNames);
+        Thread.sleep(responseDelayMillis);
+        exchange.sendResponseHeaders(serverErrors.getAndDecrement() > 0 ? 503 : responseCode, -1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        inFlight.decrementAndGet();
+        exchange.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testSendsCompressedBatchesInFlightInOrder() {
+    responseDelayMillis = 100;
+    RecordingReporter delegate = new RecordingReporter();
+    // No periodic flushes, so that every request carries a full batch.
+    DirectIngestionReporter reporter = newBuilder().flushInterval(1, TimeUnit.MINUTES).
+        maxInFlight(4).queueSize(32).batchSize(100).batchSizeBounds(100, 100).
+        build(delegate, serverUrl(), "test-token");
+    tracer = newTracer(reporter);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 2000; i++) {
+      tracer.buildSpan("op-" + i).start().finish();
+    }
+    tracer.close();
+    tracer = null;
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // 20 requests one after the other would take 2 seconds.
+    assertTrue(elapsedMillis < 1500);
+    assertTrue(maxInFlight.get() > 1);
+    assertEquals(20, requests.size());
+    assertEquals(2000, reporter.getSpansSent());
+    assertEquals("f=trace gzip Bearer test-token", headers.get(0));
+    Set<String> received = new HashSet<>();
+    for (List<String> operationNames : requests) {
+      assertEquals(100, operationNames.size());
+      for (int i = 1; i < operationNames.size(); i++) {
+        assertTrue(sequence(operationNames.get(i - 1)) < sequence(operationNames.get(i)));
+      }
+      received.addAll(operationNames);
+    }
+    assertEquals(2000, received.size());
+    assertTrue(delegate.getSpans().isEmpty());
+    assertTrue(delegate.isClosed());
+  }
+
+  @Test
+  public void testAdaptsBatchSizeToRoundTripTime() {
+    DirectIngestionReporter reporter = newBuilder().batchSize(100).batchSizeBounds(50, 1000).
+        targetLatency(50, TimeUnit.MILLISECONDS).compression(Compression.NONE).
+        build(new RecordingReporter(), serverUrl(), null);
+    tracer = newTracer(reporter);
+
+    for (int i = 0; i < 1000; i++) {
+      tracer.buildSpan("op-" + i).start().finish();
+    }
+    awaitSpansSent(reporter, 1000);
+    // Full batches that return within the target grow the batch size.
+    assertTrue(reporter.getBatchSize() > 100);
+    assertEquals("f=trace null null", headers.get(0));
+
+    responseDelayMillis = 200;
+    int batchSize = reporter.getBatchSize();
+    for (int i = 0; i < batchSize * 2; i++) {
+      tracer.buildSpan("op-" + i).start().finish();
+    }
+    awaitSpansSent(reporter, 1000 + batchSize * 2);
+    // Slow requests halve it.
+    assertTrue(reporter.getBatchSize() <= batchSize / 2);
+  }
+
+  @Test
+  public void testForwardsSpansWithSpanLogs() {
+    RecordingReporter delegate = new RecordingReporter();
+    DirectIngestionReporter reporter = newBuilder().build(delegate, serverUrl(), "test-token");
+    tracer = newTracer(reporter);
+
+    tracer.buildSpan("logged").start().log("event").finish();
+    tracer.buildSpan("plain").start().finish();
+    tracer.close();
+    tracer = null;
+
+    assertEquals(1, delegate.getSpans().size());
+    assertEquals("logged", delegate.getSpans().get(0).getOperationName());
+    assertEquals(Collections.singletonList(Collections.singletonList("plain")), requests);
+  }
+
+  @Test
+  public void testRetriesFailedRequests() {
+    serverErrors.set(2);
+    DirectIngestionReporter reporter = newBuilder().retries(2, 10, TimeUnit.MILLISECONDS).
+        build(new RecordingReporter(), serverUrl(), "test-token");
+    tracer = newTracer(reporter);
+
+    tracer.buildSpan("a").start().finish();
+    reporter.flush();
+    awaitSpansSent(reporter, 1);
+    assertEquals(3, requests.size());
+    assertEquals(2, reporter.getFailureCount());
+    assertEquals(0, reporter.getSpansFailed());
+  }
+
+  @Test
+  public void testCountsFailedRequests() {
+    responseCode = 500;
+    DirectIngestionReporter reporter = newBuilder().retries(1, 10, TimeUnit.MILLISECONDS).
+        build(new RecordingReporter(), serverUrl(), "test-token");
+    tracer = newTracer(reporter);
+
+    tracer.buildSpan("a").start().finish();
+    reporter.flush();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (reporter.getSpansFailed() == 0 && System.nanoTime() - deadline < 0) {
+      Thread.yield();
+    }
+    assertEquals(2, reporter.getFailureCount());
+    assertEquals(1, reporter.getSpansFailed());
+    assertEquals(0, reporter.getSpansSent());
+  }
+
+  private static DirectIngestionReporter.Builder newBuilder() {
+    return new DirectIngestionReporter.Builder().withSource("test-source").
+        flushInterval(50, TimeUnit.MILLISECONDS);
+  }
+
+  private String serverUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+  }
+
+  private static int sequence(String operationName) {
+    return Integer.parseInt(operationName.substring("op-".length()));
+  }
+
+  private static void awaitSpansSent(DirectIngestionReporter reporter, long spans) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (reporter.getSpansSent() < spans && System.nanoTime() - deadline < 0) {
+      Thread.yield();
+    }
+    assertEquals(spans, reporter.getSpansSent());
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+  }
+}
@@ -0,0 +1,110 @@
+package com.wavefront.opentracing.reporting;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A stand-in for the proxy's tracing port that records the lines it receives, for tests.
+ */
+public class FakeProxy implements Closeable {
+  private final ServerSocket serverSocket;
+  private final List<Socket> connections = new CopyOnWriteArrayList<>();
+  private final List<String> lines = new CopyOnWriteArrayList<>();
+
+  /**
+   * Starts listening on the given port, or on any free port if it is 0.
+   */
+  public FakeProxy(int port) throws IOException {
+    serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(this::accept, "fake-proxy");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * @return A port nothing is listening on, at least for the moment.
+   */
+  public static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      return socket.getLocalPort();
+    }
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        connections.add(socket);
+        Thread reader = new Thread(() -> read(socket), "fake-proxy-connection");
+        reader.setDaemon(true);
+        reader.start();
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void read(Socket socket) {
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } catch (IOException e) {
+      // The connection was closed.
+    }
+  }
+
+  /**
+   * @return The lines received so far that match the filter, in the order they arrived.
+   */
+  public List<String> getLines(Predicate<String> filter) {
+    List<String> matching = new ArrayList<>();
+    for (String line : lines) {
+      if (filter.test(line)) {
+        matching.add(line);
+      }
+    }
+    return matching;
+  }
+
+  /**
+   * Waits until at least {@code count} lines matching the filter have been received.
+   *
+   * @return The matching lines, in the order they arrived.
+   */
+  public List<String> awaitLines(Predicate<String> filter, int count, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    List<String> matching = getLines(filter);
+    while (matching.size() < count && System.nanoTime() - deadline < 0) {
+      Thread.sleep(10);
+      matching = getLines(filter);
+    }
+    return matching;
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket socket : connections) {
+      socket.close();
+    }
+  }
+}
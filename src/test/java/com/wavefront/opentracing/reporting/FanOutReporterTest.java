@@ -0,0 +1,89 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FanOutReporter}.
+ */
+public class FanOutReporterTest {
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @Test
+  public void testReportsToEveryDestination() {
+    RecordingReporter proxy = new RecordingReporter();
+    RecordingReporter direct = new RecordingReporter();
+    tracer = newTracer(new FanOutReporter.Builder().addDestination("proxy", proxy).
+        addDestination("direct", direct).build());
+
+    finishSpans("a", "b");
+    tracer.close();
+    tracer = null;
+
+    assertEquals(Arrays.asList("a", "b"), proxy.getOperationNames());
+    assertEquals(Arrays.asList("a", "b"), direct.getOperationNames());
+    assertTrue(proxy.isClosed());
+    assertTrue(direct.isClosed());
+  }
+
+  @Test
+  public void testSlowDestinationDoesNotHoldUpOthers() throws InterruptedException {
+    RecordingReporter slow = new RecordingReporter(true);
+    RecordingReporter fast = new RecordingReporter();
+    FanOutReporter reporter = new FanOutReporter.Builder().addDestination("slow", slow).
+        addDestination("fast", fast).queueSize(2).build();
+    tracer = newTracer(reporter);
+
+    finishSpans("a");
+    assertTrue(slow.awaitFirstSpan());
+    finishSpans("b", "c", "d", "e");
+    assertEquals(2, reporter.getDestinations().get("slow").getSpansDropped());
+    assertEquals(0, reporter.getDestinations().get("fast").getSpansDropped());
+
+    slow.release();
+    tracer.close();
+    tracer = null;
+
+    assertEquals(Arrays.asList("a", "b", "c"), slow.getOperationNames());
+    assertEquals(Arrays.asList("a", "b", "c", "d", "e"), fast.getOperationNames());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsBlockingPolicy() {
+    new FanOutReporter.Builder().addDestination("proxy", new RecordingReporter()).
+        overflowPolicy(OverflowPolicy.BLOCK).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsDuplicateDestination() {
+    new FanOutReporter.Builder().addDestination("proxy", new RecordingReporter()).
+        addDestination("proxy", new RecordingReporter());
+  }
+
+  private void finishSpans(String... operationNames) {
+    for (String operationName : operationNames) {
+      tracer.buildSpan(operationName).start().finish();
+    }
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+  }
+}
@@ -0,0 +1,36 @@
+package com.wavefront.opentracing.reporting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests for {@link HyperLogLog}.
+ */
+public class HyperLogLogTest {
+
+  @Test
+  public void testEstimatesDistinctValues() {
+    for (int distinct : new int[] { 10, 1000, 100_000 }) {
+      HyperLogLog hyperLogLog = new HyperLogLog();
+      for (int i = 0; i < distinct; i++) {
+        hyperLogLog.add("user-" + i);
+      }
+      assertEquals(distinct, hyperLogLog.estimate(), distinct * 0.1);
+    }
+  }
+
+  @Test
+  public void testRepeatedValuesDoNotChangeEstimate() {
+    HyperLogLog hyperLogLog = new HyperLogLog();
+    for (int i = 0; i < 100; i++) {
+      hyperLogLog.add("value-" + i);
+    }
+    long estimate = hyperLogLog.estimate();
+    for (int i = 0; i < 100; i++) {
+      assertFalse(hyperLogLog.add("value-" + i));
+    }
+    assertEquals(estimate, hyperLogLog.estimate());
+  }
+}
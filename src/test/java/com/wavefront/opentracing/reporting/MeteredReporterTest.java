@@ -0,0 +1,84 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MeteredReporter}.
+ */
+public class MeteredReporterTest {
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @Test
+  public void testCountsSpansAndForwardsThem() {
+    RecordingReporter delegate = new RecordingReporter();
+    MeteredReporter reporter = new MeteredReporter.Builder().build(delegate, "pipeline");
+    tracer = newTracer(reporter);
+
+    tracer.buildSpan("a").start().finish();
+    tracer.buildSpan("b").start().finish();
+
+    assertEquals(2, reporter.getSpans());
+    assertEquals(Arrays.asList("a", "b"), delegate.getOperationNames());
+    assertEquals(0, reporter.getFailureCount());
+    tracer.close();
+    tracer = null;
+    assertTrue(delegate.isClosed());
+  }
+
+  @Test
+  public void testCountsFailuresOfDelegate() {
+    Reporter failing = new Reporter() {
+      @Override
+      public void report(WavefrontSpan span) throws IOException {
+        throw new IOException("proxy is down");
+      }
+
+      @Override
+      public int getFailureCount() {
+        return 3;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    MeteredReporter reporter = new MeteredReporter.Builder().recordLatency().
+        build(failing, "span_reporter");
+    tracer = newTracer(reporter);
+
+    tracer.buildSpan("a").start().finish();
+
+    assertEquals(1, reporter.getSpans());
+    // The delegate's own failures plus the one that reached the stage.
+    assertEquals(4, reporter.getFailureCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequiresName() {
+    new MeteredReporter.Builder().build(new RecordingReporter(), "");
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+  }
+}
@@ -0,0 +1,243 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.opentracing.Span;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProxyConnectionPoolReporter} against stub proxies.
+ */
+public class ProxyConnectionPoolReporterTest {
+  private static final Pattern TRACE_ID = Pattern.compile(" traceId=([0-9a-f-]+)");
+
+  private final List<StubProxy> proxies = new ArrayList<>();
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() throws IOException {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+    for (StubProxy proxy : proxies) {
+      proxy.close();
+    }
+  }
+
+  @Test
+  public void testRoutesEachTraceOverOneConnectionInOrder() throws IOException {
+    StubProxy first = startProxy();
+    StubProxy second = startProxy();
+    // A small buffer, so that most spans are written together with the buffered ones.
+    ProxyConnectionPoolReporter reporter = newBuilder().connectionsPerProxy(2).bufferSize(512).
+        build(new RecordingReporter(), Arrays.asList(first.address(), second.address()));
+    tracer = newTracer(reporter);
+
+    List<Span> roots = new ArrayList<>();
+    for (int trace = 0; trace < 50; trace++) {
+      roots.add(tracer.buildSpan("trace-" + trace + "-0").start());
+    }
+    for (int span = 1; span < 5; span++) {
+      for (int trace = 0; trace < 50; trace++) {
+        tracer.buildSpan("trace-" + trace + "-" + span).asChildOf(roots.get(trace)).start().
+            finish();
+      }
+    }
+    tracer.close();
+    tracer = null;
+    awaitLines(200, first, second);
+
+    assertEquals(200, reporter.getSpansSent());
+    assertEquals(0, reporter.getFailureCount());
+    List<List<String>> connections = new ArrayList<>();
+    connections.addAll(first.connections);
+    connections.addAll(second.connections);
+    assertEquals(4, connections.size());
+    Map<String, Integer> connectionOfTrace = new HashMap<>();
+    for (int i = 0; i < connections.size(); i++) {
+      Map<String, Integer> lastSpanOfTrace = new HashMap<>();
+      for (String line : connections.get(i)) {
+        String[] operationName = line.substring(1, line.indexOf('"', 1)).split("-");
+        Matcher traceId = TRACE_ID.matcher(line);
+        assertTrue(traceId.find());
+        // All spans of a trace arrive over the same connection, in the order they finished.
+        assertEquals(Integer.valueOf(i), connectionOfTrace.merge(traceId.group(1), i,
+            (connection, ignored) -> connection));
+        int span = Integer.parseInt(operationName[2]);
+        Integer lastSpan = lastSpanOfTrace.put(operationName[1], span);
+        assertTrue(lastSpan == null || lastSpan < span);
+      }
+      assertFalse(connections.get(i).isEmpty());
+    }
+    assertEquals(50, connectionOfTrace.size());
+  }
+
+  @Test
+  public void testRoutesConsistently() {
+    UUID traceId = UUID.randomUUID();
+    int connection = ProxyConnectionPoolReporter.connectionIndex(traceId, 8);
+    assertEquals(connection, ProxyConnectionPoolReporter.connectionIndex(
+        new UUID(traceId.getMostSignificantBits(), traceId.getLeastSignificantBits()), 8));
+    Set<Integer> connections = new HashSet<>();
+    for (long i = 0; i < 100; i++) {
+      connections.add(ProxyConnectionPoolReporter.connectionIndex(new UUID(0, i), 8));
+    }
+    assertEquals(8, connections.size());
+  }
+
+  @Test
+  public void testFailsOverWhileProxyIsDown() throws IOException {
+    StubProxy up = startProxy();
+    InetSocketAddress down;
+    try (ServerSocket unused = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      down = new InetSocketAddress(InetAddress.getLoopbackAddress(), unused.getLocalPort());
+    }
+    ProxyConnectionPoolReporter reporter = newBuilder().connectionsPerProxy(1).
+        reconnectInterval(1, TimeUnit.MINUTES).
+        build(new RecordingReporter(), Arrays.asList(down, up.address()));
+    tracer = newTracer(reporter);
+
+    for (int i = 0; i < 20; i++) {
+      tracer.buildSpan("op-" + i).start().finish();
+    }
+    tracer.close();
+    tracer = null;
+    awaitLines(20, up);
+
+    assertEquals(20, reporter.getSpansSent());
+    assertEquals(0, reporter.getSpansDropped());
+    assertEquals(1, reporter.getFailureCount());
+  }
+
+  @Test
+  public void testForwardsSpansWithSpanLogs() throws IOException {
+    StubProxy proxy = startProxy();
+    RecordingReporter delegate = new RecordingReporter();
+    ProxyConnectionPoolReporter reporter = newBuilder().
+        build(delegate, Collections.singletonList(proxy.address()));
+    tracer = newTracer(reporter);
+
+    tracer.buildSpan("logged").start().log("event").finish();
+    tracer.buildSpan("plain").start().finish();
+    tracer.close();
+    tracer = null;
+    awaitLines(1, proxy);
+
+    assertEquals(1, delegate.getSpans().size());
+    assertEquals("logged", delegate.getSpans().get(0).getOperationName());
+    assertTrue(proxy.connections.get(0).get(0).startsWith("\"plain\""));
+    assertTrue(delegate.isClosed());
+  }
+
+  private static ProxyConnectionPoolReporter.Builder newBuilder() {
+    return new ProxyConnectionPoolReporter.Builder().withSource("test-source").
+        flushInterval(50, TimeUnit.MILLISECONDS);
+  }
+
+  private StubProxy startProxy() throws IOException {
+    StubProxy proxy = new StubProxy();
+    proxies.add(proxy);
+    return proxy;
+  }
+
+  private static void awaitLines(int lines, StubProxy... proxies) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (received(proxies) < lines && System.nanoTime() - deadline < 0) {
+      Thread.yield();
+    }
+    assertEquals(lines, received(proxies));
+  }
+
+  private static int received(StubProxy... proxies) {
+    int received = 0;
+    for (StubProxy proxy : proxies) {
+      for (List<String> connection : proxy.connections) {
+        received += connection.size();
+      }
+    }
+    return received;
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+  }
+
+  /**
+   * Accepts connections and records the lines received over each.
+   */
+  private static final class StubProxy {
+    private final ServerSocket serverSocket;
+    private final List<List<String>> connections = new CopyOnWriteArrayList<>();
+
+    private StubProxy() throws IOException {
+      serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      Thread acceptor = new Thread(() -> {
+        while (!serverSocket.isClosed()) {
+          try {
+            Socket socket = serverSocket.accept();
+            List<String> lines = new CopyOnWriteArrayList<>();
+            connections.add(lines);
+            Thread reader = new Thread(() -> read(socket, lines));
+            reader.setDaemon(true);
+            reader.start();
+          } catch (IOException e) {
+            return;
+          }
+        }
+      });
+      acceptor.setDaemon(true);
+      acceptor.start();
+    }
+
+    private static void read(Socket socket, List<String> lines) {
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          lines.add(line);
+        }
+      } catch (IOException e) {
+        // The connection was closed.
+      }
+    }
+
+    private InetSocketAddress address() {
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+    }
+
+    private void close() throws IOException {
+      serverSocket.close();
+    }
+  }
+}
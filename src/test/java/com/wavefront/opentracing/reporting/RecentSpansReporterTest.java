@@ -0,0 +1,142 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import io.opentracing.Span;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RecentSpansReporter} and {@link RecentSpans}.
+ */
+public class RecentSpansReporterTest {
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @Test
+  public void testFindsSpansByIndex() throws JMException {
+    RecordingReporter delegate = new RecordingReporter();
+    RecentSpans recentSpans = newBuilder().capacity(100).build();
+    tracer = newTracer(new RecentSpansReporter(delegate, recentSpans, "test-app",
+        "test-service"));
+
+    Span parent = tracer.buildSpan("checkout").withStartTimestamp(1_000_000).start();
+    for (int i = 1; i <= 10; i++) {
+      Span child = tracer.buildSpan("query").asChildOf(parent).withStartTimestamp(1_000_000).
+          start();
+      if (i == 7) {
+        child.setTag("error", true);
+      }
+      child.finish(1_000_000 + i * 1000);
+    }
+    parent.finish(1_100_000);
+    tracer.buildSpan("other").withStartTimestamp(2_000_000).start().finish(2_000_500);
+
+    assertEquals(12, delegate.getSpans().size());
+    assertEquals(12, recentSpans.getSpansRecorded());
+    assertEquals(12, recentSpans.findRecent(100).length);
+    assertTrue(recentSpans.findRecent(1)[0].startsWith("\"other\" source=\"test-source\" "));
+
+    String traceId = ((WavefrontSpanContext) parent.context()).getTraceId().toString();
+    String[] trace = recentSpans.findByTraceId(traceId);
+    assertEquals(11, trace.length);
+    assertTrue(trace[0].startsWith("\"checkout\""));
+
+    String[] queries = recentSpans.findByOperation("query", 3);
+    assertEquals(3, queries.length);
+    for (String query : queries) {
+      assertTrue(query.startsWith("\"query\""));
+    }
+
+    String[] errors = recentSpans.findErrors(10);
+    assertEquals(1, errors.length);
+    assertTrue(errors[0].contains("\"error\"=\"true\""));
+
+    assertEquals(9000, recentSpans.getLatencyPercentileMicros("query", 90));
+    assertEquals(2, recentSpans.findSlowest("query", 90, 10).length);
+    assertEquals(1, recentSpans.findSlowest("", 100, 10).length);
+  }
+
+  @Test
+  public void testOverwritesOldestSpansAndCutsLongOnes() throws JMException {
+    RecentSpans recentSpans = newBuilder().capacity(4).maxSpanBytes(64).build();
+    tracer = newTracer(new RecentSpansReporter(new RecordingReporter(), recentSpans, "test-app",
+        "test-service"));
+
+    for (int i = 0; i < 10; i++) {
+      tracer.buildSpan("op-" + i).start().finish();
+    }
+
+    String[] recent = recentSpans.findRecent(10);
+    assertEquals(4, recent.length);
+    for (int i = 0; i < recent.length; i++) {
+      assertTrue(recent[i].startsWith("\"op-" + (9 - i) + "\""));
+      assertTrue(recent[i].getBytes(StandardCharsets.UTF_8).length <= 64);
+    }
+    assertEquals(0, recentSpans.findByOperation("op-5", 10).length);
+  }
+
+  @Test
+  public void testHoldsFilteredTags() throws JMException {
+    RecentSpans recentSpans = newBuilder().
+        withTagFilter(new TagFilter.Builder().drop("user.id").build()).build();
+    tracer = newTracer(new RecentSpansReporter(new RecordingReporter(), recentSpans, "test-app",
+        "test-service"));
+
+    tracer.buildSpan("signed-in").withTag("user.id", "alice").start().finish();
+
+    String[] recent = recentSpans.findRecent(1);
+    assertEquals(1, recent.length);
+    assertFalse(recent[0].contains("alice"));
+  }
+
+  @Test
+  public void testRegistersOneMBeanPerReporter() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    RecentSpansReporter first = new RecentSpansReporter(new RecordingReporter(),
+        newBuilder().build(), "test-app", "test-service");
+    RecentSpansReporter second = new RecentSpansReporter(new RecordingReporter(),
+        newBuilder().build(), "test-app", "test-service");
+    ObjectName firstName = first.getObjectName();
+    ObjectName secondName = second.getObjectName();
+    assertNotEquals(firstName, secondName);
+    assertTrue(server.isRegistered(firstName));
+    assertEquals(10000, server.getAttribute(secondName, "Capacity"));
+
+    first.close();
+    second.close();
+    assertFalse(server.isRegistered(firstName));
+    assertFalse(server.isRegistered(secondName));
+  }
+
+  private static RecentSpans.Builder newBuilder() {
+    return new RecentSpans.Builder().withSource("test-source");
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+  }
+}
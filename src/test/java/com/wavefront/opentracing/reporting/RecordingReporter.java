@@ -0,0 +1,79 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Reporter} used by tests that records the spans it is given. It can be made to hold
+ * the reporting thread until {@link #release()} is called, to simulate a slow destination.
+ */
+public class RecordingReporter implements Reporter {
+  private final List<WavefrontSpan> spans = new ArrayList<>();
+  private final CountDownLatch entered = new CountDownLatch(1);
+  private final CountDownLatch released;
+  private volatile boolean closed;
+
+  public RecordingReporter() {
+    this(false);
+  }
+
+  public RecordingReporter(boolean hold) {
+    this.released = new CountDownLatch(hold ? 1 : 0);
+  }
+
+  @Override
+  public void report(WavefrontSpan span) {
+    synchronized (spans) {
+      spans.add(span);
+    }
+    entered.countDown();
+    try {
+      released.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits until a span has reached this reporter.
+   */
+  public boolean awaitFirstSpan() throws InterruptedException {
+    return entered.await(5, TimeUnit.SECONDS);
+  }
+
+  public void release() {
+    released.countDown();
+  }
+
+  public List<WavefrontSpan> getSpans() {
+    synchronized (spans) {
+      return new ArrayList<>(spans);
+    }
+  }
+
+  public List<String> getOperationNames() {
+    List<String> names = new ArrayList<>();
+    for (WavefrontSpan span : getSpans()) {
+      names.add(span.getOperationName());
+    }
+    return names;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public int getFailureCount() {
+    return 0;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+}
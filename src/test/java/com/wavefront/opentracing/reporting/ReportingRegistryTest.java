@@ -0,0 +1,111 @@
+package com.wavefront.opentracing.reporting;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ReportingRegistry}.
+ */
+public class ReportingRegistryTest {
+  private final ReportingRegistry registry = new ReportingRegistry();
+  private final AtomicInteger created = new AtomicInteger();
+
+  @Test
+  public void testSharesReportingForSameKey() throws Exception {
+    RecordingReporter reporter = new RecordingReporter();
+    ReportingRegistry.Lease first = registry.acquire("proxy", () -> entry(reporter));
+    ReportingRegistry.Lease second =
+        registry.acquire("proxy", () -> entry(new RecordingReporter()));
+
+    assertEquals(1, created.get());
+    assertSame(first.getReporters().get(0), second.getReporters().get(0));
+    assertEquals(1, registry.size());
+
+    first.close();
+    assertFalse(reporter.isClosed());
+    // Closing the same lease again must not release another reference.
+    first.close();
+    assertFalse(reporter.isClosed());
+
+    second.close();
+    assertTrue(reporter.isClosed());
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  public void testSeparateReportingForDifferentKeys() throws Exception {
+    ReportingRegistry.Lease proxy = registry.acquire("proxy", () -> entry(new RecordingReporter()));
+    ReportingRegistry.Lease direct =
+        registry.acquire("direct", () -> entry(new RecordingReporter()));
+
+    assertEquals(2, created.get());
+    assertNotSame(proxy.getReporters().get(0), direct.getReporters().get(0));
+    proxy.close();
+    direct.close();
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  public void testRecreatesReportingAfterRelease() throws Exception {
+    registry.acquire("proxy", () -> entry(new RecordingReporter())).close();
+    registry.acquire("proxy", () -> entry(new RecordingReporter())).close();
+    assertEquals(2, created.get());
+  }
+
+  @Test
+  public void testFailedCreationIsNotRegistered() throws Exception {
+    try {
+      registry.acquire("proxy", () -> {
+        throw new IllegalStateException("unreachable");
+      });
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  public void testCreationDoesNotHoldUpOtherKeys() throws Exception {
+    CountDownLatch creating = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<ReportingRegistry.Lease> slow = executor.submit(() -> registry.acquire("slow", () -> {
+        creating.countDown();
+        release.await();
+        return entry(new RecordingReporter());
+      }));
+      assertTrue(creating.await(5, TimeUnit.SECONDS));
+
+      // Another key is created while the slow one is still being created.
+      registry.acquire("fast", () -> entry(new RecordingReporter())).close();
+      assertEquals(1, created.get());
+
+      release.countDown();
+      slow.get(5, TimeUnit.SECONDS).close();
+      assertEquals(2, created.get());
+      assertEquals(0, registry.size());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  private ReportingRegistry.Entry entry(Reporter reporter) {
+    created.incrementAndGet();
+    return new ReportingRegistry.Entry(reporter, null);
+  }
+}
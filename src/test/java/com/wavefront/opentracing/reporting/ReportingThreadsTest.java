@@ -0,0 +1,69 @@
+package com.wavefront.opentracing.reporting;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ReportingThreads}.
+ */
+public class ReportingThreadsTest {
+  private final String javaVersion = System.getProperty("java.specification.version");
+
+  @After
+  public void restoreJavaVersion() {
+    System.setProperty("java.specification.version", javaVersion);
+  }
+
+  @Test
+  public void testJavaFeatureVersion() {
+    System.setProperty("java.specification.version", "1.8");
+    assertEquals(8, ReportingThreads.javaFeatureVersion());
+    System.setProperty("java.specification.version", "21");
+    assertEquals(21, ReportingThreads.javaFeatureVersion());
+    System.setProperty("java.specification.version", "22.0");
+    assertEquals(22, ReportingThreads.javaFeatureVersion());
+    System.setProperty("java.specification.version", "unknown");
+    assertEquals(8, ReportingThreads.javaFeatureVersion());
+  }
+
+  @Test
+  public void testPlatformThreadIsDaemon() {
+    Thread thread = ReportingThreads.newThread("test", () -> {}, false);
+    assertEquals("test", thread.getName());
+    assertTrue(thread.isDaemon());
+    assertEquals(Thread.State.NEW, thread.getState());
+  }
+
+  @Test
+  public void testThreadRunsTask() throws InterruptedException {
+    // Virtual if the JDK supports them, a platform thread otherwise.
+    CountDownLatch ran = new CountDownLatch(1);
+    Thread thread = ReportingThreads.newThread("test", ran::countDown, true);
+    assertEquals("test", thread.getName());
+    assertEquals(Thread.State.NEW, thread.getState());
+    thread.start();
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    if (!ReportingThreads.isVirtualThreadSupported()) {
+      assertTrue(thread.isDaemon());
+    }
+  }
+
+  @Test
+  public void testScheduledExecutor() throws InterruptedException {
+    CountDownLatch ran = new CountDownLatch(1);
+    ScheduledExecutorService executor = ReportingThreads.newScheduledExecutor("test", false);
+    try {
+      executor.schedule(ran::countDown, 1, TimeUnit.MILLISECONDS);
+      assertTrue(ran.await(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.FinishedSpan;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SpanGuardReporter}.
+ */
+public class SpanGuardReporterTest {
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @Test
+  public void testRateLimitsPerOperation() {
+    RecordingReporter delegate = new RecordingReporter();
+    SpanGuardReporter reporter = new SpanGuardReporter.Builder().maxSpansPerSecond(5).
+        build(delegate);
+    tracer = newTracer(reporter);
+
+    for (int i = 0; i < 20; i++) {
+      tracer.buildSpan("a").start().finish();
+      tracer.buildSpan("b").start().finish();
+    }
+
+    // Each operation gets a burst of one second's worth.
+    assertEquals(10, delegate.getSpans().size());
+    assertEquals(30, reporter.getSpansRateLimited());
+  }
+
+  @Test
+  public void testReplacesValuesOfTagsOverTheLimit() {
+    RecordingReporter delegate = new RecordingReporter();
+    SpanGuardReporter reporter = new SpanGuardReporter.Builder().maxTagValues(10).
+        withStaticTags(StaticTags.of(applicationTags())).build(delegate);
+    tracer = newTracer(reporter);
+
+    for (int i = 0; i < 100; i++) {
+      tracer.buildSpan("get").withTag("user.id", "user-" + i).withTag("http.method", "GET").
+          start().finish();
+    }
+
+    // Every span reaches the delegate, those with replaced tags as a rewritten copy.
+    List<WavefrontSpan> spans = delegate.getSpans();
+    assertEquals(100, spans.size());
+    long rewritten = spans.stream().filter(span -> span instanceof FinishedSpan).count();
+    assertTrue(rewritten > 0 && rewritten <= 92);
+    assertEquals(rewritten, reporter.getSpansRewritten());
+    List<Pair<String, String>> tags = spans.get(spans.size() - 1).getTagsAsList();
+    assertTrue(tags.contains(Pair.of("user.id", "overflow")));
+    assertTrue(tags.contains(Pair.of("application", "test-app")));
+    for (WavefrontSpan span : spans) {
+      assertTrue(span.getTagsAsList().contains(Pair.of("http.method", "GET")));
+    }
+  }
+
+  private static ApplicationTags applicationTags() {
+    return new ApplicationTags.Builder("test-app", "test-service").build();
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter, applicationTags()).build();
+  }
+}
@@ -0,0 +1,83 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link SpanLineEncoder}.
+ */
+public class SpanLineEncoderTest {
+  private static final UUID TRACE_ID = UUID.fromString("01010101-0101-0101-0101-010101010101");
+  private static final UUID SPAN_ID = UUID.fromString("00000000-0000-0000-0000-00000000002a");
+  private static final UUID PARENT_ID = UUID.fromString("ffffffff-0000-ffff-0000-ffffffffffff");
+
+  private final StaticTags staticTags =
+      StaticTags.of(new ApplicationTags.Builder("app", "service").build());
+
+  @Test
+  public void testEncodesSpanLine() {
+    SpanLineEncoder encoder = new SpanLineEncoder("host-1", null);
+    String line = decode(encoder.encode("get users", 1554363517965L, 5,
+        TRACE_ID, SPAN_ID, Collections.singletonList(PARENT_ID), null,
+        Arrays.asList(Pair.of("http method", "GET"), Pair.of("note", " say \"hi\"\n "))));
+
+    assertEquals("\"get users\" source=\"host-1\" " +
+        "traceId=01010101-0101-0101-0101-010101010101 " +
+        "spanId=00000000-0000-0000-0000-00000000002a " +
+        "parent=ffffffff-0000-ffff-0000-ffffffffffff " +
+        "\"http-method\"=\"GET\" \"note\"=\"say \\\"hi\\\"\" 1554363517965 5\n", line);
+  }
+
+  @Test
+  public void testCopiesStaticTagsInWhenSpanHasAllOfThem() {
+    SpanLineEncoder encoder = new SpanLineEncoder("host-1", staticTags);
+    List<Pair<String, String>> tags = new ArrayList<>(staticTags.asList());
+    tags.add(0, Pair.of("component", "jaxrs"));
+    String line = decode(encoder.encode("get", 1, 2, TRACE_ID, SPAN_ID, null, null, tags));
+
+    assertEquals("\"get\" source=\"host-1\" traceId=" + TRACE_ID + " spanId=" + SPAN_ID +
+        " \"application\"=\"app\" \"service\"=\"service\" \"cluster\"=\"none\"" +
+        " \"shard\"=\"none\" \"component\"=\"jaxrs\" 1 2\n", line);
+  }
+
+  @Test
+  public void testEncodesTagByTagWhenSpanLacksStaticTags() {
+    SpanLineEncoder encoder = new SpanLineEncoder("host-1", staticTags);
+    String line = decode(encoder.encode("get", 1, 2, TRACE_ID, SPAN_ID, null, null,
+        Arrays.asList(Pair.of("application", "other"), Pair.of("service", "service"))));
+
+    assertEquals("\"get\" source=\"host-1\" traceId=" + TRACE_ID + " spanId=" + SPAN_ID +
+        " \"application\"=\"other\" \"service\"=\"service\" 1 2\n", line);
+  }
+
+  @Test
+  public void testGrowsBufferAndEncodesUtf8() {
+    SpanLineEncoder encoder = new SpanLineEncoder("h\u00f6st", null);
+    char[] chars = new char[10_000];
+    Arrays.fill(chars, '\u20ac');
+    String value = new String(chars) + "\ud83d\ude00";
+    String line = decode(encoder.encode("op", 1, 2, TRACE_ID, SPAN_ID, null, null,
+        Collections.singletonList(Pair.of("k", value))));
+
+    assertEquals("\"op\" source=\"h\u00f6st\" traceId=" + TRACE_ID + " spanId=" + SPAN_ID +
+        " \"k\"=\"" + value + "\" 1 2\n", line);
+  }
+
+  private static String decode(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,84 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link SpanLogLimiter}.
+ */
+public class SpanLogLimiterTest {
+
+  @Test
+  public void testKeepsLogsWithinLimits() {
+    SpanLogLimiter limiter = new SpanLogLimiter.Builder().maxEntries(3).maxFieldBytes(10).
+        deduplicate().build();
+    List<SpanLog> logs = logs("a", "b", "c");
+
+    assertSame(logs, limiter.limit(logs));
+    assertEquals(0, limiter.getEntriesDropped());
+  }
+
+  @Test
+  public void testDropsEntriesOverTheLimit() {
+    SpanLogLimiter limiter = new SpanLogLimiter.Builder().maxEntries(2).build();
+
+    List<SpanLog> limited = limiter.limit(logs("a", "b", "c", "d"));
+    assertEquals(2, limited.size());
+    assertEquals("b", limited.get(1).getFields().get("event"));
+    assertEquals(2, limiter.getEntriesDropped());
+  }
+
+  @Test
+  public void testTruncatesLongFields() {
+    SpanLogLimiter limiter = new SpanLogLimiter.Builder().maxFieldBytes(4).build();
+
+    List<SpanLog> limited = limiter.limit(logs("abc", "abcdef", "\u00e9\u00e9\u00e9"));
+    assertEquals("abc", limited.get(0).getFields().get("event"));
+    assertEquals("abcd", limited.get(1).getFields().get("event"));
+    // Multi-byte characters are not split.
+    assertEquals("\u00e9\u00e9", limited.get(2).getFields().get("event"));
+    assertEquals(2, limiter.getFieldsTruncated());
+    assertEquals(3, SpanLogLimiter.truncatedLength("abc\ud83d\ude00", 6));
+    assertEquals(5, SpanLogLimiter.truncatedLength("abc\ud83d\ude00", 7));
+  }
+
+  @Test
+  public void testCollapsesRepeatedEntries() {
+    SpanLogLimiter limiter = new SpanLogLimiter.Builder().deduplicate().build();
+
+    List<SpanLog> limited = limiter.limit(logs("retry", "retry", "retry", "done", "retry"));
+    assertEquals(3, limited.size());
+    assertEquals("retry", limited.get(0).getFields().get("event"));
+    assertEquals("3", limited.get(0).getFields().get(SpanLogLimiter.REPEATED));
+    assertEquals("done", limited.get(1).getFields().get("event"));
+    assertNull(limited.get(2).getFields().get(SpanLogLimiter.REPEATED));
+    assertEquals(2, limiter.getEntriesDeduplicated());
+  }
+
+  @Test
+  public void testSharesBytesPerSecond() {
+    SpanLogLimiter limiter = new SpanLogLimiter.Builder().maxBytesPerSecond(200).build();
+
+    // Each entry takes 44 bytes, so four fit in a second's worth.
+    assertEquals(4, limiter.limit(logs("a", "b", "c", "d", "e", "f")).size());
+    assertEquals(0, limiter.limit(logs("g")).size());
+    assertEquals(3, limiter.getEntriesDropped());
+  }
+
+  private static List<SpanLog> logs(String... events) {
+    List<SpanLog> logs = new ArrayList<>();
+    for (int i = 0; i < events.length; i++) {
+      logs.add(new SpanLog(i, Collections.singletonMap("event", events[i])));
+    }
+    return logs;
+  }
+}
@@ -0,0 +1,149 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SpanMetricsReporter}.
+ */
+public class SpanMetricsReporterTest {
+  private final List<Object[]> sent = new CopyOnWriteArrayList<>();
+  private final WavefrontSender sender = (WavefrontSender) Proxy.newProxyInstance(
+      WavefrontSender.class.getClassLoader(), new Class<?>[] { WavefrontSender.class },
+      (proxy, method, args) -> {
+        if (method.getName().startsWith("send")) {
+          Object[] call = new Object[args.length + 1];
+          call[0] = method.getName();
+          System.arraycopy(args, 0, call, 1, args.length);
+          sent.add(call);
+        }
+        return method.getReturnType() == int.class ? 0 : null;
+      });
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @Test
+  public void testAggregatesPerOperationAndTag() {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(builder().addTagKey("http.method").build(delegate, sender,
+        applicationTags()));
+
+    finishSpan("get", "GET", false);
+    finishSpan("get", "GET", true);
+    finishSpan("get", "GET", false);
+    finishSpan("get", "POST", false);
+    tracer.close();
+    tracer = null;
+
+    assertEquals(3.0, deltaCounter("invocation.count", "get", "GET"), 0.0);
+    assertEquals(1.0, deltaCounter("error.count", "get", "GET"), 0.0);
+    assertEquals(1.0, deltaCounter("invocation.count", "get", "POST"), 0.0);
+    assertEquals(0.0, deltaCounter("error.count", "get", "POST"), 0.0);
+    assertEquals(2, count("sendDistribution"));
+    assertTrue(delegate.getSpans().isEmpty());
+  }
+
+  @Test
+  public void testAggregatesNewCombinationsAsOverflowBeyondMaxKeys() {
+    tracer = newTracer(builder().maxKeys(1).build(new RecordingReporter(), sender,
+        applicationTags()));
+
+    finishSpan("a", null, false);
+    finishSpan("b", null, false);
+    finishSpan("c", null, false);
+    tracer.close();
+    tracer = null;
+
+    assertEquals(1.0, deltaCounter("invocation.count", "a", null), 0.0);
+    assertEquals(2.0, deltaCounter("invocation.count", SpanMetricsReporter.OVERFLOW_OPERATION,
+        null), 0.0);
+  }
+
+  @Test
+  public void testForwardsSpansAtSpanSamplingRate() {
+    RecordingReporter delegate = new RecordingReporter();
+    SpanMetricsReporter reporter = builder().spanSamplingRate(1.0).build(delegate, sender,
+        applicationTags());
+    tracer = newTracer(reporter);
+
+    finishSpan("a", null, false);
+    finishSpan("b", null, false);
+    assertEquals(2, delegate.getSpans().size());
+    assertEquals(2, reporter.getSpansAggregated());
+  }
+
+  private static SpanMetricsReporter.Builder builder() {
+    return new SpanMetricsReporter.Builder().spanSamplingRate(0.0).
+        flushInterval(1, TimeUnit.HOURS);
+  }
+
+  private void finishSpan(String operationName, String httpMethod, boolean error) {
+    Span span = tracer.buildSpan(operationName).start();
+    if (httpMethod != null) {
+      Tags.HTTP_METHOD.set(span, httpMethod);
+    }
+    if (error) {
+      Tags.ERROR.set(span, true);
+    }
+    span.finish();
+  }
+
+  @SuppressWarnings("unchecked")
+  private double deltaCounter(String name, String operationName, String httpMethod) {
+    double value = 0;
+    for (Object[] call : sent) {
+      if (!"sendDeltaCounter".equals(call[0])) {
+        continue;
+      }
+      Map<String, String> tags = (Map<String, String>) call[4];
+      if (("tracing.span_metrics." + name).equals(call[1]) &&
+          operationName.equals(tags.get("operationName")) &&
+          (httpMethod == null || httpMethod.equals(tags.get("http.method")))) {
+        assertEquals("test-app", tags.get("application"));
+        value += (Double) call[2];
+      }
+    }
+    return value;
+  }
+
+  private int count(String method) {
+    int count = 0;
+    for (Object[] call : sent) {
+      if (method.equals(call[0])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static ApplicationTags applicationTags() {
+    return new ApplicationTags.Builder("test-app", "test-service").build();
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter, applicationTags()).build();
+  }
+}
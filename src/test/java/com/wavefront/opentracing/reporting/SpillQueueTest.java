@@ -0,0 +1,121 @@
+package com.wavefront.opentracing.reporting;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SpillQueue}.
+ */
+public class SpillQueueTest {
+  private File directory;
+  private SpillQueue queue;
+
+  @Before
+  public void beforeTest() throws IOException {
+    directory = Files.createTempDirectory("spill").toFile();
+  }
+
+  @After
+  public void afterTest() {
+    if (queue != null) {
+      queue.close();
+    }
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testFifoAcrossSegments() throws IOException {
+    queue = new SpillQueue(directory, 1024, 64);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(queue.append(record("span-" + i)));
+    }
+    assertEquals(10, queue.size());
+    assertTrue(queue.getSegmentCount() > 1);
+
+    assertEquals(Arrays.asList("span-0", "span-1", "span-2"), strings(queue.peek(3)));
+    queue.remove(3);
+    assertEquals(Arrays.asList("span-3", "span-4", "span-5", "span-6", "span-7", "span-8",
+        "span-9"), strings(queue.peek(100)));
+    assertEquals(Arrays.asList("span-7", "span-8"), strings(queue.peek(4, 2)));
+    queue.remove(7);
+    assertTrue(queue.isEmpty());
+    assertEquals(Collections.emptyList(), queue.peek(100));
+  }
+
+  @Test
+  public void testDeletesRemovedSegments() throws IOException {
+    queue = new SpillQueue(directory, 1024, 64);
+    for (int i = 0; i < 10; i++) {
+      queue.append(record("span-" + i));
+    }
+    int segments = queue.getSegmentCount();
+    queue.remove(10);
+    // Only the segment being written to is kept.
+    assertEquals(1, queue.getSegmentCount());
+    assertEquals(1, directory.listFiles().length);
+    assertTrue(segments > queue.getSegmentCount());
+  }
+
+  @Test
+  public void testRejectsWhenFull() throws IOException {
+    queue = new SpillQueue(directory, 128, 64);
+    int appended = 0;
+    while (queue.append(record("span-" + appended))) {
+      appended++;
+    }
+    assertEquals(appended, queue.size());
+    assertEquals(128, queue.getSizeBytes());
+    assertFalse(queue.append(new byte[100]));
+
+    queue.remove(appended);
+    assertTrue(queue.append(record("again")));
+  }
+
+  @Test
+  public void testResumesAfterReopen() throws IOException {
+    queue = new SpillQueue(directory, 1024, 64);
+    for (int i = 0; i < 5; i++) {
+      queue.append(record("span-" + i));
+    }
+    queue.remove(2);
+    queue.close();
+
+    queue = new SpillQueue(directory, 1024, 64);
+    assertEquals(3, queue.size());
+    queue.append(record("span-5"));
+    assertEquals(Arrays.asList("span-2", "span-3", "span-4", "span-5"),
+        strings(queue.peek(100)));
+  }
+
+  private static byte[] record(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> strings(List<byte[]> records) {
+    List<String> strings = new ArrayList<>();
+    for (byte[] record : records) {
+      strings.add(new String(record, StandardCharsets.UTF_8));
+    }
+    return strings;
+  }
+}
@@ -0,0 +1,278 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.proxy.WavefrontProxyClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link SpillingReporter}, against a fake proxy that is started and stopped.
+ */
+public class SpillingReporterTest {
+  private static final long TIMEOUT_SECONDS = 30;
+
+  private File directory;
+  private int port;
+  private FakeProxy proxy;
+  private WavefrontTracer tracer;
+
+  @Before
+  public void beforeTest() throws IOException {
+    directory = Files.createTempDirectory("spill").toFile();
+    port = FakeProxy.freePort();
+  }
+
+  @After
+  public void afterTest() throws IOException {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+    if (proxy != null) {
+      proxy.close();
+      proxy = null;
+    }
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testSpillsWhileProxyIsDownAndReplaysInOrder() throws Exception {
+    SpillingReporter reporter = newReporter();
+    tracer = newTracer(reporter);
+
+    // Nothing listens on the port yet, so reporting this span fails and spilling starts.
+    finishSpans("lost");
+    assertTrue(await(reporter::isSpilling));
+    finishSpans("a", "b", "c");
+    assertEquals(3, reporter.getSpansSpilled());
+    assertEquals(3, reporter.getQueueSize());
+
+    proxy = new FakeProxy(port);
+    assertTrue(await(() -> reporter.getQueueSize() == 0));
+    assertFalse(reporter.isSpilling());
+    assertEquals(3, reporter.getSpansReplayed());
+    assertEquals(Arrays.asList("a", "b", "c"), operationNames(
+        proxy.awaitLines(SpillingReporterTest::isSpan, 3, TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+
+    // Once the queue has drained, spans go through the span reporter again.
+    finishSpans("d");
+    assertEquals(Arrays.asList("a", "b", "c", "d"), operationNames(
+        proxy.awaitLines(SpillingReporterTest::isSpan, 4, TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+    assertEquals(3, reporter.getSpansSpilled());
+  }
+
+  @Test
+  public void testReplaysSpansLeftOnDisk() throws Exception {
+    SpillingReporter reporter = newReporter();
+    tracer = newTracer(reporter);
+    finishSpans("lost");
+    assertTrue(await(reporter::isSpilling));
+    finishSpans("a", "b");
+    tracer.close();
+    tracer = null;
+    assertEquals(2, reporter.getQueueSize());
+
+    proxy = new FakeProxy(port);
+    SpillingReporter reopened = newReporter();
+    tracer = newTracer(reopened);
+    assertTrue(await(() -> reopened.getQueueSize() == 0));
+    assertEquals(Arrays.asList("a", "b"), operationNames(
+        proxy.awaitLines(SpillingReporterTest::isSpan, 2, TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+  }
+
+  @Test
+  public void testCatchesUpWithSpansComingInFasterThanABatchPerRetryInterval() throws Exception {
+    FlakyReporter delegate = new FlakyReporter();
+    SpillingReporter reporter = new SpillingReporter.Builder().directory(directory).
+        maxBytes(64 * 1024 * 1024).segmentSize(1024 * 1024).
+        retryInterval(50, TimeUnit.MILLISECONDS).build(delegate, noOpSender());
+    WavefrontSpan span = finishedSpan();
+
+    delegate.failing = true;
+    reporter.report(span);
+    assertTrue(await(() -> {
+      reporter.report(span);
+      return reporter.isSpilling();
+    }));
+    for (int i = 0; i < 20_000; i++) {
+      reporter.report(span);
+    }
+    delegate.failing = false;
+
+    // About 50 spans a millisecond, several times the 500 spans replayed per retry interval.
+    AtomicBoolean stop = new AtomicBoolean();
+    Thread producer = new Thread(() -> {
+      while (!stop.get()) {
+        for (int i = 0; i < 50; i++) {
+          reporter.report(span);
+        }
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+      }
+    });
+    producer.start();
+    try {
+      assertTrue(await(() -> reporter.getQueueSize() == 0));
+      assertFalse(reporter.isSpilling());
+    } finally {
+      stop.set(true);
+      producer.join();
+    }
+    long spilled = reporter.getSpansSpilled();
+    reporter.close();
+
+    assertEquals(spilled, reporter.getSpansReplayed());
+    assertEquals(0, reporter.getSpansDropped());
+  }
+
+  @Test
+  public void testLeavesOutStaticTagsAndAttachesThemOnDecode() throws IOException {
+    ApplicationTags applicationTags =
+        new ApplicationTags.Builder("test-app", "test-service").build();
+    StaticTags staticTags = StaticTags.of(applicationTags);
+    RecordingReporter recorder = new RecordingReporter();
+    tracer = new WavefrontTracer.Builder(recorder, applicationTags).build();
+    tracer.buildSpan("a").withTag("http.method", "GET").start().finish();
+    WavefrontSpan span = recorder.getSpans().get(0);
+
+    byte[] record = SpillingReporter.encode(span, staticTags);
+    assertTrue(record.length < SpillingReporter.encode(span, null).length);
+    SpillingReporter.SpilledSpan decoded = SpillingReporter.decode(record, staticTags);
+    assertEquals(new HashSet<>(span.getTagsAsList()), new HashSet<>(decoded.tags));
+    assertEquals(span.getTagsAsList().size(), decoded.tags.size());
+    assertSame(staticTags.get(0), decoded.tags.get(0));
+
+    // Spans spilled against other static tags cannot be told apart from corrupt ones.
+    StaticTags otherTags = StaticTags.of(new ApplicationTags.Builder("other-app",
+        "test-service").build());
+    try {
+      SpillingReporter.decode(record, otherTags);
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  private SpillingReporter newReporter() throws IOException {
+    // Metrics and histograms go to the fake proxy too, so that nothing fails once it is up.
+    WavefrontSender sender = new WavefrontProxyClient.Builder("127.0.0.1").metricsPort(port).
+        distributionPort(port).tracingPort(port).flushIntervalSeconds(1).build();
+    WavefrontSpanReporter spanReporter =
+        new WavefrontSpanReporter.Builder().withSource("test-source").build(sender);
+    return new SpillingReporter.Builder().directory(directory).maxBytes(1024 * 1024).
+        segmentSize(64 * 1024).retryInterval(50, TimeUnit.MILLISECONDS).
+        build(spanReporter, sender);
+  }
+
+  private static WavefrontSpan finishedSpan() {
+    RecordingReporter recorder = new RecordingReporter();
+    WavefrontTracer tracer = newTracer(recorder);
+    tracer.buildSpan("a").start().finish();
+    tracer.close();
+    return recorder.getSpans().get(0);
+  }
+
+  private static WavefrontSender noOpSender() {
+    return (WavefrontSender) Proxy.newProxyInstance(WavefrontSender.class.getClassLoader(),
+        new Class<?>[] { WavefrontSender.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getFailureCount":
+              return 0;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+  }
+
+  private void finishSpans(String... operationNames) {
+    for (String operationName : operationNames) {
+      tracer.buildSpan(operationName).start().finish();
+    }
+  }
+
+  private static boolean isSpan(String line) {
+    return line.startsWith("\"") && line.contains(" traceId=") && !line.startsWith("\"lost\"");
+  }
+
+  private static List<String> operationNames(List<String> spanLines) {
+    List<String> names = new ArrayList<>();
+    for (String line : spanLines) {
+      names.add(line.substring(1, line.indexOf('"', 1)));
+    }
+    return names;
+  }
+
+  private static boolean await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+  }
+
+  /**
+   * Stands in for a span reporter whose sender can be made to fail: while it does, every span it
+   * is handed counts as a failure.
+   */
+  private static final class FlakyReporter implements Reporter {
+    private final AtomicInteger failures = new AtomicInteger();
+    volatile boolean failing;
+
+    @Override
+    public void report(WavefrontSpan span) {
+      if (failing) {
+        failures.incrementAndGet();
+      }
+    }
+
+    @Override
+    public int getFailureCount() {
+      return failures.get();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link StaticTags}.
+ */
+public class StaticTagsTest {
+
+  @Test
+  public void testApplicationTagsThenCustomTagsInKeyOrder() {
+    Map<String, String> customTags = new HashMap<>();
+    customTags.put("zone", "us-west-2");
+    customTags.put("env", "staging");
+    StaticTags staticTags = StaticTags.of(new ApplicationTags.Builder("app", "service").
+        cluster("cluster").customTags(customTags).build());
+
+    assertEquals(Arrays.asList(Pair.of("application", "app"), Pair.of("service", "service"),
+        Pair.of("cluster", "cluster"), Pair.of("shard", "none"), Pair.of("env", "staging"),
+        Pair.of("zone", "us-west-2")), staticTags.asList());
+    assertEquals("us-west-2", staticTags.asMap().get("zone"));
+  }
+
+  @Test
+  public void testEqualApplicationTagsShareOneInstance() {
+    StaticTags staticTags = StaticTags.of(new ApplicationTags.Builder("app", "service").build());
+    StaticTags other = StaticTags.of(new ApplicationTags.Builder(new String("app"),
+        new String("service")).build());
+
+    assertSame(staticTags, other);
+    assertSame(staticTags.get(0), other.get(0));
+  }
+
+  @Test
+  public void testIndexOf() {
+    StaticTags staticTags = StaticTags.of(new ApplicationTags.Builder("app", "service").build());
+
+    assertEquals(1, staticTags.indexOf("service", "service"));
+    assertEquals(1, staticTags.indexOf(new String("service"), new String("service")));
+    assertEquals(-1, staticTags.indexOf("service", "other"));
+    assertEquals(-1, staticTags.indexOf("other", null));
+  }
+}
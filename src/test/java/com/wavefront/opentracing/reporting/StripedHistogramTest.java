@@ -0,0 +1,85 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link StripedHistogram}.
+ */
+public class StripedHistogramTest {
+
+  @Test
+  public void testBucketsAreContiguousAndMonotonic() {
+    int previous = 0;
+    for (long value = 0; value < 1 << 20; value++) {
+      int bucket = StripedHistogram.bucket(value);
+      assertTrue(bucket == previous || bucket == previous + 1);
+      previous = bucket;
+    }
+    assertEquals(StripedHistogram.BUCKETS - 1, StripedHistogram.bucket(Long.MAX_VALUE));
+    assertEquals(0, StripedHistogram.bucket(-1));
+  }
+
+  @Test
+  public void testMidpointIsWithinRelativeError() {
+    for (long value = 1; value < 1L << 40; value = value * 3 / 2 + 1) {
+      double midpoint = StripedHistogram.midpoint(StripedHistogram.bucket(value));
+      assertEquals(value, midpoint, value * 0.125);
+    }
+  }
+
+  @Test
+  public void testDrainTakesEveryRecordingOnce() throws InterruptedException {
+    StripedHistogram histogram = new StripedHistogram(4);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 100_000; i++) {
+          histogram.record(i % 1000, i % 10 == 0);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    StripedHistogram.Snapshot snapshot = new StripedHistogram.Snapshot();
+    long count = 0;
+    long errors = 0;
+    for (Thread thread : threads) {
+      while (thread.isAlive()) {
+        histogram.drain(snapshot);
+        count += snapshot.getCount();
+        errors += snapshot.getErrors();
+      }
+    }
+    histogram.drain(snapshot);
+    count += snapshot.getCount();
+    errors += snapshot.getErrors();
+
+    assertEquals(800_000, count);
+    assertEquals(80_000, errors);
+  }
+
+  @Test
+  public void testCentroids() {
+    StripedHistogram histogram = new StripedHistogram(1);
+    histogram.record(1000, false);
+    histogram.record(1001, false);
+    histogram.record(5000, true);
+    StripedHistogram.Snapshot snapshot = new StripedHistogram.Snapshot();
+    histogram.drain(snapshot);
+
+    List<Pair<Double, Integer>> centroids = snapshot.getCentroids();
+    assertEquals(2, centroids.size());
+    assertEquals(2, (int) centroids.get(0)._2);
+    assertEquals(1000, centroids.get(0)._1, 125);
+    assertEquals(1, (int) centroids.get(1)._2);
+    assertEquals(1, snapshot.getErrors());
+  }
+}
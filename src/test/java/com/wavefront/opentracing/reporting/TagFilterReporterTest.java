@@ -0,0 +1,57 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.FinishedSpan;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TagFilterReporter}.
+ */
+public class TagFilterReporterTest {
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @Test
+  public void testForwardsSpansWithFilteredTags() {
+    RecordingReporter delegate = new RecordingReporter();
+    TagFilterReporter reporter = new TagFilterReporter(delegate,
+        new TagFilter.Builder().drop("user.id").build());
+    tracer = new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+    tracer.buildSpan("anonymous").withTag("http.method", "GET").start().finish();
+    tracer.buildSpan("signed-in").withTag("user.id", "alice").withTag("http.method", "GET").
+        start().log("event").finish();
+
+    assertEquals(2, delegate.getSpans().size());
+    WavefrontSpan anonymous = delegate.getSpans().get(0);
+    assertEquals("anonymous", anonymous.getOperationName());
+    assertFalse(anonymous instanceof FinishedSpan);
+    WavefrontSpan signedIn = delegate.getSpans().get(1);
+    assertEquals("signed-in", signedIn.getOperationName());
+    assertTrue(signedIn instanceof FinishedSpan);
+    List<Pair<String, String>> tags = signedIn.getTagsAsList();
+    assertTrue(tags.contains(Pair.of("http.method", "GET")));
+    assertFalse(tags.contains(Pair.of("user.id", "alice")));
+    assertEquals(1, signedIn.getSpanLogs().size());
+    assertEquals(1, reporter.getSpansFiltered());
+  }
+}
@@ -0,0 +1,60 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.sdk.common.Pair;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link TagFilter}.
+ */
+public class TagFilterTest {
+
+  @Test
+  public void testLeavesTagsWithoutRulesAlone() {
+    TagFilter filter = new TagFilter.Builder().drop("user.id").hash("http.header.*").build();
+    List<Pair<String, String>> tags = Arrays.asList(Pair.of("component", "jaxrs"),
+        Pair.of("user", "alice"), Pair.of("http.header", "value"));
+
+    assertSame(tags, filter.filter(tags));
+    assertEquals(0, filter.getTagsDropped() + filter.getTagsRewritten());
+  }
+
+  @Test
+  public void testAppliesRules() {
+    TagFilter filter = new TagFilter.Builder().drop("user.id").hash("session.*").
+        redact("db.statement", Pattern.compile("'[^']*'")).stripQuery("http.url").build();
+
+    List<Pair<String, String>> filtered = filter.filter(Arrays.asList(
+        Pair.of("component", "jaxrs"), Pair.of("user.id", "alice"),
+        Pair.of("session.id", "1234"), Pair.of("db.statement", "SELECT * WHERE name = 'bob'"),
+        Pair.of("http.url", "https://example.com/a?token=secret#top")));
+    assertEquals(Arrays.asList(Pair.of("component", "jaxrs"),
+        Pair.of("session.id", TagFilter.hash("1234")),
+        Pair.of("db.statement", "SELECT * WHERE name = " + TagFilter.REDACTED),
+        Pair.of("http.url", "https://example.com/a")), filtered);
+    assertEquals(1, filter.getTagsDropped());
+    assertEquals(3, filter.getTagsRewritten());
+    assertEquals(16, TagFilter.hash("1234").length());
+    assertNotEquals(TagFilter.hash("1234"), TagFilter.hash("1235"));
+  }
+
+  @Test
+  public void testPrefersKeysThenLongerPrefixes() {
+    TagFilter filter = new TagFilter.Builder().drop("http.*").hash("http.url*").
+        stripQuery("http.url").hash("user").drop("user").build();
+
+    assertEquals(Arrays.asList(Pair.of("http.url", "/a"),
+        Pair.of("http.url.full", TagFilter.hash("/a?b"))), filter.filter(Arrays.asList(
+        Pair.of("http.url", "/a?b"), Pair.of("http.url.full", "/a?b"),
+        Pair.of("http.method", "GET"), Pair.of("user", "alice"))));
+    assertEquals(4, filter.size());
+  }
+}
@@ -0,0 +1,154 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TailSamplingReporter}.
+ */
+public class TailSamplingReporterTest {
+  private WavefrontTracer tracer;
+
+  @After
+  public void afterTest() {
+    if (tracer != null) {
+      tracer.close();
+      tracer = null;
+    }
+  }
+
+  @Test
+  public void testKeepsTraceWithError() {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(0.0).build(delegate));
+
+    Span root = tracer.buildSpan("root").start();
+    Span child = tracer.buildSpan("child").asChildOf(root).start();
+    Tags.ERROR.set(child, true);
+    child.finish();
+    assertTrue(delegate.getSpans().isEmpty());
+    root.finish();
+
+    assertEquals(Arrays.asList("child", "root"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testKeepsSlowTrace() {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(0.0).
+        latencyThreshold(100, TimeUnit.MILLISECONDS).build(delegate));
+
+    Span root = tracer.buildSpan("root").withStartTimestamp(1_000_000).start();
+    tracer.buildSpan("child").asChildOf(root).withStartTimestamp(1_000_000).start().
+        finish(1_200_000);
+    root.finish(1_300_000);
+
+    assertEquals(Arrays.asList("child", "root"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testBaseRate() {
+    RecordingReporter dropped = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(0.0).build(dropped));
+    finishTrace();
+    tracer.close();
+
+    RecordingReporter kept = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(1.0).build(kept));
+    finishTrace();
+    tracer.close();
+    tracer = null;
+
+    assertTrue(dropped.getSpans().isEmpty());
+    assertEquals(Arrays.asList("child", "root"), kept.getOperationNames());
+  }
+
+  @Test
+  public void testServerSpanIsLocalRoot() {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(1.0).build(delegate));
+
+    Span remoteParent = tracer.buildSpan("remote").start();
+    tracer.buildSpan("server").asChildOf(remoteParent).
+        withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER).start().finish();
+
+    assertEquals(Collections.singletonList("server"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testLateSpansFollowDecision() {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(0.0).build(delegate));
+
+    Span root = tracer.buildSpan("root").start();
+    Span child = tracer.buildSpan("child").asChildOf(root).start();
+    Tags.ERROR.set(root, true);
+    root.finish();
+    child.finish();
+
+    assertEquals(Arrays.asList("root", "child"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testDecidesAfterDecisionWait() throws InterruptedException {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(1.0).
+        decisionWait(20, TimeUnit.MILLISECONDS).build(delegate));
+
+    Span root = tracer.buildSpan("root").start();
+    tracer.buildSpan("child").asChildOf(root).start().finish();
+
+    assertTrue(delegate.awaitFirstSpan());
+    assertEquals(Collections.singletonList("child"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testDecidesOldestTracesOverByteBudget() {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(1.0).maxBufferedBytes(1).
+        build(delegate));
+
+    Span first = tracer.buildSpan("first-root").start();
+    tracer.buildSpan("first-child").asChildOf(first).start().finish();
+
+    assertEquals(Collections.singletonList("first-child"), delegate.getOperationNames());
+  }
+
+  @Test
+  public void testCloseDecidesBufferedTraces() {
+    RecordingReporter delegate = new RecordingReporter();
+    tracer = newTracer(new TailSamplingReporter.Builder().baseRate(1.0).build(delegate));
+
+    Span root = tracer.buildSpan("root").start();
+    tracer.buildSpan("child").asChildOf(root).start().finish();
+    tracer.close();
+    tracer = null;
+
+    assertEquals(Collections.singletonList("child"), delegate.getOperationNames());
+    assertTrue(delegate.isClosed());
+  }
+
+  private void finishTrace() {
+    Span root = tracer.buildSpan("root").start();
+    tracer.buildSpan("child").asChildOf(root).start().finish();
+    root.finish();
+  }
+
+  private static WavefrontTracer newTracer(Reporter reporter) {
+    return new WavefrontTracer.Builder(reporter,
+        new ApplicationTags.Builder("test-app", "test-service").build()).build();
+  }
+}
@@ -0,0 +1,114 @@
+package com.wavefront.opentracing.sampling;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AdaptiveSampler}, including a load-test harness that drives the sampler with a
+ * simulated clock while the offered load changes 100x.
+ */
+public class AdaptiveSamplerTest {
+  private static final double TARGET_SPANS_PER_SECOND = 100;
+  private static final int SPANS_PER_TRACE = 3;
+
+  private final AtomicLong clock = new AtomicLong();
+  private final Random random = new Random(42);
+  private AdaptiveSampler sampler;
+
+  @Before
+  public void beforeTest() {
+    clock.set(0);
+    sampler = new AdaptiveSampler(TARGET_SPANS_PER_SECOND, clock::get);
+  }
+
+  @Test
+  public void testSamplesEverythingBelowTarget() {
+    // 30 traces of 3 spans each per second stay below the target of 100 spans per second.
+    long[] reported = offerLoad(30, 10);
+    for (long count : reported) {
+      assertEquals(30 * SPANS_PER_TRACE, count);
+    }
+    assertEquals(1.0, sampler.getProbability(), 0.0);
+  }
+
+  @Test
+  public void testReportedRateStaysWithinBoundsAsLoadChanges100x() {
+    // Let the sampler learn how many spans a sampled trace produces.
+    offerLoad(100, 5);
+
+    int[] tracesPerSecond = {10_000, 100, 10_000, 100};
+    for (int load : tracesPerSecond) {
+      long[] reported = offerLoad(load, 20);
+      for (int second = 0; second < reported.length; second++) {
+        // The burst cap bounds every single second, including the one in which load changes,
+        // give or take the error in the learned number of spans per trace.
+        assertTrue("second " + second + " at " + load + " traces/s reported " + reported[second],
+            reported[second] <= 1.1 * AdaptiveSampler.BURST_FACTOR * TARGET_SPANS_PER_SECOND);
+      }
+      // Once settled, the average stays close to the target.
+      double settled = average(reported, 5, reported.length);
+      assertEquals("settled rate at " + load + " traces/s", TARGET_SPANS_PER_SECOND, settled,
+          0.2 * TARGET_SPANS_PER_SECOND);
+    }
+  }
+
+  @Test
+  public void testDecisionIsConsistentPerTraceId() {
+    offerLoad(10_000, 5);
+    long traceId = random.nextLong();
+    boolean decision = sampler.sample("op", traceId, 0);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(decision, sampler.sample("op", traceId, 0));
+    }
+  }
+
+  @Test
+  public void testIsEarly() {
+    assertTrue(sampler.isEarly());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNonPositiveTarget() {
+    new AdaptiveSampler(0);
+  }
+
+  /**
+   * Offers the given number of traces per second, spread evenly over each simulated second, and
+   * reports every span of the traces that are sampled.
+   *
+   * @return The number of spans reported in each second.
+   */
+  private long[] offerLoad(int tracesPerSecond, int seconds) {
+    long[] reported = new long[seconds];
+    long start = clock.get();
+    long spacing = AdaptiveSampler.ADJUSTMENT_INTERVAL_NANOS / tracesPerSecond;
+    for (int second = 0; second < seconds; second++) {
+      long secondStart = start + second * AdaptiveSampler.ADJUSTMENT_INTERVAL_NANOS;
+      for (int i = 0; i < tracesPerSecond; i++) {
+        clock.set(secondStart + i * spacing);
+        if (sampler.sample("op", random.nextLong(), 0)) {
+          for (int span = 0; span < SPANS_PER_TRACE; span++) {
+            sampler.spanReported();
+          }
+          reported[second] += SPANS_PER_TRACE;
+        }
+      }
+    }
+    clock.set(start + seconds * AdaptiveSampler.ADJUSTMENT_INTERVAL_NANOS);
+    return reported;
+  }
+
+  private static double average(long[] values, int from, int to) {
+    double sum = 0;
+    for (int i = from; i < to; i++) {
+      sum += values[i];
+    }
+    return sum / (to - from);
+  }
+}
@@ -0,0 +1,60 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ReloadableSampling}.
+ */
+public class ReloadableSamplingTest {
+
+  @Test
+  public void testSamplesEverythingWithoutSamplers() {
+    ReloadableSampling sampling = new ReloadableSampling(Collections.emptyList(), null);
+    for (Sampler sampler : sampling.getSamplers()) {
+      assertTrue(sampler.sample("op", 42, 0));
+    }
+  }
+
+  @Test
+  public void testViewsSplitEarlyAndLateSamplers() {
+    ReloadableSampling sampling = new ReloadableSampling(Arrays.asList(new RateSampler(0.0),
+        new DurationSampler(100)), null);
+    List<Sampler> views = sampling.getSamplers();
+    Sampler early = views.get(0);
+    Sampler late = views.get(1);
+
+    assertTrue(early.isEarly());
+    assertFalse(late.isEarly());
+    assertFalse(early.sample("op", 42, 0));
+    assertFalse(late.sample("op", 42, 50));
+    assertTrue(late.sample("op", 42, 150));
+  }
+
+  @Test
+  public void testUpdateReplacesSamplers() {
+    ReloadableSampling sampling =
+        new ReloadableSampling(Collections.singletonList(new RateSampler(0.0)), null);
+    Sampler early = sampling.getSamplers().get(0);
+    assertFalse(early.sample("op", 42, 0));
+
+    sampling.update(Collections.singletonList(new RateSampler(1.0)), null);
+    assertTrue(early.sample("op", 42, 0));
+    assertEquals(1, sampling.getCurrentSamplers().size());
+
+    sampling.update(Collections.emptyList(), null);
+    assertTrue(early.sample("op", 42, 0));
+    assertTrue(sampling.getCurrentSamplers().isEmpty());
+  }
+}